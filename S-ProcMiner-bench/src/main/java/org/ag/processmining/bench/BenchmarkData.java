@@ -0,0 +1,132 @@
+package org.ag.processmining.bench;
+
+import org.ag.processmining.log.model.*;
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generator of benchmark inputs shaped like real event logs: CSV event lines with
+ * the columns of the sample schema, trace lengths drawn around a mean, Zipf-like activity and
+ * resource frequencies, and timestamps in one of the formats {@code DateFormatExtractor}
+ * recognizes.
+ */
+public class BenchmarkData {
+
+    public static final String[] HEADER = {"Case ID", "Activity", "Resource", "Start Timestamp", "Complete Timestamp", "Variant", "Role"};
+    public static final char DELIMITER = ';';
+
+    private final Random random;
+    private final int activities;
+    private final int resources;
+    private final DateTimeFormatter format;
+
+    /**
+     * @param timestampFormat a Joda pattern, e.g. "yyyy/MM/dd HH:mm:ss.SSS"
+     */
+    public BenchmarkData(long seed, int activities, int resources, String timestampFormat) {
+        this.random = new Random(seed);
+        this.activities = activities;
+        this.resources = resources;
+        this.format = DateTimeFormat.forPattern(timestampFormat);
+    }
+
+    /**
+     * @return the events of {@code cases} cases of about {@code meanLength} events, as CSV lines
+     */
+    public List<String> lines(int cases, int meanLength) {
+        List<String> lines = new ArrayList<>();
+        DateTime t = new DateTime(2016, 1, 1, 8, 0);
+        for (int c = 0; c < cases; c++) {
+            int length = traceLength(meanLength);
+            DateTime start = t.plusMinutes(random.nextInt(60 * 24 * 30));
+            for (int e = 0; e < length; e++) {
+                DateTime end = start.plusSeconds(30 + random.nextInt(3600));
+                lines.add("case-" + c + DELIMITER + activity() + DELIMITER + resource() + DELIMITER
+                        + format.print(start) + DELIMITER + format.print(end) + DELIMITER
+                        + "Variant " + (c % 37) + DELIMITER + "Role " + random.nextInt(5));
+                start = end.plusSeconds(random.nextInt(7200));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * @return the traces of {@code cases} cases of about {@code meanLength} events
+     */
+    public List<Trace> traces(int cases, int meanLength) {
+        List<Trace> traces = new ArrayList<>();
+        DateTime t = new DateTime(2016, 1, 1, 8, 0);
+        for (int c = 0; c < cases; c++) {
+            CaseId id = caseId("case-" + c);
+            Trace trace = new Trace(id);
+            int length = traceLength(meanLength);
+            DateTime start = t.plusMinutes(random.nextInt(60 * 24 * 30));
+            for (int e = 0; e < length; e++) {
+                DateTime end = start.plusSeconds(30 + random.nextInt(3600));
+                trace.addEvent(event(id, start, end));
+                start = end.plusSeconds(1 + random.nextInt(7200));
+            }
+            traces.add(trace);
+        }
+        return traces;
+    }
+
+    public Event event(CaseId id, DateTime start, DateTime end) {
+        String line = id + ";" + activity() + ";" + resource() + ";" + format.print(start) + ";" + format.print(end)
+                + ";Variant;Role";
+        try {
+            return new Event.EventBuilder(line, DELIMITER, HEADER)
+                    .caseId(java.util.Collections.singletonList("Case ID"))
+                    .activityClass("Activity")
+                    .originator("Resource", "Role")
+                    .start("Start Timestamp")
+                    .end("Complete Timestamp")
+                    .build();
+        } catch (java.io.IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static CaseId caseId(String... values) {
+        CaseId id = new CaseId();
+        for (int i = 0; i < values.length; i++) {
+            id.addField("f" + i, values[i]);
+        }
+        return id;
+    }
+
+    public String activity() {
+        return "Activity " + zipf(activities);
+    }
+
+    public String resource() {
+        return "Resource " + zipf(resources);
+    }
+
+    public Originator originator() {
+        return new Originator(resource(), "Role");
+    }
+
+    /**
+     * @return a rank in [0, n), rank r being drawn with a probability about proportional to 1 / (r + 1)
+     */
+    public int zipf(int n) {
+        return (int) Math.min(n - 1, Math.floor(Math.pow(n + 1, random.nextDouble())) - 1);
+    }
+
+    /**
+     * @return a trace length drawn from a geometric-like distribution of the given mean, at least 1
+     */
+    public int traceLength(int mean) {
+        return 1 + (int) (-Math.log(1 - random.nextDouble()) * (mean - 1));
+    }
+
+    public Random random() {
+        return random;
+    }
+}
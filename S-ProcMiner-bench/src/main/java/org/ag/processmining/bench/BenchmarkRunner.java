@@ -0,0 +1,36 @@
+package org.ag.processmining.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the benchmarks with the GC profiler (allocation rate per operation, gc.alloc.rate.norm)
+ * and writes the results as CSV to {@code results/<commit>.csv}, the commit being given by the
+ * {@code bench.commit} system property. The usual JMH command line options (benchmark regexp,
+ * -p, -f, ...) are accepted and take precedence. Two result files are compared with
+ * {@link CompareResults}.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        String commit = System.getProperty("bench.commit", "local");
+        File results = new File("results");
+        results.mkdirs();
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(BenchmarkRunner.class.getPackage().getName() + ".*Benchmark")
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.CSV)
+                .result(new File(results, commit + ".csv").getPath())
+                .build();
+        new Runner(options).run();
+    }
+}
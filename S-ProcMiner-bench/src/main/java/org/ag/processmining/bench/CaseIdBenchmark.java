@@ -0,0 +1,66 @@
+package org.ag.processmining.bench;
+
+import org.ag.processmining.log.model.CaseId;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CaseId#hashCode()} and {@link CaseId#equals(Object)}, alone and through the hash map
+ * lookups that key every trace and every shuffle by case.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaseIdBenchmark {
+
+    private static final int SIZE = 8192;
+
+    /*
+    Number of fields of the case id
+     */
+    @Param({"1", "3"})
+    public int fields;
+
+    private CaseId[] ids;
+    private CaseId[] copies;
+    private Map<CaseId, Integer> map;
+    private int i = 0;
+
+    @Setup
+    public void setup() {
+        ids = new CaseId[SIZE];
+        copies = new CaseId[SIZE];
+        map = new HashMap<>();
+        for (int k = 0; k < SIZE; k++) {
+            String[] values = new String[fields];
+            for (int f = 0; f < fields; f++) {
+                values[f] = "case-" + (k * 31 + f) + "-" + f;
+            }
+            ids[k] = BenchmarkData.caseId(values);
+            copies[k] = BenchmarkData.caseId(values);
+            map.put(ids[k], k);
+        }
+    }
+
+    @Benchmark
+    public int hashCodeOf() {
+        return ids[i++ & (SIZE - 1)].hashCode();
+    }
+
+    @Benchmark
+    public boolean equalsCopy() {
+        int k = i++ & (SIZE - 1);
+        return ids[k].equals(copies[k]);
+    }
+
+    @Benchmark
+    public Integer mapLookup() {
+        return map.get(copies[i++ & (SIZE - 1)]);
+    }
+}
@@ -0,0 +1,72 @@
+package org.ag.processmining.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Compares two CSV result files of {@link BenchmarkRunner}: prints, for every benchmark and
+ * parameter set present in both, the score and the allocation per operation before and after,
+ * and the relative change.
+ * <p>
+ * Usage: CompareResults &lt;baseline.csv&gt; &lt;candidate.csv&gt;
+ */
+public class CompareResults {
+
+    private static final String ALLOCATION = ":\u00b7gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: CompareResults <baseline.csv> <candidate.csv>");
+            return;
+        }
+        Map<String, double[]> before = read(args[0]);
+        Map<String, double[]> after = read(args[1]);
+        System.out.printf("%-80s %14s %14s %8s %12s %12s%n", "Benchmark", "Before", "After", "Change", "B/op before", "B/op after");
+        for (Map.Entry<String, double[]> e : before.entrySet()) {
+            double[] a = after.get(e.getKey());
+            if (a == null) {
+                continue;
+            }
+            double[] b = e.getValue();
+            System.out.printf("%-80s %14.3f %14.3f %+7.1f%% %12.1f %12.1f%n", e.getKey(), b[0], a[0],
+                    100 * (a[0] - b[0]) / b[0], b[1], a[1]);
+        }
+    }
+
+    /**
+     * @return score and allocation per operation, by benchmark name and parameters
+     */
+    private static Map<String, double[]> read(String file) throws IOException {
+        Map<String, double[]> results = new TreeMap<>();
+        List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+        String[] header = split(lines.get(0));
+        for (String line : lines.subList(1, lines.size())) {
+            String[] f = split(line);
+            String name = f[0];
+            boolean allocation = name.endsWith(ALLOCATION);
+            if (allocation) {
+                name = name.substring(0, name.length() - ALLOCATION.length());
+            } else if (name.contains(":")) {
+                continue;
+            }
+            StringBuilder key = new StringBuilder(name);
+            for (int i = 7; i < f.length; i++) {
+                key.append(' ').append(header[i].replace("Param: ", "")).append('=').append(f[i]);
+            }
+            double[] r = results.computeIfAbsent(key.toString(), k -> new double[]{Double.NaN, Double.NaN});
+            r[allocation ? 1 : 0] = Double.parseDouble(f[4]);
+        }
+        return results;
+    }
+
+    private static String[] split(String line) {
+        String[] f = line.split(",", -1);
+        for (int i = 0; i < f.length; i++) {
+            f[i] = f[i].replace("\"", "");
+        }
+        return f;
+    }
+}
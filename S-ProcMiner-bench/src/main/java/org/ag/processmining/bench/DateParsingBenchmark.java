@@ -0,0 +1,53 @@
+package org.ag.processmining.bench;
+
+import org.ag.processmining.Utils.DateFormatExtractor;
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DateFormatExtractor#buildDateTime(String)} on timestamps of a single format, the usual
+ * case of a log, and on a mix of formats, which defeats the last-format cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateParsingBenchmark {
+
+    private static final int SIZE = 1024;
+
+    @Param({"yyyy/MM/dd HH:mm:ss.SSS", "yyyy-MM-dd HH:mm:ss", "dd-MM-yyyy HH:mm", "MM/dd/yyyy HH:mm:ss"})
+    public String format;
+
+    private String[] single;
+    private String[] mixed;
+    private int i = 0;
+
+    @Setup
+    public void setup() {
+        String[] formats = {"yyyy/MM/dd HH:mm:ss.SSS", "yyyy-MM-dd HH:mm:ss", "dd-MM-yyyy HH:mm", "MM/dd/yyyy HH:mm:ss"};
+        single = new String[SIZE];
+        mixed = new String[SIZE];
+        DateTime t = new DateTime(2016, 1, 1, 0, 0);
+        for (int k = 0; k < SIZE; k++) {
+            t = t.plusSeconds(977 * k);
+            single[k] = DateTimeFormat.forPattern(format).print(t);
+            mixed[k] = DateTimeFormat.forPattern(formats[k % formats.length]).print(t);
+        }
+    }
+
+    @Benchmark
+    public DateTime singleFormat() {
+        return DateFormatExtractor.buildDateTime(single[i++ & (SIZE - 1)]);
+    }
+
+    @Benchmark
+    public DateTime mixedFormats() {
+        return DateFormatExtractor.buildDateTime(mixed[i++ & (SIZE - 1)]);
+    }
+}
@@ -0,0 +1,60 @@
+package org.ag.processmining.bench;
+
+import org.ag.processmining.log.model.Event;
+import org.ag.processmining.log.model.Event.EventBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of a CSV event line into an {@link Event}, the way {@code LogSummary.buildEvents} does
+ * it for every line of a log.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventParsingBenchmark {
+
+    private static final int SIZE = 4096;
+    private static final List<String> CASE_ID_FIELDS = Collections.singletonList("Case ID");
+
+    @Param({"yyyy/MM/dd HH:mm:ss.SSS", "yyyy-MM-dd HH:mm:ss"})
+    public String timestampFormat;
+
+    @Param({"20", "500"})
+    public int activities;
+
+    private String[] lines;
+    private int i = 0;
+
+    @Setup
+    public void setup() {
+        lines = new BenchmarkData(42, activities, 100, timestampFormat).lines(SIZE, 10)
+                .subList(0, SIZE).toArray(new String[0]);
+    }
+
+    @Benchmark
+    public Event buildEvent() throws IOException {
+        return new EventBuilder(lines[i++ & (SIZE - 1)], BenchmarkData.DELIMITER, BenchmarkData.HEADER)
+                .caseId(CASE_ID_FIELDS)
+                .activityClass("Activity")
+                .originator("Resource", "Role")
+                .start("Start Timestamp")
+                .end("Complete Timestamp")
+                .build();
+    }
+
+    /**
+     * The CSV parsing alone, without the field conversions.
+     */
+    @Benchmark
+    public EventBuilder parseLine() throws IOException {
+        return new EventBuilder(lines[i++ & (SIZE - 1)], BenchmarkData.DELIMITER, BenchmarkData.HEADER);
+    }
+}
@@ -0,0 +1,60 @@
+package org.ag.processmining.bench;
+
+import org.ag.processmining.log.model.Originator;
+import org.ag.processmining.sna.socialnetwork.SocialNetwork;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SocialNetwork#addRelation(Object, Object)} on a network being filled, and
+ * {@link SocialNetwork#merge(SocialNetwork)} of two partial networks, as the SN builders do per
+ * partition.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SocialNetworkBenchmark {
+
+    private static final int RELATIONS = 10000;
+
+    @Param({"50", "1000"})
+    public int resources;
+
+    private Originator[] sources;
+    private Originator[] targets;
+    private SocialNetwork<Originator> left;
+    private SocialNetwork<Originator> right;
+
+    @Setup
+    public void setup() {
+        BenchmarkData data = new BenchmarkData(42, 1, resources, "yyyy-MM-dd HH:mm:ss");
+        sources = new Originator[RELATIONS];
+        targets = new Originator[RELATIONS];
+        left = new SocialNetwork<>();
+        right = new SocialNetwork<>();
+        for (int k = 0; k < RELATIONS; k++) {
+            sources[k] = data.originator();
+            targets[k] = data.originator();
+            (k % 2 == 0 ? left : right).addRelation(sources[k], targets[k]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RELATIONS)
+    public SocialNetwork<Originator> addRelations() {
+        SocialNetwork<Originator> sn = new SocialNetwork<>();
+        for (int k = 0; k < RELATIONS; k++) {
+            sn.addRelation(sources[k], targets[k]);
+        }
+        return sn;
+    }
+
+    @Benchmark
+    public SocialNetwork<Originator> merge() {
+        return left.merge(right);
+    }
+}
@@ -0,0 +1,53 @@
+package org.ag.processmining.bench;
+
+import org.ag.processmining.Utils.TimeUtils;
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TimeUtils#duration(DateTime, DateTime, TimeUtils.TimeUnit)}, called for every event by the
+ * activity and trace statistics.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeUtilsBenchmark {
+
+    private static final int SIZE = 1024;
+
+    @Param({"SECOND", "MINUTE", "DAY", "MONTH"})
+    public TimeUtils.TimeUnit unit;
+
+    private DateTime[] starts;
+    private DateTime[] ends;
+    private int i = 0;
+
+    @Setup
+    public void setup() {
+        BenchmarkData data = new BenchmarkData(42, 1, 1, "yyyy-MM-dd HH:mm:ss");
+        starts = new DateTime[SIZE];
+        ends = new DateTime[SIZE];
+        DateTime t = new DateTime(2016, 1, 1, 0, 0);
+        for (int k = 0; k < SIZE; k++) {
+            starts[k] = t.plusMinutes(data.random().nextInt(500_000));
+            ends[k] = starts[k].plusSeconds(data.random().nextInt(10_000_000));
+        }
+    }
+
+    @Benchmark
+    public double duration() {
+        int k = i++ & (SIZE - 1);
+        return TimeUtils.duration(starts[k], ends[k], unit);
+    }
+
+    @Benchmark
+    public double fromMillis() {
+        int k = i++ & (SIZE - 1);
+        return TimeUtils.fromMillis(ends[k].getMillis() - starts[k].getMillis(), unit);
+    }
+}
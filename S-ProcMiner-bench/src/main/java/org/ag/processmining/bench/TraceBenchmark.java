@@ -0,0 +1,70 @@
+package org.ag.processmining.bench;
+
+import org.ag.processmining.log.model.Event;
+import org.ag.processmining.log.model.Trace;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trace construction ({@link Trace#addEvent(Event)}) and the merge of partial traces that builds
+ * every trace of a log in {@code LogSummary.buildTraces}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraceBenchmark {
+
+    @Param({"5", "50", "500"})
+    public int length;
+
+    private Event[] events;
+    private Trace firstHalf;
+    private Trace secondHalf;
+    private List<Trace> singletons;
+
+    @Setup
+    public void setup() {
+        Trace trace = new BenchmarkData(42, 50, 100, "yyyy-MM-dd HH:mm:ss").traces(1, length * 4).get(0);
+        List<Event> l = new ArrayList<>(trace.getOrderedEvents().values()).subList(0, Math.min(length, trace.size()));
+        events = l.toArray(new Event[0]);
+        firstHalf = new Trace(trace.getId());
+        secondHalf = new Trace(trace.getId());
+        singletons = new ArrayList<>();
+        for (int k = 0; k < events.length; k++) {
+            (k % 2 == 0 ? firstHalf : secondHalf).addEvent(events[k]);
+            singletons.add(new Trace(trace.getId()).addEvent(events[k]));
+        }
+    }
+
+    @Benchmark
+    public Trace addEvents() {
+        Trace t = new Trace(events[0].getCaseId());
+        for (Event e : events) {
+            t.addEvent(e);
+        }
+        return t;
+    }
+
+    @Benchmark
+    public Trace mergeHalves() {
+        return firstHalf.merge(secondHalf);
+    }
+
+    /**
+     * Merge of single-event traces one by one, as a reduceByKey over (case, trace) pairs does.
+     */
+    @Benchmark
+    public Trace reduceSingletons() {
+        Trace t = singletons.get(0);
+        for (int k = 1; k < singletons.size(); k++) {
+            t = t.merge(singletons.get(k));
+        }
+        return t;
+    }
+}
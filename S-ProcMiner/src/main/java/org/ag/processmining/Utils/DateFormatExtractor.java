@@ -2,14 +2,18 @@ package org.ag.processmining.Utils;
 
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
 
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 public class DateFormatExtractor {
 
+    private static final Logger LOGGER = Logger.getLogger(DateFormatExtractor.class.getName());
+
     private static final Map<String, String> DATE_FORMAT_REGEXPS = new HashMap<String, String>() {{
         put("^\\d{8}$", "yyyyMMdd");
         put("^\\d{1,2}-\\d{1,2}-\\d{4}$", "dd-MM-yyyy");
@@ -40,36 +44,59 @@ public class DateFormatExtractor {
     }};
 
 
-    private static String determineDateFormat(String dateString) {
-        for (String regexp : DATE_FORMAT_REGEXPS.keySet()) {
-            if (dateString.matches(regexp)) {
-                return DATE_FORMAT_REGEXPS.get(regexp);
+    /*
+    Compiled patterns and formatters, and the last format that matched: the dates of a log almost
+    always share one format, which is then tried first
+     */
+    private static final Map<Pattern, DateTimeFormatter> FORMATS = new LinkedHashMap<>();
+    private static volatile Map.Entry<Pattern, DateTimeFormatter> lastFormat = null;
+
+    static {
+        DATE_FORMAT_REGEXPS.forEach((regexp, format) -> {
+            if (!format.isEmpty()) {
+                FORMATS.put(Pattern.compile(regexp), DateTimeFormat.forPattern(format));
             }
-        }
-        return null;
+        });
     }
 
-    public static DateTime buildDateTime(String dateAsString) {
-        String dateFormat = determineDateFormat(dateAsString);
-        if (dateFormat != null) {
-            return DateTimeFormat.forPattern(dateFormat).parseDateTime(dateAsString);
+    private static DateTimeFormatter determineDateFormat(String dateString) {
+        Map.Entry<Pattern, DateTimeFormatter> last = lastFormat;
+        if (last != null && last.getKey().matcher(dateString).matches()) {
+            return last.getValue();
+        }
+        for (Map.Entry<Pattern, DateTimeFormatter> format : FORMATS.entrySet()) {
+            if (format.getKey().matcher(dateString).matches()) {
+                lastFormat = format;
+                return format.getValue();
+            }
         }
-        System.out.println("Error");
         return null;
     }
 
-    public static void main(String[] args) {
-
-
-        DateTime firstDateRef = new DateTime(2016, 10, 1, 0, 0);
-        DateTime lastDateRef = new DateTime(2016, 10, 10, 0, 0);
-        Set<DateTime> t = new HashSet<>();
-        while (firstDateRef.compareTo(lastDateRef) <= 0) {
-            t.add(firstDateRef);
-            System.out.println(firstDateRef.toString());
-            firstDateRef = firstDateRef.plusDays(1);
+    /**
+     * @return the date, or null if the string matches none of the known formats
+     */
+    public static DateTime parseDateTime(String dateAsString) {
+        DateTimeFormatter dateFormat = dateAsString == null ? null : determineDateFormat(dateAsString);
+        if (dateFormat == null) {
+            return null;
         }
+        try {
+            return dateFormat.parseDateTime(dateAsString);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
 
-
+    /**
+     * @return the date, or null (with a warning) if the string matches none of the known formats
+     */
+    public static DateTime buildDateTime(String dateAsString) {
+        DateTimeFormatter dateFormat = dateAsString == null ? null : determineDateFormat(dateAsString);
+        if (dateFormat != null) {
+            return dateFormat.parseDateTime(dateAsString);
+        }
+        LOGGER.warning("Unknown date format: " + dateAsString);
+        return null;
     }
 }
\ No newline at end of file
@@ -0,0 +1,200 @@
+package org.ag.processmining.Utils;
+
+import java.io.Serializable;
+
+/**
+ * Mergeable quantile sketch for durations (in milliseconds).
+ * <p>
+ * Values are counted in logarithmic buckets so that any quantile is returned with a bounded
+ * relative error, whatever the number of values: bucket i holds the values in
+ * (gamma^(i-1), gamma^i] with gamma = (1 + accuracy) / (1 - accuracy). Only the range of buckets
+ * actually hit is allocated, which keeps sketches of narrow duration ranges small. Values below
+ * one millisecond (including negative ones) go to a dedicated zero bucket.
+ */
+public class DurationSketch implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    public static final double DEFAULT_ACCURACY = 0.01;
+
+    private final double accuracy;
+    private final double gamma;
+    private final double logGamma;
+    private long[] counts = null;
+    private int offset = 0;
+    private long zeroCount = 0;
+    private long count = 0;
+    private double sum = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public DurationSketch() {
+        this(DEFAULT_ACCURACY);
+    }
+
+    public DurationSketch(double accuracy) {
+        this.accuracy = accuracy;
+        this.gamma = (1 + accuracy) / (1 - accuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public DurationSketch add(double millis) {
+        return add(millis, 1);
+    }
+
+    public DurationSketch add(double millis, long n) {
+        if (millis < 1) {
+            zeroCount += n;
+        } else {
+            int idx = (int) Math.ceil(Math.log(millis) / logGamma);
+            ensureRange(idx, idx);
+            counts[idx - offset] += n;
+        }
+        count += n;
+        sum += millis * n;
+        min = Math.min(min, millis);
+        max = Math.max(max, millis);
+        return this;
+    }
+
+    public DurationSketch merge(DurationSketch other) {
+        checkCompatible(other);
+        if (other.counts != null) {
+            ensureRange(other.offset, other.offset + other.counts.length - 1);
+            for (int i = 0; i < other.counts.length; i++) {
+                counts[other.offset + i - offset] += other.counts[i];
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    /**
+     * Removes the values of a sketch previously merged into this one. Minimum and maximum are
+     * kept as bounds of the remaining values, since they cannot be recovered exactly.
+     */
+    public DurationSketch subtract(DurationSketch other) {
+        checkCompatible(other);
+        if (other.counts != null) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    counts[other.offset + i - offset] -= other.counts[i];
+                }
+            }
+        }
+        zeroCount -= other.zeroCount;
+        count -= other.count;
+        sum -= other.sum;
+        if (count == 0) {
+            clear();
+        }
+        return this;
+    }
+
+    public void clear() {
+        counts = null;
+        offset = 0;
+        zeroCount = 0;
+        count = 0;
+        sum = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * @param q quantile in [0, 1]
+     * @return the estimated q-quantile, NaN if the sketch is empty
+     */
+    public double quantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.floor(q * (count - 1));
+        if (rank < zeroCount) {
+            return Math.max(min, 0);
+        }
+        long seen = zeroCount;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                double v = 2 * Math.pow(gamma, offset + i) / (gamma + 1);
+                return Math.min(Math.max(v, min), max);
+            }
+        }
+        return max;
+    }
+
+    public double median() {
+        return quantile(0.5);
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double sum() {
+        return sum;
+    }
+
+    public double mean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    public double min() {
+        return min;
+    }
+
+    public double max() {
+        return max;
+    }
+
+    public double accuracy() {
+        return accuracy;
+    }
+
+    public DurationSketch copy() {
+        DurationSketch c = new DurationSketch(accuracy);
+        return c.merge(this);
+    }
+
+    private void checkCompatible(DurationSketch other) {
+        if (other.gamma != gamma) {
+            throw new IllegalArgumentException("Cannot combine sketches of accuracy " + accuracy + " and " + other.accuracy);
+        }
+    }
+
+    private void ensureRange(int lo, int hi) {
+        if (counts == null) {
+            counts = new long[hi - lo + 1];
+            offset = lo;
+            return;
+        }
+        int curHi = offset + counts.length - 1;
+        if (lo >= offset && hi <= curHi) {
+            return;
+        }
+        int newLo = Math.min(lo, offset);
+        int newHi = Math.max(hi, curHi);
+        // grow by at least a quarter to amortize the copies of slowly widening ranges
+        int slack = Math.max(counts.length / 4, 1);
+        if (newLo < offset) {
+            newLo -= slack;
+        }
+        if (newHi > curHi) {
+            newHi += slack;
+        }
+        long[] grown = new long[newHi - newLo + 1];
+        System.arraycopy(counts, 0, grown, offset - newLo, counts.length);
+        counts = grown;
+        offset = newLo;
+    }
+
+    @Override
+    public String toString() {
+        return "DurationSketch{count=" + count + ", mean=" + mean() + ", median=" + median()
+                + ", p90=" + quantile(0.9) + ", min=" + min + ", max=" + max + "}";
+    }
+}
@@ -27,7 +27,7 @@ public final class TimeUtils implements Serializable {
             case MONTH:
                 return Months.monthsBetween(start, end).getMonths();
             case WEEK:
-                Weeks.weeksBetween(start, end).getWeeks();
+                return Weeks.weeksBetween(start, end).getWeeks();
             case DAY:
                 return Days.daysBetween(start, end).getDays();
             case HOUR:
@@ -35,12 +35,34 @@ public final class TimeUtils implements Serializable {
             case MINUTE:
                 return Minutes.minutesBetween(start, end).getMinutes();
             case SECOND:
-                Seconds.secondsBetween(start, end).getSeconds();
+                return Seconds.secondsBetween(start, end).getSeconds();
             default:
                 return Days.daysBetween(start, end).getDays();
         }
     }
 
+    /**
+     * Converts a duration without truncating it. Months are counted as 30 days.
+     */
+    public static double fromMillis(long millis, TimeUnit tu) {
+        switch (tu) {
+            case MONTH:
+                return millis / (30 * 86400000.0);
+            case WEEK:
+                return millis / (7 * 86400000.0);
+            case DAY:
+                return millis / 86400000.0;
+            case HOUR:
+                return millis / 3600000.0;
+            case MINUTE:
+                return millis / 60000.0;
+            case SECOND:
+                return millis / 1000.0;
+            default:
+                return millis / 86400000.0;
+        }
+    }
+
     public static List<DateTime> daysBetween(DateTime start, DateTime end) {
         DateTime startRef = new DateTime(start.getYear(), start.getMonthOfYear(), start.getDayOfMonth(), 0, 0);
         DateTime endRef = new DateTime(end.getYear(), end.getMonthOfYear(), end.getDayOfMonth(), 0, 0);
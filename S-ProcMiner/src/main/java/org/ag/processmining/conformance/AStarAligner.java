@@ -0,0 +1,487 @@
+package org.ag.processmining.conformance;
+
+import org.ag.processmining.log.model.Variant;
+import org.ag.processmining.petrinet.PetriNet;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Computes optimal alignments of activity sequences (encoded with the labels of the net, -1 for
+ * unknown activities) with a Petri net, by A* search over the synchronous product.
+ * <p>
+ * A search state is a marking and a position in the sequence. States live in flat int arrays
+ * (markings are slices of one pool) indexed by an open-addressing hash table, and the open set is
+ * a binary heap of packed long keys, so a search allocates a handful of arrays whatever its number
+ * of states. The heuristic is the marking equation: the cost of the cheapest real solution of the
+ * linear program whose variables are the number of model, synchronous and log moves. It is only
+ * solved when a state is about to be expanded; on creation a state gets the parent estimate minus
+ * the move cost, which is a lower bound of it.
+ * <p>
+ * A search stops once it holds {@code maxStates} states or runs longer than {@code maxMillis}; the
+ * alignment is then completed from the deepest state expanded, and flagged as not optimal.
+ */
+public class AStarAligner implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private static final int INFINITE = Integer.MAX_VALUE / 4;
+    private static final byte CLOSED = 1;
+    private static final byte ESTIMATED = 2;
+
+    private final PetriNet net;
+    private final int[] modelCost;
+    private final int[] labelLogCost;
+    private final int unknownLogCost;
+    private final int[] finalMarking;
+    private int maxStates = 200_000;
+    private long maxMillis = 2_000;
+
+    /*
+    Constraint matrix of the marking equation and cost of the cheapest model run, computed on
+    first use (null until then, also after deserialization)
+     */
+    private transient double[][] lpMatrix;
+    private transient double[] lpCosts;
+    private transient Integer cheapestModelRun;
+
+    public AStarAligner(PetriNet net, AlignmentCosts costs) {
+        this.net = net;
+        this.modelCost = new int[net.transitionCount()];
+        for (int t = 0; t < modelCost.length; t++) {
+            modelCost[t] = net.isSilent(t) ? 0 : costs.modelMoveCost(net.label(t));
+        }
+        this.labelLogCost = new int[net.labels().size()];
+        for (int l = 0; l < labelLogCost.length; l++) {
+            labelLogCost[l] = costs.logMoveCost(net.labels().get(l));
+        }
+        this.unknownLogCost = costs.logMoveCost(null);
+        this.finalMarking = net.finalMarking();
+    }
+
+    /**
+     * @param maxStates maximum number of search states of one alignment
+     * @param maxMillis maximum duration of one alignment
+     */
+    public AStarAligner budget(int maxStates, long maxMillis) {
+        this.maxStates = maxStates;
+        this.maxMillis = maxMillis;
+        return this;
+    }
+
+    public PetriNet getNet() {
+        return net;
+    }
+
+    public Alignment align(Variant variant) {
+        int[] events = variant.activities();
+        int worst = logCost(events, 0) + cheapestModelRun();
+        Search s = new Search(net.initialMarking(), events, System.currentTimeMillis() + maxMillis);
+        int goal = s.run();
+        if (goal >= 0) {
+            return s.alignment(goal, null, 0, worst, true);
+        }
+        int deepest = Math.max(s.deepest, 0);
+        Search completion = new Search(s.marking(deepest), new int[0], System.currentTimeMillis() + maxMillis);
+        int end = completion.run();
+        if (end < 0) {
+            // no alignment at all within the budget: every event is a log move
+            byte[] types = new byte[events.length];
+            int[] evs = new int[events.length];
+            int[] ts = new int[events.length];
+            for (int i = 0; i < events.length; i++) {
+                types[i] = (byte) Alignment.MoveType.LOG.ordinal();
+                evs[i] = i;
+                ts[i] = -1;
+            }
+            return new Alignment(types, evs, ts, worst, worst, false);
+        }
+        return s.alignment(deepest, completion, end, worst, false);
+    }
+
+    private int logCost(int[] events, int from) {
+        int c = 0;
+        for (int i = from; i < events.length; i++) {
+            c += events[i] < 0 ? unknownLogCost : labelLogCost[events[i]];
+        }
+        return c;
+    }
+
+    /**
+     * @return the cost of the cheapest run of the net from the initial to the final marking
+     */
+    private int cheapestModelRun() {
+        if (cheapestModelRun == null) {
+            Search s = new Search(net.initialMarking(), new int[0], System.currentTimeMillis() + maxMillis);
+            int goal = s.run();
+            cheapestModelRun = goal < 0 ? 0 : s.g[goal];
+        }
+        return cheapestModelRun;
+    }
+
+    /**
+     * Builds the columns of the marking equation: one model move variable per transition, one
+     * synchronous move variable per visible transition and one log move variable per label. The
+     * rows are the places, then the labels.
+     */
+    private void buildProgram() {
+        int places = net.placeCount();
+        int labels = labelLogCost.length;
+        int transitions = net.transitionCount();
+        int visible = 0;
+        for (int t = 0; t < transitions; t++) {
+            if (!net.isSilent(t)) {
+                visible++;
+            }
+        }
+        int columns = transitions + visible + labels;
+        double[][] a = new double[places + labels][columns];
+        double[] c = new double[columns];
+        int sync = transitions;
+        for (int t = 0; t < transitions; t++) {
+            c[t] = modelCost[t];
+            double[] effect = new double[places];
+            int[] ps = net.inputPlaces(t);
+            int[] ws = net.inputWeights(t);
+            for (int i = 0; i < ps.length; i++) {
+                effect[ps[i]] -= ws[i];
+            }
+            ps = net.outputPlaces(t);
+            ws = net.outputWeights(t);
+            for (int i = 0; i < ps.length; i++) {
+                effect[ps[i]] += ws[i];
+            }
+            for (int p = 0; p < places; p++) {
+                a[p][t] = effect[p];
+            }
+            if (!net.isSilent(t)) {
+                for (int p = 0; p < places; p++) {
+                    a[p][sync] = effect[p];
+                }
+                a[places + net.labelId(t)][sync] = 1;
+                sync++;
+            }
+        }
+        for (int l = 0; l < labels; l++) {
+            a[places + l][sync + l] = 1;
+            c[sync + l] = labelLogCost[l];
+        }
+        lpCosts = c;
+        lpMatrix = a;
+    }
+
+    private int heuristic(int[] pool, int offset, int[] events, int pos) {
+        if (lpMatrix == null) {
+            buildProgram();
+        }
+        int places = net.placeCount();
+        double[] b = new double[lpMatrix.length];
+        for (int p = 0; p < places; p++) {
+            b[p] = finalMarking[p] - pool[offset + p];
+        }
+        int unknown = 0;
+        for (int i = pos; i < events.length; i++) {
+            if (events[i] < 0) {
+                unknown += unknownLogCost;
+            } else {
+                b[places + events[i]]++;
+            }
+        }
+        double v = LinearProgram.minimize(lpMatrix, b, lpCosts);
+        if (Double.isNaN(v)) {
+            return INFINITE;
+        }
+        return (int) Math.ceil(v - 1e-6) + unknown;
+    }
+
+    /**
+     * One A* search from a marking over a sequence of events.
+     */
+    private class Search {
+        private final int places = net.placeCount();
+        private final int[] events;
+        private final long deadline;
+
+        private int count = 0;
+        private int[] pool;
+        private int[] pos;
+        private int[] g;
+        private int[] h;
+        private int[] parent;
+        private int[] moveEvent;
+        private int[] moveTransition;
+        private byte[] moveType;
+        private byte[] flags;
+        private int[] table;
+        private long[] heapKeys = new long[64];
+        private int[] heapIds = new int[64];
+        private int heapSize = 0;
+        int deepest = -1;
+
+        Search(int[] marking, int[] events, long deadline) {
+            this.events = events;
+            this.deadline = deadline;
+            allocate(1024);
+            table = new int[4096];
+            int root = add(marking, 0, 0, -1, (byte) 0, -1, -1);
+            h[root] = heuristic(pool, 0, events, 0);
+        }
+
+        int[] marking(int s) {
+            return Arrays.copyOfRange(pool, s * places, (s + 1) * places);
+        }
+
+        /**
+         * @return the goal state, or -1 if there is none or the budget was exhausted
+         */
+        int run() {
+            if (h[0] >= INFINITE) {
+                return -1;
+            }
+            push(0);
+            long iterations = 0;
+            while (heapSize > 0) {
+                if (count > maxStates || (++iterations & 0xff) == 0 && System.currentTimeMillis() > deadline) {
+                    return -1;
+                }
+                long key = heapKeys[0];
+                int s = pop();
+                if ((flags[s] & CLOSED) != 0 || (int) (key >>> 32) != g[s] + h[s]) {
+                    continue;
+                }
+                if ((flags[s] & ESTIMATED) != 0) {
+                    flags[s] &= ~ESTIMATED;
+                    int exact = heuristic(pool, s * places, events, pos[s]);
+                    if (exact >= INFINITE) {
+                        flags[s] |= CLOSED;
+                        continue;
+                    }
+                    if (exact > h[s]) {
+                        h[s] = exact;
+                        push(s);
+                        continue;
+                    }
+                }
+                flags[s] |= CLOSED;
+                if (deepest < 0 || pos[s] > pos[deepest] || pos[s] == pos[deepest] && g[s] < g[deepest]) {
+                    deepest = s;
+                }
+                if (pos[s] == events.length && isFinal(s)) {
+                    return s;
+                }
+                expand(s);
+            }
+            return -1;
+        }
+
+        private boolean isFinal(int s) {
+            for (int p = 0; p < places; p++) {
+                if (pool[s * places + p] != finalMarking[p]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void expand(int s) {
+            int[] m = marking(s);
+            int i = pos[s];
+            if (i < events.length) {
+                int label = events[i];
+                successor(s, m, i + 1, label < 0 ? unknownLogCost : labelLogCost[label], Alignment.MoveType.LOG, i, -1);
+            }
+            for (int t = 0; t < modelCost.length; t++) {
+                if (!net.isEnabled(m, t)) {
+                    continue;
+                }
+                int[] next = m.clone();
+                net.fire(next, t);
+                successor(s, next, i, modelCost[t], Alignment.MoveType.MODEL, -1, t);
+                if (i < events.length && events[i] >= 0 && net.labelId(t) == events[i]) {
+                    successor(s, next, i + 1, 0, Alignment.MoveType.SYNC, i, t);
+                }
+            }
+        }
+
+        private void successor(int from, int[] marking, int position, int cost, Alignment.MoveType type, int event, int transition) {
+            int ng = g[from] + cost;
+            int s = find(marking, position);
+            if (s < 0) {
+                s = add(marking, position, ng, from, (byte) type.ordinal(), event, transition);
+                h[s] = Math.max(0, h[from] - cost);
+                flags[s] = ESTIMATED;
+                push(s);
+            } else if ((flags[s] & CLOSED) == 0 && ng < g[s]) {
+                g[s] = ng;
+                parent[s] = from;
+                moveType[s] = (byte) type.ordinal();
+                moveEvent[s] = event;
+                moveTransition[s] = transition;
+                push(s);
+            }
+        }
+
+        private int hash(int[] marking, int position) {
+            int hc = position;
+            for (int v : marking) {
+                hc = 31 * hc + v;
+            }
+            return hc ^ (hc >>> 16);
+        }
+
+        private int find(int[] marking, int position) {
+            int mask = table.length - 1;
+            for (int i = hash(marking, position) & mask; table[i] != 0; i = (i + 1) & mask) {
+                int s = table[i] - 1;
+                if (pos[s] == position && equalMarking(s, marking)) {
+                    return s;
+                }
+            }
+            return -1;
+        }
+
+        private boolean equalMarking(int s, int[] marking) {
+            int offset = s * places;
+            for (int p = 0; p < places; p++) {
+                if (pool[offset + p] != marking[p]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int add(int[] marking, int position, int cost, int from, byte type, int event, int transition) {
+            if (count == pos.length) {
+                allocate(pos.length * 2);
+            }
+            int s = count++;
+            System.arraycopy(marking, 0, pool, s * places, places);
+            pos[s] = position;
+            g[s] = cost;
+            parent[s] = from;
+            moveType[s] = type;
+            moveEvent[s] = event;
+            moveTransition[s] = transition;
+            if (2 * count > table.length) {
+                rehash(table.length * 2);
+            }
+            insert(s, marking, position);
+            return s;
+        }
+
+        private void insert(int s, int[] marking, int position) {
+            int mask = table.length - 1;
+            int i = hash(marking, position) & mask;
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = s + 1;
+        }
+
+        private void rehash(int capacity) {
+            table = new int[capacity];
+            for (int s = 0; s < count; s++) {
+                insert(s, marking(s), pos[s]);
+            }
+        }
+
+        private void allocate(int capacity) {
+            pool = pool == null ? new int[capacity * places] : Arrays.copyOf(pool, capacity * places);
+            pos = pos == null ? new int[capacity] : Arrays.copyOf(pos, capacity);
+            g = g == null ? new int[capacity] : Arrays.copyOf(g, capacity);
+            h = h == null ? new int[capacity] : Arrays.copyOf(h, capacity);
+            parent = parent == null ? new int[capacity] : Arrays.copyOf(parent, capacity);
+            moveEvent = moveEvent == null ? new int[capacity] : Arrays.copyOf(moveEvent, capacity);
+            moveTransition = moveTransition == null ? new int[capacity] : Arrays.copyOf(moveTransition, capacity);
+            moveType = moveType == null ? new byte[capacity] : Arrays.copyOf(moveType, capacity);
+            flags = flags == null ? new byte[capacity] : Arrays.copyOf(flags, capacity);
+        }
+
+        /*
+        Heap ordered by f = g + h, then by deepest position in the sequence
+         */
+        private void push(int s) {
+            if (heapSize == heapKeys.length) {
+                heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+                heapIds = Arrays.copyOf(heapIds, heapSize * 2);
+            }
+            long key = ((long) (g[s] + h[s]) << 32) | (Integer.MAX_VALUE - pos[s]);
+            int i = heapSize++;
+            while (i > 0 && heapKeys[(i - 1) / 2] > key) {
+                heapKeys[i] = heapKeys[(i - 1) / 2];
+                heapIds[i] = heapIds[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            heapKeys[i] = key;
+            heapIds[i] = s;
+        }
+
+        private int pop() {
+            int top = heapIds[0];
+            long key = heapKeys[--heapSize];
+            int id = heapIds[heapSize];
+            int i = 0;
+            while (2 * i + 1 < heapSize) {
+                int c = 2 * i + 1;
+                if (c + 1 < heapSize && heapKeys[c + 1] < heapKeys[c]) {
+                    c++;
+                }
+                if (heapKeys[c] >= key) {
+                    break;
+                }
+                heapKeys[i] = heapKeys[c];
+                heapIds[i] = heapIds[c];
+                i = c;
+            }
+            heapKeys[i] = key;
+            heapIds[i] = id;
+            return top;
+        }
+
+        /**
+         * Builds the alignment of the path to {@code s}; when {@code completion} is given, the
+         * remaining events are log moves followed by the path to {@code end} in the completion.
+         */
+        Alignment alignment(int s, Search completion, int end, int worst, boolean optimal) {
+            int[] path = path(s);
+            int[] tail = completion == null ? new int[0] : completion.path(end);
+            int rest = completion == null ? 0 : events.length - pos[s];
+            int n = path.length + rest + tail.length;
+            byte[] types = new byte[n];
+            int[] evs = new int[n];
+            int[] ts = new int[n];
+            int k = 0;
+            for (int state : path) {
+                types[k] = moveType[state];
+                evs[k] = moveEvent[state];
+                ts[k++] = moveTransition[state];
+            }
+            for (int i = 0; i < rest; i++) {
+                types[k] = (byte) Alignment.MoveType.LOG.ordinal();
+                evs[k] = pos[s] + i;
+                ts[k++] = -1;
+            }
+            for (int state : tail) {
+                types[k] = completion.moveType[state];
+                evs[k] = -1;
+                ts[k++] = completion.moveTransition[state];
+            }
+            int cost = g[s] + (completion == null ? 0 : logCost(events, pos[s]) + completion.g[end]);
+            return new Alignment(types, evs, ts, cost, Math.max(worst, cost), optimal);
+        }
+
+        /**
+         * @return the states of the path from the root (excluded) to {@code s}
+         */
+        private int[] path(int s) {
+            int length = 0;
+            for (int x = s; parent[x] >= 0; x = parent[x]) {
+                length++;
+            }
+            int[] p = new int[length];
+            for (int x = s; parent[x] >= 0; x = parent[x]) {
+                p[--length] = x;
+            }
+            return p;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.ag.processmining.conformance;
+
+import org.ag.processmining.petrinet.PetriNet;
+
+import java.io.Serializable;
+
+/**
+ * Alignment of an activity sequence with a Petri net: a sequence of synchronous moves (an event
+ * and a transition with its label), log moves (an event alone) and model moves (a transition
+ * alone). An alignment found within its budget is optimal; otherwise it is an approximation whose
+ * cost is an upper bound of the optimal one.
+ */
+public class Alignment implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    public enum MoveType {SYNC, LOG, MODEL}
+
+    private final byte[] types;
+    private final int[] events;
+    private final int[] transitions;
+    private final int cost;
+    private final int worstCost;
+    private final boolean optimal;
+
+    /**
+     * @param events      position in the sequence of the event of each move, -1 for model moves
+     * @param transitions transition of each move, -1 for log moves
+     * @param worstCost   cost of the alignment made of log moves only followed by the cheapest
+     *                    model run, used to normalize the fitness
+     */
+    Alignment(byte[] types, int[] events, int[] transitions, int cost, int worstCost, boolean optimal) {
+        this.types = types;
+        this.events = events;
+        this.transitions = transitions;
+        this.cost = cost;
+        this.worstCost = worstCost;
+        this.optimal = optimal;
+    }
+
+    public int size() {
+        return types.length;
+    }
+
+    public MoveType type(int k) {
+        return MoveType.values()[types[k]];
+    }
+
+    public int event(int k) {
+        return events[k];
+    }
+
+    public int transition(int k) {
+        return transitions[k];
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    public boolean isOptimal() {
+        return optimal;
+    }
+
+    /**
+     * @return 1 - cost / worst cost, in [0, 1]
+     */
+    public double fitness() {
+        return worstCost == 0 ? 1 : Math.max(0, 1 - (double) cost / worstCost);
+    }
+
+    public String toString(PetriNet net) {
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < size(); k++) {
+            switch (type(k)) {
+                case SYNC:
+                    sb.append('[').append(net.transitionName(transitions[k])).append(']');
+                    break;
+                case LOG:
+                    sb.append("[").append(events[k]).append(" >>]");
+                    break;
+                default:
+                    sb.append("[>> ").append(net.isSilent(transitions[k]) ? "tau" : net.transitionName(transitions[k])).append(']');
+            }
+            sb.append(' ');
+        }
+        return sb.append(String.format("cost=%d%s", cost, optimal ? "" : " (approximate)")).toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("cost=%d fitness=%.4f%s", cost, fitness(), optimal ? "" : " (approximate)");
+    }
+}
@@ -0,0 +1,58 @@
+package org.ag.processmining.conformance;
+
+import org.ag.processmining.log.model.Variant;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Least recently used cache of the alignments of variants, keyed by variant fingerprint. A cache
+ * is only valid for one net and one set of costs.
+ */
+public class AlignmentCache implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private final int maxVariants;
+    private final LinkedHashMap<Long, List<Map.Entry<Variant, Alignment>>> entries;
+    private int size = 0;
+
+    public AlignmentCache(int maxVariants) {
+        this.maxVariants = maxVariants;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public synchronized Alignment get(Variant v) {
+        List<Map.Entry<Variant, Alignment>> bucket = entries.get(v.fingerprint());
+        if (bucket != null) {
+            for (Map.Entry<Variant, Alignment> e : bucket) {
+                if (e.getKey().equals(v)) {
+                    return e.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    public synchronized void put(Variant v, Alignment a) {
+        List<Map.Entry<Variant, Alignment>> bucket = entries.computeIfAbsent(v.fingerprint(), k -> new ArrayList<>(1));
+        int before = bucket.size();
+        bucket.removeIf(e -> e.getKey().equals(v));
+        size -= before - bucket.size();
+        bucket.add(new AbstractMap.SimpleImmutableEntry<>(v, a));
+        size++;
+        Iterator<List<Map.Entry<Variant, Alignment>>> it = entries.values().iterator();
+        while (size > maxVariants && it.hasNext()) {
+            size -= it.next().size();
+            it.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+}
@@ -0,0 +1,94 @@
+package org.ag.processmining.conformance;
+
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Trace;
+import org.ag.processmining.log.model.Variant;
+import org.ag.processmining.petrinet.PetriNet;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import scala.Tuple2;
+
+import java.util.*;
+
+/**
+ * Alignment-based conformance of a log against a {@link PetriNet}.
+ * <p>
+ * Traces are reduced to their variants on the cluster. The variants whose alignment is not in the
+ * cache are aligned in parallel on the executors, one A* search per variant, and the alignments
+ * are added to the cache, so that checking a log again (or another log of the same process) only
+ * aligns the new variants.
+ */
+public class AlignmentConformance {
+
+    private static final int DEFAULT_CACHE_SIZE = 100_000;
+
+    private final AStarAligner aligner;
+    private AlignmentCache cache = new AlignmentCache(DEFAULT_CACHE_SIZE);
+
+    public AlignmentConformance(PetriNet net, AlignmentCosts costs) {
+        this.aligner = new AStarAligner(net, costs);
+    }
+
+    /**
+     * @see AStarAligner#budget(int, long)
+     */
+    public AlignmentConformance budget(int maxStates, long maxMillis) {
+        aligner.budget(maxStates, maxMillis);
+        return this;
+    }
+
+    public AlignmentConformance cache(AlignmentCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    public AlignmentCache getCache() {
+        return cache;
+    }
+
+    public AlignmentResult check(JavaPairRDD<CaseId, Trace> traces) {
+        Map<Variant, Long> variants = new HashMap<>(
+                TokenReplayConformance.variants(traces, aligner.getNet().labels()).collectAsMap());
+        List<Variant> missing = new ArrayList<>();
+        for (Variant v : variants.keySet()) {
+            if (cache.get(v) == null) {
+                missing.add(v);
+            }
+        }
+        if (!missing.isEmpty()) {
+            JavaSparkContext sc = JavaSparkContext.fromSparkContext(traces.context());
+            AStarAligner a = aligner;
+            // longest variants first, so that the slowest searches do not end up in the same slice
+            missing.sort(Comparator.comparingInt(Variant::size).reversed());
+            sc.parallelize(missing, Math.max(1, Math.min(missing.size(), sc.defaultParallelism())))
+                    .mapToPair(v -> new Tuple2<>(v, a.align(v)))
+                    .collect()
+                    .forEach(t -> cache.put(t._1(), t._2()));
+        }
+        return result(variants);
+    }
+
+    /**
+     * Aligns the variants locally.
+     *
+     * @param variants variants encoded with the labels of the net, with their number of traces
+     */
+    public AlignmentResult check(Map<Variant, Long> variants) {
+        for (Variant v : variants.keySet()) {
+            if (cache.get(v) == null) {
+                cache.put(v, aligner.align(v));
+            }
+        }
+        return result(variants);
+    }
+
+    private AlignmentResult result(Map<Variant, Long> variants) {
+        Map<Variant, Alignment> alignments = new HashMap<>();
+        for (Variant v : variants.keySet()) {
+            Alignment a = cache.get(v);
+            // evicted while aligning a log with more variants than the cache holds
+            alignments.put(v, a != null ? a : aligner.align(v));
+        }
+        return new AlignmentResult(alignments, variants);
+    }
+}
@@ -0,0 +1,52 @@
+package org.ag.processmining.conformance;
+
+import org.ag.processmining.log.model.ActivityClass;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Costs of the moves of an alignment. Synchronous moves and moves on silent transitions are free;
+ * log moves (an event the model cannot follow) and model moves (a visible transition the log
+ * skips) cost 1 unless configured otherwise for their activity.
+ */
+public class AlignmentCosts implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private int defaultLogMove = 1;
+    private int defaultModelMove = 1;
+    private final Map<ActivityClass, Integer> logMove = new HashMap<>();
+    private final Map<ActivityClass, Integer> modelMove = new HashMap<>();
+
+    public AlignmentCosts defaultLogMove(int cost) {
+        this.defaultLogMove = cost;
+        return this;
+    }
+
+    public AlignmentCosts defaultModelMove(int cost) {
+        this.defaultModelMove = cost;
+        return this;
+    }
+
+    public AlignmentCosts logMove(ActivityClass activity, int cost) {
+        logMove.put(activity, cost);
+        return this;
+    }
+
+    public AlignmentCosts modelMove(ActivityClass activity, int cost) {
+        modelMove.put(activity, cost);
+        return this;
+    }
+
+    /**
+     * @param activity null for an activity unknown to the model
+     */
+    public int logMoveCost(ActivityClass activity) {
+        return activity == null ? defaultLogMove : logMove.getOrDefault(activity, defaultLogMove);
+    }
+
+    public int modelMoveCost(ActivityClass activity) {
+        return modelMove.getOrDefault(activity, defaultModelMove);
+    }
+}
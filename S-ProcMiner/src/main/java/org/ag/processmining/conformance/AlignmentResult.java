@@ -0,0 +1,74 @@
+package org.ag.processmining.conformance;
+
+import org.ag.processmining.log.model.Variant;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Alignment conformance of a log: the alignment of every variant and the trace-weighted totals.
+ */
+public class AlignmentResult implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private final Map<Variant, Alignment> alignments;
+    private final Map<Variant, Long> frequencies;
+    private long traces = 0;
+    private long cost = 0;
+    private long approximateTraces = 0;
+    private double fitness = 0;
+
+    AlignmentResult(Map<Variant, Alignment> alignments, Map<Variant, Long> frequencies) {
+        this.alignments = alignments;
+        this.frequencies = frequencies;
+        double weightedFitness = 0;
+        for (Map.Entry<Variant, Long> e : frequencies.entrySet()) {
+            Alignment a = alignments.get(e.getKey());
+            long w = e.getValue();
+            traces += w;
+            cost += w * a.getCost();
+            weightedFitness += w * a.fitness();
+            if (!a.isOptimal()) {
+                approximateTraces += w;
+            }
+        }
+        fitness = traces == 0 ? 1 : weightedFitness / traces;
+    }
+
+    /**
+     * @return the mean fitness of the traces
+     */
+    public double getFitness() {
+        return fitness;
+    }
+
+    public long getTraces() {
+        return traces;
+    }
+
+    public long getCost() {
+        return cost;
+    }
+
+    /**
+     * @return the number of traces whose alignment could not be computed within the budget
+     */
+    public long getApproximateTraces() {
+        return approximateTraces;
+    }
+
+    public Map<Variant, Alignment> getAlignments() {
+        return Collections.unmodifiableMap(alignments);
+    }
+
+    public Map<Variant, Long> getFrequencies() {
+        return Collections.unmodifiableMap(frequencies);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("fitness=%.4f traces=%d variants=%d cost=%d approximate=%d",
+                fitness, traces, alignments.size(), cost, approximateTraces);
+    }
+}
@@ -0,0 +1,50 @@
+package org.ag.processmining.conformance;
+
+import org.ag.processmining.log.model.Variant;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Conformance of a log against a Petri net: the replay counts of the whole log (every variant
+ * weighted by its number of traces), the precision of the net, and the result of each variant.
+ */
+public class ConformanceResult implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private final ReplayResult total;
+    private final double precision;
+    private final Map<Variant, ReplayResult> variants;
+
+    ConformanceResult(ReplayResult total, double precision, Map<Variant, ReplayResult> variants) {
+        this.total = total;
+        this.precision = precision;
+        this.variants = variants;
+    }
+
+    public double getFitness() {
+        return total.fitness();
+    }
+
+    public double getPrecision() {
+        return precision;
+    }
+
+    public ReplayResult getTotal() {
+        return total;
+    }
+
+    public int getVariantCount() {
+        return variants.size();
+    }
+
+    public Map<Variant, ReplayResult> getVariantResults() {
+        return Collections.unmodifiableMap(variants);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("fitness=%.4f precision=%.4f variants=%d (%s)", getFitness(), precision, variants.size(), total);
+    }
+}
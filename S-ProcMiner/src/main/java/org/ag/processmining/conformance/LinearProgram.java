@@ -0,0 +1,126 @@
+package org.ag.processmining.conformance;
+
+/**
+ * Dense two-phase simplex for the small programs of the alignment heuristic:
+ * minimize c.x subject to A x = b, x &gt;= 0. Bland's rule keeps it from cycling.
+ */
+final class LinearProgram {
+
+    private static final double EPS = 1e-9;
+
+    private LinearProgram() {
+    }
+
+    /**
+     * @return the optimal value, or NaN if the program is infeasible
+     */
+    static double minimize(double[][] a, double[] b, double[] c) {
+        int m = b.length;
+        int n = c.length;
+        int rhs = n + m;
+        double[][] t = new double[m + 1][n + m + 1];
+        int[] basis = new int[m];
+        for (int i = 0; i < m; i++) {
+            double sign = b[i] < 0 ? -1 : 1;
+            for (int j = 0; j < n; j++) {
+                t[i][j] = sign * a[i][j];
+            }
+            t[i][n + i] = 1;
+            t[i][rhs] = sign * b[i];
+            basis[i] = n + i;
+        }
+        // phase 1: minimize the sum of the artificial variables
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < n; j++) {
+                t[m][j] -= t[i][j];
+            }
+            t[m][rhs] -= t[i][rhs];
+        }
+        run(t, basis, n + m);
+        if (-t[m][rhs] > 1e-7) {
+            return Double.NaN;
+        }
+        // drive the artificial variables left in the basis out of it, when possible
+        for (int i = 0; i < m; i++) {
+            if (basis[i] >= n) {
+                for (int j = 0; j < n; j++) {
+                    if (Math.abs(t[i][j]) > EPS) {
+                        pivot(t, basis, i, j);
+                        break;
+                    }
+                }
+            }
+        }
+        // phase 2
+        for (int j = 0; j <= rhs; j++) {
+            t[m][j] = j < n ? c[j] : 0;
+        }
+        for (int i = 0; i < m; i++) {
+            double cb = basis[i] < n ? c[basis[i]] : 0;
+            if (cb != 0) {
+                for (int j = 0; j <= rhs; j++) {
+                    t[m][j] -= cb * t[i][j];
+                }
+            }
+        }
+        run(t, basis, n);
+        return -t[m][rhs];
+    }
+
+    /**
+     * Pivots until no column below {@code columns} has a negative reduced cost.
+     */
+    private static void run(double[][] t, int[] basis, int columns) {
+        int m = basis.length;
+        int rhs = t[0].length - 1;
+        int maxIterations = 50 * (m + columns) + 100;
+        for (int it = 0; it < maxIterations; it++) {
+            int enter = -1;
+            for (int j = 0; j < columns; j++) {
+                if (t[m][j] < -EPS) {
+                    enter = j;
+                    break;
+                }
+            }
+            if (enter < 0) {
+                return;
+            }
+            int leave = -1;
+            double best = Double.MAX_VALUE;
+            for (int i = 0; i < m; i++) {
+                if (t[i][enter] > EPS) {
+                    double ratio = t[i][rhs] / t[i][enter];
+                    if (ratio < best - EPS || (ratio < best + EPS && leave >= 0 && basis[i] < basis[leave])) {
+                        best = ratio;
+                        leave = i;
+                    }
+                }
+            }
+            if (leave < 0) {
+                // unbounded, which cannot happen with non-negative costs
+                return;
+            }
+            pivot(t, basis, leave, enter);
+        }
+    }
+
+    private static void pivot(double[][] t, int[] basis, int row, int col) {
+        double p = t[row][col];
+        double[] r = t[row];
+        for (int j = 0; j < r.length; j++) {
+            r[j] /= p;
+        }
+        for (int i = 0; i < t.length; i++) {
+            if (i != row) {
+                double f = t[i][col];
+                if (f != 0) {
+                    double[] ti = t[i];
+                    for (int j = 0; j < ti.length; j++) {
+                        ti[j] -= f * r[j];
+                    }
+                }
+            }
+        }
+        basis[row] = col;
+    }
+}
@@ -0,0 +1,84 @@
+package org.ag.processmining.conformance;
+
+import java.io.Serializable;
+
+/**
+ * Token counts of the replay of one or several traces: tokens produced and consumed by the fired
+ * transitions (plus the initial and final markings), tokens that had to be created to fire a
+ * transition (missing) and tokens left over at the end (remaining).
+ */
+public class ReplayResult implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private long produced = 0;
+    private long consumed = 0;
+    private long missing = 0;
+    private long remaining = 0;
+    private long traces = 0;
+    private long fittingTraces = 0;
+
+    public ReplayResult() {
+    }
+
+    ReplayResult(long produced, long consumed, long missing, long remaining) {
+        this.produced = produced;
+        this.consumed = consumed;
+        this.missing = missing;
+        this.remaining = remaining;
+        this.traces = 1;
+        this.fittingTraces = missing == 0 && remaining == 0 ? 1 : 0;
+    }
+
+    /**
+     * Adds {@code weight} times the counts of another result, e.g. the replay of a variant shared
+     * by {@code weight} traces.
+     */
+    public ReplayResult add(ReplayResult r, long weight) {
+        produced += weight * r.produced;
+        consumed += weight * r.consumed;
+        missing += weight * r.missing;
+        remaining += weight * r.remaining;
+        traces += weight * r.traces;
+        fittingTraces += weight * r.fittingTraces;
+        return this;
+    }
+
+    /**
+     * @return 1/2 (1 - missing / consumed) + 1/2 (1 - remaining / produced)
+     */
+    public double fitness() {
+        double m = consumed == 0 ? 0 : (double) missing / consumed;
+        double r = produced == 0 ? 0 : (double) remaining / produced;
+        return 0.5 * (1 - m) + 0.5 * (1 - r);
+    }
+
+    public long getProduced() {
+        return produced;
+    }
+
+    public long getConsumed() {
+        return consumed;
+    }
+
+    public long getMissing() {
+        return missing;
+    }
+
+    public long getRemaining() {
+        return remaining;
+    }
+
+    public long getTraces() {
+        return traces;
+    }
+
+    public long getFittingTraces() {
+        return fittingTraces;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("fitness=%.4f traces=%d fitting=%d p=%d c=%d m=%d r=%d",
+                fitness(), traces, fittingTraces, produced, consumed, missing, remaining);
+    }
+}
@@ -0,0 +1,215 @@
+package org.ag.processmining.conformance;
+
+import org.ag.processmining.log.model.Variant;
+import org.ag.processmining.petrinet.Marking;
+import org.ag.processmining.petrinet.PetriNet;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Token-based replay of activity sequences on a {@link PetriNet}.
+ * <p>
+ * Events are encoded with the label ids of the net ({@link PetriNet#labels()}), -1 for an activity
+ * the net does not know. An event fires an enabled transition with its label; if there is none,
+ * the replay looks for a short sequence of silent transitions enabling one, and otherwise fires
+ * the first transition with the label, creating the missing tokens. An unknown activity counts as
+ * one missing and one consumed token.
+ */
+public class TokenReplay implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    /*
+    Maximum number of markings explored when looking for silent transitions to fire
+     */
+    private static final int MAX_SILENT_STATES = 256;
+
+    private final PetriNet net;
+    private final int[] finalMarking;
+
+    public TokenReplay(PetriNet net) {
+        this.net = net;
+        this.finalMarking = net.finalMarking();
+    }
+
+    public PetriNet getNet() {
+        return net;
+    }
+
+    public ReplayResult replay(Variant variant) {
+        Replay r = start();
+        for (int i = 0; i < variant.size(); i++) {
+            r.fire(variant.activity(i));
+        }
+        return r.finish();
+    }
+
+    public Replay start() {
+        return new Replay();
+    }
+
+    /**
+     * Replay of one sequence, event by event.
+     */
+    public class Replay {
+        private final int[] marking = net.initialMarking();
+        private long produced = Arrays.stream(marking).sum();
+        private long consumed = 0;
+        private long missing = 0;
+
+        public int[] marking() {
+            return marking.clone();
+        }
+
+        public void fire(int label) {
+            int[] candidates = net.transitionsOf(label);
+            if (candidates.length == 0) {
+                missing++;
+                consumed++;
+                return;
+            }
+            int t = enabled(marking, candidates);
+            if (t < 0) {
+                int[] path = silentPath(marking, m -> enabled(m, candidates) >= 0);
+                if (path != null) {
+                    for (int s : path) {
+                        fireCounted(s);
+                    }
+                    t = enabled(marking, candidates);
+                }
+            }
+            if (t < 0) {
+                t = candidates[0];
+                int[] ps = net.inputPlaces(t);
+                int[] ws = net.inputWeights(t);
+                for (int i = 0; i < ps.length; i++) {
+                    if (marking[ps[i]] < ws[i]) {
+                        missing += ws[i] - marking[ps[i]];
+                        marking[ps[i]] = ws[i];
+                    }
+                }
+            }
+            fireCounted(t);
+        }
+
+        /**
+         * @return the labels of the visible transitions enabled in the current marking, directly
+         * or after firing silent transitions
+         */
+        public BitSet enabledLabels() {
+            BitSet labels = new BitSet();
+            explore(marking, m -> {
+                for (int t = 0; t < net.transitionCount(); t++) {
+                    if (!net.isSilent(t) && net.isEnabled(m, t)) {
+                        labels.set(net.labelId(t));
+                    }
+                }
+                return false;
+            });
+            return labels;
+        }
+
+        /**
+         * Consumes the final marking and counts the remaining tokens.
+         */
+        public ReplayResult finish() {
+            int[] path = silentPath(marking, this::covers);
+            if (path != null) {
+                for (int s : path) {
+                    fireCounted(s);
+                }
+            }
+            long remaining = 0;
+            for (int p = 0; p < marking.length; p++) {
+                consumed += finalMarking[p];
+                if (marking[p] < finalMarking[p]) {
+                    missing += finalMarking[p] - marking[p];
+                } else {
+                    remaining += marking[p] - finalMarking[p];
+                }
+            }
+            return new ReplayResult(produced, consumed, missing, remaining);
+        }
+
+        private boolean covers(int[] m) {
+            for (int p = 0; p < m.length; p++) {
+                if (m[p] < finalMarking[p]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void fireCounted(int t) {
+            for (int w : net.inputWeights(t)) {
+                consumed += w;
+            }
+            for (int w : net.outputWeights(t)) {
+                produced += w;
+            }
+            net.fire(marking, t);
+        }
+    }
+
+    private int enabled(int[] marking, int[] candidates) {
+        for (int t : candidates) {
+            if (net.isEnabled(marking, t)) {
+                return t;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the shortest sequence of silent transitions leading from the marking to one
+     * satisfying the goal, an empty one if the marking satisfies it, null if none was found
+     */
+    private int[] silentPath(int[] marking, Predicate<int[]> goal) {
+        Map<Marking, Marking> parent = new HashMap<>();
+        Map<Marking, Integer> via = new HashMap<>();
+        Marking found = explore(marking, goal, parent, via);
+        if (found == null) {
+            return null;
+        }
+        Deque<Integer> path = new ArrayDeque<>();
+        for (Marking m = found; parent.get(m) != null; m = parent.get(m)) {
+            path.addFirst(via.get(m));
+        }
+        return path.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void explore(int[] marking, Predicate<int[]> visitor) {
+        explore(marking, visitor, new HashMap<>(), new HashMap<>());
+    }
+
+    /**
+     * Breadth-first search over the markings reachable by silent transitions.
+     */
+    private Marking explore(int[] marking, Predicate<int[]> goal, Map<Marking, Marking> parent, Map<Marking, Integer> via) {
+        Marking root = new Marking(marking.clone());
+        parent.put(root, null);
+        Deque<Marking> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            Marking m = queue.poll();
+            int[] tokens = m.toArray();
+            if (goal.test(tokens)) {
+                return m;
+            }
+            for (int t = 0; t < net.transitionCount() && parent.size() < MAX_SILENT_STATES; t++) {
+                if (net.isSilent(t) && net.isEnabled(tokens, t)) {
+                    int[] next = tokens.clone();
+                    net.fire(next, t);
+                    Marking n = new Marking(next);
+                    if (!parent.containsKey(n)) {
+                        parent.put(n, m);
+                        via.put(n, t);
+                        queue.add(n);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
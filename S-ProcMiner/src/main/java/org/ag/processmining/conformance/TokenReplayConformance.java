@@ -0,0 +1,127 @@
+package org.ag.processmining.conformance;
+
+import org.ag.processmining.log.model.ActivityClass;
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Dictionary;
+import org.ag.processmining.log.model.Trace;
+import org.ag.processmining.log.model.Variant;
+import org.ag.processmining.petrinet.PetriNet;
+import org.apache.spark.api.java.JavaPairRDD;
+import scala.Tuple2;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Token-based replay conformance of a log against a {@link PetriNet}.
+ * <p>
+ * Traces are first reduced to their variants (distinct activity sequences) on the cluster; each
+ * variant is then replayed once and its result weighted by its number of traces. Precision is
+ * computed on the prefixes of the variants: for every distinct prefix, the visible activities
+ * enabled by the net after replaying it are compared to the ones observed next in the log.
+ */
+public class TokenReplayConformance implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private final TokenReplay replay;
+
+    public TokenReplayConformance(PetriNet net) {
+        this.replay = new TokenReplay(net);
+    }
+
+    /**
+     * @return the variants of the log, encoded with the given dictionary, with their number of traces
+     */
+    public static JavaPairRDD<Variant, Long> variants(JavaPairRDD<CaseId, Trace> traces, Dictionary<ActivityClass> activities) {
+        return traces
+                .mapToPair(t -> new Tuple2<>(Variant.of(t._2(), activities::id), 1L))
+                .reduceByKey((a, b) -> a + b);
+    }
+
+    public ConformanceResult check(JavaPairRDD<CaseId, Trace> traces) {
+        return check(variants(traces, replay.getNet().labels()).collectAsMap());
+    }
+
+    /**
+     * @param variants variants encoded with the labels of the net, with their number of traces
+     */
+    public ConformanceResult check(Map<Variant, Long> variants) {
+        ReplayResult total = new ReplayResult();
+        Map<Variant, ReplayResult> results = new HashMap<>();
+        Prefixes prefixes = new Prefixes();
+        for (Map.Entry<Variant, Long> e : variants.entrySet()) {
+            Variant v = e.getKey();
+            long weight = e.getValue();
+            TokenReplay.Replay r = replay.start();
+            int node = 0;
+            for (int i = 0; i < v.size(); i++) {
+                int label = v.activity(i);
+                prefixes.visit(node, r, label, weight);
+                r.fire(label);
+                node = prefixes.child(node, label);
+            }
+            ReplayResult result = r.finish();
+            results.put(v, result);
+            total.add(result, weight);
+        }
+        return new ConformanceResult(total, prefixes.precision(), results);
+    }
+
+    /**
+     * Trie of the variant prefixes, with the activities enabled and observed after each of them.
+     */
+    private static class Prefixes {
+        private final Map<Long, Integer> children = new HashMap<>();
+        private final List<BitSet> enabled = new ArrayList<>();
+        private final List<BitSet> observed = new ArrayList<>();
+        private final List<Long> weights = new ArrayList<>();
+
+        Prefixes() {
+            add();
+        }
+
+        private int add() {
+            enabled.add(null);
+            observed.add(new BitSet());
+            weights.add(0L);
+            return weights.size() - 1;
+        }
+
+        int child(int node, int label) {
+            long key = ((long) node << 32) | (label & 0xffffffffL);
+            Integer c = children.get(key);
+            if (c == null) {
+                c = add();
+                children.put(key, c);
+            }
+            return c;
+        }
+
+        void visit(int node, TokenReplay.Replay r, int label, long weight) {
+            // the replay is deterministic, so all the variants sharing the prefix reach the same marking
+            if (enabled.get(node) == null) {
+                enabled.set(node, r.enabledLabels());
+            }
+            weights.set(node, weights.get(node) + weight);
+            if (label >= 0) {
+                observed.get(node).set(label);
+            }
+        }
+
+        double precision() {
+            double escaping = 0;
+            double allowed = 0;
+            for (int node = 0; node < weights.size(); node++) {
+                BitSet e = enabled.get(node);
+                if (e == null) {
+                    continue;
+                }
+                BitSet escaped = (BitSet) e.clone();
+                escaped.andNot(observed.get(node));
+                escaping += (double) weights.get(node) * escaped.cardinality();
+                allowed += (double) weights.get(node) * e.cardinality();
+            }
+            return allowed == 0 ? 1 : 1 - escaping / allowed;
+        }
+    }
+}
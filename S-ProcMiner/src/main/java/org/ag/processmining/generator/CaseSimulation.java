@@ -0,0 +1,116 @@
+package org.ag.processmining.generator;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * State of the simulation of one case: its random generator and the events it produced so far.
+ * Instances are reused from case to case by a generating thread.
+ */
+class CaseSimulation {
+
+    private final ResourcePool resources;
+    private final int maxEvents;
+    private SplittableRandom random;
+    private double loopFactor = 1;
+
+    int size = 0;
+    ProcessTree.Activity[] activities = new ProcessTree.Activity[64];
+    String[] originators = new String[64];
+    long[] starts = new long[64];
+    long[] ends = new long[64];
+    /*
+    Event indices ordered by start time, set by sort()
+     */
+    int[] order = new int[64];
+
+    CaseSimulation(ResourcePool resources, int maxEvents) {
+        this.resources = resources;
+        this.maxEvents = maxEvents;
+    }
+
+    /**
+     * @param loopFactor factor applied to the expected number of iterations of every loop of the case
+     */
+    void reset(SplittableRandom random, double loopFactor) {
+        this.random = random;
+        this.loopFactor = loopFactor;
+        this.size = 0;
+    }
+
+    double uniform() {
+        return random.nextDouble();
+    }
+
+    double exponential(double mean) {
+        return -mean * Math.log(1 - random.nextDouble());
+    }
+
+    /**
+     * @return a log-normal value of the given median, drawn with the polar method
+     */
+    double logNormal(double median, double sigma) {
+        double u, v, s;
+        do {
+            u = 2 * random.nextDouble() - 1;
+            v = 2 * random.nextDouble() - 1;
+            s = u * u + v * v;
+        } while (s >= 1 || s == 0);
+        return median * Math.exp(sigma * u * Math.sqrt(-2 * Math.log(s) / s));
+    }
+
+    /**
+     * @return the probability to iterate a loop of probability p: the expected number of
+     * iterations 1 / (1 - p) is multiplied by the loop factor of the case
+     */
+    double loopProbability(double p) {
+        return 1 - (1 - p) / loopFactor;
+    }
+
+    boolean full() {
+        return size >= maxEvents;
+    }
+
+    void emit(ProcessTree.Activity activity, long start, long end) {
+        if (size == starts.length) {
+            int n = size * 2;
+            activities = Arrays.copyOf(activities, n);
+            originators = Arrays.copyOf(originators, n);
+            starts = Arrays.copyOf(starts, n);
+            ends = Arrays.copyOf(ends, n);
+            order = new int[n];
+        }
+        activities[size] = activity;
+        originators[size] = resources.pick(activity.getRole(), random);
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    /**
+     * Orders the events by start time. They are emitted almost in order, only the branches of a
+     * parallel block interleave, so an insertion sort is close to linear.
+     */
+    void sort() {
+        for (int i = 0; i < size; i++) {
+            int e = i;
+            int j = i - 1;
+            while (j >= 0 && starts[order[j]] > starts[e]) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = e;
+        }
+    }
+
+    /**
+     * @return a hash of the sequence of activities of the case, in start order
+     */
+    int variant() {
+        int h = 1;
+        for (int i = 0; i < size; i++) {
+            h = 31 * h + activities[order[i]].id;
+        }
+        return h;
+    }
+}
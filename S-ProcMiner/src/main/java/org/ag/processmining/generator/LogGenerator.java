@@ -0,0 +1,441 @@
+package org.ag.processmining.generator;
+
+import org.ag.processmining.log.model.EventSchema;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Generates large synthetic event logs by simulating a {@link ProcessTree} with a
+ * {@link ResourcePool}.
+ * <p>
+ * Generation is deterministic: case i is simulated with a random generator seeded by the seed of
+ * the generator and i only, so a log is the same whatever the number of partitions and threads,
+ * and any partition can be generated alone. Case i arrives at start + i * interArrival plus a
+ * uniform jitter of one inter-arrival time. The length of the cases is skewed by multiplying the
+ * expected number of iterations of the loops of a case by a Pareto distributed factor.
+ * <p>
+ * Lines are written in the columns of the header, the role of each column being given by an
+ * {@link EventSchema} (by default, the columns of attributeMapping.yaml). Columns whose name
+ * contains "variant" get a hash of the activity sequence of the case, other unmapped columns are
+ * left empty.
+ */
+public class LogGenerator implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    public static final String[] DEFAULT_HEADER = {"Case ID", "Activity", "Resource", "Start Timestamp", "Complete Timestamp", "Variant", "Role"};
+
+    private static final int CASE = 0, ACTIVITY = 1, RESOURCE = 2, ROLE = 3, START = 4, END = 5, VARIANT = 6, OTHER = 7;
+    private static final int[] DEFAULT_KINDS = {CASE, ACTIVITY, RESOURCE, START, END, VARIANT, ROLE};
+    private static final int FLUSH_SIZE = 1 << 16;
+
+    private ProcessTree model = ProcessTree.purchaseProcess();
+    private ResourcePool resources = ResourcePool.purchaseProcess();
+    private long seed = 42;
+    private long cases = 10000;
+    private int partitions = 1;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private String[] header = DEFAULT_HEADER;
+    private EventSchema schema = null;
+    private char delimiter = ';';
+    private boolean writeHeader = false;
+    private String timestampFormat = "yyyy/MM/dd HH:mm:ss.SSS";
+    private DateTimeZone zone = DateTimeZone.getDefault();
+    private long startTime = new DateTime(2011, 1, 1, 0, 0).getMillis();
+    private double interArrivalMinutes = 10;
+    /*
+    Pareto exponent of the loop factor of the cases, 0 for no skew: the smaller, the heavier the
+    tail of the case lengths. The factor is capped to maxLoopFactor and the cases to maxEvents.
+     */
+    private double lengthSkew = 0;
+    private double maxLoopFactor = 100;
+    private int maxEvents = 10000;
+
+    public LogGenerator model(ProcessTree model) {
+        this.model = model;
+        return this;
+    }
+
+    public LogGenerator resources(ResourcePool resources) {
+        this.resources = resources;
+        return this;
+    }
+
+    public LogGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public LogGenerator cases(long cases) {
+        this.cases = cases;
+        return this;
+    }
+
+    public LogGenerator partitions(int partitions) {
+        this.partitions = partitions;
+        return this;
+    }
+
+    public LogGenerator threads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Columns of the generated lines and the schema that maps them to case id, activity,
+     * resource, role and timestamps.
+     */
+    public LogGenerator schema(EventSchema schema, String[] header) {
+        this.schema = schema;
+        this.header = header;
+        return this;
+    }
+
+    public LogGenerator delimiter(char delimiter) {
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    /**
+     * Writes the header as the first line of every partition. Off by default, the log readers of
+     * the summarizer do not skip it.
+     */
+    public LogGenerator writeHeader(boolean writeHeader) {
+        this.writeHeader = writeHeader;
+        return this;
+    }
+
+    public LogGenerator timestampFormat(String timestampFormat) {
+        this.timestampFormat = timestampFormat;
+        return this;
+    }
+
+    public LogGenerator zone(DateTimeZone zone) {
+        this.zone = zone;
+        return this;
+    }
+
+    public LogGenerator startTime(DateTime startTime) {
+        this.startTime = startTime.getMillis();
+        return this;
+    }
+
+    public LogGenerator interArrivalMinutes(double interArrivalMinutes) {
+        this.interArrivalMinutes = interArrivalMinutes;
+        return this;
+    }
+
+    public LogGenerator lengthSkew(double lengthSkew) {
+        this.lengthSkew = lengthSkew;
+        return this;
+    }
+
+    public LogGenerator maxLoopFactor(double maxLoopFactor) {
+        this.maxLoopFactor = maxLoopFactor;
+        return this;
+    }
+
+    public LogGenerator maxEvents(int maxEvents) {
+        this.maxEvents = maxEvents;
+        return this;
+    }
+
+    public String[] getHeader() {
+        return header;
+    }
+
+    public long getCases() {
+        return cases;
+    }
+
+    /**
+     * Writes the log as files part-00000.csv, ... in the directory, the partitions being
+     * generated in parallel.
+     */
+    public Output write(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        long time = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<long[]> counts = pool.submit(() -> IntStream.range(0, partitions).parallel()
+                    .mapToObj(p -> {
+                        try {
+                            return writePartition(p, dir.resolve(String.format("part-%05d.csv", p)));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .collect(Collectors.toList())).get();
+            long events = 0;
+            long bytes = 0;
+            for (long[] c : counts) {
+                events += c[0];
+                bytes += c[1];
+            }
+            return new Output(cases, events, bytes, System.nanoTime() - time);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return number of events and bytes written
+     */
+    private long[] writePartition(int partition, Path file) throws IOException {
+        PartitionGenerator g = new PartitionGenerator(partition);
+        long events = 0;
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), 1 << 20)) {
+            if (writeHeader) {
+                w.write(String.join(String.valueOf(delimiter), header));
+                w.write('\n');
+            }
+            StringBuilder sb = new StringBuilder(2 * FLUSH_SIZE);
+            while (g.hasNext()) {
+                events += g.next(sb);
+                if (sb.length() >= FLUSH_SIZE) {
+                    w.append(sb);
+                    sb.setLength(0);
+                }
+            }
+            w.append(sb);
+        }
+        return new long[]{events, Files.size(file)};
+    }
+
+    /**
+     * @return the log as an RDD of lines, one RDD partition per partition of the generator
+     */
+    public JavaRDD<String> generate(JavaSparkContext sc) {
+        List<Integer> ids = IntStream.range(0, partitions).boxed().collect(Collectors.toList());
+        return sc.parallelize(ids, partitions).flatMap(p -> lines(p));
+    }
+
+    /**
+     * @return the lines of a partition, generated lazily
+     */
+    public Iterable<String> lines(int partition) {
+        return () -> new Iterator<String>() {
+            final PartitionGenerator g = new PartitionGenerator(partition);
+            final StringBuilder sb = new StringBuilder();
+            int position = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (position == sb.length() && g.hasNext()) {
+                    sb.setLength(0);
+                    position = 0;
+                    g.next(sb);
+                }
+                return position < sb.length();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int eol = sb.indexOf("\n", position);
+                String line = sb.substring(position, eol);
+                position = eol + 1;
+                return line;
+            }
+        };
+    }
+
+    private int[] columnKinds() {
+        int[] kinds = new int[header.length];
+        for (int i = 0; i < header.length; i++) {
+            String c = header[i];
+            if (schema == null) {
+                kinds[i] = i < DEFAULT_KINDS.length && c.equals(DEFAULT_HEADER[i]) ? DEFAULT_KINDS[i] : OTHER;
+            } else if (schema.getCaseIdFields().contains(c)) {
+                kinds[i] = CASE;
+            } else if (c.equals(schema.getEventClassField())) {
+                kinds[i] = ACTIVITY;
+            } else if (c.equals(schema.getOriginatorName())) {
+                kinds[i] = RESOURCE;
+            } else if (c.equals(schema.getOriginatorRole())) {
+                kinds[i] = ROLE;
+            } else if (c.equals(schema.getEventStartTimeField())) {
+                kinds[i] = START;
+            } else if (c.equals(schema.getEventEndTimeField())) {
+                kinds[i] = END;
+            } else {
+                kinds[i] = OTHER;
+            }
+            if (kinds[i] == OTHER && c.toLowerCase().contains("variant")) {
+                kinds[i] = VARIANT;
+            }
+        }
+        return kinds;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Generator of the cases of one partition, with the per-thread state reused from case to case.
+     */
+    private class PartitionGenerator {
+        private final long to;
+        private final int[] kinds = columnKinds();
+        private final DateTimeFormatter formatter = DateTimeFormat.forPattern(timestampFormat).withZone(zone);
+        private final CaseSimulation sim = new CaseSimulation(resources, maxEvents);
+        private final double interArrival = interArrivalMinutes * 60_000;
+        private long caseIndex;
+
+        PartitionGenerator(int partition) {
+            caseIndex = cases * partition / partitions;
+            to = cases * (partition + 1) / partitions;
+            List<ProcessTree.Activity> distinct = model.activities();
+            for (ProcessTree.Activity a : model.leaves()) {
+                a.id = distinct.indexOf(a);
+            }
+        }
+
+        boolean hasNext() {
+            return caseIndex < to;
+        }
+
+        /**
+         * Simulates the next case and appends its lines to sb.
+         *
+         * @return the number of events of the case
+         */
+        int next(StringBuilder sb) {
+            long c = caseIndex++;
+            SplittableRandom random = new SplittableRandom(mix(seed + 0x9e3779b97f4a7c15L * (c + 1)));
+            long arrival = startTime + (long) ((c + random.nextDouble()) * interArrival);
+            double loopFactor = 1;
+            if (lengthSkew > 0) {
+                loopFactor = Math.min(maxLoopFactor, Math.pow(1 - random.nextDouble(), -1 / lengthSkew));
+            }
+            sim.reset(random, loopFactor);
+            model.simulate(arrival, sim);
+            sim.sort();
+            String variant = Integer.toHexString(sim.variant());
+            for (int i = 0; i < sim.size; i++) {
+                int e = sim.order[i];
+                for (int k = 0; k < kinds.length; k++) {
+                    if (k > 0) {
+                        sb.append(delimiter);
+                    }
+                    switch (kinds[k]) {
+                        case CASE:
+                            sb.append(c);
+                            break;
+                        case ACTIVITY:
+                            sb.append(sim.activities[e].getName());
+                            break;
+                        case RESOURCE:
+                            sb.append(sim.originators[e]);
+                            break;
+                        case ROLE:
+                            sb.append(sim.activities[e].getRole());
+                            break;
+                        case START:
+                            formatter.printTo(sb, sim.starts[e]);
+                            break;
+                        case END:
+                            formatter.printTo(sb, sim.ends[e]);
+                            break;
+                        case VARIANT:
+                            sb.append("Variant ").append(variant);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                sb.append('\n');
+            }
+            return sim.size;
+        }
+    }
+
+    /**
+     * Size and generation time of a generated log.
+     */
+    public static class Output implements Serializable {
+        static final long serialVersionUID = 1L;
+        private final long cases;
+        private final long events;
+        private final long bytes;
+        private final long nanos;
+
+        Output(long cases, long events, long bytes, long nanos) {
+            this.cases = cases;
+            this.events = events;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        public long getCases() {
+            return cases;
+        }
+
+        public long getEvents() {
+            return events;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public double getSeconds() {
+            return nanos / 1e9;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d cases, %d events, %.1f MB in %.2f s (%.1f MB/s)", cases, events, bytes / 1e6,
+                    getSeconds(), bytes / 1e6 / getSeconds());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: LogGenerator <output dir> <cases> [partitions] [length skew] [timestamp format] [seed]");
+            return;
+        }
+        LogGenerator generator = new LogGenerator().cases(Long.parseLong(args[1]));
+        if (args.length > 2) {
+            generator.partitions(Integer.parseInt(args[2]));
+        }
+        if (args.length > 3) {
+            generator.lengthSkew(Double.parseDouble(args[3]));
+        }
+        if (args.length > 4) {
+            generator.timestampFormat(args[4]);
+        }
+        if (args.length > 5) {
+            generator.seed(Long.parseLong(args[5]));
+        }
+        System.out.println(generator.write(Paths.get(args[0])));
+    }
+}
@@ -0,0 +1,329 @@
+package org.ag.processmining.generator;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Process model simulated by the {@link LogGenerator}: a tree whose leaves are activities and
+ * whose inner nodes are sequences, exclusive choices, parallel blocks and loops.
+ * <p>
+ * An activity waits an exponentially distributed time after it is enabled, then takes a
+ * log-normally distributed service time. The branches of a parallel block all start when the
+ * block is enabled and the block ends with its last branch. A loop runs its body, then, with the
+ * loop probability, its redo part and the body again.
+ */
+public abstract class ProcessTree implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    private static final long MINUTE = 60_000L;
+
+    /*
+    Relative weight of the node in the exclusive choice that contains it
+     */
+    private double weight = 1;
+
+    public static Activity activity(String name, String role, double serviceMinutes) {
+        return new Activity(name, role, serviceMinutes, serviceMinutes, 0.5);
+    }
+
+    /**
+     * @param waitingMinutes mean of the exponential waiting time before the activity starts
+     * @param serviceMinutes median of the log-normal service time
+     * @param sigma          standard deviation of the logarithm of the service time
+     */
+    public static Activity activity(String name, String role, double waitingMinutes, double serviceMinutes, double sigma) {
+        return new Activity(name, role, waitingMinutes, serviceMinutes, sigma);
+    }
+
+    public static ProcessTree seq(ProcessTree... children) {
+        return new Sequence(children);
+    }
+
+    /**
+     * Exclusive choice, each child being chosen with a probability proportional to its
+     * {@link #weight(double) weight}.
+     */
+    public static ProcessTree xor(ProcessTree... children) {
+        return new Choice(children);
+    }
+
+    public static ProcessTree and(ProcessTree... children) {
+        return new Parallel(children);
+    }
+
+    /**
+     * @param probability probability to run redo and body again after each run of the body
+     */
+    public static ProcessTree loop(ProcessTree body, ProcessTree redo, double probability) {
+        return new Loop(body, redo, probability);
+    }
+
+    /**
+     * A purchase process with the activities and roles of the sample log
+     * (PurchaseProcessTest.csv): requisition, quotations, ordering, delivery and invoicing, with
+     * optional amendments, a rework loop and a dispute branch.
+     */
+    public static ProcessTree purchaseProcess() {
+        return seq(
+                activity("Create Purchase Requisition", "Requester", 30, 20, 0.6),
+                activity("Analyze Purchase Requisition", "Requester Manager", 120, 15, 0.5),
+                xor(
+                        activity("Create Request for Quotation Requester", "Requester", 240, 10, 0.5).weight(0.7),
+                        activity("Create Request for Quotation Requester Manager", "Requester Manager", 240, 10, 0.5).weight(0.3)),
+                loop(
+                        activity("Analyze Request for Quotation", "Purchasing Agent", 60, 15, 0.5),
+                        activity("Amend Request for Quotation Requester", "Requester", 180, 20, 0.6),
+                        0.3),
+                activity("Send Request for Quotation to Supplier", "Purchasing Agent", 240, 25, 0.5),
+                activity("Create Quotation comparison Map", "Purchasing Agent", 30, 200, 0.7),
+                activity("Analyze Quotation comparison Map", "Requester", 480, 30, 0.5),
+                activity("Choose best option", "Requester", 20, 10, 0.4),
+                activity("Settle conditions with supplier", "Purchasing Agent", 600, 60, 0.8),
+                activity("Create Purchase Order", "Purchasing Agent", 60, 20, 0.5),
+                activity("Confirm Purchase Order", "Supplier", 720, 15, 0.5),
+                and(
+                        seq(
+                                activity("Deliver Goods Services", "Supplier", 2880, 240, 1.0),
+                                activity("Release Purchase Order", "Requester Manager", 240, 10, 0.5)),
+                        activity("Approve Purchase Order for payment", "Purchasing Agent", 600, 10, 0.5)),
+                activity("Send invoice", "Supplier", 1440, 15, 0.5),
+                xor(
+                        activity("Release Supplier's Invoice", "Financial Manager", 480, 10, 0.5).weight(0.9),
+                        seq(
+                                activity("Settle dispute with supplier Financial Manager", "Financial Manager", 1440, 120, 0.8),
+                                activity("Release Supplier's Invoice", "Financial Manager", 240, 10, 0.5)).weight(0.1)),
+                activity("Authorize Supplier's Invoice payment", "Financial Manager", 480, 10, 0.5),
+                activity("Pay invoice", "Financial Manager", 1440, 10, 0.5));
+    }
+
+    public ProcessTree weight(double weight) {
+        this.weight = weight;
+        return this;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return the distinct activities (by name) of the model, in depth-first order
+     */
+    public List<Activity> activities() {
+        List<Activity> activities = new ArrayList<>();
+        for (Activity a : leaves()) {
+            if (!activities.contains(a)) {
+                activities.add(a);
+            }
+        }
+        return activities;
+    }
+
+    /**
+     * @return all the activity leaves of the model, an activity appearing in several places once per place
+     */
+    List<Activity> leaves() {
+        List<Activity> leaves = new ArrayList<>();
+        collect(leaves);
+        return leaves;
+    }
+
+    abstract void collect(List<Activity> leaves);
+
+    /**
+     * Simulates the node for one case.
+     *
+     * @param time time (ms) at which the node is enabled
+     * @return time (ms) at which the node completes
+     */
+    abstract long simulate(long time, CaseSimulation sim);
+
+    public static class Activity extends ProcessTree {
+        static final long serialVersionUID = 1L;
+        private final String name;
+        private final String role;
+        private final double waitingMinutes;
+        private final double serviceMinutes;
+        private final double sigma;
+        /*
+        Index of the activity among the distinct activities of the model, set by the LogGenerator
+         */
+        int id = -1;
+
+        Activity(String name, String role, double waitingMinutes, double serviceMinutes, double sigma) {
+            this.name = name;
+            this.role = role;
+            this.waitingMinutes = waitingMinutes;
+            this.serviceMinutes = serviceMinutes;
+            this.sigma = sigma;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getRole() {
+            return role;
+        }
+
+        @Override
+        void collect(List<Activity> leaves) {
+            leaves.add(this);
+        }
+
+        @Override
+        long simulate(long time, CaseSimulation sim) {
+            long start = time + (long) (sim.exponential(waitingMinutes) * MINUTE);
+            long end = start + Math.max(1000L, (long) (sim.logNormal(serviceMinutes, sigma) * MINUTE));
+            sim.emit(this, start, end);
+            return end;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Activity && ((Activity) o).name.equals(name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    static class Sequence extends ProcessTree {
+        static final long serialVersionUID = 1L;
+        private final ProcessTree[] children;
+
+        Sequence(ProcessTree[] children) {
+            this.children = children;
+        }
+
+        @Override
+        void collect(List<Activity> leaves) {
+            for (ProcessTree c : children) {
+                c.collect(leaves);
+            }
+        }
+
+        @Override
+        long simulate(long time, CaseSimulation sim) {
+            for (ProcessTree c : children) {
+                time = c.simulate(time, sim);
+            }
+            return time;
+        }
+
+        @Override
+        public String toString() {
+            return "->" + Arrays.toString(children);
+        }
+    }
+
+    static class Choice extends ProcessTree {
+        static final long serialVersionUID = 1L;
+        private final ProcessTree[] children;
+
+        Choice(ProcessTree[] children) {
+            this.children = children;
+        }
+
+        @Override
+        void collect(List<Activity> leaves) {
+            for (ProcessTree c : children) {
+                c.collect(leaves);
+            }
+        }
+
+        @Override
+        long simulate(long time, CaseSimulation sim) {
+            // weights are read here, they are set on the children after the node is built
+            double total = 0;
+            for (ProcessTree c : children) {
+                total += c.getWeight();
+            }
+            double u = sim.uniform() * total;
+            int i = 0;
+            while (i < children.length - 1 && u >= children[i].getWeight()) {
+                u -= children[i].getWeight();
+                i++;
+            }
+            return children[i].simulate(time, sim);
+        }
+
+        @Override
+        public String toString() {
+            return "X" + Arrays.toString(children);
+        }
+    }
+
+    static class Parallel extends ProcessTree {
+        static final long serialVersionUID = 1L;
+        private final ProcessTree[] children;
+
+        Parallel(ProcessTree[] children) {
+            this.children = children;
+        }
+
+        @Override
+        void collect(List<Activity> leaves) {
+            for (ProcessTree c : children) {
+                c.collect(leaves);
+            }
+        }
+
+        @Override
+        long simulate(long time, CaseSimulation sim) {
+            long end = time;
+            for (ProcessTree c : children) {
+                end = Math.max(end, c.simulate(time, sim));
+            }
+            return end;
+        }
+
+        @Override
+        public String toString() {
+            return "+" + Arrays.toString(children);
+        }
+    }
+
+    static class Loop extends ProcessTree {
+        static final long serialVersionUID = 1L;
+        private final ProcessTree body;
+        private final ProcessTree redo;
+        private final double probability;
+
+        Loop(ProcessTree body, ProcessTree redo, double probability) {
+            this.body = body;
+            this.redo = redo;
+            this.probability = probability;
+        }
+
+        @Override
+        void collect(List<Activity> leaves) {
+            body.collect(leaves);
+            redo.collect(leaves);
+        }
+
+        @Override
+        long simulate(long time, CaseSimulation sim) {
+            time = body.simulate(time, sim);
+            double p = sim.loopProbability(probability);
+            while (sim.uniform() < p && !sim.full()) {
+                time = body.simulate(redo.simulate(time, sim), sim);
+            }
+            return time;
+        }
+
+        @Override
+        public String toString() {
+            return "*[" + body + ", " + redo + ", " + probability + "]";
+        }
+    }
+}
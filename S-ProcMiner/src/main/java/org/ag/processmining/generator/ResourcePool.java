@@ -0,0 +1,84 @@
+package org.ag.processmining.generator;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Resources of the simulated process, grouped by role. An activity is executed by a resource of
+ * its role; the workload within a role is skewed, the first resources of the role working more
+ * than the last ones.
+ * <p>
+ * Resources are not a shared capacity: cases are simulated independently so that they can be
+ * generated in parallel and in any order, and a resource may work on several cases at once.
+ */
+public class ResourcePool implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    private final Map<String, List<String>> resourcesByRole = new LinkedHashMap<>();
+    /*
+    Exponent of the workload skew: resource floor(n * u^skew) of a role of n resources is picked
+    for u uniform in [0, 1), 1 meaning a uniform workload
+     */
+    private double skew = 2;
+
+    /**
+     * The roles and resources of the sample log (PurchaseProcessTest.csv).
+     */
+    public static ResourcePool purchaseProcess() {
+        return new ResourcePool()
+                .role("Requester", "Kim Passa", "Alberto Duport", "Clement Duchot", "Elvira Lores", "Esmana Liubiata",
+                        "Fjodor Kowalski", "Immanuel Karagianni", "Nico Ojenbeer", "Penn Osterwalder", "Tesca Lobes")
+                .role("Requester Manager", "Heinz Gutschmidt", "Kim Passa", "Maris Freeman", "Penn Osterwalder")
+                .role("Purchasing Agent", "Karel de Groot", "Francois de Perrier", "Magdalena Predutta")
+                .role("Supplier", "Carmen Finacse", "Esmeralda Clay", "Karen Clarens", "Kiu Kan", "Sean Manney")
+                .role("Financial Manager", "Karalda Nimwada", "Pedro Alvares");
+    }
+
+    public ResourcePool role(String role, String... resources) {
+        List<String> l = resourcesByRole.computeIfAbsent(role, k -> new ArrayList<>());
+        for (String r : resources) {
+            l.add(r);
+        }
+        return this;
+    }
+
+    /**
+     * Adds {@code count} resources named "&lt;role&gt; &lt;i&gt;" to the role.
+     */
+    public ResourcePool role(String role, int count) {
+        List<String> l = resourcesByRole.computeIfAbsent(role, k -> new ArrayList<>());
+        for (int i = 1; i <= count; i++) {
+            l.add(role + " " + i);
+        }
+        return this;
+    }
+
+    public ResourcePool skew(double skew) {
+        this.skew = skew;
+        return this;
+    }
+
+    public List<String> getResources(String role) {
+        return resourcesByRole.get(role);
+    }
+
+    public Map<String, List<String>> getResourcesByRole() {
+        return resourcesByRole;
+    }
+
+    /**
+     * @return a resource of the role, the role itself if it has no resource
+     */
+    String pick(String role, SplittableRandom random) {
+        List<String> resources = resourcesByRole.get(role);
+        if (resources == null || resources.isEmpty()) {
+            return role;
+        }
+        return resources.get((int) (resources.size() * Math.pow(random.nextDouble(), skew)));
+    }
+}
@@ -0,0 +1,202 @@
+package org.ag.processmining.generator;
+
+import org.ag.processmining.log.model.EventSchema;
+import org.ag.processmining.log.summarizer.overview.LogSummary;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaSparkContext;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * End-to-end scaling test: generates logs of increasing sizes with the {@link LogGenerator},
+ * summarizes each of them with {@link LogSummary#buildSummary} on local Spark contexts of
+ * increasing numbers of cores, and writes the throughputs to results.csv and the throughput
+ * curves (events per second by number of cores, one curve per log size) to throughput.svg.
+ * <p>
+ * Generated logs are kept in the output directory and reused by the next runs.
+ */
+public class ScalingHarness {
+
+    private final Path dir;
+    private final EventSchema schema;
+    private final List<Run> runs = new ArrayList<>();
+
+    public ScalingHarness(Path dir, EventSchema schema) {
+        this.dir = dir;
+        this.schema = schema;
+    }
+
+    public List<Run> run(long[] sizes, int[] cores) throws IOException {
+        int maxCores = 1;
+        for (int c : cores) {
+            maxCores = Math.max(maxCores, c);
+        }
+        for (long size : sizes) {
+            Path log = dir.resolve("cases-" + size);
+            LogGenerator generator = new LogGenerator().cases(size).partitions(4 * maxCores).schema(schema, LogGenerator.DEFAULT_HEADER);
+            if (!Files.isDirectory(log)) {
+                System.out.println(generator.write(log));
+            }
+            long bytes = 0;
+            try (java.util.stream.Stream<Path> files = Files.list(log)) {
+                for (Path f : (Iterable<Path>) files::iterator) {
+                    bytes += Files.size(f);
+                }
+            }
+            for (int c : cores) {
+                SparkConf conf = new SparkConf().setAppName("S-ProcMiner scaling " + size + " cases on " + c + " cores")
+                        .setMaster("local[" + c + "]")
+                        .set("spark.ui.enabled", "false");
+                JavaSparkContext sc = new JavaSparkContext(conf);
+                try {
+                    long events = sc.textFile(log.toString()).count();
+                    long time = System.nanoTime();
+                    LogSummary.buildSummary(sc, log.toString(), generator.getHeader(), schema);
+                    Run r = new Run(size, events, bytes, c, (System.nanoTime() - time) / 1e9);
+                    System.out.println(r);
+                    runs.add(r);
+                } finally {
+                    sc.stop();
+                }
+            }
+        }
+        return runs;
+    }
+
+    public void writeCsv(Path file) throws IOException {
+        try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            w.println("cases,events,bytes,cores,seconds,eventsPerSecond");
+            for (Run r : runs) {
+                w.printf("%d,%d,%d,%d,%.3f,%.1f%n", r.cases, r.events, r.bytes, r.cores, r.seconds, r.throughput());
+            }
+        }
+    }
+
+    /**
+     * Writes the throughput curves as an SVG line chart.
+     */
+    public void writeSvg(Path file) throws IOException {
+        int width = 800, height = 500, left = 90, bottom = 60, top = 30, right = 200;
+        int maxCores = 1;
+        double maxThroughput = 1;
+        for (Run r : runs) {
+            maxCores = Math.max(maxCores, r.cores);
+            maxThroughput = Math.max(maxThroughput, r.throughput());
+        }
+        double sx = (double) (width - left - right) / maxCores;
+        double sy = (height - top - bottom) / (maxThroughput * 1.1);
+        String[] colors = {"#1f77b4", "#ff7f0e", "#2ca02c", "#d62728", "#9467bd", "#8c564b", "#e377c2", "#7f7f7f"};
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"%d\" height=\"%d\" font-family=\"sans-serif\" font-size=\"12\">%n", width, height));
+        int x0 = left, y0 = height - bottom;
+        sb.append(String.format("<line x1=\"%d\" y1=\"%d\" x2=\"%d\" y2=\"%d\" stroke=\"black\"/>%n", x0, y0, width - right, y0));
+        sb.append(String.format("<line x1=\"%d\" y1=\"%d\" x2=\"%d\" y2=\"%d\" stroke=\"black\"/>%n", x0, y0, x0, top));
+        for (int c = 1; c <= maxCores; c++) {
+            sb.append(String.format("<text x=\"%.1f\" y=\"%d\" text-anchor=\"middle\">%d</text>%n", x0 + c * sx, y0 + 18, c));
+        }
+        for (int i = 0; i <= 5; i++) {
+            double v = maxThroughput * 1.1 * i / 5;
+            sb.append(String.format("<text x=\"%d\" y=\"%.1f\" text-anchor=\"end\">%.0f</text>%n", x0 - 6, y0 - v * sy + 4, v));
+        }
+        sb.append(String.format("<text x=\"%d\" y=\"%d\" text-anchor=\"middle\">cores</text>%n", (x0 + width - right) / 2, height - 15));
+        sb.append(String.format("<text x=\"15\" y=\"%d\" transform=\"rotate(-90 15 %d)\" text-anchor=\"middle\">events / s</text>%n", (top + y0) / 2, (top + y0) / 2));
+
+        List<Long> sizes = new ArrayList<>();
+        for (Run r : runs) {
+            if (!sizes.contains(r.cases)) {
+                sizes.add(r.cases);
+            }
+        }
+        for (int s = 0; s < sizes.size(); s++) {
+            String color = colors[s % colors.length];
+            StringBuilder points = new StringBuilder();
+            for (Run r : runs) {
+                if (r.cases == sizes.get(s)) {
+                    double x = x0 + r.cores * sx;
+                    double y = y0 - r.throughput() * sy;
+                    points.append(String.format("%.1f,%.1f ", x, y));
+                    sb.append(String.format("<circle cx=\"%.1f\" cy=\"%.1f\" r=\"3\" fill=\"%s\"/>%n", x, y, color));
+                }
+            }
+            sb.append(String.format("<polyline points=\"%s\" fill=\"none\" stroke=\"%s\" stroke-width=\"2\"/>%n", points.toString().trim(), color));
+            int ly = top + 20 * s;
+            sb.append(String.format("<line x1=\"%d\" y1=\"%d\" x2=\"%d\" y2=\"%d\" stroke=\"%s\" stroke-width=\"2\"/>%n", width - right + 20, ly, width - right + 45, ly, color));
+            sb.append(String.format("<text x=\"%d\" y=\"%d\">%d cases</text>%n", width - right + 50, ly + 4, sizes.get(s)));
+        }
+        sb.append("</svg>\n");
+        Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Summarization of a log of a given size on a given number of cores.
+     */
+    public static class Run {
+        private final long cases;
+        private final long events;
+        private final long bytes;
+        private final int cores;
+        private final double seconds;
+
+        Run(long cases, long events, long bytes, int cores, double seconds) {
+            this.cases = cases;
+            this.events = events;
+            this.bytes = bytes;
+            this.cores = cores;
+            this.seconds = seconds;
+        }
+
+        public long getCases() {
+            return cases;
+        }
+
+        public int getCores() {
+            return cores;
+        }
+
+        public double getSeconds() {
+            return seconds;
+        }
+
+        public double throughput() {
+            return events / seconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d cases (%d events, %.1f MB) on %d cores: %.2f s, %.0f events/s", cases, events,
+                    bytes / 1e6, cores, seconds, throughput());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: ScalingHarness <output dir> <event schema> [cases,cases,...] [cores,cores,...]");
+            return;
+        }
+        Path dir = Paths.get(args[0]);
+        EventSchema schema = new EventSchema(args[1]);
+        String[] s = (args.length > 2 ? args[2] : "10000,100000,1000000").split(",");
+        long[] sizes = new long[s.length];
+        for (int i = 0; i < s.length; i++) {
+            sizes[i] = Long.parseLong(s[i].trim());
+        }
+        String[] c = (args.length > 3 ? args[3] : "1,2,4," + Runtime.getRuntime().availableProcessors()).split(",");
+        int[] cores = new int[c.length];
+        for (int i = 0; i < c.length; i++) {
+            cores[i] = Integer.parseInt(c[i].trim());
+        }
+
+        ScalingHarness harness = new ScalingHarness(dir, schema);
+        harness.run(sizes, cores);
+        harness.writeCsv(dir.resolve("results.csv"));
+        harness.writeSvg(dir.resolve("throughput.svg"));
+    }
+}
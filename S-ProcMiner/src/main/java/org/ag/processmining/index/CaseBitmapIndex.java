@@ -0,0 +1,350 @@
+package org.ag.processmining.index;
+
+import org.ag.processmining.Utils.TimeUtils.TimeUnit;
+import org.ag.processmining.local.EventStore;
+import org.ag.processmining.log.model.ActivityClass;
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Dictionary;
+import org.ag.processmining.log.model.EncodedTrace;
+import org.ag.processmining.log.model.Event;
+import org.ag.processmining.log.model.Originator;
+import org.ag.processmining.log.model.Trace;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.api.java.function.Function;
+import org.apache.spark.broadcast.Broadcast;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import scala.Tuple2;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Inverted indexes from log values to the cases they occur in: for every activity, originator,
+ * role and time bucket, the compressed bitmap (Roaring) of the ordinals of the cases with an event
+ * of that value. Boolean combinations of conditions are bitmap operations ({@link RoaringBitmap#and},
+ * {@link RoaringBitmap#or}, {@link #not}), answered without reading any trace.
+ * <p>
+ * Conditions on the order of the events cannot be indexed: bitmaps select the candidate cases,
+ * and a verification pass over the candidates only ({@link #traces(RoaringBitmap, Function)},
+ * {@link #verify}) checks them. The selected traces are an RDD of the same type as the log, to be
+ * given to the overview builders and miners.
+ * <p>
+ * Case ordinals are the positions of the traces in the log (zipWithIndex), or the case indexes of
+ * an {@link EventStore}. Time buckets are keyed by their start, and hold the cases with an event
+ * starting in the bucket (ending, for events without start).
+ */
+public class CaseBitmapIndex implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    private final TimeUnit bucketUnit;
+    private final DateTimeZone zone;
+    private int numCases = 0;
+    private final Map<ActivityClass, RoaringBitmap> activities = new HashMap<>();
+    private final Map<Originator, RoaringBitmap> originators = new HashMap<>();
+    private final Map<String, RoaringBitmap> roles = new HashMap<>();
+    private final TreeMap<Long, RoaringBitmap> buckets = new TreeMap<>();
+    /*
+    Traces by case ordinal, for the indexes built from an RDD
+     */
+    private transient JavaPairRDD<Long, Trace> ordinals;
+    /*
+    Last bucket seen while filling, as events of a case come in time order
+     */
+    private transient long lastBucketStart = Long.MAX_VALUE;
+    private transient long lastBucketEnd = Long.MIN_VALUE;
+    private transient RoaringBitmap lastBucket;
+    /*
+    Bitmaps by dictionary id, for the encoded traces
+     */
+    private transient RoaringBitmap[] activitiesById;
+    private transient RoaringBitmap[] originatorsById;
+    private transient RoaringBitmap[] rolesById;
+
+    public CaseBitmapIndex(TimeUnit bucketUnit, DateTimeZone zone) {
+        bucketStart(0, bucketUnit, zone);
+        this.bucketUnit = bucketUnit;
+        this.zone = zone;
+    }
+
+    /**
+     * Adds the case of the given ordinal. Cases may be added in any order.
+     */
+    public CaseBitmapIndex add(int ordinal, Trace trace) {
+        numCases = Math.max(numCases, ordinal + 1);
+        for (Event e : trace.getOrderedEvents().values()) {
+            bitmap(activities, e.getActivityClass()).add(ordinal);
+            Originator o = e.getOriginator();
+            if (o != null && o.toString() != null) {
+                bitmap(originators, o).add(ordinal);
+                if (o.getOriginatorRole() != null) {
+                    bitmap(roles, o.getOriginatorRole()).add(ordinal);
+                }
+            }
+            DateTime time = e.getStart() != null ? e.getStart() : e.getEnd();
+            if (time != null) {
+                bucket(time.getMillis()).add(ordinal);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Adds the case of the given ordinal, encoded with the given dictionaries.
+     */
+    public CaseBitmapIndex add(int ordinal, EncodedTrace trace, Dictionary<ActivityClass> activityIds, Dictionary<Originator> originatorIds) {
+        if (activitiesById == null) {
+            activitiesById = new RoaringBitmap[activityIds.size()];
+            originatorsById = new RoaringBitmap[originatorIds.size()];
+            rolesById = new RoaringBitmap[originatorIds.size()];
+        }
+        numCases = Math.max(numCases, ordinal + 1);
+        for (int i = 0; i < trace.size(); i++) {
+            int a = trace.activity(i);
+            if (activitiesById[a] == null) {
+                activitiesById[a] = bitmap(activities, activityIds.get(a));
+            }
+            activitiesById[a].add(ordinal);
+            int o = trace.originator(i);
+            if (o != EncodedTrace.NO_ID) {
+                Originator originator = originatorIds.get(o);
+                if (originatorsById[o] == null) {
+                    originatorsById[o] = bitmap(originators, originator);
+                    if (originator.getOriginatorRole() != null) {
+                        rolesById[o] = bitmap(roles, originator.getOriginatorRole());
+                    }
+                }
+                originatorsById[o].add(ordinal);
+                if (rolesById[o] != null) {
+                    rolesById[o].add(ordinal);
+                }
+            }
+            long time = trace.start(i) != EncodedTrace.NO_TIME ? trace.start(i) : trace.end(i);
+            if (time != EncodedTrace.NO_TIME) {
+                bucket(time).add(ordinal);
+            }
+        }
+        return this;
+    }
+
+    public CaseBitmapIndex merge(CaseBitmapIndex other) {
+        numCases = Math.max(numCases, other.numCases);
+        other.activities.forEach((k, b) -> bitmap(activities, k).or(b));
+        other.originators.forEach((k, b) -> bitmap(originators, k).or(b));
+        other.roles.forEach((k, b) -> bitmap(roles, k).or(b));
+        other.buckets.forEach((k, b) -> bitmap(buckets, k).or(b));
+        return this;
+    }
+
+    /**
+     * Releases the unused capacity of the bitmaps, once filled.
+     */
+    public CaseBitmapIndex trim() {
+        activities.values().forEach(RoaringBitmap::trim);
+        originators.values().forEach(RoaringBitmap::trim);
+        roles.values().forEach(RoaringBitmap::trim);
+        buckets.values().forEach(RoaringBitmap::trim);
+        return this;
+    }
+
+    private static <K> RoaringBitmap bitmap(Map<K, RoaringBitmap> bitmaps, K key) {
+        RoaringBitmap b = bitmaps.get(key);
+        if (b == null) {
+            bitmaps.put(key, b = new RoaringBitmap());
+        }
+        return b;
+    }
+
+    private RoaringBitmap bucket(long millis) {
+        if (millis < lastBucketStart || millis >= lastBucketEnd) {
+            DateTime start = new DateTime(bucketStart(millis, bucketUnit, zone), zone);
+            lastBucketStart = start.getMillis();
+            lastBucketEnd = bucketEnd(start);
+            lastBucket = bitmap(buckets, lastBucketStart);
+        }
+        return lastBucket;
+    }
+
+    private static long bucketStart(long millis, TimeUnit unit, DateTimeZone zone) {
+        DateTime t = new DateTime(millis, zone);
+        switch (unit) {
+            case MONTH:
+                return t.monthOfYear().roundFloorCopy().getMillis();
+            case WEEK:
+                return t.weekOfWeekyear().roundFloorCopy().getMillis();
+            case DAY:
+                return t.dayOfMonth().roundFloorCopy().getMillis();
+            case HOUR:
+                return t.hourOfDay().roundFloorCopy().getMillis();
+            default:
+                throw new IllegalArgumentException("Unsupported time bucket: " + unit);
+        }
+    }
+
+    private long bucketEnd(DateTime start) {
+        switch (bucketUnit) {
+            case MONTH:
+                return start.plusMonths(1).getMillis();
+            case WEEK:
+                return start.plusWeeks(1).getMillis();
+            case DAY:
+                return start.plusDays(1).getMillis();
+            default:
+                return start.plusHours(1).getMillis();
+        }
+    }
+
+    void setOrdinals(JavaPairRDD<Long, Trace> ordinals) {
+        this.ordinals = ordinals;
+    }
+
+    public int numCases() {
+        return numCases;
+    }
+
+    public TimeUnit getBucketUnit() {
+        return bucketUnit;
+    }
+
+    public Set<ActivityClass> activities() {
+        return Collections.unmodifiableSet(activities.keySet());
+    }
+
+    public Set<Originator> originators() {
+        return Collections.unmodifiableSet(originators.keySet());
+    }
+
+    public Set<String> roles() {
+        return Collections.unmodifiableSet(roles.keySet());
+    }
+
+    /**
+     * @return all the cases
+     */
+    public RoaringBitmap all() {
+        RoaringBitmap b = new RoaringBitmap();
+        b.flip(0, numCases);
+        return b;
+    }
+
+    /**
+     * @return the cases not in {@code cases}
+     */
+    public RoaringBitmap not(RoaringBitmap cases) {
+        return RoaringBitmap.andNot(all(), cases);
+    }
+
+    /**
+     * @return the cases with an event of the activity; the returned bitmaps are copies, free to
+     * be modified
+     */
+    public RoaringBitmap activity(ActivityClass a) {
+        return copy(activities.get(a));
+    }
+
+    public RoaringBitmap originator(Originator o) {
+        return copy(originators.get(o));
+    }
+
+    public RoaringBitmap role(String role) {
+        return copy(roles.get(role));
+    }
+
+    /**
+     * @return the cases with an event in a time bucket overlapping [from, to)
+     */
+    public RoaringBitmap during(DateTime from, DateTime to) {
+        RoaringBitmap b = new RoaringBitmap();
+        for (RoaringBitmap r : buckets.subMap(bucketStart(from.getMillis(), bucketUnit, zone), true, to.getMillis(), false).values()) {
+            b.or(r);
+        }
+        return b;
+    }
+
+    private static RoaringBitmap copy(RoaringBitmap b) {
+        return b == null ? new RoaringBitmap() : b.clone();
+    }
+
+    /**
+     * @return the traces of the cases, filtered where they are: no shuffle
+     */
+    public JavaPairRDD<CaseId, Trace> traces(RoaringBitmap cases) {
+        return traces(cases, null);
+    }
+
+    /**
+     * @param verify condition the traces of the candidate cases must meet, null for none
+     */
+    public JavaPairRDD<CaseId, Trace> traces(RoaringBitmap cases, Function<Trace, Boolean> verify) {
+        if (ordinals == null) {
+            throw new IllegalStateException("The index was not built from an RDD");
+        }
+        Broadcast<RoaringBitmap> bCases = JavaSparkContext.fromSparkContext(ordinals.context()).broadcast(cases);
+        return ordinals
+                .filter(x -> bCases.value().contains(x._1().intValue()) && (verify == null || verify.call(x._2())))
+                .mapToPair(x -> new Tuple2<>(x._2().getId(), x._2()));
+    }
+
+    /**
+     * @return the candidate cases of the store whose trace meets the condition
+     */
+    public static RoaringBitmap verify(EventStore store, RoaringBitmap candidates, Predicate<EncodedTrace> condition) {
+        RoaringBitmap verified = new RoaringBitmap();
+        IntIterator it = candidates.getIntIterator();
+        while (it.hasNext()) {
+            int c = it.next();
+            if (condition.test(store.trace(c))) {
+                verified.add(c);
+            }
+        }
+        return verified;
+    }
+
+    /**
+     * @return the condition that an event of activity {@code a} is eventually followed by an event
+     * of activity {@code b}, both starting in [from, to); a null bound leaves that side open, and
+     * events without a start time only match when both bounds are null
+     */
+    public static Function<Trace, Boolean> eventuallyFollowedBy(ActivityClass a, ActivityClass b, DateTime from, DateTime to) {
+        return t -> {
+            boolean seen = false;
+            for (Event e : t.getOrderedEvents().values()) {
+                if ((from != null || to != null) && (e.getStart() == null
+                        || from != null && e.getStart().isBefore(from) || to != null && !e.getStart().isBefore(to))) {
+                    continue;
+                }
+                if (seen && e.getActivityClass().equals(b)) {
+                    return true;
+                }
+                seen |= e.getActivityClass().equals(a);
+            }
+            return false;
+        };
+    }
+
+    /**
+     * Encoded counterpart of {@link #eventuallyFollowedBy(ActivityClass, ActivityClass, DateTime, DateTime)},
+     * on activity ids and epoch milliseconds ({@link EncodedTrace#NO_TIME} for an open bound).
+     */
+    public static Predicate<EncodedTrace> eventuallyFollowedBy(int a, int b, long from, long to) {
+        return t -> {
+            boolean seen = false;
+            for (int i = 0; i < t.size(); i++) {
+                if ((from != EncodedTrace.NO_TIME || to != EncodedTrace.NO_TIME) && (t.start(i) == EncodedTrace.NO_TIME
+                        || from != EncodedTrace.NO_TIME && t.start(i) < from || to != EncodedTrace.NO_TIME && t.start(i) >= to)) {
+                    continue;
+                }
+                if (seen && t.activity(i) == b) {
+                    return true;
+                }
+                seen |= t.activity(i) == a;
+            }
+            return false;
+        };
+    }
+}
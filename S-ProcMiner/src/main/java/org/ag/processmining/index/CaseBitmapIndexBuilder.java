@@ -0,0 +1,86 @@
+package org.ag.processmining.index;
+
+import org.ag.processmining.Utils.TimeUtils.TimeUnit;
+import org.ag.processmining.local.EventStore;
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Trace;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.storage.StorageLevel;
+import org.joda.time.DateTimeZone;
+import scala.Tuple2;
+
+import java.io.Serializable;
+
+/**
+ * Builds the {@link CaseBitmapIndex} of a log in a single pass over its traces: every partition
+ * fills its own bitmaps, and the partial indexes are merged with a tree aggregation (a union of
+ * the bitmaps of every value).
+ * <p>
+ * On an RDD, the traces are numbered with {@code zipWithIndex} and the numbered traces are
+ * persisted, so that the cases selected on the index can be filtered out of them later without
+ * rebuilding the traces. Case ordinals are 32 bits integers, the domain of the bitmaps.
+ */
+public class CaseBitmapIndexBuilder implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    JavaPairRDD<CaseId, Trace> traces;
+    transient EventStore store;
+    private TimeUnit bucketUnit = TimeUnit.DAY;
+    private DateTimeZone zone = DateTimeZone.UTC;
+    private StorageLevel storageLevel = StorageLevel.MEMORY_AND_DISK_SER();
+    private int depth = 2;
+
+    public CaseBitmapIndexBuilder(JavaPairRDD<CaseId, Trace> traces) {
+        this.traces = traces;
+    }
+
+    public CaseBitmapIndexBuilder(EventStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @param bucketUnit length of the time buckets: month, week, day or hour
+     */
+    public CaseBitmapIndexBuilder bucketUnit(TimeUnit bucketUnit) {
+        this.bucketUnit = bucketUnit;
+        return this;
+    }
+
+    public CaseBitmapIndexBuilder zone(DateTimeZone zone) {
+        this.zone = zone;
+        return this;
+    }
+
+    /**
+     * @param storageLevel storage level of the numbered traces
+     */
+    public CaseBitmapIndexBuilder storageLevel(StorageLevel storageLevel) {
+        this.storageLevel = storageLevel;
+        return this;
+    }
+
+    public CaseBitmapIndexBuilder depth(int depth) {
+        this.depth = depth;
+        return this;
+    }
+
+    public CaseBitmapIndex build() {
+        if (store != null) {
+            return store.aggregateCases(new CaseBitmapIndex(bucketUnit, zone),
+                    (index, c, t) -> index.add(c, t, store.activities(), store.originators()),
+                    CaseBitmapIndex::merge)
+                    .trim();
+        }
+        JavaPairRDD<Long, Trace> ordinals = traces.values().zipWithIndex()
+                .mapToPair(x -> new Tuple2<>(x._2(), x._1()))
+                .persist(storageLevel);
+        CaseBitmapIndex index = ordinals.treeAggregate(new CaseBitmapIndex(bucketUnit, zone),
+                (i, x) -> i.add(x._1().intValue(), x._2()),
+                (i1, i2) -> i1.merge(i2),
+                depth)
+                .trim();
+        index.setOrdinals(ordinals);
+        return index;
+    }
+}
@@ -0,0 +1,231 @@
+package org.ag.processmining.index;
+
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Trace;
+import org.ag.processmining.log.summarizer.utils.SparkUtils;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.storage.StorageLevel;
+import org.joda.time.DateTime;
+import scala.Tuple2;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Index of the time intervals of the cases of a log, for the analyses restricted to a time range.
+ * <p>
+ * The interval of a case runs from {@link Trace#getStartTS()} to {@link Trace#getEndTS()} (the
+ * start of its last event if that one has no end). For every partition of the traces, the index
+ * keeps the intervals of its cases sorted by start, next to the traces, and the driver keeps the
+ * smallest start and largest end of every partition. A query reads only the partitions whose
+ * bounds overlap the range, and in each of them binary searches the candidate cases: those
+ * starting before the end of the range and after its start minus the longest case of the
+ * partition. The traces of the other cases are skipped without being looked at.
+ * <p>
+ * The selected traces are an RDD of the same type as the log, for {@link
+ * org.ag.processmining.log.summarizer.overview.LogSummary} and the social network builders. Cases
+ * without any start time are not indexed, and never selected.
+ */
+public class CaseIntervalIndex implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    private final JavaPairRDD<CaseId, Trace> traces;
+    /*
+    Whether the traces were persisted by the index, rather than by the caller
+     */
+    private final boolean persistedTraces;
+    /*
+    Intervals of the cases of every partition of the traces, one element per partition
+     */
+    private final JavaRDD<CaseIntervals> intervals;
+    /*
+    Smallest start and largest end of the cases of every partition
+     */
+    private final long[] minStart;
+    private final long[] maxEnd;
+
+    public CaseIntervalIndex(JavaPairRDD<CaseId, Trace> traces) {
+        this(traces, StorageLevel.MEMORY_ONLY());
+    }
+
+    /**
+     * The intervals refer to the traces by their position in their partition, so the traces must
+     * be read in the same order by every query: they are persisted at {@code storageLevel} unless
+     * they already are.
+     *
+     * @param traces       traces of the log
+     * @param storageLevel storage level of the intervals, and of the traces if not persisted yet
+     */
+    public CaseIntervalIndex(JavaPairRDD<CaseId, Trace> traces, StorageLevel storageLevel) {
+        this.persistedTraces = traces.getStorageLevel().equals(StorageLevel.NONE());
+        this.traces = persistedTraces ? traces.persist(storageLevel) : traces;
+        this.intervals = this.traces
+                .mapPartitions(it -> Collections.singletonList(CaseIntervals.of(it)), true)
+                .persist(storageLevel);
+        List<long[]> bounds = intervals.map(i -> new long[]{i.minStart(), i.maxEnd()}).collect();
+        this.minStart = new long[bounds.size()];
+        this.maxEnd = new long[bounds.size()];
+        for (int p = 0; p < bounds.size(); p++) {
+            minStart[p] = bounds.get(p)[0];
+            maxEnd[p] = bounds.get(p)[1];
+        }
+    }
+
+    public JavaPairRDD<CaseId, Trace> getTraces() {
+        return traces;
+    }
+
+    /**
+     * @return the partitions of the traces holding cases active in [from, to)
+     */
+    public Set<Integer> partitions(DateTime from, DateTime to) {
+        Set<Integer> partitions = new HashSet<>();
+        for (int p = 0; p < minStart.length; p++) {
+            if (minStart[p] < to.getMillis() && maxEnd[p] >= from.getMillis()) {
+                partitions.add(p);
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * @return the traces of the cases active in [from, to): started before {@code to} and not
+     * ended before {@code from}
+     */
+    public JavaPairRDD<CaseId, Trace> active(DateTime from, DateTime to) {
+        return select(from, to, false);
+    }
+
+    /**
+     * @return the traces of the cases started in [from, to)
+     */
+    public JavaPairRDD<CaseId, Trace> started(DateTime from, DateTime to) {
+        return select(from, to, true);
+    }
+
+    /**
+     * @return the number of cases active in [from, to), computed on the intervals only
+     */
+    public long countActive(DateTime from, DateTime to) {
+        long f = from.getMillis();
+        long t = to.getMillis();
+        return SparkUtils.prunePartitions(intervals, partitions(from, to))
+                .aggregate(0L, (n, i) -> n + i.candidates(f, t, false).cardinality(), (n1, n2) -> n1 + n2);
+    }
+
+    private JavaPairRDD<CaseId, Trace> select(DateTime from, DateTime to, boolean started) {
+        long f = from.getMillis();
+        long t = to.getMillis();
+        Set<Integer> partitions = partitions(from, to);
+        return JavaPairRDD.fromJavaRDD(SparkUtils.prunePartitions(traces, partitions)
+                .zipPartitions(SparkUtils.prunePartitions(intervals, partitions), (ts, is) -> {
+                    BitSet selected = is.next().candidates(f, t, started);
+                    List<Tuple2<CaseId, Trace>> l = new ArrayList<>(selected.cardinality());
+                    for (int position = 0; ts.hasNext() && position < selected.length(); position++) {
+                        Tuple2<CaseId, Trace> x = ts.next();
+                        if (selected.get(position)) {
+                            l.add(x);
+                        }
+                    }
+                    return l;
+                }));
+    }
+
+    public void unpersist() {
+        intervals.unpersist();
+        if (persistedTraces) {
+            traces.unpersist();
+        }
+    }
+
+    /**
+     * Intervals of the cases of a partition, sorted by start, with the position of their trace in
+     * the partition.
+     */
+    static class CaseIntervals implements Serializable {
+
+        static final long serialVersionUID = 1L;
+        private final long[] starts;
+        private final long[] ends;
+        private final int[] positions;
+        private final long maxLength;
+
+        private CaseIntervals(long[] starts, long[] ends, int[] positions, long maxLength) {
+            this.starts = starts;
+            this.ends = ends;
+            this.positions = positions;
+            this.maxLength = maxLength;
+        }
+
+        static CaseIntervals of(Iterator<Tuple2<CaseId, Trace>> traces) {
+            List<long[]> l = new ArrayList<>();
+            for (int position = 0; traces.hasNext(); position++) {
+                Trace t = traces.next()._2();
+                DateTime start = t.size() == 0 ? null : t.getStartTS();
+                if (start != null) {
+                    DateTime end = t.getEndTS() != null ? t.getEndTS() : t.getEndEvent().getStart();
+                    long e = end == null ? start.getMillis() : Math.max(start.getMillis(), end.getMillis());
+                    l.add(new long[]{start.getMillis(), e, position});
+                }
+            }
+            l.sort((a, b) -> Long.compare(a[0], b[0]));
+            long[] starts = new long[l.size()];
+            long[] ends = new long[l.size()];
+            int[] positions = new int[l.size()];
+            long maxLength = 0;
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] = l.get(i)[0];
+                ends[i] = l.get(i)[1];
+                positions[i] = (int) l.get(i)[2];
+                maxLength = Math.max(maxLength, ends[i] - starts[i]);
+            }
+            return new CaseIntervals(starts, ends, positions, maxLength);
+        }
+
+        long minStart() {
+            return starts.length == 0 ? Long.MAX_VALUE : starts[0];
+        }
+
+        long maxEnd() {
+            long max = Long.MIN_VALUE;
+            for (long e : ends) {
+                max = Math.max(max, e);
+            }
+            return max;
+        }
+
+        /**
+         * @return the positions of the cases active (started, if {@code started}) in [from, to)
+         */
+        BitSet candidates(long from, long to, boolean started) {
+            int hi = lowerBound(to);
+            int lo = lowerBound(started ? from : Math.max(Long.MIN_VALUE + maxLength, from) - maxLength);
+            BitSet selected = new BitSet();
+            for (int i = lo; i < hi; i++) {
+                if (started || ends[i] >= from) {
+                    selected.set(positions[i]);
+                }
+            }
+            return selected;
+        }
+
+        /**
+         * @return the index of the first start not before the time
+         */
+        private int lowerBound(long time) {
+            int lo = 0;
+            int hi = starts.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (starts[mid] < time) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
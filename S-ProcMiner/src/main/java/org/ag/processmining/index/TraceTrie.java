@@ -0,0 +1,366 @@
+package org.ag.processmining.index;
+
+import org.ag.processmining.Utils.DurationSketch;
+import org.ag.processmining.log.model.ActivityClass;
+import org.ag.processmining.log.model.Dictionary;
+import org.ag.processmining.log.model.EncodedTrace;
+import org.ag.processmining.log.model.Variant;
+import org.ag.processmining.miner.ActivityStatistics;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.*;
+
+/**
+ * Prefix tree of the activity sequences of a log. Every node is a prefix: it counts the cases that
+ * went through it and the cases that ended there, and keeps a sketch of the time elapsed from the
+ * start of the case to the completion of its last event. Traces sharing a prefix share its nodes,
+ * so the trie answers prefix queries, next activity distributions and variant enumeration in
+ * the size of the prefix, without the events.
+ * <p>
+ * Tries are filled per partition and merged (see {@link ActivityStatistics}); nodes are numbered
+ * in creation order, so the parent of a node always has a smaller number, and merging walks the
+ * nodes of the other trie once. Only the used part of the node arrays is serialized.
+ */
+public class TraceTrie extends ActivityStatistics<TraceTrie> {
+
+    static final long serialVersionUID = 1L;
+    public static final int ROOT = 0;
+    private static final int INITIAL_NODES = 64;
+
+    private final double accuracy;
+    /*
+    Nodes: parent, activity id, first child and next sibling (-1 if none), number of cases going
+    through and ending at the node, elapsed time sketch (null when timings are off or no time)
+     */
+    private transient int nodes;
+    private transient int[] parent;
+    private transient int[] activity;
+    private transient int[] firstChild;
+    private transient int[] nextSibling;
+    private transient long[] cases;
+    private transient long[] ends;
+    private transient DurationSketch[] elapsed;
+    /*
+    Child lookup: open addressing table on ((parent + 1) << 32 | (activity + 1)), 0 if the slot is empty
+     */
+    private transient long[] childKeys;
+    private transient int[] childNodes;
+
+    public TraceTrie() {
+        this(DurationSketch.DEFAULT_ACCURACY);
+    }
+
+    /**
+     * @param accuracy relative accuracy of the elapsed time sketches, 0 to keep no timing
+     */
+    public TraceTrie(double accuracy) {
+        this.accuracy = accuracy;
+        init(INITIAL_NODES);
+    }
+
+    /**
+     * Creates an empty trie whose ids are the ones of the given dictionary, to be filled with
+     * traces encoded with that dictionary.
+     */
+    public TraceTrie(Dictionary<ActivityClass> dictionary, double accuracy) {
+        this(accuracy);
+        register(dictionary);
+    }
+
+    private void init(int capacity) {
+        parent = new int[capacity];
+        activity = new int[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        cases = new long[capacity];
+        ends = new long[capacity];
+        elapsed = accuracy > 0 ? new DurationSketch[capacity] : null;
+        childKeys = new long[2 * capacity];
+        childNodes = new int[2 * capacity];
+        nodes = 1;
+        parent[ROOT] = -1;
+        activity[ROOT] = -1;
+        firstChild[ROOT] = -1;
+        nextSibling[ROOT] = -1;
+    }
+
+    @Override
+    protected TraceTrie empty() {
+        return new TraceTrie(accuracy);
+    }
+
+    @Override
+    protected void resize(int oldCapacity, int newCapacity) {
+        // nodes are not indexed by activity
+    }
+
+    @Override
+    protected void addEncoded(EncodedTrace trace) {
+        int n = trace.size();
+        int node = ROOT;
+        cases[ROOT]++;
+        long first = n == 0 ? EncodedTrace.NO_TIME : trace.start(0);
+        for (int i = 0; i < n; i++) {
+            node = child(node, trace.activity(i));
+            cases[node]++;
+            long completion = trace.completion(i);
+            if (elapsed != null && first != EncodedTrace.NO_TIME && completion != EncodedTrace.NO_TIME) {
+                sketch(node).add(completion - first);
+            }
+        }
+        ends[node]++;
+    }
+
+    @Override
+    protected void mergeRemapped(TraceTrie other, int[] map) {
+        int[] nodeMap = new int[other.nodes];
+        nodeMap[ROOT] = ROOT;
+        cases[ROOT] += other.cases[ROOT];
+        ends[ROOT] += other.ends[ROOT];
+        for (int i = 1; i < other.nodes; i++) {
+            int node = nodeMap[i] = child(nodeMap[other.parent[i]], map[other.activity[i]]);
+            cases[node] += other.cases[i];
+            ends[node] += other.ends[i];
+            if (elapsed != null && other.elapsed != null && other.elapsed[i] != null) {
+                sketch(node).merge(other.elapsed[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the child of the node for the activity, created if needed
+     */
+    private int child(int node, int a) {
+        long key = ((long) (node + 1) << 32) | (a + 1);
+        int mask = childKeys.length - 1;
+        int i = (int) mixKey(key) & mask;
+        while (childKeys[i] != 0) {
+            if (childKeys[i] == key) {
+                return childNodes[i];
+            }
+            i = (i + 1) & mask;
+        }
+        if (nodes == parent.length) {
+            grow();
+            return child(node, a);
+        }
+        int c = nodes++;
+        parent[c] = node;
+        activity[c] = a;
+        firstChild[c] = -1;
+        nextSibling[c] = firstChild[node];
+        firstChild[node] = c;
+        childKeys[i] = key;
+        childNodes[i] = c;
+        return c;
+    }
+
+    private int find(int node, int a) {
+        long key = ((long) (node + 1) << 32) | (a + 1);
+        int mask = childKeys.length - 1;
+        int i = (int) mixKey(key) & mask;
+        while (childKeys[i] != 0) {
+            if (childKeys[i] == key) {
+                return childNodes[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void grow() {
+        int capacity = 2 * parent.length;
+        parent = Arrays.copyOf(parent, capacity);
+        activity = Arrays.copyOf(activity, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        cases = Arrays.copyOf(cases, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        if (elapsed != null) {
+            elapsed = Arrays.copyOf(elapsed, capacity);
+        }
+        rehash(2 * capacity);
+    }
+
+    private void rehash(int slots) {
+        childKeys = new long[slots];
+        childNodes = new int[slots];
+        int mask = slots - 1;
+        for (int c = 1; c < nodes; c++) {
+            long key = ((long) (parent[c] + 1) << 32) | (activity[c] + 1);
+            int i = (int) mixKey(key) & mask;
+            while (childKeys[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            childKeys[i] = key;
+            childNodes[i] = c;
+        }
+    }
+
+    private static long mixKey(long key) {
+        key *= 0x9e3779b97f4a7c15L;
+        return key ^ (key >>> 29);
+    }
+
+    private DurationSketch sketch(int node) {
+        DurationSketch s = elapsed[node];
+        if (s == null) {
+            s = elapsed[node] = new DurationSketch(accuracy);
+        }
+        return s;
+    }
+
+    /**
+     * @return the node of the prefix, -1 if no case went through it
+     */
+    public int node(int... prefix) {
+        int node = ROOT;
+        for (int i = 0; i < prefix.length && node >= 0; i++) {
+            node = prefix[i] < 0 ? -1 : find(node, prefix[i]);
+        }
+        return node;
+    }
+
+    public int node(List<ActivityClass> prefix) {
+        int[] ids = new int[prefix.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = activityId(prefix.get(i));
+        }
+        return node(ids);
+    }
+
+    public int numNodes() {
+        return nodes;
+    }
+
+    public int parent(int node) {
+        return parent[node];
+    }
+
+    /**
+     * @return the activity id of the last event of the prefix, -1 for the root
+     */
+    public int activityOf(int node) {
+        return activity[node];
+    }
+
+    public int depth(int node) {
+        int d = 0;
+        for (int n = node; n != ROOT; n = parent[n]) {
+            d++;
+        }
+        return d;
+    }
+
+    /**
+     * @return the activity ids of the prefix of the node
+     */
+    public int[] prefix(int node) {
+        int[] p = new int[depth(node)];
+        for (int n = node, i = p.length - 1; n != ROOT; n = parent[n], i--) {
+            p[i] = activity[n];
+        }
+        return p;
+    }
+
+    /**
+     * @return the number of cases that went through the node, all the cases for the root
+     */
+    public long cases(int node) {
+        return node < 0 ? 0 : cases[node];
+    }
+
+    /**
+     * @return the number of cases whose trace is exactly the prefix of the node
+     */
+    public long ends(int node) {
+        return node < 0 ? 0 : ends[node];
+    }
+
+    /**
+     * @return the sketch of the time from the start of the case to the completion of the last
+     * event of the prefix, null if timings are off or unknown
+     */
+    public DurationSketch elapsed(int node) {
+        return node < 0 || elapsed == null ? null : elapsed[node];
+    }
+
+    /**
+     * @return the children of the node, most recently created first
+     */
+    public int[] children(int node) {
+        int n = 0;
+        for (int c = firstChild[node]; c >= 0; c = nextSibling[c]) {
+            n++;
+        }
+        int[] children = new int[n];
+        n = 0;
+        for (int c = firstChild[node]; c >= 0; c = nextSibling[c]) {
+            children[n++] = c;
+        }
+        return children;
+    }
+
+    /**
+     * @return the number of cases by next activity after the prefix of the node; the cases ending
+     * at the node are {@link #ends(int)}
+     */
+    public Map<ActivityClass, Long> next(int node) {
+        Map<ActivityClass, Long> next = new HashMap<>();
+        if (node >= 0) {
+            for (int c = firstChild[node]; c >= 0; c = nextSibling[c]) {
+                next.put(activity(activity[c]), cases[c]);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * @return the variants of the log (the prefixes some cases end at) and their number of cases
+     */
+    public Map<Variant, Long> variants() {
+        Map<Variant, Long> variants = new HashMap<>();
+        for (int n = 0; n < nodes; n++) {
+            if (ends[n] > 0) {
+                variants.put(new Variant(prefix(n)), ends[n]);
+            }
+        }
+        return variants;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(nodes);
+        for (int n = 0; n < nodes; n++) {
+            out.writeInt(parent[n]);
+            out.writeInt(activity[n]);
+            out.writeLong(cases[n]);
+            out.writeLong(ends[n]);
+            if (elapsed != null) {
+                out.writeObject(elapsed[n]);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int count = in.readInt();
+        int capacity = INITIAL_NODES;
+        while (capacity < count) {
+            capacity *= 2;
+        }
+        init(capacity);
+        for (int n = 0; n < count; n++) {
+            int p = in.readInt();
+            int a = in.readInt();
+            int node = n == ROOT ? ROOT : child(p, a);
+            cases[node] = in.readLong();
+            ends[node] = in.readLong();
+            if (elapsed != null) {
+                elapsed[node] = (DurationSketch) in.readObject();
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.ag.processmining.index;
+
+import org.ag.processmining.Utils.DurationSketch;
+import org.ag.processmining.local.EventStore;
+import org.ag.processmining.local.LocalLog;
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Trace;
+import org.apache.spark.api.java.JavaPairRDD;
+
+import java.io.Serializable;
+
+/**
+ * Builds the {@link TraceTrie} of a log in a single pass over its traces: every partition fills
+ * its own trie, and the partial tries are merged with a tree aggregation.
+ */
+public class TraceTrieBuilder implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    JavaPairRDD<CaseId, Trace> traces;
+    transient LocalLog localTraces;
+    transient EventStore store;
+    private double accuracy = DurationSketch.DEFAULT_ACCURACY;
+    private int depth = 2;
+
+    public TraceTrieBuilder(JavaPairRDD<CaseId, Trace> traces) {
+        this.traces = traces;
+    }
+
+    public TraceTrieBuilder(LocalLog traces) {
+        this.localTraces = traces;
+    }
+
+    public TraceTrieBuilder(EventStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @param accuracy relative accuracy of the elapsed time sketches of the nodes, 0 to keep no timing
+     */
+    public TraceTrieBuilder accuracy(double accuracy) {
+        this.accuracy = accuracy;
+        return this;
+    }
+
+    public TraceTrieBuilder depth(int depth) {
+        this.depth = depth;
+        return this;
+    }
+
+    public TraceTrie build() {
+        if (store != null) {
+            return store.aggregate(new TraceTrie(store.activities(), accuracy), TraceTrie::add, TraceTrie::merge).canonical();
+        }
+        if (localTraces != null) {
+            return localTraces.aggregate(new TraceTrie(accuracy), TraceTrie::add, TraceTrie::merge).canonical();
+        }
+        return traces.treeAggregate(new TraceTrie(accuracy),
+                (t, x) -> t.add(x._2()),
+                (t1, t2) -> t1.merge(t2),
+                depth)
+                .canonical();
+    }
+}
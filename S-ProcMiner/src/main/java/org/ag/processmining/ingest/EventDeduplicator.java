@@ -0,0 +1,272 @@
+package org.ag.processmining.ingest;
+
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Event;
+import org.ag.processmining.log.model.EventKey;
+import org.ag.processmining.log.summarizer.utils.CasePartitioner;
+import org.apache.spark.api.java.JavaPairRDD;
+import scala.Tuple2;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Ingest stage dropping the duplicate events of a log (retried emissions) and putting the events
+ * of every case back in {@link EventKey} order, whatever the order of the files they were read in.
+ * <p>
+ * Two events of a case are duplicates when they are equal on the fields of the dedup key: start,
+ * end, activity and resource, all by default. Detection is sort based: the events are shuffled to
+ * the partitions of their cases and sorted within the partitions by case, dedup key, event key
+ * and read position, so that duplicates are adjacent and the one kept is always the same (first
+ * in event order, then first read). The events of a case are then ordered, one case at a time: a
+ * task holds the events of one case, never its whole partition.
+ * <p>
+ * The events come out partitioned by the given {@link CasePartitioner}: building the traces
+ * with {@link org.ag.processmining.log.summarizer.overview.LogSummary#buildTraces(JavaPairRDD, CasePartitioner)}
+ * on the same partitioner does not shuffle them again.
+ */
+public class EventDeduplicator implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private boolean start = true;
+    private boolean end = true;
+    private boolean activity = true;
+    private boolean resource = true;
+
+    /**
+     * @param start whether the start of the events is part of the dedup key
+     */
+    public EventDeduplicator start(boolean start) {
+        this.start = start;
+        return this;
+    }
+
+    public EventDeduplicator end(boolean end) {
+        this.end = end;
+        return this;
+    }
+
+    public EventDeduplicator activity(boolean activity) {
+        this.activity = activity;
+        return this;
+    }
+
+    public EventDeduplicator resource(boolean resource) {
+        this.resource = resource;
+        return this;
+    }
+
+    /**
+     * @return the dedup key of the event, without its case
+     */
+    public EventKey key(Event e) {
+        return EventKey.of(e, start, end, activity, resource);
+    }
+
+    /**
+     * Sorts the events for deduplication; nothing runs until the events or the report are asked for.
+     */
+    public Deduplicated deduplicate(JavaPairRDD<CaseId, Event> events, CasePartitioner partitioner) {
+        JavaPairRDD<IngestKey, Event> sorted = events
+                .mapPartitionsWithIndex((p, it) -> keyed(p, it), false)
+                .mapToPair(x -> x)
+                .repartitionAndSortWithinPartitions(partitioner, new IngestOrder());
+        return new Deduplicated(sorted);
+    }
+
+    /**
+     * @return the events without duplicates, grouped by case and in order within their cases
+     */
+    public List<Event> deduplicate(List<Event> events, IngestReport report) {
+        List<Tuple2<IngestKey, Event>> keyed = new ArrayList<>(events.size());
+        for (Event e : events) {
+            keyed.add(new Tuple2<>(ingestKey(e, keyed.size()), e));
+        }
+        keyed.sort((x, y) -> IngestOrder.compareKeys(x._1(), y._1()));
+        List<Event> deduplicated = new ArrayList<>(events.size());
+        new CaseScan(keyed.iterator(), report).forEachRemaining(x -> deduplicated.add(x._2()));
+        return deduplicated;
+    }
+
+    private IngestKey ingestKey(Event e, long position) {
+        return new IngestKey(e.getCaseId(), key(e), EventKey.of(e), position);
+    }
+
+    /**
+     * @return the events of the partition with their sort keys, read positions numbered from
+     * the partition index
+     */
+    private Iterator<Tuple2<IngestKey, Event>> keyed(int partition, Iterator<Tuple2<CaseId, Event>> events) {
+        return new Iterator<Tuple2<IngestKey, Event>>() {
+            long position = (long) partition << 40;
+
+            @Override
+            public boolean hasNext() {
+                return events.hasNext();
+            }
+
+            @Override
+            public Tuple2<IngestKey, Event> next() {
+                Event e = events.next()._2();
+                return new Tuple2<>(ingestKey(e, position++), e);
+            }
+        };
+    }
+
+    /**
+     * Events sorted for deduplication, partitioned by case.
+     */
+    public static class Deduplicated implements Serializable {
+
+        static final long serialVersionUID = 1L;
+        private final JavaPairRDD<IngestKey, Event> sorted;
+
+        private Deduplicated(JavaPairRDD<IngestKey, Event> sorted) {
+            this.sorted = sorted;
+        }
+
+        /**
+         * @return the events without duplicates, in order within their cases
+         */
+        public JavaPairRDD<CaseId, Event> getEvents() {
+            return sorted.mapPartitionsToPair(it -> () -> new CaseScan(it, new IngestReport()), true);
+        }
+
+        /**
+         * Counts the events, duplicates and reordered events. The sorted events are read from the
+         * output of the shuffle, which is not run again.
+         */
+        public IngestReport report() {
+            return sorted
+                    .mapPartitions(it -> {
+                        IngestReport r = new IngestReport();
+                        new CaseScan(it, r).forEachRemaining(x -> {
+                        });
+                        return Collections.singletonList(r);
+                    })
+                    .treeAggregate(new IngestReport(), IngestReport::merge, IngestReport::merge);
+        }
+    }
+
+    /**
+     * Sort key of an event: its case, its dedup key, its event key and its read position. Hashes
+     * as its case, so that a {@link CasePartitioner} sends it to the partition of the case.
+     */
+    static final class IngestKey implements Serializable {
+
+        static final long serialVersionUID = 1L;
+        final CaseId caseId;
+        final EventKey dedup;
+        final EventKey event;
+        final long position;
+
+        IngestKey(CaseId caseId, EventKey dedup, EventKey event, long position) {
+            this.caseId = caseId;
+            this.dedup = dedup;
+            this.event = event;
+            this.position = position;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof IngestKey)) {
+                return false;
+            }
+            IngestKey k = (IngestKey) o;
+            return position == k.position && caseId.equals(k.caseId) && dedup.equals(k.dedup) && event.equals(k.event);
+        }
+
+        @Override
+        public int hashCode() {
+            return caseId.hashCode();
+        }
+    }
+
+    static final class IngestOrder implements Comparator<IngestKey>, Serializable {
+
+        static final long serialVersionUID = 1L;
+
+        @Override
+        public int compare(IngestKey k1, IngestKey k2) {
+            return compareKeys(k1, k2);
+        }
+
+        static int compareKeys(IngestKey k1, IngestKey k2) {
+            int c = CaseId.compare(k1.caseId, k2.caseId);
+            if (c == 0) {
+                c = k1.dedup.compareTo(k2.dedup);
+            }
+            if (c == 0) {
+                c = k1.event.compareTo(k2.event);
+            }
+            return c != 0 ? c : Long.compare(k1.position, k2.position);
+        }
+    }
+
+    /**
+     * Reads sorted events one case at a time: drops the events with the dedup key of the event
+     * before them, and orders the others by event key then read position.
+     */
+    static final class CaseScan implements Iterator<Tuple2<CaseId, Event>> {
+
+        private final Iterator<Tuple2<IngestKey, Event>> sorted;
+        private final IngestReport report;
+        private final List<Tuple2<IngestKey, Event>> caseEvents = new ArrayList<>();
+        private Tuple2<IngestKey, Event> next;
+        private int position = 0;
+
+        CaseScan(Iterator<Tuple2<IngestKey, Event>> sorted, IngestReport report) {
+            this.sorted = sorted;
+            this.report = report;
+            this.next = sorted.hasNext() ? sorted.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (position == caseEvents.size()) {
+                readCase();
+            }
+            return position < caseEvents.size();
+        }
+
+        @Override
+        public Tuple2<CaseId, Event> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Tuple2<IngestKey, Event> x = caseEvents.get(position++);
+            return new Tuple2<>(x._1().caseId, x._2());
+        }
+
+        private void readCase() {
+            caseEvents.clear();
+            position = 0;
+            if (next == null) {
+                return;
+            }
+            CaseId caseId = next._1().caseId;
+            EventKey previous = null;
+            while (next != null && next._1().caseId.equals(caseId)) {
+                report.events++;
+                if (next._1().dedup.equals(previous)) {
+                    report.duplicates++;
+                } else {
+                    caseEvents.add(next);
+                    previous = next._1().dedup;
+                }
+                next = sorted.hasNext() ? sorted.next() : null;
+            }
+            caseEvents.sort((x, y) -> {
+                int c = x._1().event.compareTo(y._1().event);
+                return c != 0 ? c : Long.compare(x._1().position, y._1().position);
+            });
+            long lastRead = Long.MIN_VALUE;
+            for (Tuple2<IngestKey, Event> x : caseEvents) {
+                if (x._1().position < lastRead) {
+                    report.reordered++;
+                }
+                lastRead = Math.max(lastRead, x._1().position);
+            }
+        }
+    }
+}
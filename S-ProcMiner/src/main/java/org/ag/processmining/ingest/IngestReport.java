@@ -0,0 +1,55 @@
+package org.ag.processmining.ingest;
+
+import java.io.Serializable;
+
+/**
+ * Counts of an ingest: events read, duplicates dropped, events put back in order, and, in
+ * streaming, events dropped because they arrived after their place in the order was released.
+ */
+public class IngestReport implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    long events;
+    long duplicates;
+    long reordered;
+    long late;
+
+    public long getEvents() {
+        return events;
+    }
+
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * @return the number of events read after an event of their case that follows them
+     */
+    public long getReordered() {
+        return reordered;
+    }
+
+    public long getLate() {
+        return late;
+    }
+
+    /**
+     * @return the number of events dropped, duplicate or late
+     */
+    public long getDropped() {
+        return duplicates + late;
+    }
+
+    public IngestReport merge(IngestReport r) {
+        events += r.events;
+        duplicates += r.duplicates;
+        reordered += r.reordered;
+        late += r.late;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("events=%d duplicates=%d reordered=%d late=%d", events, duplicates, reordered, late);
+    }
+}
@@ -0,0 +1,123 @@
+package org.ag.processmining.ingest;
+
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Event;
+import org.ag.processmining.log.model.EventKey;
+import scala.Tuple2;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Bounded buffer putting a stream of events back in time order and dropping its duplicates.
+ * <p>
+ * Events are held in {@link EventKey} order until the watermark, the latest event time seen minus
+ * the allowed lateness, passes them; then they are released, in order. When the buffer is full,
+ * the first events are released early. An event older than the last released one has lost its
+ * place and is dropped as late. Duplicates, on the dedup key of an {@link EventDeduplicator} and
+ * the case, are detected among the buffered events and the events released within the allowed
+ * lateness before the last one.
+ * <p>
+ * Not thread safe: owned by the thread consuming the stream.
+ */
+public class ReorderBuffer {
+
+    private final long allowedLateness;
+    private final int capacity;
+    private final EventDeduplicator deduplicator;
+    private final Consumer<Event> downstream;
+    private final IngestReport report = new IngestReport();
+    private final PriorityQueue<Tuple2<EventKey, Event>> buffer = new PriorityQueue<>(
+            (x, y) -> x._1().compareTo(y._1()));
+    /*
+    Dedup keys of the buffered and recently released events, and the released ones in order
+     */
+    private final Set<Tuple2<CaseId, EventKey>> seen = new HashSet<>();
+    private final ArrayDeque<Tuple2<EventKey, Tuple2<CaseId, EventKey>>> released = new ArrayDeque<>();
+    /*
+    Latest event time of the cases with buffered events, to count the events reordered in their case
+     */
+    private final Map<CaseId, Long> caseMaxTime = new HashMap<>();
+    private long maxEventTime = Long.MIN_VALUE;
+    private long lastReleased = Long.MIN_VALUE;
+
+    /**
+     * @param allowedLateness time (ms) an event is held for the events that may arrive before it
+     * @param capacity        number of events held at most
+     * @param downstream      receives the events released, in order
+     */
+    public ReorderBuffer(long allowedLateness, int capacity, EventDeduplicator deduplicator, Consumer<Event> downstream) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.allowedLateness = allowedLateness;
+        this.capacity = capacity;
+        this.deduplicator = deduplicator;
+        this.downstream = downstream;
+    }
+
+    public void offer(Event e) {
+        report.events++;
+        EventKey key = EventKey.of(e);
+        long time = key.getTime();
+        if (time < lastReleased) {
+            report.late++;
+            return;
+        }
+        Tuple2<CaseId, EventKey> dedupKey = new Tuple2<>(e.getCaseId(), deduplicator.key(e));
+        if (!seen.add(dedupKey)) {
+            report.duplicates++;
+            return;
+        }
+        Long caseMax = caseMaxTime.merge(e.getCaseId(), time, Math::max);
+        if (time < caseMax) {
+            report.reordered++;
+        }
+        maxEventTime = Math.max(maxEventTime, time);
+        buffer.add(new Tuple2<>(key, e));
+        long watermark = watermark();
+        while (!buffer.isEmpty() && (buffer.peek()._1().getTime() <= watermark || buffer.size() > capacity)) {
+            release(buffer.poll());
+        }
+    }
+
+    /**
+     * Releases all the buffered events, at the end of the stream.
+     */
+    public void flush() {
+        while (!buffer.isEmpty()) {
+            release(buffer.poll());
+        }
+    }
+
+    private void release(Tuple2<EventKey, Event> x) {
+        lastReleased = x._1().getTime();
+        // once the latest event of a case is released, its next events are late or follow it
+        caseMaxTime.remove(x._2().getCaseId(), lastReleased);
+        released.add(new Tuple2<>(x._1(), new Tuple2<>(x._2().getCaseId(), deduplicator.key(x._2()))));
+        // events without time are at Long.MIN_VALUE, where subtracting the lateness would overflow
+        long horizon = lastReleased < Long.MIN_VALUE + allowedLateness ? Long.MIN_VALUE : lastReleased - allowedLateness;
+        while (released.size() > capacity || !released.isEmpty() && released.peek()._1().getTime() < horizon) {
+            seen.remove(released.poll()._2());
+        }
+        downstream.accept(x._2());
+    }
+
+    /**
+     * @return the latest event time seen minus the allowed lateness, Long.MIN_VALUE before any event
+     */
+    public long watermark() {
+        return maxEventTime == Long.MIN_VALUE ? Long.MIN_VALUE : maxEventTime - allowedLateness;
+    }
+
+    public int size() {
+        return buffer.size();
+    }
+
+    /**
+     * @return the counts of the events offered so far
+     */
+    public IngestReport getReport() {
+        return report;
+    }
+}
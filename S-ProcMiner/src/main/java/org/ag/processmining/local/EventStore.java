@@ -0,0 +1,365 @@
+package org.ag.processmining.local;
+
+import org.ag.processmining.log.model.ActivityClass;
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Dictionary;
+import org.ag.processmining.log.model.EncodedTrace;
+import org.ag.processmining.log.model.EventSchema;
+import org.ag.processmining.log.model.Originator;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Off-heap columnar store of the events of a log, in a memory-mapped file.
+ * <p>
+ * Events are grouped by case, and ordered by start time within a case; cases are ordered by the
+ * start of their first event. Fixed-width columns hold, per event, the case index, the activity
+ * and originator ids and the start and end epoch milliseconds, and per case the index of its
+ * first event. A trace is thus a slice of the columns, read in place by {@link #trace(int)}
+ * without any object per event. Activity and originator ids are the ids of the dictionaries of
+ * the store, sorted in natural order, so statistics built on {@link #activities()} are canonical.
+ * <p>
+ * The store is written once from CSV by {@link EventStoreWriter} and reopened by mapping the
+ * file, which takes no time whatever its size. Columns larger than 1 GB are mapped in several
+ * segments.
+ */
+public class EventStore implements Closeable {
+
+    static final int MAGIC = 0x45565354; // "EVST"
+    static final int VERSION = 1;
+    /*
+    Header: magic, version, number of cases and events, offsets of the sections
+     */
+    static final int HEADER_SIZE = 128;
+    static final int CASE_OFFSETS = 0, CASE_INDEX = 1, ACTIVITY = 2, ORIGINATOR = 3, START = 4, END = 5,
+            CASE_KEY_OFFSETS = 6, CASE_KEYS = 7, METADATA = 8, SECTIONS = 9;
+    /*
+    Separator of the case id field values in a case key
+     */
+    static final char KEY_SEPARATOR = '\u001f';
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int cases;
+    private final long events;
+    private final Region caseOffsets;
+    private final Region caseIndex;
+    private final Region activity;
+    private final Region originator;
+    private final Region start;
+    private final Region end;
+    private final Region caseKeyOffsets;
+    private final Region caseKeys;
+    private final List<String> caseIdFields;
+    private final Dictionary<ActivityClass> activities;
+    private final Dictionary<Originator> originators;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    private EventStore(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+        }
+        header.flip();
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+            throw new IOException("Not an event store: " + path);
+        }
+        if (header.getInt() != VERSION) {
+            throw new IOException("Unsupported event store version: " + path);
+        }
+        cases = (int) header.getLong();
+        events = header.getLong();
+        long[] offsets = new long[SECTIONS + 1];
+        for (int s = 0; s <= SECTIONS; s++) {
+            offsets[s] = header.getLong();
+        }
+        caseOffsets = map(offsets, CASE_OFFSETS);
+        caseIndex = map(offsets, CASE_INDEX);
+        activity = map(offsets, ACTIVITY);
+        originator = map(offsets, ORIGINATOR);
+        start = map(offsets, START);
+        end = map(offsets, END);
+        caseKeyOffsets = map(offsets, CASE_KEY_OFFSETS);
+        caseKeys = map(offsets, CASE_KEYS);
+
+        channel.position(offsets[METADATA]);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        List<String> fields = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            fields.add(in.readUTF());
+        }
+        caseIdFields = fields;
+        List<ActivityClass> a = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            a.add(new ActivityClass(in.readUTF()));
+        }
+        activities = Dictionary.of(a);
+        List<Originator> o = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            String name = in.readUTF();
+            o.add(new Originator(name, in.readBoolean() ? in.readUTF() : null));
+        }
+        originators = Dictionary.of(o);
+    }
+
+    private Region map(long[] offsets, int section) throws IOException {
+        return new Region(channel, offsets[section], offsets[section + 1] - offsets[section], MapMode.READ_ONLY);
+    }
+
+    public static EventStore open(Path path) throws IOException {
+        return new EventStore(path);
+    }
+
+    /**
+     * Opens the store if it exists and is more recent than the log, otherwise builds it from the
+     * log first.
+     */
+    public static EventStore openOrBuild(String log, String[] header, EventSchema schema, Path path) throws IOException {
+        if (Files.exists(path)
+                && Files.getLastModifiedTime(path).compareTo(Files.getLastModifiedTime(Paths.get(log))) >= 0) {
+            return open(path);
+        }
+        new EventStoreWriter().write(log, header, schema, path);
+        return open(path);
+    }
+
+    public EventStore parallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int numCases() {
+        return cases;
+    }
+
+    public long numEvents() {
+        return events;
+    }
+
+    public Dictionary<ActivityClass> activities() {
+        return activities;
+    }
+
+    public Dictionary<Originator> originators() {
+        return originators;
+    }
+
+    /**
+     * @return the index of the first event of the case
+     */
+    public long firstEvent(int c) {
+        return caseOffsets.getLong(8L * c);
+    }
+
+    public int traceSize(int c) {
+        return (int) (caseOffsets.getLong(8L * (c + 1)) - caseOffsets.getLong(8L * c));
+    }
+
+    /**
+     * Event level columns, for scans that do not need the traces.
+     */
+    public int caseOf(long event) {
+        return caseIndex.getInt(4 * event);
+    }
+
+    public int activity(long event) {
+        return activity.getInt(4 * event);
+    }
+
+    public int originator(long event) {
+        return originator.getInt(4 * event);
+    }
+
+    public long start(long event) {
+        return start.getLong(8 * event);
+    }
+
+    public long end(long event) {
+        return end.getLong(8 * event);
+    }
+
+    /**
+     * @return a view of the events of the case, read from the mapped columns
+     */
+    public EncodedTrace trace(int c) {
+        return new StoredTrace(this, firstEvent(c), traceSize(c));
+    }
+
+    public CaseId caseId(int c) {
+        long from = caseKeyOffsets.getLong(8L * c);
+        byte[] bytes = new byte[(int) (caseKeyOffsets.getLong(8L * (c + 1)) - from)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = caseKeys.get(from + i);
+        }
+        String[] values = new String(bytes, StandardCharsets.UTF_8).split(String.valueOf(KEY_SEPARATOR), -1);
+        CaseId id = new CaseId();
+        for (int f = 0; f < caseIdFields.size(); f++) {
+            id.addField(caseIdFields.get(f), values[f]);
+        }
+        return id;
+    }
+
+    /**
+     * Folds the traces of the store as {@link LocalLog#aggregate} does: ranges of cases are folded
+     * in parallel, each into its own copy of the zero value, and the results are combined.
+     */
+    public <U extends Serializable> U aggregate(U zero, BiFunction<U, EncodedTrace, U> seq, BinaryOperator<U> comb) {
+        return aggregateCases(zero, (u, c, t) -> seq.apply(u, t), comb);
+    }
+
+    /**
+     * As {@link #aggregate}, with the index of every case given to the fold.
+     */
+    public <U extends Serializable> U aggregateCases(U zero, CaseFolder<U> seq, BinaryOperator<U> comb) {
+        byte[] serializedZero = LocalLog.serialize(zero);
+        int ranges = Math.max(1, Math.min(cases, 4 * parallelism));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> IntStream.range(0, ranges).parallel()
+                    .mapToObj(r -> {
+                        U u = LocalLog.deserialize(serializedZero);
+                        int to = (int) ((long) cases * (r + 1) / ranges);
+                        for (int c = (int) ((long) cases * r / ranges); c < to; c++) {
+                            u = seq.apply(u, c, trace(c));
+                        }
+                        return u;
+                    })
+                    .reduce(comb)
+                    .orElse(zero)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @FunctionalInterface
+    public interface CaseFolder<U> {
+        U apply(U u, int c, EncodedTrace trace);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Trace of the store: a slice of its columns.
+     */
+    private static class StoredTrace extends EncodedTrace {
+
+        static final long serialVersionUID = 1L;
+        private final transient EventStore store;
+        private final long first;
+        private final int size;
+
+        StoredTrace(EventStore store, long first, int size) {
+            this.store = store;
+            this.first = first;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int activity(int i) {
+            return store.activity(first + i);
+        }
+
+        @Override
+        public int originator(int i) {
+            return store.originator(first + i);
+        }
+
+        @Override
+        public long start(int i) {
+            return store.start(first + i);
+        }
+
+        @Override
+        public long end(int i) {
+            return store.end(first + i);
+        }
+    }
+
+    /**
+     * Region of the file mapped in segments of at most 1 GB. Values are little endian and aligned
+     * on their size, so that no value spans two segments.
+     */
+    static class Region {
+        private static final int SHIFT = 30;
+        private static final long MASK = (1L << SHIFT) - 1;
+        private final MappedByteBuffer[] segments;
+
+        Region(FileChannel channel, long offset, long length, MapMode mode) throws IOException {
+            segments = new MappedByteBuffer[(int) ((length + MASK) >>> SHIFT)];
+            for (int s = 0; s < segments.length; s++) {
+                long from = (long) s << SHIFT;
+                segments[s] = channel.map(mode, offset + from, Math.min(1L << SHIFT, length - from));
+                segments[s].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        byte get(long index) {
+            return segments[(int) (index >>> SHIFT)].get((int) (index & MASK));
+        }
+
+        int getInt(long index) {
+            return segments[(int) (index >>> SHIFT)].getInt((int) (index & MASK));
+        }
+
+        long getLong(long index) {
+            return segments[(int) (index >>> SHIFT)].getLong((int) (index & MASK));
+        }
+
+        void put(long index, byte value) {
+            segments[(int) (index >>> SHIFT)].put((int) (index & MASK), value);
+        }
+
+        void putInt(long index, int value) {
+            segments[(int) (index >>> SHIFT)].putInt((int) (index & MASK), value);
+        }
+
+        void putLong(long index, long value) {
+            segments[(int) (index >>> SHIFT)].putLong((int) (index & MASK), value);
+        }
+
+        void force() {
+            for (MappedByteBuffer b : segments) {
+                b.force();
+            }
+        }
+    }
+}
@@ -0,0 +1,443 @@
+package org.ag.processmining.local;
+
+import org.ag.processmining.local.EventStore.Region;
+import org.ag.processmining.local.LocalEngine.Chunk;
+import org.ag.processmining.log.model.ActivityClass;
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Dictionary;
+import org.ag.processmining.log.model.EncodedTrace;
+import org.ag.processmining.log.model.Event;
+import org.ag.processmining.log.model.EventSchema;
+import org.ag.processmining.log.model.Originator;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Writes an {@link EventStore} from a CSV log (a file or a directory of files).
+ * <p>
+ * The chunks of the log are parsed in parallel as by the {@link LocalEngine}, each into a
+ * temporary file of fixed-width rows, with provisional ids assigned to cases, activities and
+ * originators as they are discovered. The rows are then counted by case, and scattered to the
+ * position of their case in the mapped columns of the store; finally the events of every case
+ * are sorted by time. The store is written next to its final path and moved there once
+ * complete, so a reader never sees a partial store.
+ */
+public class EventStoreWriter {
+
+    /*
+    Temporary row: case, activity, originator, start, end
+     */
+    private static final int ROW = 4 + 4 + 4 + 8 + 8;
+    private static final int ROWS_PER_BUFFER = 4096;
+
+    private final LocalEngine engine = new LocalEngine();
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    public EventStoreWriter parallelism(int parallelism) {
+        this.parallelism = parallelism;
+        engine.parallelism(parallelism);
+        return this;
+    }
+
+    public EventStoreWriter chunkSize(long chunkSize) {
+        engine.chunkSize(chunkSize);
+        return this;
+    }
+
+    public EventStoreWriter delimiter(char delimiter) {
+        engine.delimiter(delimiter);
+        return this;
+    }
+
+    public void write(String log, String[] header, EventSchema schema, Path path) throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        Path rows = Files.createTempDirectory(dir, path.getFileName() + ".rows");
+        Path tmp = dir.resolve(path.getFileName() + ".tmp");
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Chunk> chunks = engine.chunks(log);
+            List<String> fields = new ArrayList<>(new TreeSet<>(schema.getCaseIdFields()));
+            Ids<String> cases = new Ids<>();
+            Map<String, String> caseNames = new ConcurrentHashMap<>();
+            Ids<ActivityClass> activities = new Ids<>();
+            Ids<Originator> originators = new Ids<>();
+            List<Path> files = IntStream.range(0, chunks.size())
+                    .mapToObj(i -> rows.resolve("chunk-" + i))
+                    .collect(Collectors.toList());
+            run(pool, () -> IntStream.range(0, chunks.size()).parallel().forEach(i -> {
+                try {
+                    parse(chunks.get(i), header, schema, fields, cases, caseNames, activities, originators, files.get(i));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+
+            // events and first start by case
+            int numCases = cases.size();
+            AtomicIntegerArray counts = new AtomicIntegerArray(numCases);
+            AtomicLongArray firstStarts = new AtomicLongArray(numCases);
+            for (int c = 0; c < numCases; c++) {
+                firstStarts.set(c, Long.MAX_VALUE);
+            }
+            run(pool, () -> files.parallelStream().forEach(f -> scan(f, buffer -> {
+                int c = buffer.getInt();
+                buffer.position(buffer.position() + 8);
+                long start = buffer.getLong();
+                buffer.getLong();
+                counts.incrementAndGet(c);
+                firstStarts.accumulateAndGet(c, start, Math::min);
+            })));
+
+            // canonical ids: dictionaries in natural order, cases by first start then key
+            String[] keys = cases.values(new String[0]);
+            for (int c = 0; c < numCases; c++) {
+                keys[c] = caseNames.get(keys[c]);
+            }
+            Dictionary<ActivityClass> activityDictionary = Dictionary.of(activities.keySet());
+            int[] activityIds = remap(activities.values(new ActivityClass[0]), activityDictionary);
+            Dictionary<Originator> originatorDictionary = Dictionary.of(originators.keySet());
+            int[] originatorIds = remap(originators.values(new Originator[0]), originatorDictionary);
+            Integer[] order = new Integer[numCases];
+            for (int c = 0; c < numCases; c++) {
+                order[c] = c;
+            }
+            Arrays.sort(order, Comparator.<Integer>comparingLong(firstStarts::get).thenComparing(c -> keys[c]));
+            int[] caseIds = new int[numCases];
+            long[] offsets = new long[numCases + 1];
+            byte[][] caseKeys = new byte[numCases][];
+            long[] keyOffsets = new long[numCases + 1];
+            for (int c = 0; c < numCases; c++) {
+                caseIds[order[c]] = c;
+                offsets[c + 1] = offsets[c] + counts.get(order[c]);
+                caseKeys[c] = keys[order[c]].getBytes(StandardCharsets.UTF_8);
+                keyOffsets[c + 1] = keyOffsets[c] + caseKeys[c].length;
+            }
+            long numEvents = offsets[numCases];
+            byte[] metadata = metadata(fields, activityDictionary, originatorDictionary);
+
+            long[] sections = new long[EventStore.SECTIONS + 1];
+            sections[EventStore.CASE_OFFSETS] = EventStore.HEADER_SIZE;
+            sections[EventStore.CASE_INDEX] = align(sections[EventStore.CASE_OFFSETS] + 8L * (numCases + 1));
+            sections[EventStore.ACTIVITY] = align(sections[EventStore.CASE_INDEX] + 4 * numEvents);
+            sections[EventStore.ORIGINATOR] = align(sections[EventStore.ACTIVITY] + 4 * numEvents);
+            sections[EventStore.START] = align(sections[EventStore.ORIGINATOR] + 4 * numEvents);
+            sections[EventStore.END] = align(sections[EventStore.START] + 8 * numEvents);
+            sections[EventStore.CASE_KEY_OFFSETS] = align(sections[EventStore.END] + 8 * numEvents);
+            sections[EventStore.CASE_KEYS] = align(sections[EventStore.CASE_KEY_OFFSETS] + 8L * (numCases + 1));
+            sections[EventStore.METADATA] = align(sections[EventStore.CASE_KEYS] + keyOffsets[numCases]);
+            sections[EventStore.SECTIONS] = sections[EventStore.METADATA] + metadata.length;
+
+            Files.deleteIfExists(tmp);
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                ByteBuffer head = ByteBuffer.allocate(EventStore.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                head.putInt(EventStore.MAGIC).putInt(EventStore.VERSION).putLong(numCases).putLong(numEvents);
+                for (long s : sections) {
+                    head.putLong(s);
+                }
+                head.rewind();
+                writeFully(channel, head, 0);
+                writeFully(channel, ByteBuffer.wrap(metadata), sections[EventStore.METADATA]);
+
+                Region caseOffsets = map(channel, sections, EventStore.CASE_OFFSETS);
+                Region keyOffsetColumn = map(channel, sections, EventStore.CASE_KEY_OFFSETS);
+                Region keyColumn = map(channel, sections, EventStore.CASE_KEYS);
+                for (int c = 0; c <= numCases; c++) {
+                    caseOffsets.putLong(8L * c, offsets[c]);
+                    keyOffsetColumn.putLong(8L * c, keyOffsets[c]);
+                }
+                for (int c = 0; c < numCases; c++) {
+                    for (int i = 0; i < caseKeys[c].length; i++) {
+                        keyColumn.put(keyOffsets[c] + i, caseKeys[c][i]);
+                    }
+                }
+
+                // rows go to the next free position of their case
+                Region caseIndex = map(channel, sections, EventStore.CASE_INDEX);
+                Region activity = map(channel, sections, EventStore.ACTIVITY);
+                Region originator = map(channel, sections, EventStore.ORIGINATOR);
+                Region start = map(channel, sections, EventStore.START);
+                Region end = map(channel, sections, EventStore.END);
+                AtomicLongArray cursors = new AtomicLongArray(Arrays.copyOf(offsets, numCases));
+                run(pool, () -> files.parallelStream().forEach(f -> scan(f, buffer -> {
+                    int c = caseIds[buffer.getInt()];
+                    int a = activityIds[buffer.getInt()];
+                    int o = buffer.getInt();
+                    long e = cursors.getAndIncrement(c);
+                    caseIndex.putInt(4 * e, c);
+                    activity.putInt(4 * e, a);
+                    originator.putInt(4 * e, o == EncodedTrace.NO_ID ? EncodedTrace.NO_ID : originatorIds[o]);
+                    start.putLong(8 * e, buffer.getLong());
+                    end.putLong(8 * e, buffer.getLong());
+                })));
+
+                run(pool, () -> IntStream.range(0, numCases).parallel()
+                        .forEach(c -> sortCase(offsets[c], (int) (offsets[c + 1] - offsets[c]), activity, originator, start, end)));
+
+                for (Region r : new Region[]{caseOffsets, caseIndex, activity, originator, start, end, keyOffsetColumn, keyColumn}) {
+                    r.force();
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            pool.shutdown();
+            for (Path f : listFiles(rows)) {
+                Files.deleteIfExists(f);
+            }
+            Files.deleteIfExists(rows);
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Parses a chunk of the log into a file of rows. Cases are identified by their key ignoring
+     * case, as {@link CaseId#equals(Object)} does; a case is stored under the smallest of its keys.
+     */
+    private void parse(Chunk chunk, String[] header, EventSchema schema, List<String> fields, Ids<String> cases,
+                       Map<String, String> caseNames, Ids<ActivityClass> activities, Ids<Originator> originators,
+                       Path file) throws IOException {
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(ROW * ROWS_PER_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+            StringBuilder key = new StringBuilder();
+            LocalEngine.forEachLine(chunk, line -> {
+                Event e = engine.parseEvent(line, header, schema);
+                key.setLength(0);
+                for (String f : fields) {
+                    if (key.length() > 0) {
+                        key.append(EventStore.KEY_SEPARATOR);
+                    }
+                    key.append(e.getCaseId().getField(f));
+                }
+                String name = key.toString();
+                String folded = foldCase(name);
+                caseNames.merge(folded, name, (n1, n2) -> n1.compareTo(n2) <= 0 ? n1 : n2);
+                Originator o = e.getOriginator();
+                buffer.putInt(cases.id(folded))
+                        .putInt(activities.id(e.getActivityClass()))
+                        .putInt(o == null || o.toString() == null ? EncodedTrace.NO_ID : originators.id(o))
+                        .putLong(e.getStart() == null ? EncodedTrace.NO_TIME : e.getStart().getMillis())
+                        .putLong(e.getEnd() == null ? EncodedTrace.NO_TIME : e.getEnd().getMillis());
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    buffer.clear();
+                }
+            });
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Calls the consumer with a buffer positioned at every row of the file.
+     */
+    private static void scan(Path file, RowConsumer consumer) {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(ROW * ROWS_PER_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+            while (in.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.remaining() >= ROW) {
+                    int next = buffer.position() + ROW;
+                    consumer.row(buffer);
+                    buffer.position(next);
+                }
+                buffer.compact();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sorts the events of a case by start, end, activity and originator, with an insertion sort:
+     * traces are short and mostly in order already.
+     */
+    private static void sortCase(long first, int size, Region activity, Region originator, Region start, Region end) {
+        for (int i = 1; i < size; i++) {
+            long e = first + i;
+            int a = activity.getInt(4 * e);
+            int o = originator.getInt(4 * e);
+            long s = start.getLong(8 * e);
+            long t = end.getLong(8 * e);
+            long j = e - 1;
+            while (j >= first && compare(s, t, a, o, start.getLong(8 * j), end.getLong(8 * j),
+                    activity.getInt(4 * j), originator.getInt(4 * j)) < 0) {
+                activity.putInt(4 * (j + 1), activity.getInt(4 * j));
+                originator.putInt(4 * (j + 1), originator.getInt(4 * j));
+                start.putLong(8 * (j + 1), start.getLong(8 * j));
+                end.putLong(8 * (j + 1), end.getLong(8 * j));
+                j--;
+            }
+            if (j + 1 != e) {
+                activity.putInt(4 * (j + 1), a);
+                originator.putInt(4 * (j + 1), o);
+                start.putLong(8 * (j + 1), s);
+                end.putLong(8 * (j + 1), t);
+            }
+        }
+    }
+
+    private static int compare(long s1, long t1, int a1, int o1, long s2, long t2, int a2, int o2) {
+        int c = Long.compare(s1, s2);
+        if (c == 0) {
+            c = Long.compare(t1, t2);
+        }
+        if (c == 0) {
+            c = Integer.compare(a1, a2);
+        }
+        return c != 0 ? c : Integer.compare(o1, o2);
+    }
+
+    private static <T> int[] remap(T[] values, Dictionary<T> dictionary) {
+        int[] ids = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ids[i] = dictionary.id(values[i]);
+        }
+        return ids;
+    }
+
+    private static byte[] metadata(List<String> fields, Dictionary<ActivityClass> activities,
+                                   Dictionary<Originator> originators) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(fields.size());
+        for (String f : fields) {
+            out.writeUTF(f);
+        }
+        out.writeInt(activities.size());
+        for (ActivityClass a : activities.values()) {
+            out.writeUTF(a.getName());
+        }
+        out.writeInt(originators.size());
+        for (Originator o : originators.values()) {
+            out.writeUTF(o.toString());
+            out.writeBoolean(o.getOriginatorRole() != null);
+            if (o.getOriginatorRole() != null) {
+                out.writeUTF(o.getOriginatorRole());
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Region map(FileChannel channel, long[] sections, int section) throws IOException {
+        return new Region(channel, sections[section], sections[section + 1] - sections[section], MapMode.READ_WRITE);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private static List<Path> listFiles(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return Collections.emptyList();
+        }
+        try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @return the key with every character folded as {@link CaseId#hashCode()} does
+     */
+    private static String foldCase(String key) {
+        char[] chars = key.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+
+    private static void run(ForkJoinPool pool, Runnable task) throws IOException {
+        try {
+            pool.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.out.println("Usage: EventStoreWriter <log> <header fields, comma separated> <event schema> <store>");
+            return;
+        }
+        long time = System.nanoTime();
+        new EventStoreWriter().write(args[0], args[1].split(","), new EventSchema(args[2]), Paths.get(args[3]));
+        try (EventStore store = EventStore.open(Paths.get(args[3]))) {
+            System.out.printf("%d cases, %d events, %d activities, %d originators in %.2f s%n", store.numCases(),
+                    store.numEvents(), store.activities().size(), store.originators().size(),
+                    (System.nanoTime() - time) / 1e9);
+        }
+    }
+
+    private interface RowConsumer {
+        void row(ByteBuffer buffer);
+    }
+
+    /**
+     * Ids assigned in the order of discovery, from any thread.
+     */
+    private static class Ids<T> {
+        private final Map<T, Integer> ids = new ConcurrentHashMap<>();
+        private final AtomicInteger next = new AtomicInteger();
+
+        int id(T value) {
+            Integer id = ids.get(value);
+            return id != null ? id : ids.computeIfAbsent(value, v -> next.getAndIncrement());
+        }
+
+        int size() {
+            return next.get();
+        }
+
+        Set<T> keySet() {
+            return ids.keySet();
+        }
+
+        T[] values(T[] array) {
+            T[] values = Arrays.copyOf(array, ids.size());
+            for (Map.Entry<T, Integer> e : ids.entrySet()) {
+                values[e.getValue()] = e.getKey();
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,472 @@
+package org.ag.processmining.local;
+
+import org.ag.processmining.log.model.ActivityClass;
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Event;
+import org.ag.processmining.log.model.EventKey;
+import org.ag.processmining.log.model.Originator;
+import org.ag.processmining.log.model.Trace;
+import org.joda.time.DateTime;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Builds traces with bounded memory, for logs whose traces do not fit in memory.
+ * <p>
+ * {@link Writer}s buffer the events they are given up to their share of the memory budget, then
+ * sort them by case partition, case and {@link EventKey} and write them to a run file on local
+ * disk, one section per case partition. Events are written compactly: times as longs, activity,
+ * resource, role and attribute names as ids of a dictionary shared by the writers, and other
+ * strings as UTF-8. {@link #traces(int)} then merges the sections of a partition over all the
+ * runs and assembles the traces as they come out of the merge, one at a time: memory holds the
+ * trace being assembled and a read buffer per run. A partition can be read any number of times;
+ * the runs are deleted on {@link #close()}.
+ */
+public class ExternalTraceSorter implements Closeable {
+
+    /*
+    Estimated heap size of a parsed event, on top of its strings
+     */
+    private static final int EVENT_OVERHEAD = 256;
+    private static final int READ_BUFFER = 1 << 14;
+    private static final int HAS_CASE = 1;
+    private static final int HAS_ACTIVITY = 2;
+    private static final int HAS_ORIGINATOR = 4;
+    private static final int HAS_DATA = 8;
+
+    private final Path directory;
+    private final int partitions;
+    private final List<Run> runs = new ArrayList<>();
+    /*
+    Dictionary of the names, ids from 1 (0 is null)
+     */
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private volatile String[] namesById;
+
+    /**
+     * @param directory  directory of the run files, deleted on close
+     * @param partitions number of case partitions, as the partitions of a {@link LocalLog}
+     */
+    public ExternalTraceSorter(Path directory, int partitions) {
+        this.directory = directory;
+        this.partitions = partitions;
+        names.add(null);
+    }
+
+    public int numPartitions() {
+        return partitions;
+    }
+
+    /**
+     * @return the partition of the case, as the {@link LocalEngine} partitions cases in memory
+     */
+    public int partition(CaseId caseId) {
+        return (caseId.hashCode() & Integer.MAX_VALUE) % partitions;
+    }
+
+    /**
+     * @param memoryBudget estimated heap size of the events buffered before a run is written
+     */
+    public Writer writer(long memoryBudget) {
+        return new Writer(memoryBudget);
+    }
+
+    /**
+     * @return the number of runs written
+     */
+    public synchronized int numRuns() {
+        return runs.size();
+    }
+
+    /**
+     * @return the total size of the runs, in bytes
+     */
+    public synchronized long spilledBytes() {
+        long size = 0;
+        for (Run r : runs) {
+            size += r.size;
+        }
+        return size;
+    }
+
+    /**
+     * @return the traces of the partition, merged from the runs as they are read
+     */
+    public Iterator<Trace> traces(int partition) {
+        List<Run> toMerge;
+        synchronized (this) {
+            toMerge = new ArrayList<>(runs);
+            if (namesById == null || namesById.length != names.size()) {
+                namesById = names.toArray(new String[0]);
+            }
+        }
+        String[] dictionary = namesById;
+        PriorityQueue<RunReader> heads = new PriorityQueue<>(Math.max(1, toMerge.size()));
+        for (Run run : toMerge) {
+            if (run.counts[partition] > 0) {
+                RunReader r = new RunReader(run, partition, dictionary);
+                r.advance();
+                heads.add(r);
+            }
+        }
+        return new Iterator<Trace>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public Trace next() {
+                if (heads.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                CaseId caseId = heads.peek().event.getCaseId();
+                Trace trace = new Trace(caseId);
+                while (!heads.isEmpty() && heads.peek().event.getCaseId().equals(caseId)) {
+                    RunReader r = heads.poll();
+                    trace.addEvent(r.event);
+                    if (r.advance()) {
+                        heads.add(r);
+                    }
+                }
+                return trace;
+            }
+        };
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Run r : runs) {
+            try {
+                Files.deleteIfExists(r.file);
+            } catch (IOException e) {
+                r.file.toFile().deleteOnExit();
+            }
+        }
+        runs.clear();
+        try {
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            directory.toFile().deleteOnExit();
+        }
+    }
+
+    private synchronized int id(String name) {
+        if (name == null) {
+            return 0;
+        }
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = names.size();
+            ids.put(name, id);
+            names.add(name);
+        }
+        return id;
+    }
+
+    private synchronized Path newRun() throws IOException {
+        return Files.createTempFile(directory, "run-", ".bin");
+    }
+
+    private synchronized void addRun(Run run) {
+        runs.add(run);
+    }
+
+    /**
+     * @return the estimated heap size of a parsed event
+     */
+    static long estimate(Event e) {
+        long chars = 0;
+        if (e.getCaseId() != null && e.getCaseId().getFields() != null) {
+            for (String v : e.getCaseId().getFields().values()) {
+                chars += v == null ? 0 : v.length();
+            }
+        }
+        if (e.getData() != null) {
+            for (Map.Entry<String, String> d : e.getData().entrySet()) {
+                chars += d.getValue() == null ? 0 : d.getValue().length();
+            }
+            chars += 16 * e.getData().size();
+        }
+        return EVENT_OVERHEAD + 2 * chars;
+    }
+
+    /**
+     * Buffers events and writes them as sorted runs. One writer per thread; writers of the same
+     * sorter can write concurrently.
+     */
+    public class Writer implements Closeable {
+
+        private final long memoryBudget;
+        private final List<Entry> buffer = new ArrayList<>();
+        private final Map<String, Integer> localIds = new HashMap<>();
+        private long buffered = 0;
+
+        private Writer(long memoryBudget) {
+            this.memoryBudget = memoryBudget;
+        }
+
+        public void add(Event e) {
+            buffer.add(new Entry(partition(e.getCaseId()), e));
+            buffered += estimate(e);
+            if (buffered >= memoryBudget) {
+                spill();
+            }
+        }
+
+        /**
+         * Writes the buffered events as a run.
+         */
+        @Override
+        public void close() {
+            if (!buffer.isEmpty()) {
+                spill();
+            }
+        }
+
+        private void spill() {
+            buffer.sort(Entry::compareTo);
+            long[] offsets = new long[partitions];
+            int[] counts = new int[partitions];
+            try {
+                Path file = newRun();
+                CountingOutputStream bytes = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+                try (DataOutputStream out = new DataOutputStream(bytes)) {
+                    int partition = -1;
+                    for (Entry x : buffer) {
+                        if (x.partition != partition) {
+                            partition = x.partition;
+                            offsets[partition] = bytes.count;
+                        }
+                        counts[partition]++;
+                        write(out, x.event);
+                    }
+                }
+                addRun(new Run(file, offsets, counts, bytes.count));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buffer.clear();
+            buffered = 0;
+        }
+
+        private int localId(String name) {
+            return name == null ? 0 : localIds.computeIfAbsent(name, ExternalTraceSorter.this::id);
+        }
+
+        private void write(DataOutputStream out, Event e) throws IOException {
+            int flags = (e.getCaseId() != null ? HAS_CASE : 0) | (e.getActivityClass() != null ? HAS_ACTIVITY : 0)
+                    | (e.getOriginator() != null ? HAS_ORIGINATOR : 0) | (e.getData() != null ? HAS_DATA : 0);
+            out.writeByte(flags);
+            if (e.getCaseId() != null) {
+                writeVarint(out, e.getCaseId().getFields().size());
+                for (Map.Entry<String, String> f : e.getCaseId().getFields().entrySet()) {
+                    writeVarint(out, localId(f.getKey()));
+                    writeString(out, f.getValue());
+                }
+            }
+            if (e.getActivityClass() != null) {
+                writeVarint(out, localId(e.getActivityClass().getName()));
+            }
+            if (e.getOriginator() != null) {
+                writeVarint(out, localId(e.getOriginator().geActivityName()));
+                writeVarint(out, localId(e.getOriginator().getOriginatorRole()));
+            }
+            out.writeLong(e.getStart() == null ? EventKey.NO_TIME : e.getStart().getMillis());
+            out.writeLong(e.getEnd() == null ? EventKey.NO_TIME : e.getEnd().getMillis());
+            if (e.getData() != null) {
+                writeVarint(out, e.getData().size());
+                for (Map.Entry<String, String> d : e.getData().entrySet()) {
+                    writeVarint(out, localId(d.getKey()));
+                    writeString(out, d.getValue());
+                }
+            }
+        }
+    }
+
+    private static void writeVarint(DataOutputStream out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int v = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+    }
+
+    /*
+    Strings: length + 1 (0 for null), then UTF-8 bytes
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readVarint(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Event read(DataInputStream in, String[] names) throws IOException {
+        int flags = in.readUnsignedByte();
+        CaseId caseId = null;
+        if ((flags & HAS_CASE) != 0) {
+            caseId = new CaseId();
+            for (int n = readVarint(in); n > 0; n--) {
+                String field = names[readVarint(in)];
+                caseId.addField(field, readString(in));
+            }
+        }
+        ActivityClass activity = (flags & HAS_ACTIVITY) != 0 ? new ActivityClass(names[readVarint(in)]) : null;
+        Originator originator = null;
+        if ((flags & HAS_ORIGINATOR) != 0) {
+            String name = names[readVarint(in)];
+            originator = new Originator(name, names[readVarint(in)]);
+        }
+        long start = in.readLong();
+        long end = in.readLong();
+        Map<String, String> data = null;
+        if ((flags & HAS_DATA) != 0) {
+            int n = readVarint(in);
+            data = new HashMap<>(2 * n);
+            for (; n > 0; n--) {
+                String key = names[readVarint(in)];
+                data.put(key, readString(in));
+            }
+        }
+        return new Event(caseId, activity, start == EventKey.NO_TIME ? null : new DateTime(start),
+                end == EventKey.NO_TIME ? null : new DateTime(end), originator, data);
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        final int partition;
+        final Event event;
+        final EventKey key;
+
+        Entry(int partition, Event event) {
+            this.partition = partition;
+            this.event = event;
+            this.key = EventKey.of(event);
+        }
+
+        @Override
+        public int compareTo(Entry x) {
+            int c = Integer.compare(partition, x.partition);
+            if (c == 0) {
+                c = CaseId.compare(event.getCaseId(), x.event.getCaseId());
+            }
+            return c != 0 ? c : key.compareTo(x.key);
+        }
+    }
+
+    private static final class Run {
+        final Path file;
+        final long[] offsets;
+        final int[] counts;
+        final long size;
+
+        Run(Path file, long[] offsets, int[] counts, long size) {
+            this.file = file;
+            this.offsets = offsets;
+            this.counts = counts;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Reads the events of a partition of a run, in order; closes the run once they are all read.
+     */
+    private static final class RunReader implements Comparable<RunReader> {
+        private final Run run;
+        private final int partition;
+        private final String[] names;
+        private DataInputStream in;
+        private int remaining;
+        Event event;
+        EventKey key;
+
+        RunReader(Run run, int partition, String[] names) {
+            this.run = run;
+            this.partition = partition;
+            this.names = names;
+            this.remaining = run.counts[partition];
+        }
+
+        boolean advance() {
+            try {
+                if (remaining == 0) {
+                    if (in != null) {
+                        in.close();
+                        in = null;
+                    }
+                    event = null;
+                    return false;
+                }
+                if (in == null) {
+                    FileChannel channel = FileChannel.open(run.file, StandardOpenOption.READ);
+                    channel.position(run.offsets[partition]);
+                    in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), READ_BUFFER));
+                }
+                remaining--;
+                event = read(in, names);
+                key = EventKey.of(event);
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public int compareTo(RunReader r) {
+            int c = CaseId.compare(event.getCaseId(), r.event.getCaseId());
+            return c != 0 ? c : key.compareTo(r.key);
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package org.ag.processmining.local;
+
+import org.ag.processmining.ingest.EventDeduplicator;
+import org.ag.processmining.ingest.IngestReport;
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Event;
+import org.ag.processmining.log.model.Event.EventBuilder;
+import org.ag.processmining.log.model.EventSchema;
+import org.ag.processmining.log.model.Trace;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Execution backend for logs that fit on one machine, without the startup time and the memory of
+ * a Spark context.
+ * <p>
+ * The input (a file, or a directory of files as with {@code textFile}) is cut into chunks of
+ * {@link #chunkSize(long) chunkSize} bytes, read and parsed in parallel on a fork-join pool. A
+ * chunk owns the lines that start in it: it skips the partial line at its start and reads past
+ * its end to complete its last line. Every chunk groups its events into traces in its own maps,
+ * one per case partition, so no lock is taken; the partitions are then assembled in parallel by
+ * merging the maps of all the chunks. The result is a {@link LocalLog}.
+ * <p>
+ * With a {@link #memoryBudget(long) memory budget}, the traces are not built in memory: every
+ * worker parses its share of the chunks into an {@link ExternalTraceSorter} writer, which writes
+ * a sorted run to the spill directory each time it holds its share of the budget, and the
+ * resulting log streams its traces from the runs.
+ * <p>
+ * With a {@link #deduplicator(EventDeduplicator) deduplicator}, the chunks keep the events of
+ * every case partition in read order, and each partition is deduplicated with
+ * {@link EventDeduplicator#deduplicate(List, IngestReport)} before its traces are built.
+ */
+public class LocalEngine {
+
+    /*
+    Engine selection: spark or local forces the engine, auto (the default) picks the local engine
+    for inputs up to MAX_LOCAL_INPUT bytes that use less than a quarter of the maximum heap once
+    parsed (about 8 times their size on disk)
+     */
+    public static final String ENGINE_PROPERTY = "processmining.engine";
+    public static final long MAX_LOCAL_INPUT = 1L << 30;
+    private static final int EXPANSION = 8;
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long chunkSize = 4L << 20;
+    private char delimiter = ';';
+    private long memoryBudget = 0;
+    private Path spillDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+    private EventDeduplicator deduplicator = null;
+    /*
+    Counts of the last log read with a deduplicator
+     */
+    private IngestReport report = null;
+
+    /**
+     * @return true if the input at this path should be processed by the local engine
+     */
+    public static boolean useLocal(String path) {
+        String engine = System.getProperty(ENGINE_PROPERTY, "auto");
+        if (engine.equalsIgnoreCase("local")) {
+            return true;
+        }
+        if (engine.equalsIgnoreCase("spark")) {
+            return false;
+        }
+        try {
+            long size = inputSize(Paths.get(path));
+            return size <= MAX_LOCAL_INPUT && size * EXPANSION <= Runtime.getRuntime().maxMemory() / 4;
+        } catch (IOException | InvalidPathException e) {
+            // not a local path (hdfs://...)
+            return false;
+        }
+    }
+
+    public LocalEngine parallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public LocalEngine chunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public LocalEngine delimiter(char delimiter) {
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    /**
+     * @param memoryBudget estimated heap size (bytes) of the events held while the log is read,
+     *                     0 (the default) to build the traces in memory
+     */
+    public LocalEngine memoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        return this;
+    }
+
+    /**
+     * @param spillDirectory parent directory of the runs of a log read with a memory budget
+     */
+    public LocalEngine spillDirectory(Path spillDirectory) {
+        this.spillDirectory = spillDirectory;
+        return this;
+    }
+
+    /**
+     * @param deduplicator drops the duplicate events of the log as it is read, null (the default)
+     *                     to keep them all; not available with a memory budget
+     */
+    public LocalEngine deduplicator(EventDeduplicator deduplicator) {
+        this.deduplicator = deduplicator;
+        return this;
+    }
+
+    /**
+     * @return the counts of the last log read with a deduplicator, null if none was
+     */
+    public IngestReport getReport() {
+        return report;
+    }
+
+    /**
+     * Reads the log and builds its traces, as {@code LogSummary.buildTraces(LogSummary.buildEvents(...))}.
+     */
+    public LocalLog read(String path, String[] header, EventSchema schema) throws IOException {
+        List<Chunk> chunks = chunks(path);
+        int partitions = 4 * parallelism;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        if (memoryBudget > 0) {
+            if (deduplicator != null) {
+                throw new IllegalStateException("Deduplication is not available with a memory budget");
+            }
+            return readSpilled(chunks, header, schema, partitions, pool);
+        }
+        if (deduplicator != null) {
+            return readDeduplicated(chunks, header, schema, partitions, pool);
+        }
+        List<Map<CaseId, Trace>[]> parsed = get(pool.submit(() -> chunks.parallelStream()
+                .map(c -> {
+                    try {
+                        return parse(c, header, schema, partitions);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .collect(Collectors.toList())));
+        Trace[][] traces = get(pool.submit(() -> IntStream.range(0, partitions).parallel()
+                .mapToObj(p -> assemble(parsed, p))
+                .toArray(Trace[][]::new)));
+        return new LocalLog(traces, pool);
+    }
+
+    /**
+     * Parses the chunks into the events of every case partition, then deduplicates and groups
+     * the events of each partition into traces.
+     */
+    private LocalLog readDeduplicated(List<Chunk> chunks, String[] header, EventSchema schema, int partitions,
+                                      ForkJoinPool pool) throws IOException {
+        List<List<Event>[]> parsed = get(pool.submit(() -> chunks.parallelStream()
+                .map(c -> {
+                    try {
+                        return parseEvents(c, header, schema, partitions);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .collect(Collectors.toList())));
+        IngestReport[] reports = new IngestReport[partitions];
+        Trace[][] traces = get(pool.submit(() -> IntStream.range(0, partitions).parallel()
+                .mapToObj(p -> {
+                    List<Event> events = new ArrayList<>();
+                    for (List<Event>[] chunk : parsed) {
+                        if (chunk[p] != null) {
+                            events.addAll(chunk[p]);
+                        }
+                    }
+                    reports[p] = new IngestReport();
+                    return traces(deduplicator.deduplicate(events, reports[p]));
+                })
+                .toArray(Trace[][]::new)));
+        IngestReport total = new IngestReport();
+        for (IngestReport r : reports) {
+            total.merge(r);
+        }
+        report = total;
+        return new LocalLog(traces, pool);
+    }
+
+    /**
+     * Parses the chunks into sorted runs, worker i parsing chunks i, i + parallelism, ...
+     */
+    private LocalLog readSpilled(List<Chunk> chunks, String[] header, EventSchema schema, int partitions,
+                                 ForkJoinPool pool) throws IOException {
+        Files.createDirectories(spillDirectory);
+        ExternalTraceSorter sorter = new ExternalTraceSorter(Files.createTempDirectory(spillDirectory, "traces"), partitions);
+        try {
+            get(pool.submit(() -> IntStream.range(0, parallelism).parallel().forEach(w -> {
+                ExternalTraceSorter.Writer writer = sorter.writer(memoryBudget / parallelism);
+                try {
+                    for (int i = w; i < chunks.size(); i += parallelism) {
+                        forEachLine(chunks.get(i), line -> writer.add(parseEvent(line, header, schema)));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                writer.close();
+            })));
+            return new LocalLog(sorter, pool);
+        } catch (IOException | RuntimeException e) {
+            sorter.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for a task of the pool, rethrowing the I/O or runtime exception it failed with.
+     */
+    private static <T> T get(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Parses the lines of a chunk into traces, grouped by case partition.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<CaseId, Trace>[] parse(Chunk chunk, String[] header, EventSchema schema, int partitions) throws IOException {
+        Map<CaseId, Trace>[] byPartition = new Map[partitions];
+        forEachLine(chunk, line -> {
+            Event e = parseEvent(line, header, schema);
+            int p = (e.getCaseId().hashCode() & Integer.MAX_VALUE) % partitions;
+            if (byPartition[p] == null) {
+                byPartition[p] = new HashMap<>();
+            }
+            byPartition[p].computeIfAbsent(e.getCaseId(), Trace::new).addEvent(e);
+        });
+        return byPartition;
+    }
+
+    /**
+     * Parses the lines of a chunk into events, grouped by case partition, in read order.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Event>[] parseEvents(Chunk chunk, String[] header, EventSchema schema, int partitions) throws IOException {
+        List<Event>[] byPartition = new List[partitions];
+        forEachLine(chunk, line -> {
+            Event e = parseEvent(line, header, schema);
+            int p = (e.getCaseId().hashCode() & Integer.MAX_VALUE) % partitions;
+            if (byPartition[p] == null) {
+                byPartition[p] = new ArrayList<>();
+            }
+            byPartition[p].add(e);
+        });
+        return byPartition;
+    }
+
+    /**
+     * Parses a line as {@code LogSummary.buildEvents} does.
+     */
+    Event parseEvent(String line, String[] header, EventSchema schema) throws IOException {
+        return new EventBuilder(line, delimiter, header)
+                .caseId(schema.getCaseIdFields())
+                .activityClass(schema.getEventClassField())
+                .originator(schema.getOriginatorName(), schema.getOriginatorRole())
+                .start(schema.getEventStartTimeField())
+                .end(schema.getEventEndTimeField())
+                .build();
+    }
+
+    /**
+     * @return the chunks of the input, a file or the files of a directory
+     */
+    List<Chunk> chunks(String path) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        for (Path file : files(Paths.get(path))) {
+            long size = Files.size(file);
+            for (long start = 0; start < size; start += chunkSize) {
+                chunks.add(new Chunk(file, start, Math.min(size, start + chunkSize)));
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Calls the handler with every non-empty line that starts in the chunk.
+     */
+    static void forEachLine(Chunk chunk, LineHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(chunk.file, StandardOpenOption.READ)) {
+            long position = chunk.start == 0 ? 0 : chunk.start - 1;
+            channel.position(position);
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel), 1 << 16);
+            if (chunk.start > 0) {
+                // the line that contains the last byte before the chunk belongs to the previous chunk
+                int b;
+                while ((b = in.read()) >= 0) {
+                    position++;
+                    if (b == '\n') {
+                        break;
+                    }
+                }
+            }
+            byte[] line = new byte[256];
+            while (position < chunk.end) {
+                int length = 0;
+                int b;
+                while ((b = in.read()) >= 0 && b != '\n') {
+                    if (length == line.length) {
+                        line = Arrays.copyOf(line, 2 * length);
+                    }
+                    line[length++] = (byte) b;
+                }
+                position += length + 1;
+                if (length > 0 && line[length - 1] == '\r') {
+                    length--;
+                }
+                if (length > 0) {
+                    handler.line(new String(line, 0, length, StandardCharsets.UTF_8));
+                }
+                if (b < 0) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges the traces of a case partition over all the chunks. The traces are owned by the
+     * engine at this point, so they are merged in place.
+     */
+    private static Trace[] assemble(List<Map<CaseId, Trace>[]> parsed, int partition) {
+        Map<CaseId, Trace> traces = null;
+        for (Map<CaseId, Trace>[] chunk : parsed) {
+            Map<CaseId, Trace> m = chunk[partition];
+            if (m == null) {
+                continue;
+            }
+            if (traces == null) {
+                traces = m;
+            } else {
+                for (Trace t : m.values()) {
+                    traces.merge(t.getId(), t, (x, y) -> {
+                        x.getOrderedEvents().putAll(y.getOrderedEvents());
+                        return x;
+                    });
+                }
+            }
+        }
+        return traces == null ? new Trace[0] : traces.values().toArray(new Trace[0]);
+    }
+
+    /**
+     * @return the traces of events grouped by case
+     */
+    private static Trace[] traces(List<Event> events) {
+        List<Trace> traces = new ArrayList<>();
+        Trace t = null;
+        for (Event e : events) {
+            if (t == null || !t.getId().equals(e.getCaseId())) {
+                t = new Trace(e.getCaseId());
+                traces.add(t);
+            }
+            t.addEvent(e);
+        }
+        return traces.toArray(new Trace[0]);
+    }
+
+    private static List<Path> files(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return Collections.singletonList(path);
+        }
+        try (Stream<Path> files = Files.list(path)) {
+            // same filter as Hadoop input formats: hidden and marker files are skipped
+            return files.filter(f -> Files.isRegularFile(f))
+                    .filter(f -> !f.getFileName().toString().startsWith(".") && !f.getFileName().toString().startsWith("_"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long inputSize(Path path) throws IOException {
+        long size = 0;
+        for (Path f : files(path)) {
+            size += Files.size(f);
+        }
+        return size;
+    }
+
+    interface LineHandler {
+        void line(String line) throws IOException;
+    }
+
+    static class Chunk {
+        final Path file;
+        final long start;
+        final long end;
+
+        Chunk(Path file, long start, long end) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package org.ag.processmining.local;
+
+import org.ag.processmining.log.model.Trace;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The traces of a log held in memory by the {@link LocalEngine}, partitioned by case: the local
+ * counterpart of a {@code JavaPairRDD<CaseId, Trace>}.
+ * <p>
+ * {@link #aggregate} works as {@code treeAggregate}: every partition is folded into its own copy
+ * of the zero value, in parallel, and the partial results are combined pairwise. The builders
+ * and miners accept a local log in place of an RDD and aggregate it with the same functions.
+ * <p>
+ * A log read with a memory budget is spilled: its traces stay in the sorted runs of an
+ * {@link ExternalTraceSorter} and every pass over a partition merges them from disk again, one
+ * trace at a time. Changes to the traces of a spilled log are not kept: {@link #filter} and
+ * {@link #map} apply again on every pass, to the traces read back. Its runs are deleted when the
+ * log read is closed; the logs filtered or mapped from it only read them, and closing them does
+ * nothing.
+ */
+public class LocalLog implements Closeable {
+
+    private final Trace[][] partitions;
+    private final ExternalTraceSorter spill;
+    /*
+    Transformation of the traces of a spilled log as they are read, null for a trace filtered out;
+    null for the traces as they are
+     */
+    private final Function<Trace, Trace> view;
+    private final ForkJoinPool pool;
+
+    LocalLog(Trace[][] partitions, ForkJoinPool pool) {
+        this(partitions, null, null, pool);
+    }
+
+    LocalLog(ExternalTraceSorter spill, ForkJoinPool pool) {
+        this(null, spill, null, pool);
+    }
+
+    private LocalLog(Trace[][] partitions, ExternalTraceSorter spill, Function<Trace, Trace> view, ForkJoinPool pool) {
+        this.partitions = partitions;
+        this.spill = spill;
+        this.view = view;
+        this.pool = pool;
+    }
+
+    public int numPartitions() {
+        return partitions != null ? partitions.length : spill.numPartitions();
+    }
+
+    public boolean isSpilled() {
+        return spill != null;
+    }
+
+    /**
+     * @return the number of traces
+     */
+    public long count() {
+        if (spill != null) {
+            return aggregate(0L, (n, t) -> n + 1, Long::sum);
+        }
+        long n = 0;
+        for (Trace[] p : partitions) {
+            n += p.length;
+        }
+        return n;
+    }
+
+    public Stream<Trace> traces() {
+        if (spill != null) {
+            return IntStream.range(0, numPartitions()).boxed()
+                    .flatMap(p -> StreamSupport.stream(Spliterators.spliteratorUnknownSize(partition(p), Spliterator.ORDERED), false));
+        }
+        return Arrays.stream(partitions).flatMap(Arrays::stream);
+    }
+
+    /**
+     * @return the traces transformed by the function, in their partitions
+     */
+    public LocalLog map(UnaryOperator<Trace> function) {
+        if (spill != null) {
+            return new LocalLog(null, spill, view == null ? function : t -> {
+                Trace v = view.apply(t);
+                return v == null ? null : function.apply(v);
+            }, pool);
+        }
+        Trace[][] mapped = new Trace[partitions.length][];
+        for (int p = 0; p < partitions.length; p++) {
+            mapped[p] = Arrays.stream(partitions[p]).map(function).toArray(Trace[]::new);
+        }
+        return new LocalLog(mapped, pool);
+    }
+
+    /**
+     * @return the traces meeting the condition, in their partitions; the traces are shared
+     */
+    public LocalLog filter(Predicate<Trace> condition) {
+        if (spill != null) {
+            return new LocalLog(null, spill, t -> {
+                Trace v = view == null ? t : view.apply(t);
+                return v != null && condition.test(v) ? v : null;
+            }, pool);
+        }
+        Trace[][] filtered = new Trace[partitions.length][];
+        for (int p = 0; p < partitions.length; p++) {
+            filtered[p] = Arrays.stream(partitions[p]).filter(condition).toArray(Trace[]::new);
+        }
+        return new LocalLog(filtered, pool);
+    }
+
+    /**
+     * @return the traces of the partition, read from the runs of a spilled log
+     */
+    private Iterator<Trace> partition(int p) {
+        if (spill == null) {
+            return Arrays.asList(partitions[p]).iterator();
+        }
+        Iterator<Trace> traces = spill.traces(p);
+        if (view == null) {
+            return traces;
+        }
+        return new Iterator<Trace>() {
+            private Trace next = advance();
+
+            private Trace advance() {
+                while (traces.hasNext()) {
+                    Trace t = view.apply(traces.next());
+                    if (t != null) {
+                        return t;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Trace next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Trace t = next;
+                next = advance();
+                return t;
+            }
+        };
+    }
+
+    /**
+     * @param zero initial value of the fold of every partition, copied by serialization
+     * @param seq  adds a trace to a partial result
+     * @param comb merges two partial results
+     */
+    public <U extends Serializable> U aggregate(U zero, BiFunction<U, Trace, U> seq, BinaryOperator<U> comb) {
+        byte[] serializedZero = serialize(zero);
+        try {
+            return pool.submit(() -> IntStream.range(0, numPartitions()).parallel()
+                    .mapToObj(p -> {
+                        U u = deserialize(serializedZero);
+                        for (Iterator<Trace> it = partition(p); it.hasNext(); ) {
+                            u = seq.apply(u, it.next());
+                        }
+                        return u;
+                    })
+                    .reduce(comb)
+                    .orElse(zero)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Deletes the runs of a spilled log, which the logs filtered or mapped from it share: only the
+     * log read from the runs, without a view, owns them.
+     */
+    @Override
+    public void close() {
+        if (spill != null && view == null) {
+            spill.close();
+        }
+    }
+
+    static byte[] serialize(Serializable o) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(o);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    static <U> U deserialize(byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (U) in.readObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package org.ag.processmining.log.model;
+
+import org.ag.processmining.Utils.DateFormatExtractor;
+import org.joda.time.DateTime;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Names and types of the extra attributes of the events of a log: the columns left in
+ * {@link Event#getData()} once the case id, activity, originator and timestamps are read.
+ * <p>
+ * Types are inferred from the values of the whole log ({@link Inference}): an attribute is an
+ * integer or a double if all its values parse as such, a timestamp if they all parse as dates,
+ * categorical if it has at most {@code maxCategories} distinct values and text otherwise. The
+ * values of categorical attributes are encoded with a {@link Dictionary}. With the schema, the
+ * attributes of a trace are stored as typed columns ({@link TraceAttributes}), and the string maps
+ * of its events are dropped.
+ */
+public class AttributeSchema implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    public enum AttributeType {
+        INT, DOUBLE, TIMESTAMP, CATEGORICAL, TEXT
+    }
+
+    private final String[] names;
+    private final AttributeType[] types;
+    /*
+    Values of the categorical attributes, null for the others
+     */
+    private final Dictionary<String>[] categories;
+    private final Map<String, Integer> index = new HashMap<>();
+
+    private AttributeSchema(String[] names, AttributeType[] types, Dictionary<String>[] categories) {
+        this.names = names;
+        this.types = types;
+        this.categories = categories;
+        for (int a = 0; a < names.length; a++) {
+            index.put(names[a], a);
+        }
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @return the index of the attribute, -1 if the log has no such attribute
+     */
+    public int index(String name) {
+        Integer a = index.get(name);
+        return a == null ? -1 : a;
+    }
+
+    public String name(int a) {
+        return names[a];
+    }
+
+    public AttributeType type(int a) {
+        return types[a];
+    }
+
+    /**
+     * @return the values of a categorical attribute
+     */
+    public Dictionary<String> categories(int a) {
+        if (categories[a] == null) {
+            throw new IllegalArgumentException("Not a categorical attribute: " + names[a]);
+        }
+        return categories[a];
+    }
+
+    /**
+     * @return the code of a value of a categorical attribute, {@link EncodedTrace#NO_ID} if the
+     * log has no such value
+     */
+    public int code(int a, String value) {
+        return categories(a).id(value);
+    }
+
+    /**
+     * @return the attributes of the events of the trace as typed columns, in trace order; the
+     * string maps of the events are dropped
+     */
+    public TraceAttributes encode(Trace trace) {
+        Collection<Event> events = trace.getOrderedEvents().values();
+        int n = events.size();
+        Object[] columns = new Object[names.length];
+        for (int a = 0; a < names.length; a++) {
+            columns[a] = TraceAttributes.column(types[a], categories[a] == null ? 0 : categories[a].size(), n);
+        }
+        int i = 0;
+        for (Event e : events) {
+            Map<String, String> data = e.getData();
+            for (int a = 0; data != null && a < names.length; a++) {
+                set(columns[a], a, i, data.get(names[a]));
+            }
+            i++;
+        }
+        return new TraceAttributes(columns, n);
+    }
+
+    private void set(Object column, int a, int i, String value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        switch (types[a]) {
+            case INT:
+                ((long[]) column)[i] = Long.parseLong(value.trim());
+                break;
+            case DOUBLE:
+                ((double[]) column)[i] = Double.parseDouble(value.trim());
+                break;
+            case TIMESTAMP:
+                DateTime t = DateFormatExtractor.parseDateTime(value.trim());
+                ((long[]) column)[i] = t == null ? TraceAttributes.NO_VALUE : t.getMillis();
+                break;
+            case CATEGORICAL:
+                TraceAttributes.setCode(column, i, categories[a].id(value));
+                break;
+            default:
+                ((String[]) column)[i] = value;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int a = 0; a < names.length; a++) {
+            sb.append(a == 0 ? "" : ", ").append(names[a]).append(": ").append(types[a]);
+            if (categories[a] != null) {
+                sb.append('(').append(categories[a].size()).append(')');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Accumulates what the values of every attribute parse as, event by event; inferences built
+     * on parts of a log are merged.
+     */
+    public static class Inference implements Serializable {
+
+        static final long serialVersionUID = 1L;
+        private final int maxCategories;
+        private final Map<String, Candidate> candidates = new HashMap<>();
+
+        public Inference(int maxCategories) {
+            this.maxCategories = maxCategories;
+        }
+
+        public Inference add(Event e) {
+            if (e.getData() != null) {
+                e.getData().forEach((name, value) -> {
+                    Candidate c = candidates.get(name);
+                    if (c == null) {
+                        candidates.put(name, c = new Candidate());
+                    }
+                    c.add(value, maxCategories);
+                });
+            }
+            return this;
+        }
+
+        public Inference add(Trace trace) {
+            trace.getOrderedEvents().values().forEach(this::add);
+            return this;
+        }
+
+        public Inference merge(Inference other) {
+            other.candidates.forEach((name, c) -> {
+                Candidate mine = candidates.get(name);
+                if (mine == null) {
+                    candidates.put(name, c);
+                } else {
+                    mine.merge(c, maxCategories);
+                }
+            });
+            return this;
+        }
+
+        /**
+         * @return the schema of the attributes, in name order
+         */
+        public AttributeSchema schema() {
+            String[] names = new TreeSet<>(candidates.keySet()).toArray(new String[0]);
+            AttributeType[] types = new AttributeType[names.length];
+            @SuppressWarnings("unchecked")
+            Dictionary<String>[] categories = new Dictionary[names.length];
+            for (int a = 0; a < names.length; a++) {
+                Candidate c = candidates.get(names[a]);
+                types[a] = c.type();
+                categories[a] = types[a] == AttributeType.CATEGORICAL ? Dictionary.of(c.distinct) : null;
+            }
+            return new AttributeSchema(names, types, categories);
+        }
+    }
+
+    /*
+    What the non-empty values of an attribute seen so far all parse as, and their distinct values
+    while there are no more than the maximum number of categories (null beyond)
+     */
+    private static class Candidate implements Serializable {
+
+        static final long serialVersionUID = 1L;
+        boolean integer = true;
+        boolean decimal = true;
+        boolean timestamp = true;
+        boolean seen = false;
+        Set<String> distinct = new HashSet<>();
+
+        void add(String value, int maxCategories) {
+            if (value == null || value.isEmpty()) {
+                return;
+            }
+            seen = true;
+            String v = value.trim();
+            boolean isInteger = integer && isInteger(v);
+            integer = isInteger;
+            if (decimal && !isInteger && !isDecimal(v)) {
+                decimal = false;
+            }
+            // the first value that is not a date settles it, numeric attributes are not parsed further
+            if (timestamp && DateFormatExtractor.parseDateTime(v) == null) {
+                timestamp = false;
+            }
+            if (distinct != null && distinct.add(value) && distinct.size() > maxCategories) {
+                distinct = null;
+            }
+        }
+
+        void merge(Candidate other, int maxCategories) {
+            seen |= other.seen;
+            integer &= other.integer;
+            decimal &= other.decimal;
+            timestamp &= other.timestamp;
+            if (distinct != null && other.distinct != null) {
+                distinct.addAll(other.distinct);
+            }
+            if (distinct == null || other.distinct == null || distinct.size() > maxCategories) {
+                distinct = null;
+            }
+        }
+
+        AttributeType type() {
+            if (!seen) {
+                return AttributeType.CATEGORICAL;
+            }
+            if (integer) {
+                return AttributeType.INT;
+            }
+            if (decimal) {
+                return AttributeType.DOUBLE;
+            }
+            if (timestamp) {
+                return AttributeType.TIMESTAMP;
+            }
+            return distinct != null ? AttributeType.CATEGORICAL : AttributeType.TEXT;
+        }
+
+        private static boolean isInteger(String v) {
+            try {
+                Long.parseLong(v);
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        private static boolean isDecimal(String v) {
+            try {
+                Double.parseDouble(v);
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+    }
+}
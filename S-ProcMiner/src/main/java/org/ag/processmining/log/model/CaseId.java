@@ -3,20 +3,36 @@ package org.ag.processmining.log.model;
 import lombok.*;
 
 import java.io.Serializable;
+import java.util.Iterator;
 import java.util.TreeMap;
 
-@AllArgsConstructor(access = AccessLevel.PUBLIC)
 @NoArgsConstructor
 @Getter
 @Setter
 public class CaseId implements Serializable {
     static final long serialVersionUID = 1L;
     private TreeMap<String, String> fields = null;
+    /*
+    Cached hash of the field values, 0 until computed
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient int hash;
+
+    public CaseId(TreeMap<String, String> fields) {
+        this.fields = fields;
+    }
 
 
     public void addField(String name, String value) {
         if (fields == null) fields = new TreeMap<>();
         this.fields.put(name, value);
+        hash = 0;
+    }
+
+    public void setFields(TreeMap<String, String> fields) {
+        this.fields = fields;
+        hash = 0;
     }
 
     public String getField(String fld) {
@@ -30,13 +46,26 @@ public class CaseId implements Serializable {
         return fields;
     }
 
+    /**
+     * Hash of the field values, ignoring case as {@link #equals(Object)} does, so that a case id
+     * always goes to the same partition whatever the case of its values. The hash is computed once.
+     */
     @Override
     public int hashCode() {
-        StringBuilder sb = new StringBuilder();
-        for (String field : this.getFields().navigableKeySet()) {
-            sb = sb.append(this.getFields().get(field));
+        int h = hash;
+        if (h == 0) {
+            for (String value : this.getFields().values()) {
+                if (value == null) {
+                    h = 31 * h;
+                    continue;
+                }
+                for (int i = 0; i < value.length(); i++) {
+                    h = 31 * h + Character.toLowerCase(Character.toUpperCase(value.charAt(i)));
+                }
+            }
+            hash = h;
         }
-        return sb.toString().hashCode();
+        return h;
     }
 
     @Override
@@ -52,6 +81,28 @@ public class CaseId implements Serializable {
         return true;
     }
 
+    /**
+     * Total order of the case ids consistent with {@link #equals(Object)}: by hash, then by field
+     * values ignoring case. Ids of the same schema only.
+     */
+    public static int compare(CaseId c1, CaseId c2) {
+        int c = Integer.compare(c1.hashCode(), c2.hashCode());
+        if (c != 0 || c1.equals(c2)) {
+            return c;
+        }
+        Iterator<String> v2 = c2.getFields().values().iterator();
+        for (String v1 : c1.getFields().values()) {
+            if (!v2.hasNext()) {
+                return 1;
+            }
+            c = String.valueOf(v1).compareToIgnoreCase(String.valueOf(v2.next()));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return v2.hasNext() ? -1 : 0;
+    }
+
     @Override
     public String toString() {
         String s = "";
@@ -0,0 +1,82 @@
+package org.ag.processmining.log.model;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Dense int encoding of a finite set of log values (activity classes, originators, ...).
+ * Ids are assigned in the natural order of the values, so two dictionaries built from the
+ * same set of values always agree.
+ */
+public class Dictionary<T> implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private static final int MAGIC = 0x44494354; // "DICT"
+    private final List<T> values;
+    private final Map<T, Integer> ids;
+
+    private Dictionary(List<T> values) {
+        this.values = values;
+        this.ids = new HashMap<>(values.size() * 2);
+        for (int i = 0; i < values.size(); i++) {
+            this.ids.put(values.get(i), i);
+        }
+    }
+
+    public static <T extends Comparable> Dictionary<T> of(Collection<T> values) {
+        return new Dictionary<>(new ArrayList<>(new TreeSet<>(values)));
+    }
+
+    /**
+     * Reads the value names written by {@link #write(OutputStream)}.
+     */
+    public static String[] readNames(InputStream in) throws IOException {
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(in));
+        if (dis.readInt() != MAGIC) {
+            throw new IOException("Not a dictionary file");
+        }
+        String[] names = new String[dis.readInt()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = dis.readUTF();
+        }
+        return names;
+    }
+
+    /**
+     * @return the id of the value, or -1 if the value is unknown
+     */
+    public int id(T value) {
+        Integer id = ids.get(value);
+        return id == null ? -1 : id;
+    }
+
+    public T get(int id) {
+        return values.get(id);
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    public List<T> values() {
+        return Collections.unmodifiableList(values);
+    }
+
+    /**
+     * Writes the names (toString) of the values in id order.
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(out));
+        dos.writeInt(MAGIC);
+        dos.writeInt(values.size());
+        for (T v : values) {
+            dos.writeUTF(v.toString());
+        }
+        dos.flush();
+    }
+
+    @Override
+    public String toString() {
+        return values.toString();
+    }
+}
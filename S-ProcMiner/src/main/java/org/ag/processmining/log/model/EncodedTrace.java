@@ -0,0 +1,127 @@
+package org.ag.processmining.log.model;
+
+import org.joda.time.DateTime;
+
+import java.io.Serializable;
+import java.util.function.ToIntFunction;
+
+/**
+ * Primitive view of a trace: the events, in trace order, reduced to dictionary ids and epoch
+ * milliseconds. This is the input of the miners and aggregators that work on dense matrices
+ * indexed by activity id.
+ */
+public abstract class EncodedTrace implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    /*
+    Id of an originator that is not encoded, and timestamp of an event without one
+     */
+    public static final int NO_ID = -1;
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    /**
+     * Encodes the events of a trace in the order of {@link Trace#getOrderedEvents()}.
+     *
+     * @param originatorIds may be null when originators are not needed
+     */
+    public static EncodedTrace encode(Trace trace, ToIntFunction<ActivityClass> activityIds, ToIntFunction<Originator> originatorIds) {
+        int n = trace.size();
+        int[] activities = new int[n];
+        int[] originators = originatorIds == null ? null : new int[n];
+        long[] starts = new long[n];
+        long[] ends = new long[n];
+        int i = 0;
+        for (Event e : trace.getOrderedEvents().values()) {
+            activities[i] = activityIds.applyAsInt(e.getActivityClass());
+            if (originators != null) {
+                originators[i] = e.getOriginator() == null ? NO_ID : originatorIds.applyAsInt(e.getOriginator());
+            }
+            starts[i] = millis(e.getStart());
+            ends[i] = millis(e.getEnd());
+            i++;
+        }
+        return new ArrayEncodedTrace(activities, originators, starts, ends);
+    }
+
+    private static long millis(DateTime dt) {
+        return dt == null ? NO_TIME : dt.getMillis();
+    }
+
+    public abstract int size();
+
+    public abstract int activity(int i);
+
+    /**
+     * @return the originator id of the i-th event, {@link #NO_ID} if originators are not encoded
+     */
+    public abstract int originator(int i);
+
+    public abstract long start(int i);
+
+    public abstract long end(int i);
+
+    /**
+     * @return the end of the event, or its start when it has no end
+     */
+    public long completion(int i) {
+        long end = end(i);
+        return end == NO_TIME ? start(i) : end;
+    }
+
+    public int[] activities() {
+        int[] a = new int[size()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = activity(i);
+        }
+        return a;
+    }
+
+    /**
+     * Trace backed by plain arrays.
+     */
+    public static class ArrayEncodedTrace extends EncodedTrace {
+
+        static final long serialVersionUID = 1L;
+        private final int[] activities;
+        private final int[] originators;
+        private final long[] starts;
+        private final long[] ends;
+
+        public ArrayEncodedTrace(int[] activities, int[] originators, long[] starts, long[] ends) {
+            this.activities = activities;
+            this.originators = originators;
+            this.starts = starts;
+            this.ends = ends;
+        }
+
+        @Override
+        public int size() {
+            return activities.length;
+        }
+
+        @Override
+        public int activity(int i) {
+            return activities[i];
+        }
+
+        @Override
+        public int originator(int i) {
+            return originators == null ? NO_ID : originators[i];
+        }
+
+        @Override
+        public long start(int i) {
+            return starts[i];
+        }
+
+        @Override
+        public long end(int i) {
+            return ends[i];
+        }
+
+        @Override
+        public int[] activities() {
+            return activities.clone();
+        }
+    }
+}
@@ -39,9 +39,21 @@ public class Event implements Serializable {
         this.data = builder.data;
     }
 
+    /**
+     * Event of already parsed fields, as read back from a spill file.
+     */
+    public Event(CaseId caseId, ActivityClass activityClass, DateTime start, DateTime end, Originator originator,
+                 Map<String, String> data) {
+        this.caseId = caseId;
+        this.activityClass = activityClass;
+        this.start = start;
+        this.end = end;
+        this.originator = originator;
+        this.data = data;
+    }
+
 
     public double duration(TimeUnit tu) {
-        System.out.println(TimeUtils.duration(start, end, tu));
         return TimeUtils.duration(start, end, tu);
     }
 
@@ -0,0 +1,113 @@
+package org.ag.processmining.log.model;
+
+import org.joda.time.DateTime;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Order of the events of a case: by time (the start, or the end for an event without start),
+ * then end, activity and resource. Ties on the time are broken on the other fields, so that the
+ * order does not depend on the order the events were read in; two events equal on all the fields
+ * are the same event.
+ * <p>
+ * A key can leave fields out (no time, null names): it then identifies the events equal on the
+ * fields it keeps, which is how duplicates are detected on a chosen subset of the fields.
+ */
+public final class EventKey implements Comparable<EventKey>, Serializable {
+
+    static final long serialVersionUID = 1L;
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private final long time;
+    private final long end;
+    private final String activity;
+    private final String resource;
+
+    public EventKey(long time, long end, String activity, String resource) {
+        this.time = time;
+        this.end = end;
+        this.activity = activity;
+        this.resource = resource;
+    }
+
+    /**
+     * @return the key of the event on all its fields
+     */
+    public static EventKey of(Event e) {
+        return of(e, true, true, true, true);
+    }
+
+    /**
+     * @return the key of the event on the chosen fields
+     */
+    public static EventKey of(Event e, boolean start, boolean end, boolean activity, boolean resource) {
+        DateTime time = start && e.getStart() != null ? e.getStart() : e.getEnd();
+        return new EventKey(start || end ? millis(time) : NO_TIME,
+                end ? millis(e.getEnd()) : NO_TIME,
+                activity && e.getActivityClass() != null ? e.getActivityClass().getName() : null,
+                resource && e.getOriginator() != null ? e.getOriginator().toString() : null);
+    }
+
+    private static long millis(DateTime t) {
+        return t == null ? NO_TIME : t.getMillis();
+    }
+
+    /**
+     * @return the time of the event in epoch milliseconds, {@link #NO_TIME} if none
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public String getActivity() {
+        return activity;
+    }
+
+    public String getResource() {
+        return resource;
+    }
+
+    @Override
+    public int compareTo(EventKey k) {
+        int c = Long.compare(time, k.time);
+        if (c == 0) {
+            c = Long.compare(end, k.end);
+        }
+        if (c == 0) {
+            c = compare(activity, k.activity);
+        }
+        return c != 0 ? c : compare(resource, k.resource);
+    }
+
+    private static int compare(String s1, String s2) {
+        if (s1 == null || s2 == null) {
+            return s1 == null ? (s2 == null ? 0 : -1) : 1;
+        }
+        return s1.compareTo(s2);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof EventKey)) {
+            return false;
+        }
+        EventKey k = (EventKey) o;
+        return time == k.time && end == k.end && Objects.equals(activity, k.activity) && Objects.equals(resource, k.resource);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(time, end, activity, resource);
+    }
+
+    @Override
+    public String toString() {
+        return (time == NO_TIME ? "-" : new DateTime(time).toString()) + "/" + (end == NO_TIME ? "-" : new DateTime(end).toString())
+                + "/" + activity + "/" + resource;
+    }
+}
@@ -0,0 +1,60 @@
+package org.ag.processmining.log.model;
+
+import java.io.Serializable;
+
+/**
+ * Key of a time-ordered segment of a trace. Most traces have a single segment; the traces of
+ * heavy cases are split into several segments so that they are built by several tasks. Segment
+ * i holds the events of the case that start before the events of segment i + 1.
+ */
+public final class SegmentKey implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private final CaseId caseId;
+    private final int segment;
+    private final int segments;
+
+    public SegmentKey(CaseId caseId, int segment, int segments) {
+        this.caseId = caseId;
+        this.segment = segment;
+        this.segments = segments;
+    }
+
+    public CaseId getCaseId() {
+        return caseId;
+    }
+
+    public int getSegment() {
+        return segment;
+    }
+
+    /**
+     * @return the number of segments the trace is split into
+     */
+    public int getSegments() {
+        return segments;
+    }
+
+    public boolean isSplit() {
+        return segments > 1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SegmentKey)) {
+            return false;
+        }
+        SegmentKey k = (SegmentKey) o;
+        return segment == k.segment && caseId.equals(k.caseId);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * caseId.hashCode() + segment;
+    }
+
+    @Override
+    public String toString() {
+        return segments > 1 ? caseId + "#" + segment + "/" + segments : caseId.toString();
+    }
+}
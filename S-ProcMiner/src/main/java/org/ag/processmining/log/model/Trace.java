@@ -16,24 +16,58 @@ import java.util.stream.Collectors;
 public class Trace implements Serializable {
     static final long serialVersionUID = 1L;
     private CaseId id = null;
-    private TreeMap<DateTime, Event> orderedEvents = null;
+    /*
+    Events in {@link EventKey} order: by time, ties broken on the other fields
+     */
+    private TreeMap<EventKey, Event> orderedEvents = null;
+    /*
+    Typed extra attributes of the events, once encoded with an attribute schema
+     */
+    private TraceAttributes attributes = null;
 
 
     public Trace(CaseId id) {
-        this.orderedEvents = new TreeMap();
+        this.orderedEvents = new TreeMap<>();
         this.id = id;
     }
 
+    /**
+     * Adds the event in time order. Events of the same time are all kept, in a deterministic
+     * order; an event equal to an event of the trace on all the fields of its {@link EventKey}
+     * replaces it.
+     */
     public Trace addEvent(Event e) {
+        if (attributes != null) {
+            throw new IllegalStateException("Attributes of trace " + id + " already encoded");
+        }
         if (this.id == null) {
             this.id = e.getCaseId();
         }
-        orderedEvents.put(e.getStart(), e);
+        orderedEvents.put(EventKey.of(e), e);
         return this;
     }
 
+    /**
+     * @return a copy of the trace storing the extra attributes of the events as typed columns,
+     * with events without their string maps, to which events can no longer be added. The trace
+     * itself is left unchanged.
+     */
+    public Trace encodeAttributes(AttributeSchema schema) {
+        if (attributes != null) {
+            return this;
+        }
+        Trace encoded = new Trace(id);
+        for (Map.Entry<EventKey, Event> e : orderedEvents.entrySet()) {
+            Event event = e.getValue();
+            encoded.orderedEvents.put(e.getKey(), new Event(event.getCaseId(), event.getActivityClass(),
+                    event.getStart(), event.getEnd(), event.getOriginator(), null));
+        }
+        encoded.attributes = schema.encode(this);
+        return encoded;
+    }
+
     public double duration(TimeUnit tu) {
-        return TimeUtils.duration((DateTime) this.orderedEvents.firstKey(), (DateTime) this.orderedEvents.lastKey(), tu);
+        return TimeUtils.duration(getStartEvent().getStart(), getEndEvent().getStart(), tu);
     }
 
     public DoubleSummaryStatistics getEventDurationStats(TimeUnit tu) {
@@ -47,14 +81,22 @@ public class Trace implements Serializable {
         return getEventDurationStats(tu).getSum();
     }
 
-    public int getWaitingTime(TimeUnit tu) {
+    /**
+     * @return the total time between the end of each event and the start of the next one, events
+     * overlapping their predecessor counting for no waiting time
+     */
+    public double getWaitingTime(TimeUnit tu) {
+        return TimeUtils.fromMillis(getWaitingMillis(), tu);
+    }
+
+    public long getWaitingMillis() {
         Event previous = null;
-        int waitingTime = 0;
-        for (Map.Entry<DateTime, Event> e : this.orderedEvents.entrySet()) {
-            if (previous != null) {
-                waitingTime += TimeUtils.duration(previous.getEnd(), e.getValue().getStart(), tu);
+        long waitingTime = 0;
+        for (Event e : this.orderedEvents.values()) {
+            if (previous != null && previous.getEnd() != null && e.getStart() != null) {
+                waitingTime += Math.max(0, e.getStart().getMillis() - previous.getEnd().getMillis());
             }
-            previous = e.getValue();
+            previous = e;
         }
         return waitingTime;
     }
@@ -0,0 +1,158 @@
+package org.ag.processmining.log.model;
+
+import org.ag.processmining.log.model.AttributeSchema.AttributeType;
+import org.joda.time.DateTime;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The extra attributes of the events of a trace, one typed column per attribute of the
+ * {@link AttributeSchema}, in trace order.
+ * <p>
+ * Integers and timestamps (epoch milliseconds) are {@code long} columns, doubles {@code double}
+ * columns and texts {@code String} columns. Categorical attributes hold the codes of their values,
+ * on one byte per event when the attribute has less than 128 values and two bytes under 32768.
+ * Missing values are {@link #NO_VALUE}, NaN, {@link EncodedTrace#NO_ID} and null respectively.
+ */
+public class TraceAttributes implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    public static final long NO_VALUE = Long.MIN_VALUE;
+
+    private final Object[] columns;
+    private final int size;
+
+    TraceAttributes(Object[] columns, int size) {
+        this.columns = columns;
+        this.size = size;
+    }
+
+    /**
+     * @return an empty column of the type, all values missing
+     */
+    static Object column(AttributeType type, int categories, int size) {
+        switch (type) {
+            case INT:
+            case TIMESTAMP:
+                long[] longs = new long[size];
+                Arrays.fill(longs, NO_VALUE);
+                return longs;
+            case DOUBLE:
+                double[] doubles = new double[size];
+                Arrays.fill(doubles, Double.NaN);
+                return doubles;
+            case CATEGORICAL:
+                if (categories <= Byte.MAX_VALUE) {
+                    byte[] bytes = new byte[size];
+                    Arrays.fill(bytes, (byte) EncodedTrace.NO_ID);
+                    return bytes;
+                }
+                if (categories <= Short.MAX_VALUE) {
+                    short[] shorts = new short[size];
+                    Arrays.fill(shorts, (short) EncodedTrace.NO_ID);
+                    return shorts;
+                }
+                int[] ints = new int[size];
+                Arrays.fill(ints, EncodedTrace.NO_ID);
+                return ints;
+            default:
+                return new String[size];
+        }
+    }
+
+    static void setCode(Object column, int i, int code) {
+        if (column instanceof byte[]) {
+            ((byte[]) column)[i] = (byte) code;
+        } else if (column instanceof short[]) {
+            ((short[]) column)[i] = (short) code;
+        } else {
+            ((int[]) column)[i] = code;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the code of the value of a categorical attribute of the i-th event
+     */
+    public int code(int a, int i) {
+        Object column = columns[a];
+        if (column instanceof byte[]) {
+            return ((byte[]) column)[i];
+        }
+        if (column instanceof short[]) {
+            return ((short[]) column)[i];
+        }
+        return ((int[]) column)[i];
+    }
+
+    /**
+     * @return the value of an integer or timestamp attribute of the i-th event
+     */
+    public long longValue(int a, int i) {
+        return ((long[]) columns[a])[i];
+    }
+
+    /**
+     * @return the value of a numeric attribute of the i-th event, NaN if missing
+     */
+    public double doubleValue(int a, int i) {
+        Object column = columns[a];
+        if (column instanceof double[]) {
+            return ((double[]) column)[i];
+        }
+        long v = ((long[]) column)[i];
+        return v == NO_VALUE ? Double.NaN : v;
+    }
+
+    public String text(int a, int i) {
+        return ((String[]) columns[a])[i];
+    }
+
+    /**
+     * @return the value of the attribute of the i-th event as a string, as it was read (dates
+     * as ISO strings), null if missing
+     */
+    public String value(AttributeSchema schema, int a, int i) {
+        switch (schema.type(a)) {
+            case INT:
+                return longValue(a, i) == NO_VALUE ? null : Long.toString(longValue(a, i));
+            case TIMESTAMP:
+                return longValue(a, i) == NO_VALUE ? null : new DateTime(longValue(a, i)).toString();
+            case DOUBLE:
+                return Double.isNaN(doubleValue(a, i)) ? null : Double.toString(doubleValue(a, i));
+            case CATEGORICAL:
+                return code(a, i) == EncodedTrace.NO_ID ? null : schema.categories(a).get(code(a, i));
+            default:
+                return text(a, i);
+        }
+    }
+
+    /**
+     * @return whether an event has the value of code {@code code} for the categorical attribute
+     */
+    public boolean contains(int a, int code) {
+        for (int i = 0; i < size; i++) {
+            if (code(a, i) == code) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether an event has a value of the numeric attribute in [from, to]
+     */
+    public boolean containsBetween(int a, double from, double to) {
+        for (int i = 0; i < size; i++) {
+            double v = doubleValue(a, i);
+            if (v >= from && v <= to) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
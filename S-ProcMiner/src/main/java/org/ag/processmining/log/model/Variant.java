@@ -0,0 +1,82 @@
+package org.ag.processmining.log.model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.ToIntFunction;
+
+/**
+ * Sequence of activities of a trace, encoded with a dictionary. Traces with the same sequence
+ * share their variant, so that per-sequence computations (replay, alignment, ...) can be done
+ * once per variant and weighted by its number of traces.
+ */
+public final class Variant implements Serializable, Comparable<Variant> {
+
+    static final long serialVersionUID = 1L;
+    private final int[] activities;
+    private final int hash;
+
+    public Variant(int[] activities) {
+        this.activities = activities;
+        this.hash = Arrays.hashCode(activities);
+    }
+
+    public static Variant of(Trace trace, ToIntFunction<ActivityClass> activityIds) {
+        int[] activities = new int[trace.size()];
+        int i = 0;
+        for (Event e : trace.getOrderedEvents().values()) {
+            activities[i++] = activityIds.applyAsInt(e.getActivityClass());
+        }
+        return new Variant(activities);
+    }
+
+    public int size() {
+        return activities.length;
+    }
+
+    public int activity(int i) {
+        return activities[i];
+    }
+
+    public int[] activities() {
+        return activities.clone();
+    }
+
+    /**
+     * @return a 64 bits fingerprint of the sequence, stable across JVMs (FNV-1a)
+     */
+    public long fingerprint() {
+        long h = 0xcbf29ce484222325L;
+        for (int a : activities) {
+            for (int k = 0; k < 4; k++) {
+                h ^= (a >>> (8 * k)) & 0xff;
+                h *= 0x100000001b3L;
+            }
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Variant && hash == ((Variant) o).hash && Arrays.equals(activities, ((Variant) o).activities);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public int compareTo(Variant o) {
+        for (int i = 0; i < Math.min(activities.length, o.activities.length); i++) {
+            if (activities[i] != o.activities[i]) {
+                return Integer.compare(activities[i], o.activities[i]);
+            }
+        }
+        return Integer.compare(activities.length, o.activities.length);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(activities);
+    }
+}
@@ -1,10 +1,13 @@
 package org.ag.processmining.log.summarizer.builder;
 
+import org.ag.processmining.local.LocalEngine;
 import org.ag.processmining.log.model.EventSchema;
 import org.ag.processmining.log.summarizer.overview.LogSummary;
 import org.apache.spark.SparkConf;
 import org.apache.spark.api.java.JavaSparkContext;
 
+import java.io.IOException;
+
 /**
  * Created by ahmed.gater on 25/10/2016.
  */
@@ -12,7 +15,7 @@ public class ActivityOverviewBuilder {
 
     public static class LogSummarizer {
 
-        public static void main(String[] args) {
+        public static void main(String[] args) throws IOException {
             if (args.length != 2) {
                 System.out.println("There is no argument");
                 return;
@@ -23,6 +26,10 @@ public class ActivityOverviewBuilder {
             String[] event_attributes = {"Case ID", "Activity", "Resource", "Start Timestamp", "Complete Timestamp", "Variant", "Role"};
             EventSchema att_map = new EventSchema(attributeMappingFilePath);
             System.out.println(att_map);
+            if (LocalEngine.useLocal(sourceFile)) {
+                LogSummary.buildSummary(sourceFile, event_attributes, att_map);
+                return;
+            }
             String applicationName = "Process Mining using Apache Spark";
             String applicationDesc = "Building statistics about the process";
 
@@ -3,7 +3,10 @@ package org.ag.processmining.log.summarizer.overview;
 import org.ag.processmining.Utils.TimeUtils.TimeUnit;
 import org.ag.processmining.log.model.ActivityClass;
 import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.EncodedTrace;
 import org.ag.processmining.log.model.Trace;
+import org.ag.processmining.local.EventStore;
+import org.ag.processmining.local.LocalLog;
 import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.function.Function2;
 import org.apache.spark.util.StatCounter;
@@ -11,6 +14,7 @@ import scala.Tuple2;
 
 import java.io.Serializable;
 import java.util.AbstractMap.SimpleEntry;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -59,31 +63,79 @@ public class ActivityClassOverview implements Serializable {
 
         private static final long serialVersionUID = 1L;
         JavaPairRDD<CaseId, Trace> traces;
+        transient LocalLog localTraces;
+        transient EventStore store;
 
         public ActivityClassOverviewBuilder(JavaPairRDD<CaseId, Trace> traces) {
             this.traces = traces;
         }
 
+        public ActivityClassOverviewBuilder(LocalLog traces) {
+            this.localTraces = traces;
+        }
+
+        public ActivityClassOverviewBuilder(EventStore store) {
+            this.store = store;
+        }
+
         public ActivityClassOverview build() {
+            if (store != null) {
+                // durations in whole minutes, as TimeUtils.duration
+                StatCounter[] counters = store.aggregate(new StatCounter[store.activities().size()],
+                        (c, t) -> {
+                            for (int i = 0; i < t.size(); i++) {
+                                long start = t.start(i), end = t.end(i);
+                                double minutes = start == EncodedTrace.NO_TIME || end == EncodedTrace.NO_TIME
+                                        ? -1 : (end - start) / 60000;
+                                int a = t.activity(i);
+                                (c[a] == null ? c[a] = new StatCounter() : c[a]).merge(minutes);
+                            }
+                            return c;
+                        },
+                        (c1, c2) -> {
+                            for (int a = 0; a < c1.length; a++) {
+                                c1[a] = c1[a] == null ? c2[a] : c2[a] == null ? c1[a] : c1[a].merge(c2[a]);
+                            }
+                            return c1;
+                        });
+                Map<ActivityClass, StatCounter> stats = new HashMap<>();
+                for (int a = 0; a < counters.length; a++) {
+                    if (counters[a] != null) {
+                        stats.put(store.activities().get(a), counters[a]);
+                    }
+                }
+                return new ActivityClassOverview(stats);
+            }
+            if (localTraces != null) {
+                return new ActivityClassOverview(localTraces.aggregate(new HashMap<ActivityClass, StatCounter>(),
+                        (m, t) -> {
+                            t.getOrderedEvents().values().forEach(e -> m.computeIfAbsent(e.getActivityClass(), k -> new StatCounter())
+                                    .merge(e.duration(TimeUnit.MINUTE)));
+                            return m;
+                        },
+                        (m1, m2) -> {
+                            m2.forEach((k, v) -> m1.merge(k, v, StatCounter::merge));
+                            return m1;
+                        }));
+            }
+            // one map per partition, merged up a tree: no shuffle of the (case partitioned) traces
             Map<ActivityClass, StatCounter> activityClassStatCounterMap = traces
-                    .flatMapToPair(
-                            x -> x._2().getOrderedEvents().values().stream()
-                                    .map(e -> new Tuple2<ActivityClass, Double>(e.getActivityClass(), e.duration(TimeUnit.MINUTE)))
-                                    .collect(Collectors.toList()))
-                    .aggregateByKey(new StatCounter(),
-                            new Function2<StatCounter, Double, StatCounter>() {
+                    .treeAggregate(new HashMap<ActivityClass, StatCounter>(),
+                            new Function2<HashMap<ActivityClass, StatCounter>, Tuple2<CaseId, Trace>, HashMap<ActivityClass, StatCounter>>() {
                                 @Override
-                                public StatCounter call(StatCounter sc, Double d) throws Exception {
-                                    return sc.merge(d);
+                                public HashMap<ActivityClass, StatCounter> call(HashMap<ActivityClass, StatCounter> m, Tuple2<CaseId, Trace> t) throws Exception {
+                                    t._2().getOrderedEvents().values().forEach(e -> m.computeIfAbsent(e.getActivityClass(), k -> new StatCounter())
+                                            .merge(e.duration(TimeUnit.MINUTE)));
+                                    return m;
                                 }
                             },
-                            new Function2<StatCounter, StatCounter, StatCounter>() {
+                            new Function2<HashMap<ActivityClass, StatCounter>, HashMap<ActivityClass, StatCounter>, HashMap<ActivityClass, StatCounter>>() {
                                 @Override
-                                public StatCounter call(StatCounter sc1, StatCounter sc2) throws Exception {
-                                    return sc1.merge(sc2);
+                                public HashMap<ActivityClass, StatCounter> call(HashMap<ActivityClass, StatCounter> m1, HashMap<ActivityClass, StatCounter> m2) throws Exception {
+                                    m2.forEach((k, v) -> m1.merge(k, v, StatCounter::merge));
+                                    return m1;
                                 }
-                            })
-                    .collectAsMap();
+                            });
             return new ActivityClassOverview(activityClassStatCounterMap);
         }
 
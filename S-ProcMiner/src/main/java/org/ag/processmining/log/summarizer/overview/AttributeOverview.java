@@ -0,0 +1,243 @@
+package org.ag.processmining.log.summarizer.overview;
+
+import org.ag.processmining.local.LocalLog;
+import org.ag.processmining.log.model.AttributeSchema;
+import org.ag.processmining.log.model.AttributeSchema.AttributeType;
+import org.ag.processmining.log.model.AttributeSchema.Inference;
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.EncodedTrace;
+import org.ag.processmining.log.model.Trace;
+import org.ag.processmining.log.model.TraceAttributes;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.api.java.function.Function;
+import org.apache.spark.broadcast.Broadcast;
+import org.apache.spark.util.StatCounter;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Filters and group-bys on the extra attributes of the events of a log.
+ * <p>
+ * The builder infers the {@link AttributeSchema} of the log and encodes the attributes of every
+ * trace as typed columns; the filters and group-bys then compare codes and numbers, with the
+ * values given as strings translated once. The encoded traces are copies whose events drop their
+ * string maps, and should replace the input traces; these are left unchanged.
+ */
+public class AttributeOverview implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private final AttributeSchema schema;
+    private final JavaPairRDD<CaseId, Trace> traces;
+    private final transient LocalLog localTraces;
+
+    private AttributeOverview(AttributeSchema schema, JavaPairRDD<CaseId, Trace> traces, LocalLog localTraces) {
+        this.schema = schema;
+        this.traces = traces;
+        this.localTraces = localTraces;
+    }
+
+    public AttributeSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * @return the traces with their attributes encoded, null for a local log
+     */
+    public JavaPairRDD<CaseId, Trace> getTraces() {
+        return traces;
+    }
+
+    /**
+     * @return the traces of a local log with their attributes encoded, null for an RDD. The traces
+     * of a spilled log are encoded again on every pass over them.
+     */
+    public LocalLog getLocalTraces() {
+        return localTraces;
+    }
+
+    private int attribute(String name, AttributeType... types) {
+        int a = schema.index(name);
+        if (a < 0) {
+            throw new IllegalArgumentException("Unknown attribute: " + name);
+        }
+        for (AttributeType type : types) {
+            if (schema.type(a) == type) {
+                return a;
+            }
+        }
+        throw new IllegalArgumentException("Attribute " + name + " is " + schema.type(a));
+    }
+
+    /**
+     * @return the condition that an event of the trace has the value for the categorical attribute
+     */
+    public Function<Trace, Boolean> hasValue(String attribute, String value) {
+        int a = attribute(attribute, AttributeType.CATEGORICAL);
+        int code = schema.code(a, value);
+        return t -> code != EncodedTrace.NO_ID && t.getAttributes().contains(a, code);
+    }
+
+    /**
+     * @return the condition that an event of the trace has a value of the numeric attribute in [from, to]
+     */
+    public Function<Trace, Boolean> hasValueBetween(String attribute, double from, double to) {
+        int a = attribute(attribute, AttributeType.INT, AttributeType.DOUBLE, AttributeType.TIMESTAMP);
+        return t -> t.getAttributes().containsBetween(a, from, to);
+    }
+
+    /**
+     * @return the traces meeting the condition, in their partitions
+     */
+    public JavaPairRDD<CaseId, Trace> filter(Function<Trace, Boolean> condition) {
+        if (traces == null) {
+            throw new IllegalStateException("Filters apply to the traces of an RDD");
+        }
+        return traces.filter(x -> condition.call(x._2()));
+    }
+
+    /**
+     * @return the number of cases with each value of the categorical attribute
+     */
+    public Map<String, Long> casesByValue(String attribute) {
+        int a = attribute(attribute, AttributeType.CATEGORICAL);
+        long[] counts = new long[schema.categories(a).size()];
+        if (localTraces != null) {
+            return byValue(a, localTraces.aggregate(counts, (c, t) -> countCases(c, t, a), AttributeOverview::sum));
+        }
+        return byValue(a, traces.treeAggregate(counts, (c, x) -> countCases(c, x._2(), a), AttributeOverview::sum));
+    }
+
+    /**
+     * @return the number of events with each value of the categorical attribute
+     */
+    public Map<String, Long> eventsByValue(String attribute) {
+        int a = attribute(attribute, AttributeType.CATEGORICAL);
+        long[] counts = new long[schema.categories(a).size()];
+        if (localTraces != null) {
+            return byValue(a, localTraces.aggregate(counts, (c, t) -> countEvents(c, t, a), AttributeOverview::sum));
+        }
+        return byValue(a, traces.treeAggregate(counts, (c, x) -> countEvents(c, x._2(), a), AttributeOverview::sum));
+    }
+
+    /**
+     * @return the statistics of the numeric attribute over the events with each value of the
+     * categorical attribute
+     */
+    public Map<String, StatCounter> statsByValue(String numericAttribute, String categoricalAttribute) {
+        int n = attribute(numericAttribute, AttributeType.INT, AttributeType.DOUBLE, AttributeType.TIMESTAMP);
+        int a = attribute(categoricalAttribute, AttributeType.CATEGORICAL);
+        StatCounter[] stats = new StatCounter[schema.categories(a).size()];
+        StatCounter[] result = localTraces != null
+                ? localTraces.aggregate(stats, (s, t) -> stats(s, t, n, a), AttributeOverview::merge)
+                : traces.treeAggregate(stats, (s, x) -> stats(s, x._2(), n, a), AttributeOverview::merge);
+        Map<String, StatCounter> byValue = new HashMap<>();
+        for (int code = 0; code < result.length; code++) {
+            if (result[code] != null) {
+                byValue.put(schema.categories(a).get(code), result[code]);
+            }
+        }
+        return byValue;
+    }
+
+    private static long[] countCases(long[] counts, Trace t, int a) {
+        TraceAttributes attributes = t.getAttributes();
+        BitSet seen = new BitSet(counts.length);
+        for (int i = 0; i < attributes.size(); i++) {
+            int code = attributes.code(a, i);
+            if (code != EncodedTrace.NO_ID && !seen.get(code)) {
+                seen.set(code);
+                counts[code]++;
+            }
+        }
+        return counts;
+    }
+
+    private static long[] countEvents(long[] counts, Trace t, int a) {
+        TraceAttributes attributes = t.getAttributes();
+        for (int i = 0; i < attributes.size(); i++) {
+            int code = attributes.code(a, i);
+            if (code != EncodedTrace.NO_ID) {
+                counts[code]++;
+            }
+        }
+        return counts;
+    }
+
+    private static StatCounter[] stats(StatCounter[] stats, Trace t, int n, int a) {
+        TraceAttributes attributes = t.getAttributes();
+        for (int i = 0; i < attributes.size(); i++) {
+            int code = attributes.code(a, i);
+            double v = attributes.doubleValue(n, i);
+            if (code != EncodedTrace.NO_ID && !Double.isNaN(v)) {
+                (stats[code] == null ? stats[code] = new StatCounter() : stats[code]).merge(v);
+            }
+        }
+        return stats;
+    }
+
+    private static long[] sum(long[] c1, long[] c2) {
+        for (int i = 0; i < c1.length; i++) {
+            c1[i] += c2[i];
+        }
+        return c1;
+    }
+
+    private static StatCounter[] merge(StatCounter[] s1, StatCounter[] s2) {
+        for (int i = 0; i < s1.length; i++) {
+            s1[i] = s1[i] == null ? s2[i] : s2[i] == null ? s1[i] : s1[i].merge(s2[i]);
+        }
+        return s1;
+    }
+
+    private Map<String, Long> byValue(int a, long[] counts) {
+        Map<String, Long> byValue = new HashMap<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                byValue.put(schema.categories(a).get(code), counts[code]);
+            }
+        }
+        return byValue;
+    }
+
+    public static class AttributeOverviewBuilder implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        JavaPairRDD<CaseId, Trace> traces;
+        transient LocalLog localTraces;
+        private int maxCategories = 1000;
+
+        public AttributeOverviewBuilder(JavaPairRDD<CaseId, Trace> traces) {
+            this.traces = traces;
+        }
+
+        public AttributeOverviewBuilder(LocalLog traces) {
+            this.localTraces = traces;
+        }
+
+        /**
+         * @param maxCategories number of distinct values beyond which a non numeric attribute is text
+         */
+        public AttributeOverviewBuilder maxCategories(int maxCategories) {
+            this.maxCategories = maxCategories;
+            return this;
+        }
+
+        public AttributeOverview build() {
+            if (localTraces != null) {
+                AttributeSchema schema = localTraces.aggregate(new Inference(maxCategories), Inference::add, Inference::merge).schema();
+                return new AttributeOverview(schema, null, localTraces.map(t -> t.encodeAttributes(schema)));
+            }
+            AttributeSchema schema = traces.treeAggregate(new Inference(maxCategories),
+                    (i, x) -> i.add(x._2()),
+                    (i1, i2) -> i1.merge(i2))
+                    .schema();
+            Broadcast<AttributeSchema> bSchema = JavaSparkContext.fromSparkContext(traces.context()).broadcast(schema);
+            JavaPairRDD<CaseId, Trace> encoded = traces.mapValues(t -> t.encodeAttributes(bSchema.value())).cache();
+            return new AttributeOverview(schema, encoded, null);
+        }
+    }
+}
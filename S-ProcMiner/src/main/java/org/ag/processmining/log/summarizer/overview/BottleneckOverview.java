@@ -0,0 +1,229 @@
+package org.ag.processmining.log.summarizer.overview;
+
+import org.ag.processmining.Utils.DurationSketch;
+import org.ag.processmining.local.EventStore;
+import org.ag.processmining.local.LocalLog;
+import org.ag.processmining.log.model.ActivityClass;
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Originator;
+import org.ag.processmining.log.model.Trace;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalTime;
+import scala.Tuple2;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Where the cases of a log wait: waiting time distributions per activity handoff, per resource
+ * handoff and per time of day, and the handoffs ranked by their contribution to the total
+ * duration of the cases.
+ */
+public class BottleneckOverview implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private final BottleneckStatistics statistics;
+
+    private BottleneckOverview(BottleneckStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    public BottleneckStatistics getStatistics() {
+        return statistics;
+    }
+
+    public Map<Tuple2<ActivityClass, ActivityClass>, DurationSketch> activityWaiting() {
+        Map<Tuple2<ActivityClass, ActivityClass>, DurationSketch> m = new HashMap<>();
+        for (int a = 0; a < statistics.size(); a++) {
+            for (int b = 0; b < statistics.size(); b++) {
+                if (statistics.waiting(a, b) != null) {
+                    m.put(new Tuple2<>(statistics.activity(a), statistics.activity(b)), statistics.waiting(a, b));
+                }
+            }
+        }
+        return m;
+    }
+
+    public Map<Tuple2<Originator, Originator>, DurationSketch> resourceWaiting() {
+        Map<Tuple2<Originator, Originator>, DurationSketch> m = new HashMap<>();
+        statistics.forEachResourceHandoff(m::put);
+        return m;
+    }
+
+    /**
+     * @return the waiting time of the handoffs by the time of day of the end of the event handing
+     * off, by bucket start
+     */
+    public SortedMap<LocalTime, DurationSketch> waitingByTimeOfDay() {
+        SortedMap<LocalTime, DurationSketch> m = new TreeMap<>();
+        for (int b = 0; b < statistics.timeOfDayBuckets(); b++) {
+            if (statistics.timeOfDay(b) != null) {
+                m.put(LocalTime.MIDNIGHT.plusMinutes(b * statistics.getBucketMinutes()), statistics.timeOfDay(b));
+            }
+        }
+        return m;
+    }
+
+    public Map<ActivityClass, DurationSketch> serviceTime() {
+        Map<ActivityClass, DurationSketch> m = new HashMap<>();
+        for (int a = 0; a < statistics.size(); a++) {
+            if (statistics.serviceTime(a) != null) {
+                m.put(statistics.activity(a), statistics.serviceTime(a));
+            }
+        }
+        return m;
+    }
+
+    public DurationSketch caseDuration() {
+        return statistics.caseDuration();
+    }
+
+    /**
+     * @return the activity handoffs with the largest total waiting time, largest first
+     */
+    public List<Bottleneck<ActivityClass>> rankActivityHandoffs(int top) {
+        return rank(activityWaiting(), top);
+    }
+
+    /**
+     * @return the resource handoffs with the largest total waiting time, largest first
+     */
+    public List<Bottleneck<Originator>> rankResourceHandoffs(int top) {
+        return rank(resourceWaiting(), top);
+    }
+
+    private <T> List<Bottleneck<T>> rank(Map<Tuple2<T, T>, DurationSketch> waiting, int top) {
+        double total = statistics.caseDuration().sum();
+        PriorityQueue<Bottleneck<T>> best = new PriorityQueue<>(Comparator.comparingDouble(Bottleneck::getTotalWaiting));
+        waiting.forEach((k, s) -> {
+            best.add(new Bottleneck<>(k._1(), k._2(), s, total == 0 ? 0 : s.sum() / total));
+            if (best.size() > top) {
+                best.poll();
+            }
+        });
+        List<Bottleneck<T>> l = new ArrayList<>(best);
+        l.sort(Comparator.comparingDouble((Bottleneck<T> b) -> b.getTotalWaiting()).reversed());
+        return l;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Case duration: ").append(caseDuration()).append('\n');
+        sb.append("Overlapping handoffs: ").append(statistics.overlaps()).append('\n');
+        for (Bottleneck<ActivityClass> b : rankActivityHandoffs(10)) {
+            sb.append(b).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Handoff between two activities or two resources, with its waiting time and its share of the
+     * total duration of the cases.
+     */
+    public static class Bottleneck<T> implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final T from;
+        private final T to;
+        private final DurationSketch waiting;
+        private final double share;
+
+        Bottleneck(T from, T to, DurationSketch waiting, double share) {
+            this.from = from;
+            this.to = to;
+            this.waiting = waiting;
+            this.share = share;
+        }
+
+        public T getFrom() {
+            return from;
+        }
+
+        public T getTo() {
+            return to;
+        }
+
+        public DurationSketch getWaiting() {
+            return waiting;
+        }
+
+        public double getTotalWaiting() {
+            return waiting.sum();
+        }
+
+        /**
+         * @return the total waiting time of the handoff divided by the total duration of the cases
+         */
+        public double getShare() {
+            return share;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s -> %s: %d handoffs, median %.0fms, p90 %.0fms, %.1f%% of case time",
+                    from, to, waiting.count(), waiting.median(), waiting.quantile(0.9), 100 * share);
+        }
+    }
+
+    public static class BottleneckOverviewBuilder implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        JavaPairRDD<CaseId, Trace> traces;
+        transient LocalLog localTraces;
+        transient EventStore store;
+        private int bucketMinutes = 60;
+        private DateTimeZone zone = DateTimeZone.getDefault();
+        private int depth = 2;
+
+        public BottleneckOverviewBuilder(JavaPairRDD<CaseId, Trace> traces) {
+            this.traces = traces;
+        }
+
+        public BottleneckOverviewBuilder(LocalLog traces) {
+            this.localTraces = traces;
+        }
+
+        public BottleneckOverviewBuilder(EventStore store) {
+            this.store = store;
+        }
+
+        /**
+         * @param bucketMinutes length of the time of day buckets, a divisor of 1440
+         */
+        public BottleneckOverviewBuilder timeOfDayBucket(int bucketMinutes) {
+            this.bucketMinutes = bucketMinutes;
+            return this;
+        }
+
+        public BottleneckOverviewBuilder zone(DateTimeZone zone) {
+            this.zone = zone;
+            return this;
+        }
+
+        public BottleneckOverviewBuilder depth(int depth) {
+            this.depth = depth;
+            return this;
+        }
+
+        public BottleneckOverview build() {
+            if (store != null) {
+                return new BottleneckOverview(store.aggregate(
+                        new BottleneckStatistics(store.activities(), store.originators(), bucketMinutes, zone),
+                        BottleneckStatistics::add,
+                        BottleneckStatistics::merge)
+                        .canonical());
+            }
+            if (localTraces != null) {
+                return new BottleneckOverview(localTraces.aggregate(new BottleneckStatistics(bucketMinutes, zone),
+                        BottleneckStatistics::add,
+                        BottleneckStatistics::merge)
+                        .canonical());
+            }
+            return new BottleneckOverview(traces.treeAggregate(new BottleneckStatistics(bucketMinutes, zone),
+                    (s, t) -> s.add(t._2()),
+                    (s1, s2) -> s1.merge(s2),
+                    depth)
+                    .canonical());
+        }
+    }
+}
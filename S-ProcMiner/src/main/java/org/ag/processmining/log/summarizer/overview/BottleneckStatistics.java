@@ -0,0 +1,291 @@
+package org.ag.processmining.log.summarizer.overview;
+
+import org.ag.processmining.Utils.DurationSketch;
+import org.ag.processmining.log.model.ActivityClass;
+import org.ag.processmining.log.model.Dictionary;
+import org.ag.processmining.log.model.EncodedTrace;
+import org.ag.processmining.log.model.Originator;
+import org.ag.processmining.log.model.Trace;
+import org.ag.processmining.miner.ActivityStatistics;
+import org.joda.time.DateTimeZone;
+import scala.Tuple2;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Waiting and service time sketches of a log, filled partition by partition in one scan over the
+ * traces and merged (see {@link ActivityStatistics}).
+ * <p>
+ * The waiting time of a handoff is the time between the end of an event and the start of the next
+ * event of its trace; handoffs to an event that starts before its predecessor ends are counted as
+ * overlaps, not waiting. Waiting times are kept per pair of activities (dense matrix), per pair
+ * of resources (open-addressing table on the packed pair of resource ids) and per time of day of
+ * the handoff.
+ */
+public class BottleneckStatistics extends ActivityStatistics<BottleneckStatistics> {
+
+    static final long serialVersionUID = 1L;
+    private static final int INITIAL_HANDOFFS = 64;
+
+    private final int bucketMinutes;
+    private final DateTimeZone zone;
+    private DurationSketch[][] activityWaiting = new DurationSketch[0][0];
+    private DurationSketch[] serviceTime = new DurationSketch[0];
+    private final DurationSketch[] timeOfDay;
+    private final DurationSketch caseDuration = new DurationSketch();
+    private long overlaps = 0;
+    /*
+    Resource ids in order of appearance, and the resource handoff table: packed pair keys
+    ((from + 1) << 32 | (to + 1), 0 if the slot is empty) and their sketches
+     */
+    private final List<Originator> resources = new ArrayList<>();
+    private final Map<Originator, Integer> resourceIds = new HashMap<>();
+    private long[] handoffKeys = new long[INITIAL_HANDOFFS];
+    private DurationSketch[] handoffs = new DurationSketch[INITIAL_HANDOFFS];
+    private int handoffCount = 0;
+
+    /**
+     * @param bucketMinutes length of the time of day buckets, a divisor of 1440
+     * @param zone          time zone of the time of day
+     */
+    public BottleneckStatistics(int bucketMinutes, DateTimeZone zone) {
+        if (bucketMinutes <= 0 || 1440 % bucketMinutes != 0) {
+            throw new IllegalArgumentException("Bucket length must divide a day: " + bucketMinutes);
+        }
+        this.bucketMinutes = bucketMinutes;
+        this.zone = zone;
+        this.timeOfDay = new DurationSketch[1440 / bucketMinutes];
+    }
+
+    /**
+     * Statistics of traces already encoded with these activity and resource dictionaries, such as
+     * the traces of an {@link org.ag.processmining.local.EventStore}.
+     */
+    public BottleneckStatistics(Dictionary<ActivityClass> activities, Dictionary<Originator> originators,
+                                int bucketMinutes, DateTimeZone zone) {
+        this(bucketMinutes, zone);
+        register(activities);
+        for (Originator o : originators.values()) {
+            resourceId(o);
+        }
+    }
+
+    @Override
+    public BottleneckStatistics add(Trace trace) {
+        return add(EncodedTrace.encode(trace, this::id, this::resourceId));
+    }
+
+    @Override
+    protected BottleneckStatistics empty() {
+        return new BottleneckStatistics(bucketMinutes, zone);
+    }
+
+    @Override
+    protected void resize(int oldCapacity, int newCapacity) {
+        DurationSketch[][] w = new DurationSketch[newCapacity][newCapacity];
+        for (int i = 0; i < oldCapacity; i++) {
+            System.arraycopy(activityWaiting[i], 0, w[i], 0, oldCapacity);
+        }
+        activityWaiting = w;
+        serviceTime = Arrays.copyOf(serviceTime, newCapacity);
+    }
+
+    @Override
+    protected void addEncoded(EncodedTrace trace) {
+        int n = trace.size();
+        if (n == 0) {
+            return;
+        }
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            int a = trace.activity(i);
+            long start = trace.start(i);
+            long end = trace.end(i);
+            long completion = trace.completion(i);
+            if (start != EncodedTrace.NO_TIME) {
+                first = Math.min(first, start);
+                if (end != EncodedTrace.NO_TIME) {
+                    sketch(serviceTime, a).add(end - start);
+                }
+            }
+            last = Math.max(last, completion);
+            if (i == 0) {
+                continue;
+            }
+            long from = trace.completion(i - 1);
+            if (from == EncodedTrace.NO_TIME || start == EncodedTrace.NO_TIME) {
+                continue;
+            }
+            long wait = start - from;
+            if (wait < 0) {
+                overlaps++;
+                continue;
+            }
+            sketch(activityWaiting[trace.activity(i - 1)], a).add(wait);
+            sketch(timeOfDay, bucket(from)).add(wait);
+            int r1 = trace.originator(i - 1);
+            int r2 = trace.originator(i);
+            if (r1 != EncodedTrace.NO_ID && r2 != EncodedTrace.NO_ID) {
+                handoff(r1, r2).add(wait);
+            }
+        }
+        if (first != Long.MAX_VALUE && last != EncodedTrace.NO_TIME) {
+            caseDuration.add(last - first);
+        }
+    }
+
+    @Override
+    protected void mergeRemapped(BottleneckStatistics other, int[] map) {
+        for (int i = 0; i < map.length; i++) {
+            if (other.serviceTime[i] != null) {
+                sketch(serviceTime, map[i]).merge(other.serviceTime[i]);
+            }
+            for (int j = 0; j < map.length; j++) {
+                if (other.activityWaiting[i][j] != null) {
+                    sketch(activityWaiting[map[i]], map[j]).merge(other.activityWaiting[i][j]);
+                }
+            }
+        }
+        for (int b = 0; b < timeOfDay.length; b++) {
+            if (other.timeOfDay[b] != null) {
+                sketch(timeOfDay, b).merge(other.timeOfDay[b]);
+            }
+        }
+        int[] resourceMap = new int[other.resources.size()];
+        for (int r = 0; r < resourceMap.length; r++) {
+            resourceMap[r] = resourceId(other.resources.get(r));
+        }
+        for (int s = 0; s < other.handoffKeys.length; s++) {
+            long key = other.handoffKeys[s];
+            if (key != 0) {
+                handoff(resourceMap[(int) (key >>> 32) - 1], resourceMap[(int) key - 1]).merge(other.handoffs[s]);
+            }
+        }
+        caseDuration.merge(other.caseDuration);
+        overlaps += other.overlaps;
+    }
+
+    private static DurationSketch sketch(DurationSketch[] sketches, int i) {
+        DurationSketch s = sketches[i];
+        if (s == null) {
+            s = sketches[i] = new DurationSketch();
+        }
+        return s;
+    }
+
+    private int bucket(long millis) {
+        long local = millis + zone.getOffset(millis);
+        return (int) (Math.floorMod(local, 86400000L) / (bucketMinutes * 60000L));
+    }
+
+    int resourceId(Originator o) {
+        Integer id = resourceIds.get(o);
+        if (id == null) {
+            id = resources.size();
+            resources.add(o);
+            resourceIds.put(o, id);
+        }
+        return id;
+    }
+
+    private DurationSketch handoff(int from, int to) {
+        long key = ((long) (from + 1) << 32) | (to + 1);
+        int mask = handoffKeys.length - 1;
+        int i = (int) mixKey(key) & mask;
+        while (handoffKeys[i] != 0) {
+            if (handoffKeys[i] == key) {
+                return handoffs[i];
+            }
+            i = (i + 1) & mask;
+        }
+        if (2 * (handoffCount + 1) > handoffKeys.length) {
+            growHandoffs();
+            return handoff(from, to);
+        }
+        handoffKeys[i] = key;
+        handoffCount++;
+        return handoffs[i] = new DurationSketch();
+    }
+
+    private void growHandoffs() {
+        long[] keys = handoffKeys;
+        DurationSketch[] sketches = handoffs;
+        handoffKeys = new long[keys.length * 2];
+        handoffs = new DurationSketch[keys.length * 2];
+        int mask = handoffKeys.length - 1;
+        for (int s = 0; s < keys.length; s++) {
+            if (keys[s] != 0) {
+                int i = (int) mixKey(keys[s]) & mask;
+                while (handoffKeys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                handoffKeys[i] = keys[s];
+                handoffs[i] = sketches[s];
+            }
+        }
+    }
+
+    private static long mixKey(long key) {
+        key *= 0x9e3779b97f4a7c15L;
+        return key ^ (key >>> 29);
+    }
+
+    public int getBucketMinutes() {
+        return bucketMinutes;
+    }
+
+    /**
+     * @return the waiting time sketch of the handoffs from activity a to activity b, null if none
+     */
+    public DurationSketch waiting(int a, int b) {
+        return activityWaiting[a][b];
+    }
+
+    /**
+     * @return the sketch of the durations of the events of the activity, null if none
+     */
+    public DurationSketch serviceTime(int a) {
+        return serviceTime[a];
+    }
+
+    /**
+     * @return the waiting time sketch of the handoffs leaving an event in the time of day bucket,
+     * null if none
+     */
+    public DurationSketch timeOfDay(int bucket) {
+        return timeOfDay[bucket];
+    }
+
+    public int timeOfDayBuckets() {
+        return timeOfDay.length;
+    }
+
+    public DurationSketch caseDuration() {
+        return caseDuration;
+    }
+
+    /**
+     * @return the number of handoffs to an event starting before the end of its predecessor
+     */
+    public long overlaps() {
+        return overlaps;
+    }
+
+    public List<Originator> resources() {
+        return Collections.unmodifiableList(resources);
+    }
+
+    /**
+     * Calls the consumer with the waiting time sketch of each pair of resources handing off work.
+     */
+    public void forEachResourceHandoff(BiConsumer<Tuple2<Originator, Originator>, DurationSketch> consumer) {
+        for (int s = 0; s < handoffKeys.length; s++) {
+            if (handoffKeys[s] != 0) {
+                consumer.accept(new Tuple2<>(resources.get((int) (handoffKeys[s] >>> 32) - 1),
+                        resources.get((int) handoffKeys[s] - 1)), handoffs[s]);
+            }
+        }
+    }
+}
@@ -4,20 +4,35 @@ package org.ag.processmining.log.summarizer.overview;
  * @author ahmed
  */
 
+import lombok.Getter;
 import org.ag.processmining.Utils.TimeUtils;
+import org.ag.processmining.index.CaseIntervalIndex;
+import org.ag.processmining.ingest.EventDeduplicator;
+import org.ag.processmining.local.ExternalTraceSorter;
+import org.ag.processmining.local.LocalEngine;
+import org.ag.processmining.local.LocalLog;
 import org.ag.processmining.log.model.*;
 import org.ag.processmining.log.model.Event.EventBuilder;
 import org.ag.processmining.log.summarizer.overview.ActivityClassOverview.ActivityClassOverviewBuilder;
-import org.ag.processmining.sna.ActivityCoworkerSNBuilder;
+import org.ag.processmining.log.summarizer.utils.CasePartitioner;
+import org.ag.processmining.sna.snbuilder.ActivityCoworkerSNBuilder;
+import org.ag.processmining.sna.socialnetwork.ActivityCoworkerSocialNetwork;
+import org.apache.spark.SparkEnv;
+import org.apache.spark.TaskContext;
 import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.util.StatCounter;
+import org.apache.spark.util.Utils;
 import org.joda.time.DateTime;
 import scala.Tuple2;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeSet;
 
@@ -57,6 +72,7 @@ public class LogSummary implements Serializable {
     /*
     Occurences of each event class
      */
+    @Getter
     Map<ActivityClass, Long> eventClassOccurences;
     String toot;
     /**
@@ -76,10 +92,12 @@ public class LogSummary implements Serializable {
     /*
         The total number of events of the log
      */
+    @Getter
     private long numberOfEvents = 0;
     /**
      * The total number of process instances contained in a log.
      */
+    @Getter
     private long numberOfProcessInstances = 0;
     /*
     Case duration stats
@@ -112,7 +130,13 @@ public class LogSummary implements Serializable {
     private Map<Originator, Long> originatorOccurences = null;
 
 
+    @Getter
     private TreeSet<ActivityClass> activityClasses;
+    /*
+    Originators working on the same activities
+     */
+    @Getter
+    private ActivityCoworkerSocialNetwork activityCoworkers;
 
     /**
      * Creates a new log summary.
@@ -137,31 +161,139 @@ public class LogSummary implements Serializable {
         LogSummary ls = new LogSummary();
         JavaRDD<String> rawLogRDD = sc.textFile(sourceFile);
         JavaPairRDD<CaseId, Event> events = buildEvents(rawLogRDD, logHeader, eSchema);
-        JavaPairRDD<CaseId, Trace> traces = buildTraces(events);
-        System.out.println(traces.count());
-        
-
-        ActivityClassOverview actClsOverview = new ActivityClassOverviewBuilder(traces).build();
-        /*
-        System.out.println(actClsOverview.frequency());
-        System.out.println(actClsOverview.meanDuration());
-        System.out.println(actClsOverview.aggregateDuration());
-        System.out.println(actClsOverview.rangeDuration());
-        */
-        //SocialNetwork handOverSN = traces.map(x -> new HandOverSNBuilder(x._2()).build()).reduce((x, y) -> x.merge(y));
-        //SocialNetwork caseCoWorkerSN = traces.map(x -> new CaseCoworkerSNBuilder(x._2()).build()).reduce((x, y) -> x.merge(y));
-
-        ActivityCoworkerSNBuilder a = new ActivityCoworkerSNBuilder(traces) ;
-        a.build() ;
-
-        //System.out.println(CASE_ID_PROC_INSTANCE.count());
-        return null;
+        JavaPairRDD<CaseId, Trace> traces = buildTraces(events, new CasePartitioner(rawLogRDD.partitions().size()));
+        return ls.summarize(traces.count(), new ActivityClassOverviewBuilder(traces).build(),
+                new ActivityCoworkerSNBuilder(traces).build());
+    }
+
+    /**
+     * Builds the summary of the cases active in [from, to). The cases are selected on the index,
+     * so only the partitions of the traces holding such cases are read; an index built once serves
+     * every time slice of a report.
+     */
+    public static LogSummary buildSummary(CaseIntervalIndex index, DateTime from, DateTime to) {
+        LogSummary ls = new LogSummary();
+        JavaPairRDD<CaseId, Trace> traces = index.active(from, to);
+        return ls.summarize(traces.count(), new ActivityClassOverviewBuilder(traces).build(),
+                new ActivityCoworkerSNBuilder(traces).build());
     }
 
+    /**
+     * Builds the summary of a log that fits on one machine with the {@link LocalEngine}, without
+     * a Spark context.
+     */
+    public static LogSummary buildSummary(String sourceFile, String[] logHeader, EventSchema eSchema) throws IOException {
+
+        LogSummary ls = new LogSummary();
+        LocalLog traces = new LocalEngine().read(sourceFile, logHeader, eSchema);
+        return ls.summarize(traces.count(), new ActivityClassOverviewBuilder(traces).build(),
+                new ActivityCoworkerSNBuilder(traces).build());
+    }
+
+    /**
+     * Fills the summary with the overviews of the traces, whichever engine computed them.
+     */
+    private LogSummary summarize(long cases, ActivityClassOverview activities, ActivityCoworkerSocialNetwork coworkers) {
+        this.numberOfProcessInstances = cases;
+        this.eventClassOccurences = activities.frequency();
+        this.numberOfEvents = eventClassOccurences.values().stream().mapToLong(Long::longValue).sum();
+        this.activityClasses = new TreeSet<>(eventClassOccurences.keySet());
+        this.activityCoworkers = coworkers;
+        return this;
+    }
+
+    /**
+     * Groups the events into traces. Traces are built in place rather than merged into copies, so
+     * building a trace is linear in its size; see {@link SegmentedTraces} for logs whose largest
+     * cases are too large for one task.
+     */
     public static JavaPairRDD<CaseId, Trace> buildTraces(JavaPairRDD<CaseId, Event> events) {
         return events
-                .mapToPair(x -> new Tuple2<>(x._1, new Trace(x._1).addEvent(x._2)))
-                .reduceByKey((x, y) -> x.merge(y));
+                .combineByKey(
+                        e -> new Trace(e.getCaseId()).addEvent(e),
+                        (t, e) -> t.addEvent(e),
+                        (t1, t2) -> {
+                            t1.getOrderedEvents().putAll(t2.getOrderedEvents());
+                            return t1;
+                        });
+    }
+
+    /**
+     * Groups the events into traces partitioned by case, and caches them: the single shuffle of
+     * the event data. Later per-case computations and joins on the same partitioner are narrow.
+     */
+    public static JavaPairRDD<CaseId, Trace> buildTraces(JavaPairRDD<CaseId, Event> events, CasePartitioner partitioner) {
+        return events
+                .combineByKey(
+                        e -> new Trace(e.getCaseId()).addEvent(e),
+                        (t, e) -> t.addEvent(e),
+                        (t1, t2) -> {
+                            t1.getOrderedEvents().putAll(t2.getOrderedEvents());
+                            return t1;
+                        },
+                        partitioner)
+                .cache();
+    }
+
+    /**
+     * Drops the duplicate events with the deduplicator, then groups the events into traces as
+     * {@link #buildTraces(JavaPairRDD, CasePartitioner)}. The deduplicated events are already
+     * partitioned by case, so they are not shuffled again.
+     */
+    public static JavaPairRDD<CaseId, Trace> buildTraces(JavaPairRDD<CaseId, Event> events, CasePartitioner partitioner,
+                                                         EventDeduplicator deduplicator) {
+        return buildTraces(deduplicator.deduplicate(events, partitioner).getEvents(), partitioner);
+    }
+
+    /**
+     * Groups the events into traces with bounded memory, for logs whose traces do not fit in the
+     * memory of the executors. The events are shuffled to the partitions of their cases, where an
+     * {@link ExternalTraceSorter} writes them to sorted runs in the Spark local directory every
+     * {@code memoryBudget} bytes (estimated heap size) and streams the traces merged from the
+     * runs, one at a time; the runs are deleted when the task completes, even if it fails or
+     * stops reading early. The traces are not cached: persist them serialized to disk if they
+     * are read more than once, as every read merges the runs again.
+     */
+    public static JavaPairRDD<CaseId, Trace> buildTraces(JavaPairRDD<CaseId, Event> events, CasePartitioner partitioner,
+                                                         long memoryBudget) {
+        return events
+                .partitionBy(partitioner)
+                .mapPartitionsToPair(it -> {
+                    ExternalTraceSorter sorter = new ExternalTraceSorter(
+                            Files.createTempDirectory(Paths.get(Utils.getLocalDir(SparkEnv.get().conf())), "traces"), 1);
+                    TaskContext.get().addTaskCompletionListener(context -> sorter.close());
+                    ExternalTraceSorter.Writer writer = sorter.writer(memoryBudget);
+                    it.forEachRemaining(x -> writer.add(x._2()));
+                    writer.close();
+                    Iterator<Trace> traces = sorter.traces(0);
+                    return () -> new Iterator<Tuple2<CaseId, Trace>>() {
+                        @Override
+                        public boolean hasNext() {
+                            if (traces.hasNext()) {
+                                return true;
+                            }
+                            sorter.close();
+                            return false;
+                        }
+
+                        @Override
+                        public Tuple2<CaseId, Trace> next() {
+                            Trace t = traces.next();
+                            return new Tuple2<>(t.getId(), t);
+                        }
+                    };
+                }, true);
+    }
+
+    /**
+     * Joins traces built by {@link #buildTraces(JavaPairRDD, CasePartitioner)} with case level
+     * attributes (costs, outcomes, ...). Only the attributes are shuffled, to the partitions of
+     * their cases; the traces stay in place.
+     */
+    public static <A> JavaPairRDD<CaseId, Tuple2<Trace, A>> joinCaseAttributes(JavaPairRDD<CaseId, Trace> traces,
+                                                                             JavaPairRDD<CaseId, A> attributes,
+                                                                             CasePartitioner partitioner) {
+        return traces.join(attributes, partitioner);
     }
 
     public static JavaPairRDD<CaseId, Event> buildEvents(JavaRDD<String> rawLogRDD, String[] logHeader, EventSchema eSchema) {
@@ -0,0 +1,220 @@
+package org.ag.processmining.log.summarizer.overview;
+
+import org.ag.processmining.Utils.TimeUtils;
+import org.ag.processmining.Utils.TimeUtils.TimeUnit;
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Event;
+import org.ag.processmining.log.model.SegmentKey;
+import org.ag.processmining.log.model.Trace;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+import scala.Tuple2;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Traces of a log built with the traces of heavy cases split into time-ordered segments.
+ * <p>
+ * Building traces with a reduction by case id sends all the events of a case to one task, so a
+ * case with hundreds of thousands of events makes a straggler that the whole stage waits for.
+ * Heavy cases are detected on a sample of the events; each of them is cut at start times taken
+ * from its sampled events into segments of about {@code segmentEvents} events, which are built by
+ * different tasks. Light cases keep a single segment.
+ * <p>
+ * Per-trace computations run on the segments and are stitched at the segment boundaries with the
+ * {@link #seams()} of the split cases: the first and last events of each segment, in order.
+ * {@link #durations(TimeUnit)} and {@link #waitingMillis()} are stitched here; the
+ * {@link org.ag.processmining.miner.dfg.DFGBuilder} and the
+ * {@link org.ag.processmining.sna.snbuilder.HandOverSNBuilder} stitch their edges the same way.
+ */
+public class SegmentedTraces implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private final JavaPairRDD<SegmentKey, Trace> segments;
+    /*
+    Segment boundaries of the heavy cases: segment i holds the events starting before boundary i
+     */
+    private final Map<CaseId, long[]> boundaries;
+
+    private SegmentedTraces(JavaPairRDD<SegmentKey, Trace> segments, Map<CaseId, long[]> boundaries) {
+        this.segments = segments;
+        this.boundaries = boundaries;
+    }
+
+    public JavaPairRDD<SegmentKey, Trace> getSegments() {
+        return segments;
+    }
+
+    /**
+     * @return the heavy cases and their number of segments
+     */
+    public Map<CaseId, Integer> getHeavyCases() {
+        Map<CaseId, Integer> heavy = new HashMap<>();
+        boundaries.forEach((k, b) -> heavy.put(k, b.length + 1));
+        return heavy;
+    }
+
+    /**
+     * @return for every split case, the first and last events of its segments in time order
+     */
+    public JavaPairRDD<CaseId, List<Tuple2<Event, Event>>> seams() {
+        return segments
+                .filter(x -> x._1().isSplit())
+                .mapToPair(x -> new Tuple2<>(x._1().getCaseId(), new Tuple2<>(x._1().getSegment(),
+                        new Tuple2<>(x._2().getStartEvent(), x._2().getEndEvent()))))
+                .groupByKey()
+                .mapValues(s -> {
+                    List<Tuple2<Integer, Tuple2<Event, Event>>> l = new ArrayList<>();
+                    s.forEach(l::add);
+                    l.sort((a, b) -> Integer.compare(a._1(), b._1()));
+                    List<Tuple2<Event, Event>> seams = new ArrayList<>(l.size());
+                    for (Tuple2<Integer, Tuple2<Event, Event>> t : l) {
+                        seams.add(t._2());
+                    }
+                    return seams;
+                });
+    }
+
+    /**
+     * Durations of the traces, as {@link Trace#duration(TimeUnit)}.
+     */
+    public JavaPairRDD<CaseId, Double> durations(TimeUnit tu) {
+        return segments
+                .filter(x -> !x._1().isSplit())
+                .mapToPair(x -> new Tuple2<>(x._1().getCaseId(), x._2().duration(tu)))
+                .union(seams().mapValues(s -> TimeUtils.duration(s.get(0)._1().getStart(),
+                        s.get(s.size() - 1)._2().getStart(), tu)));
+    }
+
+    /**
+     * Waiting times of the traces, as {@link Trace#getWaitingMillis()}.
+     */
+    public JavaPairRDD<CaseId, Long> waitingMillis() {
+        return segments
+                .mapToPair(x -> new Tuple2<>(x._1().getCaseId(), x._2().getWaitingMillis()))
+                .union(seams().mapValues(s -> {
+                    long waiting = 0;
+                    for (int i = 1; i < s.size(); i++) {
+                        Event previous = s.get(i - 1)._2();
+                        Event next = s.get(i)._1();
+                        if (previous.getEnd() != null && next.getStart() != null) {
+                            waiting += Math.max(0, next.getStart().getMillis() - previous.getEnd().getMillis());
+                        }
+                    }
+                    return waiting;
+                }))
+                .reduceByKey((x, y) -> x + y);
+    }
+
+    public static class SegmentedTracesBuilder implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private double sampleFraction = 0.01;
+        private long heavyCaseEvents = 100000;
+        private long segmentEvents = 50000;
+        private long seed = 42;
+
+        /**
+         * @param sampleFraction fraction of the events sampled to detect the heavy cases
+         */
+        public SegmentedTracesBuilder sampleFraction(double sampleFraction) {
+            this.sampleFraction = sampleFraction;
+            return this;
+        }
+
+        /**
+         * @param heavyCaseEvents estimated number of events from which a case is split
+         */
+        public SegmentedTracesBuilder heavyCaseEvents(long heavyCaseEvents) {
+            this.heavyCaseEvents = heavyCaseEvents;
+            return this;
+        }
+
+        /**
+         * @param segmentEvents target number of events of a segment of a split case
+         */
+        public SegmentedTracesBuilder segmentEvents(long segmentEvents) {
+            this.segmentEvents = segmentEvents;
+            return this;
+        }
+
+        public SegmentedTracesBuilder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public SegmentedTraces build(JavaPairRDD<CaseId, Event> events) {
+            Map<CaseId, long[]> boundaries = new HashMap<>(detect(events));
+            Broadcast<Map<CaseId, long[]>> bBoundaries = JavaSparkContext.fromSparkContext(events.context())
+                    .broadcast(boundaries);
+            JavaPairRDD<SegmentKey, Trace> segments = events
+                    .mapToPair(x -> new Tuple2<>(segmentKey(x._1(), x._2(), bBoundaries.value().get(x._1())), x._2()))
+                    .combineByKey(
+                            e -> new Trace(e.getCaseId()).addEvent(e),
+                            (t, e) -> t.addEvent(e),
+                            (t1, t2) -> {
+                                t1.getOrderedEvents().putAll(t2.getOrderedEvents());
+                                return t1;
+                            });
+            return new SegmentedTraces(segments, boundaries);
+        }
+
+        /**
+         * Detects the heavy cases on a sample of the events, and cuts each of them at evenly
+         * spaced start times of its sampled events.
+         */
+        Map<CaseId, long[]> detect(JavaPairRDD<CaseId, Event> events) {
+            double fraction = sampleFraction;
+            long minSampled = (long) Math.ceil(heavyCaseEvents * sampleFraction);
+            long perSegment = segmentEvents;
+            return events.sample(false, fraction, seed)
+                    .filter(x -> x._2().getStart() != null)
+                    .combineByKey(
+                            e -> new ArrayList<>(Collections.singletonList(e.getStart().getMillis())),
+                            (l, e) -> {
+                                l.add(e.getStart().getMillis());
+                                return l;
+                            },
+                            (l1, l2) -> {
+                                l1.addAll(l2);
+                                return l1;
+                            })
+                    .filter(x -> x._2().size() >= minSampled)
+                    .mapValues(l -> cuts(l, (int) Math.ceil(l.size() / fraction / perSegment)))
+                    .filter(x -> x._2().length > 0)
+                    .collectAsMap();
+        }
+
+        /**
+         * @return at most {@code segments - 1} increasing cuts, all after the first sampled start so
+         * that no segment is empty
+         */
+        static long[] cuts(List<Long> sampledStarts, int segments) {
+            long[] starts = new long[sampledStarts.size()];
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] = sampledStarts.get(i);
+            }
+            Arrays.sort(starts);
+            long[] cuts = new long[Math.max(0, segments - 1)];
+            int n = 0;
+            for (int j = 1; j < segments; j++) {
+                long c = starts[(int) ((long) j * starts.length / segments)];
+                if (c > (n == 0 ? starts[0] : cuts[n - 1])) {
+                    cuts[n++] = c;
+                }
+            }
+            return Arrays.copyOf(cuts, n);
+        }
+
+        static SegmentKey segmentKey(CaseId caseId, Event e, long[] cuts) {
+            if (cuts == null) {
+                return new SegmentKey(caseId, 0, 1);
+            }
+            int i = e.getStart() == null ? -1 : Arrays.binarySearch(cuts, e.getStart().getMillis());
+            int segment = i >= 0 ? i + 1 : -i - 1;
+            return new SegmentKey(caseId, segment, cuts.length + 1);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.ag.processmining.log.summarizer.utils;
+
+import org.apache.spark.Partitioner;
+
+/**
+ * Partitions case keyed data ({@link org.ag.processmining.log.model.CaseId} keys) by the hash of
+ * the case id.
+ * <p>
+ * Applied once when the traces are built, it lets every later per-case computation run without
+ * shuffling the traces: {@code mapValues}, {@code filter} and {@code mapPartitions} with
+ * {@code preservesPartitioning} keep the layout, and a join of the traces with case level
+ * attributes (costs, outcomes, ...) on an equal partitioner only shuffles the attributes. Two
+ * case partitioners with the same number of partitions are equal, which is what Spark checks to
+ * plan a narrow dependency.
+ */
+public class CasePartitioner extends Partitioner {
+
+    static final long serialVersionUID = 1L;
+    private final int numPartitions;
+
+    public CasePartitioner(int numPartitions) {
+        if (numPartitions <= 0) {
+            throw new IllegalArgumentException("Number of partitions must be positive: " + numPartitions);
+        }
+        this.numPartitions = numPartitions;
+    }
+
+    @Override
+    public int numPartitions() {
+        return numPartitions;
+    }
+
+    @Override
+    public int getPartition(Object key) {
+        if (key == null) {
+            return 0;
+        }
+        // case id hashes are cached, and ignore case like case id equality
+        int h = key.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), numPartitions);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CasePartitioner && ((CasePartitioner) o).numPartitions == numPartitions;
+    }
+
+    @Override
+    public int hashCode() {
+        return numPartitions;
+    }
+}
@@ -1,9 +1,16 @@
 package org.ag.processmining.log.summarizer.utils;
 
 import org.ag.processmining.log.model.*;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.function.Function;
 import org.apache.spark.api.java.function.PairFunction;
+import org.apache.spark.rdd.PartitionPruningRDD;
 import scala.Tuple2;
+import scala.runtime.AbstractFunction1;
+
+import java.io.Serializable;
+import java.util.Set;
 
 /**
  * @author ahmed
@@ -53,6 +60,34 @@ public final class SparkUtils {
 
     }
 
+    /**
+     * @return the pairs of the given partitions of the RDD; the other partitions are not computed
+     */
+    public static <K, V> JavaPairRDD<K, V> prunePartitions(JavaPairRDD<K, V> rdd, Set<Integer> partitions) {
+        return JavaPairRDD.fromJavaRDD(PartitionPruningRDD.create(rdd.rdd(), new PartitionFilter(partitions)).toJavaRDD());
+    }
+
+    /**
+     * @return the elements of the given partitions of the RDD; the other partitions are not computed
+     */
+    public static <T> JavaRDD<T> prunePartitions(JavaRDD<T> rdd, Set<Integer> partitions) {
+        return PartitionPruningRDD.create(rdd.rdd(), new PartitionFilter(partitions)).toJavaRDD();
+    }
+
+    private static class PartitionFilter extends AbstractFunction1<Object, Object> implements Serializable {
+        static final long serialVersionUID = 1L;
+        private final Set<Integer> partitions;
+
+        PartitionFilter(Set<Integer> partitions) {
+            this.partitions = partitions;
+        }
+
+        @Override
+        public Object apply(Object index) {
+            return partitions.contains(index);
+        }
+    }
+
     public static class MapToCaseIdEvent implements PairFunction<String, CaseId, Event> {
 
         EventSchema att_map;
@@ -0,0 +1,159 @@
+package org.ag.processmining.miner;
+
+import org.ag.processmining.log.model.ActivityClass;
+import org.ag.processmining.log.model.Dictionary;
+import org.ag.processmining.log.model.EncodedTrace;
+import org.ag.processmining.log.model.Originator;
+import org.ag.processmining.log.model.Trace;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Base of the statistics that miners compute over a log as dense arrays indexed by activity id.
+ * <p>
+ * Statistics are meant to be filled per partition and merged, in a single pass over the traces:
+ * while a statistics object is being filled, activities get ids in order of appearance and the
+ * subclass arrays are grown as new activities show up; merging remaps the ids of the merged
+ * object. {@link #canonical()} renumbers the statistics by the natural order of the activities,
+ * after which ids are the ones of {@link #activities()}.
+ */
+public abstract class ActivityStatistics<S extends ActivityStatistics<S>> implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final List<ActivityClass> activities = new ArrayList<>();
+    private final Map<ActivityClass, Integer> ids = new HashMap<>();
+    private int capacity = 0;
+
+    protected static long[][] grow(long[][] m, int oldCapacity, int newCapacity) {
+        long[][] g = new long[newCapacity][newCapacity];
+        for (int i = 0; i < oldCapacity; i++) {
+            System.arraycopy(m[i], 0, g[i], 0, oldCapacity);
+        }
+        return g;
+    }
+
+    protected static double[][] grow(double[][] m, int oldCapacity, int newCapacity) {
+        double[][] g = new double[newCapacity][newCapacity];
+        for (int i = 0; i < oldCapacity; i++) {
+            System.arraycopy(m[i], 0, g[i], 0, oldCapacity);
+        }
+        return g;
+    }
+
+    /**
+     * Adds a trace, assigning ids to the activities not seen so far.
+     */
+    public S add(Trace trace) {
+        Map<Originator, Integer> originators = needsOriginators() ? new HashMap<>() : null;
+        addEncoded(EncodedTrace.encode(trace, this::id,
+                originators == null ? null : o -> originators.computeIfAbsent(o, k -> originators.size())));
+        return self();
+    }
+
+    /**
+     * Adds a trace whose activity ids are the ids of these statistics.
+     */
+    public S add(EncodedTrace trace) {
+        addEncoded(trace);
+        return self();
+    }
+
+    /**
+     * Adds the statistics of another object to this one, whatever the ids of the activities in both.
+     */
+    public S merge(S other) {
+        List<ActivityClass> otherActivities = ((ActivityStatistics<S>) other).activities;
+        int[] map = new int[otherActivities.size()];
+        for (int i = 0; i < map.length; i++) {
+            map[i] = id(otherActivities.get(i));
+        }
+        mergeRemapped(other, map);
+        return self();
+    }
+
+    /**
+     * @return a copy whose ids follow the natural order of the activities
+     */
+    public S canonical() {
+        S c = empty();
+        ((ActivityStatistics<S>) c).register(Dictionary.of(activities));
+        return c.merge(self());
+    }
+
+    /**
+     * @return the activities; the dictionary ids are the ids of these statistics once canonical
+     */
+    public Dictionary<ActivityClass> activities() {
+        return Dictionary.of(activities);
+    }
+
+    public int size() {
+        return activities.size();
+    }
+
+    public ActivityClass activity(int id) {
+        return activities.get(id);
+    }
+
+    /**
+     * @return the id of the activity, -1 if the activity does not occur
+     */
+    public int activityId(ActivityClass a) {
+        Integer id = ids.get(a);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Assigns ids to all the activities of a dictionary, in dictionary order. Subclasses call it
+     * from their constructors, once their arrays are initialized.
+     */
+    protected void register(Dictionary<ActivityClass> dictionary) {
+        for (ActivityClass a : dictionary.values()) {
+            id(a);
+        }
+    }
+
+    protected int id(ActivityClass a) {
+        Integer id = ids.get(a);
+        if (id == null) {
+            id = activities.size();
+            if (id + 1 > capacity) {
+                int c = Math.max(INITIAL_CAPACITY, capacity * 2);
+                resize(capacity, c);
+                capacity = c;
+            }
+            activities.add(a);
+            ids.put(a, id);
+        }
+        return id;
+    }
+
+    protected boolean needsOriginators() {
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private S self() {
+        return (S) this;
+    }
+
+    /**
+     * @return new empty statistics with the same parameters
+     */
+    protected abstract S empty();
+
+    /**
+     * Grows the arrays indexed by activity id from {@code oldCapacity} to {@code newCapacity}.
+     */
+    protected abstract void resize(int oldCapacity, int newCapacity);
+
+    protected abstract void addEncoded(EncodedTrace trace);
+
+    /**
+     * Adds {@code other}, whose id i is id {@code map[i]} of these statistics.
+     */
+    protected abstract void mergeRemapped(S other, int[] map);
+}
@@ -0,0 +1,67 @@
+package org.ag.processmining.miner.declare;
+
+import org.ag.processmining.log.model.ActivityClass;
+
+import java.io.Serializable;
+
+/**
+ * A discovered constraint, with the number of traces activating and fulfilling it.
+ */
+public class DeclareConstraint implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private final DeclareTemplate template;
+    private final ActivityClass a;
+    private final ActivityClass b;
+    private final long activations;
+    private final long fulfilments;
+    private final long traces;
+
+    DeclareConstraint(DeclareTemplate template, ActivityClass a, ActivityClass b, long activations, long fulfilments, long traces) {
+        this.template = template;
+        this.a = a;
+        this.b = b;
+        this.activations = activations;
+        this.fulfilments = fulfilments;
+        this.traces = traces;
+    }
+
+    public DeclareTemplate getTemplate() {
+        return template;
+    }
+
+    public ActivityClass getA() {
+        return a;
+    }
+
+    public ActivityClass getB() {
+        return b;
+    }
+
+    public long getActivations() {
+        return activations;
+    }
+
+    public long getFulfilments() {
+        return fulfilments;
+    }
+
+    /**
+     * @return the fraction of the traces fulfilling the constraint
+     */
+    public double support() {
+        return traces == 0 ? 0 : (double) fulfilments / traces;
+    }
+
+    /**
+     * @return the fraction of the traces activating the constraint that fulfil it
+     */
+    public double confidence() {
+        return activations == 0 ? 0 : (double) fulfilments / activations;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s(%s, %s) support=%.3f confidence=%.3f", template.name().toLowerCase(), a, b, support(), confidence());
+    }
+}
@@ -0,0 +1,314 @@
+package org.ag.processmining.miner.declare;
+
+import org.ag.processmining.log.model.Variant;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Activations and fulfilments of the templates on the candidate pairs of activities, counted over
+ * variants weighted by their number of traces.
+ * <p>
+ * A variant is encoded as one bitset of positions per activity it contains. The templates are
+ * then evaluated with bit operations: first and last occurrences for the (not) response,
+ * precedence and succession templates, a shifted inclusion for the chain templates. Only the
+ * candidate pairs with an activity in the variant are evaluated.
+ */
+class DeclareCounts implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private final Candidates candidates;
+    /*
+    Counts by template (in the order of the candidates) then pair
+     */
+    private final long[] activations;
+    private final long[] fulfilments;
+    private long traces = 0;
+
+    DeclareCounts(Candidates candidates) {
+        this.candidates = candidates;
+        this.activations = new long[candidates.templates.length * candidates.size()];
+        this.fulfilments = new long[activations.length];
+    }
+
+    long traces() {
+        return traces;
+    }
+
+    long activations(int template, int pair) {
+        return activations[template * candidates.size() + pair];
+    }
+
+    long fulfilments(int template, int pair) {
+        return fulfilments[template * candidates.size() + pair];
+    }
+
+    DeclareCounts add(Variant v, long weight) {
+        traces += weight;
+        long[][] positions = positions(v, candidates.numActivities);
+        for (int x = 0; x < positions.length; x++) {
+            if (positions[x] == null) {
+                continue;
+            }
+            for (int p : candidates.byFirst[x]) {
+                evaluate(p, positions, weight);
+            }
+            for (int p : candidates.bySecond[x]) {
+                // pairs whose first activity is in the variant are evaluated above
+                if (positions[candidates.first[p]] == null) {
+                    evaluate(p, positions, weight);
+                }
+            }
+        }
+        return this;
+    }
+
+    private void evaluate(int p, long[][] positions, long weight) {
+        long[] a = positions[candidates.first[p]];
+        long[] b = positions[candidates.second[p]];
+        boolean both = a != null && b != null;
+        for (int t = 0; t < candidates.templates.length; t++) {
+            DeclareTemplate template = candidates.templates[t];
+            if (!template.isNegative() && !candidates.frequentPair[p]) {
+                continue;
+            }
+            boolean activated;
+            boolean holds;
+            switch (template) {
+                case RESPONDED_EXISTENCE:
+                    activated = a != null;
+                    holds = both;
+                    break;
+                case CO_EXISTENCE:
+                    activated = true;
+                    holds = both;
+                    break;
+                case RESPONSE:
+                    activated = a != null;
+                    holds = both && last(b) > last(a);
+                    break;
+                case PRECEDENCE:
+                    activated = b != null;
+                    holds = both && first(a) < first(b);
+                    break;
+                case SUCCESSION:
+                    activated = true;
+                    holds = both && last(b) > last(a) && first(a) < first(b);
+                    break;
+                case CHAIN_RESPONSE:
+                    activated = a != null;
+                    holds = both && shiftedIncluded(a, b);
+                    break;
+                case CHAIN_PRECEDENCE:
+                    activated = b != null;
+                    holds = both && includedShifted(b, a);
+                    break;
+                case NOT_CO_EXISTENCE:
+                    activated = true;
+                    holds = !both;
+                    break;
+                case NOT_SUCCESSION:
+                    activated = true;
+                    holds = !both || first(a) > last(b);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown template " + template);
+            }
+            if (activated) {
+                int i = t * candidates.size() + p;
+                activations[i] += weight;
+                if (holds) {
+                    fulfilments[i] += weight;
+                }
+            }
+        }
+    }
+
+    DeclareCounts merge(DeclareCounts c) {
+        for (int i = 0; i < activations.length; i++) {
+            activations[i] += c.activations[i];
+            fulfilments[i] += c.fulfilments[i];
+        }
+        traces += c.traces;
+        return this;
+    }
+
+    /**
+     * @return the bitset of the positions of every activity of the variant, null if absent
+     */
+    static long[][] positions(Variant v, int numActivities) {
+        long[][] positions = new long[numActivities][];
+        int words = (v.size() + 63) >>> 6;
+        for (int i = 0; i < v.size(); i++) {
+            int a = v.activity(i);
+            if (positions[a] == null) {
+                positions[a] = new long[words];
+            }
+            positions[a][i >>> 6] |= 1L << i;
+        }
+        return positions;
+    }
+
+    static int first(long[] bits) {
+        for (int w = 0; ; w++) {
+            if (bits[w] != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(bits[w]);
+            }
+        }
+    }
+
+    static int last(long[] bits) {
+        for (int w = bits.length - 1; ; w--) {
+            if (bits[w] != 0) {
+                return (w << 6) + 63 - Long.numberOfLeadingZeros(bits[w]);
+            }
+        }
+    }
+
+    /**
+     * @return whether every position of a, plus one, is a position of b
+     */
+    static boolean shiftedIncluded(long[] a, long[] b) {
+        long carry = 0;
+        for (int w = 0; w < a.length; w++) {
+            if (((a[w] << 1 | carry) & ~b[w]) != 0) {
+                return false;
+            }
+            carry = a[w] >>> 63;
+        }
+        return carry == 0;
+    }
+
+    /**
+     * @return whether every position of b, minus one, is a position of a
+     */
+    static boolean includedShifted(long[] b, long[] a) {
+        long carry = 0;
+        for (int w = 0; w < b.length; w++) {
+            if ((b[w] & ~(a[w] << 1 | carry)) != 0) {
+                return false;
+            }
+            carry = a[w] >>> 63;
+        }
+        return true;
+    }
+
+    /**
+     * Number of traces containing every activity and every pair of activities, for the pruning.
+     */
+    static class Cooccurrence implements Serializable {
+
+        static final long serialVersionUID = 1L;
+        final int numActivities;
+        final long[] activity;
+        final long[] pairs;
+        long traces = 0;
+
+        Cooccurrence(int numActivities) {
+            this.numActivities = numActivities;
+            this.activity = new long[numActivities];
+            this.pairs = new long[numActivities * numActivities];
+        }
+
+        Cooccurrence add(Variant v, long weight) {
+            traces += weight;
+            int[] present = new int[v.size()];
+            int n = 0;
+            boolean[] seen = new boolean[numActivities];
+            for (int i = 0; i < v.size(); i++) {
+                int a = v.activity(i);
+                if (!seen[a]) {
+                    seen[a] = true;
+                    present[n++] = a;
+                    activity[a] += weight;
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    pairs[present[i] * numActivities + present[j]] += weight;
+                }
+            }
+            return this;
+        }
+
+        Cooccurrence merge(Cooccurrence c) {
+            for (int a = 0; a < numActivities; a++) {
+                activity[a] += c.activity[a];
+            }
+            for (int i = 0; i < pairs.length; i++) {
+                pairs[i] += c.pairs[i];
+            }
+            traces += c.traces;
+            return this;
+        }
+    }
+
+    /**
+     * The ordered pairs of distinct activities that can fulfil a selected template in at least
+     * {@code minTraces} traces. A positive template is only fulfilled by traces containing both
+     * activities, so its pairs must occur together in that many traces (frequent pairs); a
+     * negative one by traces containing either, so its pairs must occur in that many traces
+     * between them.
+     */
+    static class Candidates implements Serializable {
+
+        static final long serialVersionUID = 1L;
+        final DeclareTemplate[] templates;
+        final int numActivities;
+        final int[] first;
+        final int[] second;
+        final boolean[] frequentPair;
+        final int[][] byFirst;
+        final int[][] bySecond;
+
+        Candidates(DeclareTemplate[] templates, Cooccurrence c, long minTraces) {
+            this.templates = templates;
+            this.numActivities = c.numActivities;
+            boolean positive = false;
+            boolean negative = false;
+            for (DeclareTemplate t : templates) {
+                positive |= !t.isNegative();
+                negative |= t.isNegative();
+            }
+            List<int[]> pairs = new ArrayList<>();
+            for (int a = 0; a < numActivities; a++) {
+                for (int b = 0; b < numActivities; b++) {
+                    if (a != b && (positive && c.pairs[a * numActivities + b] >= minTraces
+                            || negative && c.activity[a] + c.activity[b] >= minTraces)) {
+                        pairs.add(new int[]{a, b});
+                    }
+                }
+            }
+            first = new int[pairs.size()];
+            second = new int[pairs.size()];
+            frequentPair = new boolean[pairs.size()];
+            int[] firstCounts = new int[numActivities];
+            int[] secondCounts = new int[numActivities];
+            for (int p = 0; p < pairs.size(); p++) {
+                first[p] = pairs.get(p)[0];
+                second[p] = pairs.get(p)[1];
+                frequentPair[p] = c.pairs[first[p] * numActivities + second[p]] >= minTraces;
+                firstCounts[first[p]]++;
+                secondCounts[second[p]]++;
+            }
+            byFirst = new int[numActivities][];
+            bySecond = new int[numActivities][];
+            for (int a = 0; a < numActivities; a++) {
+                byFirst[a] = new int[firstCounts[a]];
+                bySecond[a] = new int[secondCounts[a]];
+            }
+            Arrays.fill(firstCounts, 0);
+            Arrays.fill(secondCounts, 0);
+            for (int p = 0; p < first.length; p++) {
+                byFirst[first[p]][firstCounts[first[p]]++] = p;
+                bySecond[second[p]][secondCounts[second[p]]++] = p;
+            }
+        }
+
+        int size() {
+            return first.length;
+        }
+    }
+}
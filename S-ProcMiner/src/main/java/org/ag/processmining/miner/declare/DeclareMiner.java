@@ -0,0 +1,183 @@
+package org.ag.processmining.miner.declare;
+
+import org.ag.processmining.local.EventStore;
+import org.ag.processmining.local.LocalLog;
+import org.ag.processmining.log.model.ActivityClass;
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Dictionary;
+import org.ag.processmining.log.model.EncodedTrace;
+import org.ag.processmining.log.model.Event;
+import org.ag.processmining.log.model.Trace;
+import org.ag.processmining.log.model.Variant;
+import org.ag.processmining.miner.declare.DeclareCounts.Candidates;
+import org.ag.processmining.miner.declare.DeclareCounts.Cooccurrence;
+import org.apache.spark.api.java.JavaPairRDD;
+import scala.Tuple2;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Discovers the Declare constraints of a log.
+ * <p>
+ * The traces are reduced to their variants, with their number of traces, so that every distinct
+ * sequence of activities is evaluated once. A first pass over the variants counts the traces
+ * containing every activity and every pair of activities. A positive constraint can only be
+ * fulfilled by the traces containing both of its activities, and a negative one by the traces
+ * containing either: the positive templates are only evaluated on the pairs occurring together
+ * in at least {@code minSupport} of the traces (apriori pruning), and the negative ones on the
+ * pairs whose activities occur in that many traces between them. A second pass evaluates the
+ * templates on the candidates with bit operations, see {@link DeclareCounts}. Both passes run on the variants in
+ * parallel: tree aggregations on Spark, parallel streams locally.
+ */
+public class DeclareMiner implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private static final int DEFAULT_DEPTH = 2;
+
+    JavaPairRDD<CaseId, Trace> traces;
+    transient LocalLog localTraces;
+    transient EventStore store;
+    private Set<DeclareTemplate> templates = EnumSet.allOf(DeclareTemplate.class);
+    private double minSupport = 0.1;
+    private double minConfidence = 0.9;
+    private int depth = DEFAULT_DEPTH;
+
+    public DeclareMiner(JavaPairRDD<CaseId, Trace> traces) {
+        this.traces = traces;
+    }
+
+    public DeclareMiner(LocalLog traces) {
+        this.localTraces = traces;
+    }
+
+    public DeclareMiner(EventStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @param templates templates to evaluate, all of them by default
+     */
+    public DeclareMiner templates(Set<DeclareTemplate> templates) {
+        if (templates.isEmpty()) {
+            throw new IllegalArgumentException("No Declare template selected");
+        }
+        this.templates = EnumSet.copyOf(templates);
+        return this;
+    }
+
+    /**
+     * @param minSupport fraction of the traces a constraint must be fulfilled by
+     */
+    public DeclareMiner minSupport(double minSupport) {
+        this.minSupport = minSupport;
+        return this;
+    }
+
+    /**
+     * @param minConfidence fraction of the traces activating a constraint that must fulfil it
+     */
+    public DeclareMiner minConfidence(double minConfidence) {
+        this.minConfidence = minConfidence;
+        return this;
+    }
+
+    public DeclareMiner depth(int depth) {
+        this.depth = depth;
+        return this;
+    }
+
+    public DeclareModel mine() {
+        DeclareTemplate[] selected = templates.toArray(new DeclareTemplate[0]);
+        if (traces != null) {
+            Dictionary<ActivityClass> activities = Dictionary.of(traces.treeAggregate(new TreeSet<ActivityClass>(),
+                    (s, t) -> addActivities(s, t._2()),
+                    (s1, s2) -> {
+                        s1.addAll(s2);
+                        return s1;
+                    },
+                    depth));
+            JavaPairRDD<Variant, Long> variants = traces
+                    .mapToPair(t -> new Tuple2<>(Variant.of(t._2(), activities::id), 1L))
+                    .reduceByKey((a, b) -> a + b)
+                    .cache();
+            Cooccurrence c = variants.treeAggregate(new Cooccurrence(activities.size()),
+                    (o, v) -> o.add(v._1(), v._2()),
+                    (o1, o2) -> o1.merge(o2),
+                    depth);
+            Candidates candidates = new Candidates(selected, c, minTraces(c.traces));
+            DeclareCounts counts = variants.treeAggregate(new DeclareCounts(candidates),
+                    (d, v) -> d.add(v._1(), v._2()),
+                    (d1, d2) -> d1.merge(d2),
+                    depth);
+            variants.unpersist();
+            return model(activities, candidates, counts);
+        }
+        Dictionary<ActivityClass> activities;
+        Map<Variant, Long> variants;
+        if (store != null) {
+            activities = store.activities();
+            variants = store.aggregate(new HashMap<>(), DeclareMiner::addVariant, DeclareMiner::merge);
+        } else {
+            activities = Dictionary.of(localTraces.aggregate(new TreeSet<>(), DeclareMiner::addActivities, (s1, s2) -> {
+                s1.addAll(s2);
+                return s1;
+            }));
+            variants = localTraces.aggregate(new HashMap<>(), (m, t) -> {
+                m.merge(Variant.of(t, activities::id), 1L, Long::sum);
+                return m;
+            }, DeclareMiner::merge);
+        }
+        Cooccurrence c = variants.entrySet().parallelStream().collect(() -> new Cooccurrence(activities.size()),
+                (o, v) -> o.add(v.getKey(), v.getValue()),
+                Cooccurrence::merge);
+        Candidates candidates = new Candidates(selected, c, minTraces(c.traces));
+        DeclareCounts counts = variants.entrySet().parallelStream().collect(() -> new DeclareCounts(candidates),
+                (d, v) -> d.add(v.getKey(), v.getValue()),
+                DeclareCounts::merge);
+        return model(activities, candidates, counts);
+    }
+
+    private long minTraces(long traces) {
+        return Math.max(1, (long) Math.ceil(minSupport * traces));
+    }
+
+    private DeclareModel model(Dictionary<ActivityClass> activities, Candidates candidates, DeclareCounts counts) {
+        List<DeclareConstraint> constraints = new ArrayList<>();
+        for (int t = 0; t < candidates.templates.length; t++) {
+            for (int p = 0; p < candidates.size(); p++) {
+                DeclareConstraint c = new DeclareConstraint(candidates.templates[t],
+                        activities.get(candidates.first[p]), activities.get(candidates.second[p]),
+                        counts.activations(t, p), counts.fulfilments(t, p), counts.traces());
+                if (c.getActivations() > 0 && c.support() >= minSupport && c.confidence() >= minConfidence) {
+                    constraints.add(c);
+                }
+            }
+        }
+        constraints.sort(Comparator.comparing(DeclareConstraint::getTemplate)
+                .thenComparing(Comparator.comparingDouble(DeclareConstraint::confidence).reversed())
+                .thenComparing(Comparator.comparingDouble(DeclareConstraint::support).reversed()));
+        return new DeclareModel(constraints, counts.traces());
+    }
+
+    private static TreeSet<ActivityClass> addActivities(TreeSet<ActivityClass> activities, Trace t) {
+        for (Event e : t.getOrderedEvents().values()) {
+            activities.add(e.getActivityClass());
+        }
+        return activities;
+    }
+
+    private static HashMap<Variant, Long> addVariant(HashMap<Variant, Long> variants, EncodedTrace t) {
+        int[] activities = new int[t.size()];
+        for (int i = 0; i < activities.length; i++) {
+            activities[i] = t.activity(i);
+        }
+        variants.merge(new Variant(activities), 1L, Long::sum);
+        return variants;
+    }
+
+    private static HashMap<Variant, Long> merge(HashMap<Variant, Long> v1, HashMap<Variant, Long> v2) {
+        v2.forEach((v, n) -> v1.merge(v, n, Long::sum));
+        return v1;
+    }
+}
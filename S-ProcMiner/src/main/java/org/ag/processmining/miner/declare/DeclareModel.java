@@ -0,0 +1,48 @@
+package org.ag.processmining.miner.declare;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The constraints discovered by a {@link DeclareMiner}, by template then decreasing confidence.
+ */
+public class DeclareModel implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private final List<DeclareConstraint> constraints;
+    private final long traces;
+
+    DeclareModel(List<DeclareConstraint> constraints, long traces) {
+        this.constraints = constraints;
+        this.traces = traces;
+    }
+
+    public List<DeclareConstraint> constraints() {
+        return Collections.unmodifiableList(constraints);
+    }
+
+    public List<DeclareConstraint> constraints(DeclareTemplate template) {
+        List<DeclareConstraint> selected = new ArrayList<>();
+        for (DeclareConstraint c : constraints) {
+            if (c.getTemplate() == template) {
+                selected.add(c);
+            }
+        }
+        return selected;
+    }
+
+    public long traceCount() {
+        return traces;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (DeclareConstraint c : constraints) {
+            sb.append(c).append('\n');
+        }
+        return sb.toString();
+    }
+}
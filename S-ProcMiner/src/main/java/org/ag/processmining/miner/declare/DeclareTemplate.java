@@ -0,0 +1,59 @@
+package org.ag.processmining.miner.declare;
+
+/**
+ * Declare templates over two activities A and B. A trace activates a constraint when it contains
+ * the activity the template constrains, and fulfils it when it is activated and satisfies it.
+ */
+public enum DeclareTemplate {
+
+    /**
+     * If A occurs, B occurs
+     */
+    RESPONDED_EXISTENCE(false),
+    /**
+     * A and B occur together or not at all; activated by A or B
+     */
+    CO_EXISTENCE(false),
+    /**
+     * Every A is eventually followed by B
+     */
+    RESPONSE(false),
+    /**
+     * Every B is preceded by A; activated by B
+     */
+    PRECEDENCE(false),
+    /**
+     * Response and precedence; activated by A or B
+     */
+    SUCCESSION(false),
+    /**
+     * Every A is directly followed by B
+     */
+    CHAIN_RESPONSE(false),
+    /**
+     * Every B is directly preceded by A; activated by B
+     */
+    CHAIN_PRECEDENCE(false),
+    /**
+     * A and B do not occur together; activated by A or B
+     */
+    NOT_CO_EXISTENCE(true),
+    /**
+     * No A is followed by B; activated by A or B
+     */
+    NOT_SUCCESSION(true);
+
+    private final boolean negative;
+
+    DeclareTemplate(boolean negative) {
+        this.negative = negative;
+    }
+
+    /**
+     * @return whether the template forbids a behavior, so that it can be fulfilled by traces
+     * where A and B do not occur together
+     */
+    public boolean isNegative() {
+        return negative;
+    }
+}
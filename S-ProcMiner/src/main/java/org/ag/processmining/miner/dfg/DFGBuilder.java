@@ -0,0 +1,94 @@
+package org.ag.processmining.miner.dfg;
+
+import org.ag.processmining.local.EventStore;
+import org.ag.processmining.local.LocalLog;
+import org.ag.processmining.log.model.ActivityClass;
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Dictionary;
+import org.ag.processmining.log.model.EncodedTrace;
+import org.ag.processmining.log.model.Trace;
+import org.ag.processmining.log.summarizer.overview.SegmentedTraces;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaRDD;
+
+import java.io.Serializable;
+
+/**
+ * Builds the {@link DirectlyFollowsGraph} of a log in a single pass over its traces: every
+ * partition fills its own graph, and the partial graphs are combined with a tree aggregation so
+ * that the driver only receives a handful of matrices, whatever the number of partitions.
+ */
+public class DFGBuilder implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private static final int DEFAULT_DEPTH = 2;
+
+    JavaPairRDD<CaseId, Trace> traces;
+    transient LocalLog localTraces;
+    transient EventStore store;
+    SegmentedTraces segmentedTraces;
+    private int depth = DEFAULT_DEPTH;
+
+    public DFGBuilder(JavaPairRDD<CaseId, Trace> traces) {
+        this.traces = traces;
+    }
+
+    public DFGBuilder(LocalLog traces) {
+        this.localTraces = traces;
+    }
+
+    public DFGBuilder(EventStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Builds the graph of traces whose heavy cases are split in segments: the segments are added
+     * without their trace start and end, which are added with the seams of the split cases.
+     */
+    public DFGBuilder(SegmentedTraces traces) {
+        this.segmentedTraces = traces;
+    }
+
+    /**
+     * Builds the graph of traces already encoded with the given dictionary.
+     */
+    public static DirectlyFollowsGraph build(JavaRDD<EncodedTrace> traces, Dictionary<ActivityClass> activities, int depth) {
+        return traces.treeAggregate(new DirectlyFollowsGraph(activities),
+                (g, t) -> g.add(t),
+                (g1, g2) -> g1.merge(g2),
+                depth);
+    }
+
+    /**
+     * @param depth depth of the aggregation tree, to be increased for logs with many partitions
+     */
+    public DFGBuilder depth(int depth) {
+        this.depth = depth;
+        return this;
+    }
+
+    public DirectlyFollowsGraph build() {
+        if (store != null) {
+            return store.aggregate(new DirectlyFollowsGraph(store.activities()), DirectlyFollowsGraph::add, DirectlyFollowsGraph::merge).canonical();
+        }
+        if (segmentedTraces != null) {
+            DirectlyFollowsGraph segments = segmentedTraces.getSegments().treeAggregate(new DirectlyFollowsGraph(),
+                    (g, t) -> t._1().isSplit() ? g.addSegment(t._2()) : g.add(t._2()),
+                    (g1, g2) -> g1.merge(g2),
+                    depth);
+            DirectlyFollowsGraph seams = segmentedTraces.seams().values().treeAggregate(new DirectlyFollowsGraph(),
+                    (g, s) -> g.addSeams(s),
+                    (g1, g2) -> g1.merge(g2),
+                    depth);
+            return segments.merge(seams).canonical();
+        }
+        if (localTraces != null) {
+            return localTraces.aggregate(new DirectlyFollowsGraph(), DirectlyFollowsGraph::add, DirectlyFollowsGraph::merge).canonical();
+        }
+        return traces.treeAggregate(new DirectlyFollowsGraph(),
+                (g, t) -> g.add(t._2()),
+                (g1, g2) -> g1.merge(g2),
+                depth)
+                .canonical();
+    }
+}
@@ -0,0 +1,233 @@
+package org.ag.processmining.miner.dfg;
+
+import org.ag.processmining.Utils.DurationSketch;
+import org.ag.processmining.log.model.ActivityClass;
+import org.ag.processmining.log.model.Dictionary;
+import org.ag.processmining.log.model.EncodedTrace;
+import org.ag.processmining.log.model.Event;
+import org.ag.processmining.log.model.Trace;
+import scala.Tuple2;
+import org.ag.processmining.miner.ActivityStatistics;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Directly-follows graph of a log: how often activity b directly follows activity a in a trace,
+ * how often each activity starts and ends a trace (the edges from/to the artificial start and end
+ * nodes), how often each activity occurs, and a sketch of the time elapsed between the end of a
+ * and the start of b for every edge.
+ * <p>
+ * Counts are kept in dense matrices indexed by activity id, so the memory of a graph only depends
+ * on the number of activities.
+ */
+public class DirectlyFollowsGraph extends ActivityStatistics<DirectlyFollowsGraph> {
+
+    static final long serialVersionUID = 1L;
+
+    private long[][] counts = new long[0][0];
+    private DurationSketch[][] durations = new DurationSketch[0][0];
+    private long[] nodeFrequency = new long[0];
+    private long[] startFrequency = new long[0];
+    private long[] endFrequency = new long[0];
+    private long traceCount = 0;
+
+    public DirectlyFollowsGraph() {
+    }
+
+    /**
+     * Creates an empty graph whose ids are the ones of the given dictionary, to be filled with
+     * traces encoded with that dictionary.
+     */
+    public DirectlyFollowsGraph(Dictionary<ActivityClass> dictionary) {
+        register(dictionary);
+    }
+
+    @Override
+    protected DirectlyFollowsGraph empty() {
+        return new DirectlyFollowsGraph();
+    }
+
+    @Override
+    protected void resize(int oldCapacity, int newCapacity) {
+        counts = grow(counts, oldCapacity, newCapacity);
+        DurationSketch[][] newDurations = new DurationSketch[newCapacity][newCapacity];
+        for (int i = 0; i < oldCapacity; i++) {
+            System.arraycopy(durations[i], 0, newDurations[i], 0, oldCapacity);
+        }
+        durations = newDurations;
+        nodeFrequency = Arrays.copyOf(nodeFrequency, newCapacity);
+        startFrequency = Arrays.copyOf(startFrequency, newCapacity);
+        endFrequency = Arrays.copyOf(endFrequency, newCapacity);
+    }
+
+    /**
+     * Adds a segment of a split trace: its events and the edges between them, but not the start
+     * and end of the trace, which are added with the seams of the trace.
+     */
+    public DirectlyFollowsGraph addSegment(Trace segment) {
+        addEvents(EncodedTrace.encode(segment, this::id, null), false);
+        return this;
+    }
+
+    /**
+     * Adds what the segments of a split trace do not have: the start and end of the trace, and
+     * the edges from the last event of each segment to the first event of the next one.
+     *
+     * @param seams first and last events of the segments, in order
+     */
+    public DirectlyFollowsGraph addSeams(List<Tuple2<Event, Event>> seams) {
+        if (seams.isEmpty()) {
+            return this;
+        }
+        int first = id(seams.get(0)._1().getActivityClass());
+        int last = id(seams.get(seams.size() - 1)._2().getActivityClass());
+        traceCount++;
+        startFrequency[first]++;
+        endFrequency[last]++;
+        for (int i = 1; i < seams.size(); i++) {
+            Event from = seams.get(i - 1)._2();
+            Event to = seams.get(i)._1();
+            int prev = id(from.getActivityClass());
+            int cur = id(to.getActivityClass());
+            counts[prev][cur]++;
+            if (to.getStart() != null && (from.getEnd() != null || from.getStart() != null)) {
+                long completion = (from.getEnd() != null ? from.getEnd() : from.getStart()).getMillis();
+                DurationSketch s = durations[prev][cur];
+                if (s == null) {
+                    s = durations[prev][cur] = new DurationSketch();
+                }
+                s.add(to.getStart().getMillis() - completion);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    protected void addEncoded(EncodedTrace trace) {
+        addEvents(trace, true);
+    }
+
+    private void addEvents(EncodedTrace trace, boolean whole) {
+        int n = trace.size();
+        if (n == 0) {
+            return;
+        }
+        int prev = trace.activity(0);
+        if (whole) {
+            traceCount++;
+            startFrequency[prev]++;
+        }
+        nodeFrequency[prev]++;
+        for (int i = 1; i < n; i++) {
+            int cur = trace.activity(i);
+            nodeFrequency[cur]++;
+            counts[prev][cur]++;
+            long from = trace.completion(i - 1);
+            long to = trace.start(i);
+            if (from != EncodedTrace.NO_TIME && to != EncodedTrace.NO_TIME) {
+                DurationSketch s = durations[prev][cur];
+                if (s == null) {
+                    s = durations[prev][cur] = new DurationSketch();
+                }
+                s.add(to - from);
+            }
+            prev = cur;
+        }
+        if (whole) {
+            endFrequency[prev]++;
+        }
+    }
+
+    @Override
+    protected void mergeRemapped(DirectlyFollowsGraph other, int[] map) {
+        for (int i = 0; i < map.length; i++) {
+            nodeFrequency[map[i]] += other.nodeFrequency[i];
+            startFrequency[map[i]] += other.startFrequency[i];
+            endFrequency[map[i]] += other.endFrequency[i];
+            for (int j = 0; j < map.length; j++) {
+                counts[map[i]][map[j]] += other.counts[i][j];
+                DurationSketch s = other.durations[i][j];
+                if (s != null) {
+                    if (durations[map[i]][map[j]] == null) {
+                        durations[map[i]][map[j]] = new DurationSketch(s.accuracy());
+                    }
+                    durations[map[i]][map[j]].merge(s);
+                }
+            }
+        }
+        traceCount += other.traceCount;
+    }
+
+    public long frequency(int from, int to) {
+        return counts[from][to];
+    }
+
+    public long frequency(ActivityClass from, ActivityClass to) {
+        int f = activityId(from);
+        int t = activityId(to);
+        return f < 0 || t < 0 ? 0 : counts[f][t];
+    }
+
+    /**
+     * @return the sketch of the time between the end of {@code from} and the start of {@code to},
+     * null if the edge does not exist
+     */
+    public DurationSketch duration(int from, int to) {
+        return durations[from][to];
+    }
+
+    public long nodeFrequency(int a) {
+        return nodeFrequency[a];
+    }
+
+    /**
+     * @return the frequency of the edge from the artificial start node to {@code a}
+     */
+    public long startFrequency(int a) {
+        return startFrequency[a];
+    }
+
+    /**
+     * @return the frequency of the edge from {@code a} to the artificial end node
+     */
+    public long endFrequency(int a) {
+        return endFrequency[a];
+    }
+
+    public long traceCount() {
+        return traceCount;
+    }
+
+    public long edgeCount() {
+        long edges = 0;
+        for (int i = 0; i < size(); i++) {
+            for (int j = 0; j < size(); j++) {
+                if (counts[i][j] > 0) {
+                    edges++;
+                }
+            }
+        }
+        return edges;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size(); i++) {
+            if (startFrequency[i] > 0) {
+                sb.append("[start] -> ").append(activity(i)).append(" : ").append(startFrequency[i]).append('\n');
+            }
+            for (int j = 0; j < size(); j++) {
+                if (counts[i][j] > 0) {
+                    sb.append(activity(i)).append(" -> ").append(activity(j))
+                            .append(" : ").append(counts[i][j]).append('\n');
+                }
+            }
+            if (endFrequency[i] > 0) {
+                sb.append(activity(i)).append(" -> [end] : ").append(endFrequency[i]).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
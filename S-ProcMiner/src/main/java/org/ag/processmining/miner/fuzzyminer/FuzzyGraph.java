@@ -0,0 +1,109 @@
+package org.ag.processmining.miner.fuzzyminer;
+
+import lombok.Getter;
+import org.ag.processmining.log.model.ActivityClass;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Simplified process model produced by the Fuzzy Miner: primitive nodes (one significant
+ * activity), cluster nodes (several aggregated insignificant activities) and the edges kept
+ * between them.
+ */
+public class FuzzyGraph implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private final List<Node> nodes = new ArrayList<>();
+    private final List<Edge> edges = new ArrayList<>();
+
+    int addNode(List<ActivityClass> members, double significance) {
+        nodes.add(new Node(nodes.size(), members, significance));
+        return nodes.size() - 1;
+    }
+
+    void addEdge(int from, int to, double significance, double correlation) {
+        edges.add(new Edge(from, to, significance, correlation));
+    }
+
+    public List<Node> getNodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    public List<Edge> getEdges() {
+        return Collections.unmodifiableList(edges);
+    }
+
+    /**
+     * @return the graph in the Graphviz dot language
+     */
+    public String toDot() {
+        StringBuilder sb = new StringBuilder("digraph fuzzy {\n");
+        for (Node n : nodes) {
+            sb.append("  n").append(n.id).append(" [label=\"").append(n.toString().replace("\"", "\\\""))
+                    .append(String.format("\\n%.3f", n.significance)).append('"')
+                    .append(n.isCluster() ? ", shape=octagon" : ", shape=box").append("];\n");
+        }
+        for (Edge e : edges) {
+            sb.append("  n").append(e.from).append(" -> n").append(e.to)
+                    .append(String.format(" [label=\"%.3f / %.3f\"];%n", e.significance, e.correlation));
+        }
+        return sb.append("}\n").toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Edge e : edges) {
+            sb.append(nodes.get(e.from)).append(" -> ").append(nodes.get(e.to))
+                    .append(String.format(" (sig %.3f, corr %.3f)%n", e.significance, e.correlation));
+        }
+        return sb.toString();
+    }
+
+    @Getter
+    public static class Node implements Serializable {
+        static final long serialVersionUID = 1L;
+        private final int id;
+        private final List<ActivityClass> members;
+        private final double significance;
+
+        Node(int id, List<ActivityClass> members, double significance) {
+            this.id = id;
+            this.members = members;
+            this.significance = significance;
+        }
+
+        public List<ActivityClass> getMembers() {
+            return Collections.unmodifiableList(members);
+        }
+
+        public boolean isCluster() {
+            return members.size() > 1;
+        }
+
+        @Override
+        public String toString() {
+            return isCluster() ? "Cluster" + members : members.get(0).toString();
+        }
+    }
+
+    @Getter
+    public static class Edge implements Serializable {
+        static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final double significance;
+        private final double correlation;
+
+        Edge(int from, int to, double significance, double correlation) {
+            this.from = from;
+            this.to = to;
+            this.significance = significance;
+            this.correlation = correlation;
+        }
+
+    }
+}
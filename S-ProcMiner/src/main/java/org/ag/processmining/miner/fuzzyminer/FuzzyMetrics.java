@@ -0,0 +1,149 @@
+package org.ag.processmining.miner.fuzzyminer;
+
+import lombok.Getter;
+import org.ag.processmining.log.model.ActivityClass;
+import org.ag.processmining.log.model.Dictionary;
+import org.ag.processmining.log.model.EncodedTrace;
+import org.ag.processmining.miner.ActivityStatistics;
+
+import java.util.Arrays;
+
+/**
+ * Raw log-based metrics of the Fuzzy Miner, accumulated in one scan over the traces.
+ * <p>
+ * Every event is related to the {@code lookback} events preceding it in its trace; the relation
+ * with the event k positions back is weighted by {@code attenuation^(k-1)}, so that directly
+ * following events count fully and farther ones less and less. For each pair of activities the
+ * weighted relation frequency is kept, along with the weighted sums of the proximity (how close in
+ * time the two events are) and originator (whether both events have the same originator)
+ * correlations. Unary frequencies count the occurrences of each activity.
+ */
+public class FuzzyMetrics extends ActivityStatistics<FuzzyMetrics> {
+
+    static final long serialVersionUID = 1L;
+    /*
+    Time distance (ms) at which the proximity of two events is 0.5
+     */
+    private static final double PROXIMITY_SCALE = 60_000;
+
+    @Getter
+    private final int lookback;
+    @Getter
+    private final double attenuation;
+    private final double[] weights;
+
+    private long[] unary = new long[0];
+    private double[][] frequency = new double[0][0];
+    private double[][] timedFrequency = new double[0][0];
+    private double[][] proximity = new double[0][0];
+    private double[][] originator = new double[0][0];
+    @Getter
+    private long traceCount = 0;
+
+    public FuzzyMetrics(int lookback, double attenuation) {
+        this.lookback = lookback;
+        this.attenuation = attenuation;
+        this.weights = new double[lookback + 1];
+        for (int k = 1; k <= lookback; k++) {
+            weights[k] = Math.pow(attenuation, k - 1);
+        }
+    }
+
+    /**
+     * Creates empty metrics whose ids are the ones of the given dictionary, to be filled with
+     * traces encoded with that dictionary.
+     */
+    public FuzzyMetrics(Dictionary<ActivityClass> dictionary, int lookback, double attenuation) {
+        this(lookback, attenuation);
+        register(dictionary);
+    }
+
+    @Override
+    protected FuzzyMetrics empty() {
+        return new FuzzyMetrics(lookback, attenuation);
+    }
+
+    @Override
+    protected boolean needsOriginators() {
+        return true;
+    }
+
+    @Override
+    protected void resize(int oldCapacity, int newCapacity) {
+        unary = Arrays.copyOf(unary, newCapacity);
+        frequency = grow(frequency, oldCapacity, newCapacity);
+        timedFrequency = grow(timedFrequency, oldCapacity, newCapacity);
+        proximity = grow(proximity, oldCapacity, newCapacity);
+        originator = grow(originator, oldCapacity, newCapacity);
+    }
+
+    @Override
+    protected void addEncoded(EncodedTrace trace) {
+        int n = trace.size();
+        if (n == 0) {
+            return;
+        }
+        traceCount++;
+        for (int i = 0; i < n; i++) {
+            int b = trace.activity(i);
+            unary[b]++;
+            long start = trace.start(i);
+            int ob = trace.originator(i);
+            for (int k = 1, j = i - 1; k <= lookback && j >= 0; k++, j--) {
+                int a = trace.activity(j);
+                double w = weights[k];
+                frequency[a][b] += w;
+                long end = trace.completion(j);
+                if (start != EncodedTrace.NO_TIME && end != EncodedTrace.NO_TIME) {
+                    timedFrequency[a][b] += w;
+                    proximity[a][b] += w * PROXIMITY_SCALE / (PROXIMITY_SCALE + Math.abs(start - end));
+                }
+                if (ob != EncodedTrace.NO_ID && ob == trace.originator(j)) {
+                    originator[a][b] += w;
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void mergeRemapped(FuzzyMetrics other, int[] map) {
+        if (other.lookback != lookback || other.attenuation != attenuation) {
+            throw new IllegalArgumentException("Cannot merge metrics computed with different lookback or attenuation");
+        }
+        for (int i = 0; i < map.length; i++) {
+            unary[map[i]] += other.unary[i];
+            for (int j = 0; j < map.length; j++) {
+                frequency[map[i]][map[j]] += other.frequency[i][j];
+                timedFrequency[map[i]][map[j]] += other.timedFrequency[i][j];
+                proximity[map[i]][map[j]] += other.proximity[i][j];
+                originator[map[i]][map[j]] += other.originator[i][j];
+            }
+        }
+        traceCount += other.traceCount;
+    }
+
+    public long unaryFrequency(int a) {
+        return unary[a];
+    }
+
+    /**
+     * @return the attenuated frequency of b following a within the lookback window
+     */
+    public double binaryFrequency(int a, int b) {
+        return frequency[a][b];
+    }
+
+    /**
+     * @return the mean proximity of the a/b relations, in [0, 1]
+     */
+    public double proximityCorrelation(int a, int b) {
+        return timedFrequency[a][b] == 0 ? 0 : proximity[a][b] / timedFrequency[a][b];
+    }
+
+    /**
+     * @return the share of the a/b relations executed by one originator, in [0, 1]
+     */
+    public double originatorCorrelation(int a, int b) {
+        return frequency[a][b] == 0 ? 0 : originator[a][b] / frequency[a][b];
+    }
+}
@@ -1,21 +1,102 @@
 package org.ag.processmining.miner.fuzzyminer;
 
+import org.ag.processmining.local.EventStore;
+import org.ag.processmining.local.LocalEngine;
+import org.ag.processmining.local.LocalLog;
+import org.ag.processmining.log.model.CaseId;
 import org.ag.processmining.log.model.EventSchema;
+import org.ag.processmining.log.model.Trace;
 import org.ag.processmining.log.summarizer.overview.LogSummary;
 import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 
-//import static org.ag.processmining.log.summarizer.utils.SparkUtils.MAP_TO_CASE_ID_PROC_INSTANCE;
+import java.io.IOException;
+import java.io.Serializable;
 
-public class FuzzyMiner {
-    public static void main(String[] args) {
-        if (args.length == 0) {
-            System.out.println("There is no argument");
+/**
+ * Fuzzy Miner (Gunther and van der Aalst, see FuzzyMiner.pdf in the resources).
+ * <p>
+ * The log-based metrics are computed in one distributed scan over the traces, partition by
+ * partition, and tree-aggregated on the driver. The resulting {@link FuzzyModel} holds the
+ * significance and correlation matrices, from which simplified graphs can be derived for any set
+ * of cutoffs without scanning the log again.
+ */
+public class FuzzyMiner implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private static final int DEFAULT_DEPTH = 2;
+
+    JavaPairRDD<CaseId, Trace> traces;
+    transient LocalLog localTraces;
+    transient EventStore store;
+    private int lookback = 5;
+    private double attenuation = 0.5;
+    private double proximityWeight = 1;
+    private double originatorWeight = 1;
+    private double endpointWeight = 1;
+    private int depth = DEFAULT_DEPTH;
+
+    public FuzzyMiner(JavaPairRDD<CaseId, Trace> traces) {
+        this.traces = traces;
+    }
+
+    public FuzzyMiner(LocalLog traces) {
+        this.localTraces = traces;
+    }
+
+    public FuzzyMiner(EventStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @param lookback    number of preceding events each event is related to
+     * @param attenuation factor applied to the relation for each additional step back, in ]0, 1]
+     */
+    public FuzzyMiner lookback(int lookback, double attenuation) {
+        this.lookback = lookback;
+        this.attenuation = attenuation;
+        return this;
+    }
+
+    public FuzzyMiner correlationWeights(double proximity, double originator, double endpoint) {
+        this.proximityWeight = proximity;
+        this.originatorWeight = originator;
+        this.endpointWeight = endpoint;
+        return this;
+    }
+
+    public FuzzyMiner depth(int depth) {
+        this.depth = depth;
+        return this;
+    }
+
+    public FuzzyMetrics metrics() {
+        if (store != null) {
+            return store.aggregate(new FuzzyMetrics(store.activities(), lookback, attenuation), FuzzyMetrics::add, FuzzyMetrics::merge).canonical();
+        }
+        if (localTraces != null) {
+            return localTraces.aggregate(new FuzzyMetrics(lookback, attenuation), FuzzyMetrics::add, FuzzyMetrics::merge).canonical();
+        }
+        return traces.treeAggregate(new FuzzyMetrics(lookback, attenuation),
+                (m, t) -> m.add(t._2()),
+                (m1, m2) -> m1.merge(m2),
+                depth)
+                .canonical();
+    }
+
+    public FuzzyModel mine() {
+        return new FuzzyModel(metrics(), proximityWeight, originatorWeight, endpointWeight);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: FuzzyMiner <log file> <event schema> [edge cutoff] [node cutoff]");
             return;
         }
 
-        String sourceFile = args[0]; //"D:/ProcessMiningJavaCode/processming/process_data_set.txt";
+        String sourceFile = args[0];
         String attributeMappingFilePath = args[1];
         String[] event_attributes = {"a_ref_activitee", "h_create_date", "h_dateentree", "h_date_execution",
                 "h_codecorbeille", "h_codestatut", "h_creator", "h_domaine", "h_idaction",
@@ -24,21 +105,27 @@ public class FuzzyMiner {
                 "h_commentaire"};
 
         EventSchema att_map = new EventSchema(attributeMappingFilePath);
+        SimplificationParameters parameters = new SimplificationParameters();
+        if (args.length > 2) {
+            parameters.edgeCutoff(Double.parseDouble(args[2]));
+        }
+        if (args.length > 3) {
+            parameters.nodeCutoff(Double.parseDouble(args[3]));
+        }
+        if (LocalEngine.useLocal(sourceFile)) {
+            LocalLog traces = new LocalEngine().read(sourceFile, event_attributes, att_map);
+            System.out.println(new FuzzyMiner(traces).mine().simplify(parameters).toDot());
+            return;
+        }
+
         String applicationName = "Process Mining using Apache Spark";
-        String applicationDesc = "Building statistics about the process";
-        LogSummary ls = new LogSummary(applicationName, applicationDesc);
         SparkConf conf = new SparkConf().setAppName(applicationName).setMaster("local[*]");
         JavaSparkContext sc = new JavaSparkContext(conf);
         JavaRDD<String> RDDSrc = sc.textFile(sourceFile);
 
-
-        // Building Summary data
-        //JavaPairRDD<CaseId, Event> CASE_ID_EVENT_MAP = RDDSrc.mapToPair(new MapToCaseIdEvent(att_map, event_attributes));
-        //JavaPairRDD<CaseId, Trace> CASE_ID_PROC_INSTANCE = CASE_ID_EVENT_MAP.groupByKey().mapToPair(MAP_TO_CASE_ID_PROC_INSTANCE);
-
-        //long count = CASE_ID_PROC_INSTANCE.count();
-        //System.out.println(count);
-
-
+        JavaPairRDD<CaseId, Trace> traces = LogSummary.buildTraces(LogSummary.buildEvents(RDDSrc, event_attributes, att_map));
+        FuzzyModel model = new FuzzyMiner(traces).mine();
+        System.out.println(model.simplify(parameters).toDot());
+        sc.stop();
     }
 }
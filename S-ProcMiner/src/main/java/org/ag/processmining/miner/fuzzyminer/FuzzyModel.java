@@ -0,0 +1,284 @@
+package org.ag.processmining.miner.fuzzyminer;
+
+import org.ag.processmining.log.model.ActivityClass;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Significance and correlation matrices derived from the {@link FuzzyMetrics} of a log.
+ * <p>
+ * The matrices are computed once; {@link #simplify(SimplificationParameters)} only reads them, so a
+ * model can be simplified again with other cutoffs without going back to the log.
+ */
+public class FuzzyModel implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    private final int n;
+    private final List<ActivityClass> activities = new ArrayList<>();
+    private final double[] unarySignificance;
+    private final double[][] binarySignificance;
+    private final double[][] correlation;
+
+    /**
+     * @param metrics           canonical metrics of the log
+     * @param proximityWeight   weight of the proximity correlation
+     * @param originatorWeight  weight of the originator correlation
+     * @param endpointWeight    weight of the endpoint correlation (similarity of the activity names)
+     */
+    public FuzzyModel(FuzzyMetrics metrics, double proximityWeight, double originatorWeight, double endpointWeight) {
+        n = metrics.size();
+        for (int i = 0; i < n; i++) {
+            activities.add(metrics.activity(i));
+        }
+        unarySignificance = new double[n];
+        binarySignificance = new double[n][n];
+        correlation = new double[n][n];
+
+        long maxUnary = 0;
+        double maxBinary = 0;
+        for (int i = 0; i < n; i++) {
+            maxUnary = Math.max(maxUnary, metrics.unaryFrequency(i));
+            for (int j = 0; j < n; j++) {
+                maxBinary = Math.max(maxBinary, metrics.binaryFrequency(i, j));
+            }
+        }
+        double totalWeight = proximityWeight + originatorWeight + endpointWeight;
+        for (int i = 0; i < n; i++) {
+            unarySignificance[i] = maxUnary == 0 ? 0 : (double) metrics.unaryFrequency(i) / maxUnary;
+            for (int j = 0; j < n; j++) {
+                double f = metrics.binaryFrequency(i, j);
+                if (f == 0) {
+                    continue;
+                }
+                binarySignificance[i][j] = f / maxBinary;
+                if (totalWeight > 0) {
+                    correlation[i][j] = (proximityWeight * metrics.proximityCorrelation(i, j)
+                            + originatorWeight * metrics.originatorCorrelation(i, j)
+                            + endpointWeight * nameSimilarity(activities.get(i).getName(), activities.get(j).getName()))
+                            / totalWeight;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 1 - (Levenshtein distance / length of the longest name)
+     */
+    static double nameSimilarity(String a, String b) {
+        if (a == null || b == null) {
+            return 0;
+        }
+        int max = Math.max(a.length(), b.length());
+        if (max == 0) {
+            return 1;
+        }
+        int[] prev = new int[b.length() + 1];
+        int[] cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+            }
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return 1 - (double) prev[b.length()] / max;
+    }
+
+    public int size() {
+        return n;
+    }
+
+    public ActivityClass activity(int a) {
+        return activities.get(a);
+    }
+
+    public double unarySignificance(int a) {
+        return unarySignificance[a];
+    }
+
+    public double binarySignificance(int a, int b) {
+        return binarySignificance[a][b];
+    }
+
+    public double correlation(int a, int b) {
+        return correlation[a][b];
+    }
+
+    /**
+     * Simplifies the model in three steps: conflict resolution between the two edges of a pair of
+     * activities, edge filtering by utility, and aggregation of the insignificant activities into
+     * clusters.
+     */
+    public FuzzyGraph simplify(SimplificationParameters p) {
+        boolean[][] keep = new boolean[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                keep[i][j] = binarySignificance[i][j] > 0;
+            }
+        }
+        resolveConflicts(keep, p);
+        filterEdges(keep, p);
+        return aggregate(keep, p);
+    }
+
+    private void resolveConflicts(boolean[][] keep, SimplificationParameters p) {
+        double[] outSum = new double[n];
+        double[] inSum = new double[n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i != j) {
+                    outSum[i] += binarySignificance[i][j];
+                    inSum[j] += binarySignificance[i][j];
+                }
+            }
+        }
+        for (int a = 0; a < n; a++) {
+            for (int b = a + 1; b < n; b++) {
+                if (!keep[a][b] || !keep[b][a]) {
+                    continue;
+                }
+                double ab = 0.5 * binarySignificance[a][b] / outSum[a] + 0.5 * binarySignificance[a][b] / inSum[b];
+                double ba = 0.5 * binarySignificance[b][a] / outSum[b] + 0.5 * binarySignificance[b][a] / inSum[a];
+                if (ab >= p.getPreserveThreshold() && ba >= p.getPreserveThreshold()) {
+                    continue;
+                }
+                if (Math.abs(ab - ba) >= p.getRatioThreshold()) {
+                    if (ab > ba) {
+                        keep[b][a] = false;
+                    } else {
+                        keep[a][b] = false;
+                    }
+                } else {
+                    keep[a][b] = false;
+                    keep[b][a] = false;
+                }
+            }
+        }
+    }
+
+    private void filterEdges(boolean[][] keep, SimplificationParameters p) {
+        double ur = p.getUtilityRatio();
+        double[][] utility = new double[n][n];
+        double[] inMin = new double[n];
+        double[] inMax = new double[n];
+        double[] outMin = new double[n];
+        double[] outMax = new double[n];
+        Arrays.fill(inMin, Double.MAX_VALUE);
+        Arrays.fill(outMin, Double.MAX_VALUE);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (keep[i][j] && i != j) {
+                    double u = utility[i][j] = ur * binarySignificance[i][j] + (1 - ur) * correlation[i][j];
+                    outMin[i] = Math.min(outMin[i], u);
+                    outMax[i] = Math.max(outMax[i], u);
+                    inMin[j] = Math.min(inMin[j], u);
+                    inMax[j] = Math.max(inMax[j], u);
+                }
+            }
+        }
+        // an edge is kept as long as it is significant enough for one of its two endpoints
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (keep[i][j] && i != j) {
+                    double u = utility[i][j];
+                    double out = outMax[i] == outMin[i] ? 1 : (u - outMin[i]) / (outMax[i] - outMin[i]);
+                    double in = inMax[j] == inMin[j] ? 1 : (u - inMin[j]) / (inMax[j] - inMin[j]);
+                    keep[i][j] = out >= p.getEdgeCutoff() || in >= p.getEdgeCutoff();
+                }
+            }
+        }
+    }
+
+    private FuzzyGraph aggregate(boolean[][] keep, SimplificationParameters p) {
+        int[] parent = new int[n];
+        boolean[] victim = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            victim[i] = unarySignificance[i] < p.getNodeCutoff();
+        }
+        // every insignificant activity joins the cluster of its most correlated insignificant neighbour
+        for (int i = 0; i < n; i++) {
+            if (!victim[i]) {
+                continue;
+            }
+            int best = -1;
+            double bestCorrelation = -1;
+            for (int j = 0; j < n; j++) {
+                if (j == i || !victim[j] || !(keep[i][j] || keep[j][i])) {
+                    continue;
+                }
+                double c = Math.max(keep[i][j] ? correlation[i][j] : 0, keep[j][i] ? correlation[j][i] : 0);
+                if (c > bestCorrelation) {
+                    best = j;
+                    bestCorrelation = c;
+                }
+            }
+            if (best >= 0) {
+                parent[find(parent, i)] = find(parent, best);
+            }
+        }
+
+        Map<Integer, List<Integer>> clusters = new TreeMap<>();
+        for (int i = 0; i < n; i++) {
+            clusters.computeIfAbsent(find(parent, i), k -> new ArrayList<>()).add(i);
+        }
+        FuzzyGraph graph = new FuzzyGraph();
+        int[] node = new int[n];
+        Arrays.fill(node, -1);
+        for (List<Integer> members : clusters.values()) {
+            // isolated insignificant activities are dropped
+            if (members.size() == 1 && victim[members.get(0)]) {
+                continue;
+            }
+            List<ActivityClass> classes = new ArrayList<>();
+            double significance = 0;
+            for (int m : members) {
+                classes.add(activities.get(m));
+                significance += unarySignificance[m];
+            }
+            int id = graph.addNode(classes, significance / members.size());
+            for (int m : members) {
+                node[m] = id;
+            }
+        }
+
+        int nodes = graph.getNodes().size();
+        double[][] significance = new double[nodes][nodes];
+        double[][] corr = new double[nodes][nodes];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                int from = node[i];
+                int to = node[j];
+                if (!keep[i][j] || from < 0 || to < 0 || (from == to && i != j)) {
+                    continue;
+                }
+                significance[from][to] = Math.max(significance[from][to], binarySignificance[i][j]);
+                corr[from][to] = Math.max(corr[from][to], correlation[i][j]);
+            }
+        }
+        for (int i = 0; i < nodes; i++) {
+            for (int j = 0; j < nodes; j++) {
+                if (significance[i][j] > 0) {
+                    graph.addEdge(i, j, significance[i][j], corr[i][j]);
+                }
+            }
+        }
+        return graph;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+}
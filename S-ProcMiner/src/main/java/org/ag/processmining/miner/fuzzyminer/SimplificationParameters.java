@@ -0,0 +1,57 @@
+package org.ag.processmining.miner.fuzzyminer;
+
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * Cutoffs of the Fuzzy Miner simplification. All of them are in [0, 1].
+ */
+@Getter
+public class SimplificationParameters implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    /*
+    Edge filtering: edges whose utility, normalized among the edges of a node, is below the cutoff
+    are removed. The utility is utilityRatio * significance + (1 - utilityRatio) * correlation.
+     */
+    private double edgeCutoff = 0.2;
+    private double utilityRatio = 0.75;
+    /*
+    Node aggregation: nodes whose significance is below the cutoff are clustered or removed
+     */
+    private double nodeCutoff = 0.0;
+    /*
+    Conflict resolution: both edges of a pair a <-> b are kept as a loop if their relative
+    significance is above preserveThreshold, otherwise the weaker one is removed if the two differ
+    by more than ratioThreshold, and both are removed (concurrency) if not.
+     */
+    private double preserveThreshold = 0.4;
+    private double ratioThreshold = 0.7;
+
+    public SimplificationParameters edgeCutoff(double edgeCutoff) {
+        this.edgeCutoff = edgeCutoff;
+        return this;
+    }
+
+    public SimplificationParameters utilityRatio(double utilityRatio) {
+        this.utilityRatio = utilityRatio;
+        return this;
+    }
+
+    public SimplificationParameters nodeCutoff(double nodeCutoff) {
+        this.nodeCutoff = nodeCutoff;
+        return this;
+    }
+
+    public SimplificationParameters preserveThreshold(double preserveThreshold) {
+        this.preserveThreshold = preserveThreshold;
+        return this;
+    }
+
+    public SimplificationParameters ratioThreshold(double ratioThreshold) {
+        this.ratioThreshold = ratioThreshold;
+        return this;
+    }
+}
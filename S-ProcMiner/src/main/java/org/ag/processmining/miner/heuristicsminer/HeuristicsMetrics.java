@@ -0,0 +1,155 @@
+package org.ag.processmining.miner.heuristicsminer;
+
+import org.ag.processmining.log.model.ActivityClass;
+import org.ag.processmining.log.model.Dictionary;
+import org.ag.processmining.log.model.EncodedTrace;
+import org.ag.processmining.miner.ActivityStatistics;
+
+import java.util.Arrays;
+
+/**
+ * Counts needed by the Heuristics Miner, accumulated in one scan over the traces:
+ * <ul>
+ * <li>|a &gt; b|, how often b directly follows a;</li>
+ * <li>|a &gt;&gt; b|, how often a is directly followed by b and then by a again (length-two loops);</li>
+ * <li>|a &gt;&gt;&gt; b|, how often an occurrence of a is eventually followed by b in its trace
+ * (long-distance dependencies);</li>
+ * <li>the number of occurrences of each activity, and of traces it starts and ends.</li>
+ * </ul>
+ */
+public class HeuristicsMetrics extends ActivityStatistics<HeuristicsMetrics> {
+
+    static final long serialVersionUID = 1L;
+
+    private long[] occurrences = new long[0];
+    private long[] startFrequency = new long[0];
+    private long[] endFrequency = new long[0];
+    private long[][] directSuccession = new long[0][0];
+    private long[][] lengthTwoLoop = new long[0][0];
+    private long[][] longDistance = new long[0][0];
+    private long traceCount = 0;
+    /*
+    Scratch arrays of the long-distance scan, reused across traces
+     */
+    private transient boolean[] seen;
+    private transient int[] seenList;
+
+    public HeuristicsMetrics() {
+    }
+
+    /**
+     * Creates empty metrics whose ids are the ones of the given dictionary, to be filled with
+     * traces encoded with that dictionary.
+     */
+    public HeuristicsMetrics(Dictionary<ActivityClass> dictionary) {
+        register(dictionary);
+    }
+
+    @Override
+    protected HeuristicsMetrics empty() {
+        return new HeuristicsMetrics();
+    }
+
+    @Override
+    protected void resize(int oldCapacity, int newCapacity) {
+        occurrences = Arrays.copyOf(occurrences, newCapacity);
+        startFrequency = Arrays.copyOf(startFrequency, newCapacity);
+        endFrequency = Arrays.copyOf(endFrequency, newCapacity);
+        directSuccession = grow(directSuccession, oldCapacity, newCapacity);
+        lengthTwoLoop = grow(lengthTwoLoop, oldCapacity, newCapacity);
+        longDistance = grow(longDistance, oldCapacity, newCapacity);
+    }
+
+    @Override
+    protected void addEncoded(EncodedTrace trace) {
+        int n = trace.size();
+        if (n == 0) {
+            return;
+        }
+        traceCount++;
+        startFrequency[trace.activity(0)]++;
+        endFrequency[trace.activity(n - 1)]++;
+        for (int i = 0; i < n; i++) {
+            int a = trace.activity(i);
+            occurrences[a]++;
+            if (i + 1 < n) {
+                int b = trace.activity(i + 1);
+                directSuccession[a][b]++;
+                if (i + 2 < n && trace.activity(i + 2) == a && b != a) {
+                    lengthTwoLoop[a][b]++;
+                }
+            }
+        }
+        // backward scan: the activities seen so far are the ones eventually following position i
+        if (seen == null || seen.length < size()) {
+            seen = new boolean[size()];
+            seenList = new int[size()];
+        }
+        int seenCount = 0;
+        for (int i = n - 1; i >= 0; i--) {
+            int a = trace.activity(i);
+            for (int k = 0; k < seenCount; k++) {
+                longDistance[a][seenList[k]]++;
+            }
+            if (!seen[a]) {
+                seen[a] = true;
+                seenList[seenCount++] = a;
+            }
+        }
+        for (int k = 0; k < seenCount; k++) {
+            seen[seenList[k]] = false;
+        }
+    }
+
+    @Override
+    protected void mergeRemapped(HeuristicsMetrics other, int[] map) {
+        for (int i = 0; i < map.length; i++) {
+            occurrences[map[i]] += other.occurrences[i];
+            startFrequency[map[i]] += other.startFrequency[i];
+            endFrequency[map[i]] += other.endFrequency[i];
+            for (int j = 0; j < map.length; j++) {
+                directSuccession[map[i]][map[j]] += other.directSuccession[i][j];
+                lengthTwoLoop[map[i]][map[j]] += other.lengthTwoLoop[i][j];
+                longDistance[map[i]][map[j]] += other.longDistance[i][j];
+            }
+        }
+        traceCount += other.traceCount;
+    }
+
+    public long occurrences(int a) {
+        return occurrences[a];
+    }
+
+    public long startFrequency(int a) {
+        return startFrequency[a];
+    }
+
+    public long endFrequency(int a) {
+        return endFrequency[a];
+    }
+
+    /**
+     * @return |a &gt; b|
+     */
+    public long directSuccession(int a, int b) {
+        return directSuccession[a][b];
+    }
+
+    /**
+     * @return |a &gt;&gt; b|
+     */
+    public long lengthTwoLoop(int a, int b) {
+        return lengthTwoLoop[a][b];
+    }
+
+    /**
+     * @return |a &gt;&gt;&gt; b|
+     */
+    public long longDistance(int a, int b) {
+        return longDistance[a][b];
+    }
+
+    public long getTraceCount() {
+        return traceCount;
+    }
+}
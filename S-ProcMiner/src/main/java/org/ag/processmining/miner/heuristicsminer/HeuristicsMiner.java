@@ -0,0 +1,62 @@
+package org.ag.processmining.miner.heuristicsminer;
+
+import org.ag.processmining.local.EventStore;
+import org.ag.processmining.local.LocalLog;
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Trace;
+import org.apache.spark.api.java.JavaPairRDD;
+
+import java.io.Serializable;
+
+/**
+ * Heuristics Miner (Weijters and Ribeiro, Flexible Heuristics Miner).
+ * <p>
+ * The succession counts are computed in one distributed scan over the traces, partition by
+ * partition, and tree-aggregated on the driver. The resulting {@link HeuristicsModel} derives
+ * nets for any set of thresholds without scanning the log again.
+ */
+public class HeuristicsMiner implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private static final int DEFAULT_DEPTH = 2;
+
+    JavaPairRDD<CaseId, Trace> traces;
+    transient LocalLog localTraces;
+    transient EventStore store;
+    private int depth = DEFAULT_DEPTH;
+
+    public HeuristicsMiner(JavaPairRDD<CaseId, Trace> traces) {
+        this.traces = traces;
+    }
+
+    public HeuristicsMiner(LocalLog traces) {
+        this.localTraces = traces;
+    }
+
+    public HeuristicsMiner(EventStore store) {
+        this.store = store;
+    }
+
+    public HeuristicsMiner depth(int depth) {
+        this.depth = depth;
+        return this;
+    }
+
+    public HeuristicsMetrics metrics() {
+        if (store != null) {
+            return store.aggregate(new HeuristicsMetrics(store.activities()), HeuristicsMetrics::add, HeuristicsMetrics::merge).canonical();
+        }
+        if (localTraces != null) {
+            return localTraces.aggregate(new HeuristicsMetrics(), HeuristicsMetrics::add, HeuristicsMetrics::merge).canonical();
+        }
+        return traces.treeAggregate(new HeuristicsMetrics(),
+                (m, t) -> m.add(t._2()),
+                (m1, m2) -> m1.merge(m2),
+                depth)
+                .canonical();
+    }
+
+    public HeuristicsModel mine() {
+        return new HeuristicsModel(metrics());
+    }
+}
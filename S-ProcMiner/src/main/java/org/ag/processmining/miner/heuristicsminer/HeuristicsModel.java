@@ -0,0 +1,267 @@
+package org.ag.processmining.miner.heuristicsminer;
+
+import org.ag.processmining.log.model.ActivityClass;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Dependency measures of the Heuristics Miner, derived once from the {@link HeuristicsMetrics} of
+ * a log. {@link #net(HeuristicsParameters)} only reads them, so nets for other thresholds can be
+ * built without going back to the log.
+ */
+public class HeuristicsModel implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    private final HeuristicsMetrics metrics;
+    private final int n;
+    private final List<ActivityClass> activities = new ArrayList<>();
+    private final double[][] dependency;
+    private final double[][] lengthTwoLoop;
+    private final double[][] longDistance;
+
+    /**
+     * @param metrics canonical metrics of the log
+     */
+    public HeuristicsModel(HeuristicsMetrics metrics) {
+        this.metrics = metrics;
+        n = metrics.size();
+        for (int i = 0; i < n; i++) {
+            activities.add(metrics.activity(i));
+        }
+        dependency = new double[n][n];
+        lengthTwoLoop = new double[n][n];
+        longDistance = new double[n][n];
+        for (int a = 0; a < n; a++) {
+            for (int b = 0; b < n; b++) {
+                long ab = metrics.directSuccession(a, b);
+                if (a == b) {
+                    dependency[a][a] = (double) ab / (ab + 1);
+                    continue;
+                }
+                long ba = metrics.directSuccession(b, a);
+                dependency[a][b] = (double) (ab - ba) / (ab + ba + 1);
+                long loops = metrics.lengthTwoLoop(a, b) + metrics.lengthTwoLoop(b, a);
+                lengthTwoLoop[a][b] = (double) loops / (loops + 1);
+                long oa = metrics.occurrences(a);
+                long ob = metrics.occurrences(b);
+                longDistance[a][b] = (2.0 * metrics.longDistance(a, b) - 2.0 * Math.abs(oa - ob)) / (oa + ob + 1);
+            }
+        }
+    }
+
+    public int size() {
+        return n;
+    }
+
+    public ActivityClass activity(int a) {
+        return activities.get(a);
+    }
+
+    public HeuristicsMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return a =&gt; b, in ]-1, 1[; for a == b, the length-one loop measure a =&gt; a
+     */
+    public double dependency(int a, int b) {
+        return dependency[a][b];
+    }
+
+    /**
+     * @return a =&gt;2 b, in [0, 1[
+     */
+    public double lengthTwoLoop(int a, int b) {
+        return lengthTwoLoop[a][b];
+    }
+
+    /**
+     * @return a =&gt;l b
+     */
+    public double longDistance(int a, int b) {
+        return longDistance[a][b];
+    }
+
+    /**
+     * @return a =&gt; (b AND c), the measure of b and c being executed in parallel after a
+     */
+    public double andSplit(int a, int b, int c) {
+        return (double) (metrics.directSuccession(b, c) + metrics.directSuccession(c, b))
+                / (metrics.directSuccession(a, b) + metrics.directSuccession(a, c) + 1);
+    }
+
+    /**
+     * @return (b AND c) =&gt; a, the measure of b and c being executed in parallel before a
+     */
+    public double andJoin(int a, int b, int c) {
+        return (double) (metrics.directSuccession(b, c) + metrics.directSuccession(c, b))
+                / (metrics.directSuccession(b, a) + metrics.directSuccession(c, a) + 1);
+    }
+
+    public HeuristicsNet net(HeuristicsParameters p) {
+        long minObservations = p.getPositiveObservations();
+        boolean[][] accepted = new boolean[n][n];
+        double[][] measure = new double[n][n];
+
+        boolean[] lengthOneLoop = new boolean[n];
+        for (int a = 0; a < n; a++) {
+            if (dependency[a][a] >= p.getLengthOneLoopThreshold() && metrics.directSuccession(a, a) >= minObservations) {
+                lengthOneLoop[a] = accepted[a][a] = true;
+                measure[a][a] = dependency[a][a];
+            }
+        }
+        // a length-two loop a b a is only looked for when neither a nor b loops on itself
+        for (int a = 0; a < n; a++) {
+            for (int b = 0; b < n; b++) {
+                if (a != b && !lengthOneLoop[a] && !lengthOneLoop[b]
+                        && lengthTwoLoop[a][b] >= p.getLengthTwoLoopThreshold()
+                        && metrics.lengthTwoLoop(a, b) + metrics.lengthTwoLoop(b, a) >= minObservations) {
+                    accepted[a][b] = true;
+                    measure[a][b] = Math.max(dependency[a][b], lengthTwoLoop[a][b]);
+                }
+            }
+        }
+
+        int[] bestOutput = new int[n];
+        int[] bestInput = new int[n];
+        Arrays.fill(bestOutput, -1);
+        Arrays.fill(bestInput, -1);
+        for (int a = 0; a < n; a++) {
+            for (int b = 0; b < n; b++) {
+                if (a != b && dependency[a][b] > 0) {
+                    if (bestOutput[a] < 0 || dependency[a][b] > dependency[a][bestOutput[a]]) {
+                        bestOutput[a] = b;
+                    }
+                    if (bestInput[b] < 0 || dependency[a][b] > dependency[bestInput[b]][b]) {
+                        bestInput[b] = a;
+                    }
+                }
+            }
+        }
+        if (p.isAllTasksConnected()) {
+            for (int a = 0; a < n; a++) {
+                if (bestOutput[a] >= 0 && !accepted[a][bestOutput[a]]) {
+                    accepted[a][bestOutput[a]] = true;
+                    measure[a][bestOutput[a]] = dependency[a][bestOutput[a]];
+                }
+                if (bestInput[a] >= 0 && !accepted[bestInput[a]][a]) {
+                    accepted[bestInput[a]][a] = true;
+                    measure[bestInput[a]][a] = dependency[bestInput[a]][a];
+                }
+            }
+        }
+        for (int a = 0; a < n; a++) {
+            for (int b = 0; b < n; b++) {
+                double d = dependency[a][b];
+                if (a == b || accepted[a][b] || d < p.getDependencyThreshold()
+                        || metrics.directSuccession(a, b) < minObservations) {
+                    continue;
+                }
+                if (bestOutput[a] < 0 || dependency[a][bestOutput[a]] - d <= p.getRelativeToBest()
+                        || bestInput[b] < 0 || dependency[bestInput[b]][b] - d <= p.getRelativeToBest()) {
+                    accepted[a][b] = true;
+                    measure[a][b] = d;
+                }
+            }
+        }
+
+        HeuristicsNet net = new HeuristicsNet(activities);
+        for (int a = 0; a < n; a++) {
+            for (int b = 0; b < n; b++) {
+                if (accepted[a][b]) {
+                    net.addEdge(new HeuristicsNet.Edge(a, b, measure[a][b], metrics.directSuccession(a, b), false));
+                } else if (p.isLongDistanceDependencies() && a != b
+                        && longDistance[a][b] >= p.getLongDistanceThreshold()
+                        && metrics.longDistance(a, b) >= minObservations) {
+                    net.addEdge(new HeuristicsNet.Edge(a, b, longDistance[a][b], metrics.longDistance(a, b), true));
+                }
+            }
+        }
+
+        boolean anyStart = false;
+        boolean anyEnd = false;
+        for (int a = 0; a < n; a++) {
+            List<Integer> inputs = new ArrayList<>();
+            List<Integer> outputs = new ArrayList<>();
+            for (int b = 0; b < n; b++) {
+                if (b != a && accepted[b][a]) {
+                    inputs.add(b);
+                }
+                if (b != a && accepted[a][b]) {
+                    outputs.add(b);
+                }
+            }
+            final int x = a;
+            List<List<Integer>> in = bindings(inputs, (b, c) -> andJoin(x, b, c) >= p.getAndThreshold());
+            List<List<Integer>> out = bindings(outputs, (b, c) -> andSplit(x, b, c) >= p.getAndThreshold());
+            if (lengthOneLoop[a]) {
+                in.add(Collections.singletonList(a));
+                out.add(Collections.singletonList(a));
+            }
+            net.setBindings(a, in, out);
+            if (inputs.isEmpty() && metrics.startFrequency(a) > 0) {
+                net.addStart(a);
+                anyStart = true;
+            }
+            if (outputs.isEmpty() && metrics.endFrequency(a) > 0) {
+                net.addEnd(a);
+                anyEnd = true;
+            }
+        }
+        // every activity has inputs or outputs, e.g. in a loop: fall back to the most frequent ones
+        if (!anyStart && n > 0) {
+            net.addStart(argMax(metrics::startFrequency));
+        }
+        if (!anyEnd && n > 0) {
+            net.addEnd(argMax(metrics::endFrequency));
+        }
+        return net;
+    }
+
+    private interface Parallel {
+        boolean test(int b, int c);
+    }
+
+    /**
+     * Groups the activities that are pairwise related by {@code parallel}, transitively.
+     */
+    private static List<List<Integer>> bindings(List<Integer> candidates, Parallel parallel) {
+        int[] parent = new int[candidates.size()];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        for (int i = 0; i < parent.length; i++) {
+            for (int j = i + 1; j < parent.length; j++) {
+                if (parallel.test(candidates.get(i), candidates.get(j))) {
+                    parent[find(parent, i)] = find(parent, j);
+                }
+            }
+        }
+        Map<Integer, List<Integer>> groups = new TreeMap<>();
+        for (int i = 0; i < parent.length; i++) {
+            groups.computeIfAbsent(find(parent, i), k -> new ArrayList<>()).add(candidates.get(i));
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private int argMax(IntToLongFunction f) {
+        int best = 0;
+        for (int a = 1; a < n; a++) {
+            if (f.applyAsLong(a) > f.applyAsLong(best)) {
+                best = a;
+            }
+        }
+        return best;
+    }
+}
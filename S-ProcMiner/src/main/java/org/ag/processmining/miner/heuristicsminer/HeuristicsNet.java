@@ -0,0 +1,213 @@
+package org.ag.processmining.miner.heuristicsminer;
+
+import org.ag.processmining.log.model.ActivityClass;
+import org.ag.processmining.petrinet.PetriNet;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Dependency graph mined by the Heuristics Miner, with the split and join semantics of every
+ * activity.
+ * <p>
+ * The outputs (resp. inputs) of an activity are grouped into bindings: the activities of a
+ * binding are executed together (AND), and different bindings exclude each other (XOR).
+ */
+public class HeuristicsNet implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private final List<ActivityClass> activities;
+    private final List<Edge> edges = new ArrayList<>();
+    private final List<List<List<Integer>>> outputBindings = new ArrayList<>();
+    private final List<List<List<Integer>>> inputBindings = new ArrayList<>();
+    private final List<Integer> startActivities = new ArrayList<>();
+    private final List<Integer> endActivities = new ArrayList<>();
+
+    HeuristicsNet(List<ActivityClass> activities) {
+        this.activities = activities;
+        for (int i = 0; i < activities.size(); i++) {
+            outputBindings.add(new ArrayList<>());
+            inputBindings.add(new ArrayList<>());
+        }
+    }
+
+    void addEdge(Edge e) {
+        edges.add(e);
+    }
+
+    void setBindings(int a, List<List<Integer>> inputs, List<List<Integer>> outputs) {
+        inputBindings.set(a, inputs);
+        outputBindings.set(a, outputs);
+    }
+
+    void addStart(int a) {
+        startActivities.add(a);
+    }
+
+    void addEnd(int a) {
+        endActivities.add(a);
+    }
+
+    public List<ActivityClass> getActivities() {
+        return Collections.unmodifiableList(activities);
+    }
+
+    public List<Edge> getEdges() {
+        return Collections.unmodifiableList(edges);
+    }
+
+    public List<Integer> getStartActivities() {
+        return Collections.unmodifiableList(startActivities);
+    }
+
+    public List<Integer> getEndActivities() {
+        return Collections.unmodifiableList(endActivities);
+    }
+
+    /**
+     * @return the XOR-alternative AND-groups of activities following {@code a}
+     */
+    public List<List<Integer>> outputBindings(int a) {
+        return Collections.unmodifiableList(outputBindings.get(a));
+    }
+
+    /**
+     * @return the XOR-alternative AND-groups of activities preceding {@code a}
+     */
+    public List<List<Integer>> inputBindings(int a) {
+        return Collections.unmodifiableList(inputBindings.get(a));
+    }
+
+    /**
+     * Converts the net to a Petri net. Every activity becomes a visible transition between an
+     * input and an output place, and every dependency edge a place; the bindings are silent
+     * transitions moving the token of the output place of an activity to the places of the edges
+     * of the binding (splits), or the tokens of the places of the edges of a binding to the input
+     * place of the activity (joins). Long-distance edges are not converted.
+     */
+    public PetriNet toPetriNet() {
+        PetriNet pn = new PetriNet();
+        int source = pn.addPlace("source");
+        int sink = pn.addPlace("sink");
+        pn.setInitialTokens(source, 1);
+        pn.setFinalTokens(sink, 1);
+        int n = activities.size();
+        int[] in = new int[n];
+        int[] out = new int[n];
+        for (int a = 0; a < n; a++) {
+            in[a] = pn.addPlace("in(" + activities.get(a) + ")");
+            out[a] = pn.addPlace("out(" + activities.get(a) + ")");
+            int t = pn.addTransition(activities.get(a).toString(), activities.get(a));
+            pn.addInputArc(in[a], t, 1);
+            pn.addOutputArc(t, out[a], 1);
+        }
+        Map<Long, Integer> edgePlaces = new HashMap<>();
+        for (Edge e : edges) {
+            if (!e.longDistance) {
+                edgePlaces.put(((long) e.from << 32) | e.to,
+                        pn.addPlace("(" + activities.get(e.from) + "," + activities.get(e.to) + ")"));
+            }
+        }
+        for (int a = 0; a < n; a++) {
+            for (List<Integer> binding : outputBindings.get(a)) {
+                int t = pn.addTransition("split(" + activities.get(a) + "," + binding + ")", null);
+                pn.addInputArc(out[a], t, 1);
+                for (int b : binding) {
+                    pn.addOutputArc(t, edgePlaces.get(((long) a << 32) | b), 1);
+                }
+            }
+            for (List<Integer> binding : inputBindings.get(a)) {
+                int t = pn.addTransition("join(" + binding + "," + activities.get(a) + ")", null);
+                for (int b : binding) {
+                    pn.addInputArc(edgePlaces.get(((long) b << 32) | a), t, 1);
+                }
+                pn.addOutputArc(t, in[a], 1);
+            }
+        }
+        for (int a : startActivities) {
+            int t = pn.addTransition("start(" + activities.get(a) + ")", null);
+            pn.addInputArc(source, t, 1);
+            pn.addOutputArc(t, in[a], 1);
+        }
+        for (int a : endActivities) {
+            int t = pn.addTransition("end(" + activities.get(a) + ")", null);
+            pn.addInputArc(out[a], t, 1);
+            pn.addOutputArc(t, sink, 1);
+        }
+        return pn;
+    }
+
+    /**
+     * @return the graph in the Graphviz dot language
+     */
+    public String toDot() {
+        StringBuilder sb = new StringBuilder("digraph heuristics {\n");
+        for (int i = 0; i < activities.size(); i++) {
+            sb.append("  n").append(i).append(" [shape=box, label=\"")
+                    .append(activities.get(i).toString().replace("\"", "\\\"")).append("\"];\n");
+        }
+        for (Edge e : edges) {
+            sb.append("  n").append(e.from).append(" -> n").append(e.to)
+                    .append(String.format(" [label=\"%.3f (%d)\"", e.dependency, e.frequency))
+                    .append(e.longDistance ? ", style=dashed" : "").append("];\n");
+        }
+        return sb.append("}\n").toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < activities.size(); i++) {
+            sb.append(bindings(inputBindings.get(i))).append(" -> ").append(activities.get(i))
+                    .append(" -> ").append(bindings(outputBindings.get(i))).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private String bindings(List<List<Integer>> bindings) {
+        StringJoiner xor = new StringJoiner(" XOR ", "{", "}");
+        for (List<Integer> binding : bindings) {
+            StringJoiner and = new StringJoiner(" AND ", binding.size() > 1 ? "(" : "", binding.size() > 1 ? ")" : "");
+            binding.forEach(a -> and.add(activities.get(a).toString()));
+            xor.add(and.toString());
+        }
+        return xor.toString();
+    }
+
+    public static class Edge implements Serializable {
+        static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final double dependency;
+        private final long frequency;
+        private final boolean longDistance;
+
+        Edge(int from, int to, double dependency, long frequency, boolean longDistance) {
+            this.from = from;
+            this.to = to;
+            this.dependency = dependency;
+            this.frequency = frequency;
+            this.longDistance = longDistance;
+        }
+
+        public int getFrom() {
+            return from;
+        }
+
+        public int getTo() {
+            return to;
+        }
+
+        public double getDependency() {
+            return dependency;
+        }
+
+        public long getFrequency() {
+            return frequency;
+        }
+
+        public boolean isLongDistance() {
+            return longDistance;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.ag.processmining.miner.heuristicsminer;
+
+import java.io.Serializable;
+
+/**
+ * Thresholds of the Heuristics Miner. Dependency thresholds are in [-1, 1], positive
+ * observations is a minimum number of occurrences of a relation in the log.
+ */
+public class HeuristicsParameters implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    private double dependencyThreshold = 0.9;
+    /*
+    An edge weaker than the dependency threshold is still accepted if its measure is within
+    relativeToBest of the strongest output of its source (or input of its target)
+     */
+    private double relativeToBest = 0.05;
+    private double lengthOneLoopThreshold = 0.9;
+    private double lengthTwoLoopThreshold = 0.9;
+    private double longDistanceThreshold = 0.9;
+    private double andThreshold = 0.1;
+    private long positiveObservations = 10;
+    /*
+    Connects every activity to its strongest input and output, whatever the thresholds
+     */
+    private boolean allTasksConnected = true;
+    /*
+    Adds long-distance edges between activities not directly connected, whose a =>l b measure is
+    above longDistanceThreshold
+     */
+    private boolean longDistanceDependencies = false;
+
+    public HeuristicsParameters dependencyThreshold(double dependencyThreshold) {
+        this.dependencyThreshold = dependencyThreshold;
+        return this;
+    }
+
+    public HeuristicsParameters relativeToBest(double relativeToBest) {
+        this.relativeToBest = relativeToBest;
+        return this;
+    }
+
+    public HeuristicsParameters lengthOneLoopThreshold(double lengthOneLoopThreshold) {
+        this.lengthOneLoopThreshold = lengthOneLoopThreshold;
+        return this;
+    }
+
+    public HeuristicsParameters lengthTwoLoopThreshold(double lengthTwoLoopThreshold) {
+        this.lengthTwoLoopThreshold = lengthTwoLoopThreshold;
+        return this;
+    }
+
+    public HeuristicsParameters longDistanceThreshold(double longDistanceThreshold) {
+        this.longDistanceThreshold = longDistanceThreshold;
+        return this;
+    }
+
+    public HeuristicsParameters andThreshold(double andThreshold) {
+        this.andThreshold = andThreshold;
+        return this;
+    }
+
+    public HeuristicsParameters positiveObservations(long positiveObservations) {
+        this.positiveObservations = positiveObservations;
+        return this;
+    }
+
+    public HeuristicsParameters allTasksConnected(boolean allTasksConnected) {
+        this.allTasksConnected = allTasksConnected;
+        return this;
+    }
+
+    public HeuristicsParameters longDistanceDependencies(boolean longDistanceDependencies) {
+        this.longDistanceDependencies = longDistanceDependencies;
+        return this;
+    }
+
+    public double getDependencyThreshold() {
+        return dependencyThreshold;
+    }
+
+    public double getRelativeToBest() {
+        return relativeToBest;
+    }
+
+    public double getLengthOneLoopThreshold() {
+        return lengthOneLoopThreshold;
+    }
+
+    public double getLengthTwoLoopThreshold() {
+        return lengthTwoLoopThreshold;
+    }
+
+    public double getLongDistanceThreshold() {
+        return longDistanceThreshold;
+    }
+
+    public double getAndThreshold() {
+        return andThreshold;
+    }
+
+    public long getPositiveObservations() {
+        return positiveObservations;
+    }
+
+    public boolean isAllTasksConnected() {
+        return allTasksConnected;
+    }
+
+    public boolean isLongDistanceDependencies() {
+        return longDistanceDependencies;
+    }
+}
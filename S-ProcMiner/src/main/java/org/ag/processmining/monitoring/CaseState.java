@@ -0,0 +1,110 @@
+package org.ag.processmining.monitoring;
+
+import org.ag.processmining.log.model.ActivityClass;
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Event;
+import org.ag.processmining.log.model.Trace;
+import org.joda.time.DateTime;
+
+/**
+ * Incremental state of a running case: its trace so far, the time span of its events and its last
+ * activity.
+ */
+public class CaseState {
+
+    private final CaseId caseId;
+    private final Trace trace;
+    private DateTime firstEventTime = null;
+    private DateTime lastEventTime = null;
+    private ActivityClass lastActivity = null;
+    private ActivityClass previousActivity = null;
+    private boolean lastEventInOrder = true;
+    private int eventCount = 0;
+    private long lastSeen = 0;
+
+    /**
+     * @param keepTrace whether the events are kept, or only the summary of the case
+     */
+    CaseState(CaseId caseId, boolean keepTrace) {
+        this.caseId = caseId;
+        this.trace = keepTrace ? new Trace(caseId) : null;
+    }
+
+    void add(Event e, long now) {
+        DateTime t = e.getStart();
+        if (firstEventTime == null || t.isBefore(firstEventTime)) {
+            firstEventTime = t;
+        }
+        lastEventInOrder = lastEventTime == null || !t.isBefore(lastEventTime);
+        if (lastEventInOrder) {
+            previousActivity = lastActivity;
+            lastEventTime = t;
+            lastActivity = e.getActivityClass();
+        }
+        if (trace != null) {
+            trace.addEvent(e);
+        }
+        eventCount++;
+        lastSeen = now;
+    }
+
+    public CaseId getCaseId() {
+        return caseId;
+    }
+
+    /**
+     * @return the events received so far, null if the engine does not keep traces
+     */
+    public Trace getTrace() {
+        return trace;
+    }
+
+    public DateTime getFirstEventTime() {
+        return firstEventTime;
+    }
+
+    public DateTime getLastEventTime() {
+        return lastEventTime;
+    }
+
+    public ActivityClass getLastActivity() {
+        return lastActivity;
+    }
+
+    /**
+     * @return the activity directly preceding the last activity, null if the case has one event
+     */
+    public ActivityClass getPreviousActivity() {
+        return previousActivity;
+    }
+
+    /**
+     * @return false if the latest event added was older than the last event of the case
+     */
+    public boolean isLastEventInOrder() {
+        return lastEventInOrder;
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @return the wall-clock time (ms) the last event of the case was received
+     */
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    /**
+     * @return the time elapsed between the first and the last event of the case, in ms
+     */
+    public long elapsed() {
+        return lastEventTime.getMillis() - firstEventTime.getMillis();
+    }
+
+    @Override
+    public String toString() {
+        return caseId + " events=" + eventCount + " last=" + lastActivity + " elapsed=" + elapsed() + "ms";
+    }
+}
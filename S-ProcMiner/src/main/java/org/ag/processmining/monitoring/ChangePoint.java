@@ -0,0 +1,106 @@
+package org.ag.processmining.monitoring;
+
+import org.ag.processmining.log.model.ActivityClass;
+import org.joda.time.DateTime;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Significant change of the relation distribution between two consecutive windows, detected by
+ * the {@link DriftDetector}.
+ */
+public class ChangePoint implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    /*
+    Start of the pane that closed when the change was detected: a drift is usually detected as
+    soon as it reaches the most recent pane
+     */
+    private final DateTime time;
+    private final double gStatistic;
+    private final double pValue;
+    private final double effect;
+    private final List<RelationChange> changes;
+
+    ChangePoint(DateTime time, double gStatistic, double pValue, double effect, List<RelationChange> changes) {
+        this.time = time;
+        this.gStatistic = gStatistic;
+        this.pValue = pValue;
+        this.effect = effect;
+        this.changes = changes;
+    }
+
+    public DateTime getTime() {
+        return time;
+    }
+
+    public double getGStatistic() {
+        return gStatistic;
+    }
+
+    public double getPValue() {
+        return pValue;
+    }
+
+    /**
+     * @return sqrt(G / N), the effect size of the change (Cramer's V of the 2 x K table)
+     */
+    public double getEffect() {
+        return effect;
+    }
+
+    /**
+     * @return the relations that contribute the most to the change, most contributing first
+     */
+    public List<RelationChange> getChanges() {
+        return Collections.unmodifiableList(changes);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ChangePoint{time=%s, G=%.2f, p=%.3g, effect=%.3f, changes=%s}",
+                time, gStatistic, pValue, effect, changes);
+    }
+
+    /**
+     * Relative frequency of a relation in the reference and the current window. The source of a
+     * start relation is null.
+     */
+    public static class RelationChange implements Serializable {
+        static final long serialVersionUID = 1L;
+        private final ActivityClass from;
+        private final ActivityClass to;
+        private final double referenceShare;
+        private final double currentShare;
+
+        RelationChange(ActivityClass from, ActivityClass to, double referenceShare, double currentShare) {
+            this.from = from;
+            this.to = to;
+            this.referenceShare = referenceShare;
+            this.currentShare = currentShare;
+        }
+
+        public ActivityClass getFrom() {
+            return from;
+        }
+
+        public ActivityClass getTo() {
+            return to;
+        }
+
+        public double getReferenceShare() {
+            return referenceShare;
+        }
+
+        public double getCurrentShare() {
+            return currentShare;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s->%s %.3f->%.3f", from == null ? "[start]" : from, to, referenceShare, currentShare);
+        }
+    }
+}
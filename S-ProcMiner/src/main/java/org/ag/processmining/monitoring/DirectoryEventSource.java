@@ -0,0 +1,111 @@
+package org.ag.processmining.monitoring;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Tails the files of a directory: new files and lines appended to existing ones are read every
+ * poll interval. Only complete lines are passed on; a line being written is read once its end of
+ * line is there. Files whose name starts with '.' or '_' are ignored.
+ */
+public class DirectoryEventSource implements EventSource {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final File directory;
+    private final long pollInterval;
+    private final Map<String, Long> offsets = new HashMap<>();
+    private volatile boolean running = false;
+    private Thread thread;
+
+    public DirectoryEventSource(String directory, long pollInterval) {
+        this.directory = new File(directory);
+        this.pollInterval = pollInterval;
+    }
+
+    @Override
+    public void start(Consumer<String> sink) throws IOException {
+        if (!directory.isDirectory()) {
+            throw new IOException(directory + " is not a directory");
+        }
+        running = true;
+        thread = new Thread(() -> {
+            while (running) {
+                try {
+                    poll(sink);
+                    Thread.sleep(pollInterval);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException e) {
+                    System.err.println("Error reading " + directory + ": " + e);
+                }
+            }
+        }, "directory-source-" + directory.getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void poll(Consumer<String> sink) throws IOException {
+        File[] files = directory.listFiles(f -> f.isFile() && !f.getName().startsWith(".") && !f.getName().startsWith("_"));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File f : files) {
+            long offset = offsets.getOrDefault(f.getName(), 0L);
+            if (f.length() > offset) {
+                offsets.put(f.getName(), read(f, offset, sink));
+            }
+        }
+    }
+
+    /**
+     * @return the offset following the last complete line read
+     */
+    private long read(File f, long offset, Consumer<String> sink) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+            raf.seek(offset);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            byte[] pending = new byte[0];
+            long consumed = offset;
+            int n;
+            while ((n = raf.read(buffer)) > 0) {
+                int lineStart = 0;
+                for (int i = 0; i < n; i++) {
+                    if (buffer[i] == '\n') {
+                        byte[] line = pending.length == 0 ? Arrays.copyOfRange(buffer, lineStart, i) : concat(pending, buffer, lineStart, i);
+                        consumed += line.length + 1;
+                        pending = new byte[0];
+                        int length = line.length > 0 && line[line.length - 1] == '\r' ? line.length - 1 : line.length;
+                        if (length > 0) {
+                            sink.accept(new String(line, 0, length, StandardCharsets.UTF_8));
+                        }
+                        lineStart = i + 1;
+                    }
+                }
+                pending = concat(pending, buffer, lineStart, n);
+            }
+            return consumed;
+        }
+    }
+
+    private static byte[] concat(byte[] head, byte[] buffer, int from, int to) {
+        byte[] b = Arrays.copyOf(head, head.length + to - from);
+        System.arraycopy(buffer, from, b, head.length, to - from);
+        return b;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package org.ag.processmining.monitoring;
+
+import org.ag.processmining.log.model.ActivityClass;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Concept drift detection on a {@link SlidingWindowDFG}.
+ * <p>
+ * Each time a pane closes, the relations (directly-follows edges and case starts) of the current
+ * window and of the reference window preceding it are compared with a G-test of homogeneity on
+ * the 2 x K contingency table of their counts. A change point is reported when the difference is
+ * both significant (p-value below alpha) and large enough (effect size sqrt(G / N) above
+ * minEffect), after which detection is suspended for two windows, the time the drift takes to
+ * cross both, so that it is not reported again by every pane.
+ */
+public class DriftDetector implements Consumer<SlidingWindowDFG>, Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    private final Consumer<ChangePoint> listener;
+    private double alpha = 0.001;
+    private double minEffect = 0.1;
+    private int minObservations = 100;
+    private int topChanges = 5;
+    private long cooldownUntil = 0;
+
+    public DriftDetector(Consumer<ChangePoint> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Creates a detector and registers it as a pane listener of the window.
+     */
+    public static DriftDetector attach(SlidingWindowDFG window, Consumer<ChangePoint> listener) {
+        DriftDetector detector = new DriftDetector(listener);
+        window.addPaneListener(detector);
+        return detector;
+    }
+
+    public DriftDetector alpha(double alpha) {
+        this.alpha = alpha;
+        return this;
+    }
+
+    public DriftDetector minEffect(double minEffect) {
+        this.minEffect = minEffect;
+        return this;
+    }
+
+    /**
+     * @param minObservations minimal number of relations in each of the two windows
+     */
+    public DriftDetector minObservations(int minObservations) {
+        this.minObservations = minObservations;
+        return this;
+    }
+
+    public DriftDetector topChanges(int topChanges) {
+        this.topChanges = topChanges;
+        return this;
+    }
+
+    @Override
+    public void accept(SlidingWindowDFG window) {
+        // the reference window is full only once two windows of panes have closed
+        if (window.getPanesClosed() < 2L * window.getWindowPanes() || window.getPanesClosed() < cooldownUntil) {
+            return;
+        }
+        ChangePoint cp = test(window);
+        if (cp != null) {
+            cooldownUntil = window.getPanesClosed() + 2L * window.getWindowPanes();
+            listener.accept(cp);
+        }
+    }
+
+    /**
+     * @return the change point between the reference and the current window of the window, null
+     * if the two do not differ significantly
+     */
+    public ChangePoint test(SlidingWindowDFG window) {
+        SlidingWindowDFG.Pane ref = window.getReferenceWindow();
+        SlidingWindowDFG.Pane cur = window.getWindow();
+        int n = window.activities().size();
+        // relation (i, j) is at index i * n + j, the start of j at n * n + j
+        int k = (n + 1) * n;
+        long[] r = new long[k];
+        long[] c = new long[k];
+        long nr = 0;
+        long nc = 0;
+        for (int i = 0; i <= n; i++) {
+            for (int j = 0; j < n; j++) {
+                int x = i * n + j;
+                r[x] = i == n ? ref.startFrequency(j) : ref.frequency(i, j);
+                c[x] = i == n ? cur.startFrequency(j) : cur.frequency(i, j);
+                nr += r[x];
+                nc += c[x];
+            }
+        }
+        if (nr < minObservations || nc < minObservations) {
+            return null;
+        }
+        double total = nr + nc;
+        double g = 0;
+        int categories = 0;
+        double[] contribution = new double[k];
+        for (int x = 0; x < k; x++) {
+            long row = r[x] + c[x];
+            if (row == 0) {
+                continue;
+            }
+            categories++;
+            double er = row * nr / total;
+            double ec = row * nc / total;
+            double gx = (r[x] > 0 ? r[x] * Math.log(r[x] / er) : 0) + (c[x] > 0 ? c[x] * Math.log(c[x] / ec) : 0);
+            contribution[x] = gx;
+            g += gx;
+        }
+        g *= 2;
+        if (categories < 2) {
+            return null;
+        }
+        double p = chiSquareSurvival(g, categories - 1);
+        double effect = Math.sqrt(g / total);
+        if (p >= alpha || effect < minEffect) {
+            return null;
+        }
+
+        List<ActivityClass> activities = window.activities();
+        List<ChangePoint.RelationChange> changes = new ArrayList<>();
+        boolean[] taken = new boolean[k];
+        for (int t = 0; t < topChanges; t++) {
+            int best = -1;
+            for (int x = 0; x < k; x++) {
+                if (!taken[x] && (best < 0 || Math.abs(contribution[x]) > Math.abs(contribution[best]))) {
+                    best = x;
+                }
+            }
+            if (best < 0 || contribution[best] == 0) {
+                break;
+            }
+            taken[best] = true;
+            int i = best / n;
+            changes.add(new ChangePoint.RelationChange(i == n ? null : activities.get(i), activities.get(best % n),
+                    (double) r[best] / nr, (double) c[best] / nc));
+        }
+        return new ChangePoint(window.windowEnd().minus(2 * window.getPaneMillis()), g, p, effect, changes);
+    }
+
+    /**
+     * @return P(X > x) for X chi-square distributed with df degrees of freedom
+     */
+    static double chiSquareSurvival(double x, int df) {
+        if (x <= 0) {
+            return 1;
+        }
+        return regularizedGammaQ(df / 2.0, x / 2.0);
+    }
+
+    /**
+     * Upper regularized incomplete gamma function Q(a, x), by its series for x < a + 1 and by its
+     * continued fraction (modified Lentz) otherwise.
+     */
+    static double regularizedGammaQ(double a, double x) {
+        double lnPrefix = a * Math.log(x) - x - logGamma(a);
+        if (x < a + 1) {
+            double term = 1 / a;
+            double sum = term;
+            for (int n = 1; n < 1000; n++) {
+                term *= x / (a + n);
+                sum += term;
+                if (Math.abs(term) < Math.abs(sum) * 1e-15) {
+                    break;
+                }
+            }
+            return Math.max(0, 1 - sum * Math.exp(lnPrefix));
+        }
+        double tiny = 1e-300;
+        double b = x + 1 - a;
+        double c = 1 / tiny;
+        double d = 1 / b;
+        double h = d;
+        for (int i = 1; i < 1000; i++) {
+            double an = -i * (i - a);
+            b += 2;
+            d = an * d + b;
+            d = Math.abs(d) < tiny ? tiny : d;
+            c = b + an / c;
+            c = Math.abs(c) < tiny ? tiny : c;
+            d = 1 / d;
+            double delta = d * c;
+            h *= delta;
+            if (Math.abs(delta - 1) < 1e-15) {
+                break;
+            }
+        }
+        return Math.exp(lnPrefix) * h;
+    }
+
+    /**
+     * Lanczos approximation of ln(Gamma(x)), x > 0.
+     */
+    static double logGamma(double x) {
+        double[] c = {76.18009172947146, -86.50532032941677, 24.01409824083091,
+                -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5};
+        double y = x;
+        double tmp = x + 5.5;
+        tmp -= (x + 0.5) * Math.log(tmp);
+        double ser = 1.000000000190015;
+        for (double v : c) {
+            ser += v / ++y;
+        }
+        return -tmp + Math.log(2.5066282746310005 * ser / x);
+    }
+}
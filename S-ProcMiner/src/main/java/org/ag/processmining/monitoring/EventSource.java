@@ -0,0 +1,16 @@
+package org.ag.processmining.monitoring;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Source of raw event lines for the {@link MonitoringEngine}, in the format of the batch logs.
+ */
+public interface EventSource extends Closeable {
+
+    /**
+     * Starts reading in background threads, passing every line read to the sink.
+     */
+    void start(Consumer<String> sink) throws IOException;
+}
@@ -0,0 +1,36 @@
+package org.ag.processmining.monitoring;
+
+import org.ag.processmining.log.model.Event;
+
+/**
+ * Receives the updates of a {@link MonitoringEngine}. Callbacks run on the engine thread and must
+ * return quickly.
+ */
+public interface MonitorListener {
+
+    enum Eviction {
+        /*
+        The case reached one of the end activities
+         */
+        FINISHED,
+        /*
+        No event of the case for longer than the case timeout, in event time
+         */
+        TIMED_OUT,
+        /*
+        No event of the case received for longer than the idle timeout, in wall-clock time
+         */
+        IDLE
+    }
+
+    void onSummary(MonitorSummary summary);
+
+    /**
+     * Called for every event accepted by the engine, once the state of its case is updated.
+     */
+    default void onEvent(Event event, CaseState state) {
+    }
+
+    default void onCaseEvicted(CaseState state, Eviction reason) {
+    }
+}
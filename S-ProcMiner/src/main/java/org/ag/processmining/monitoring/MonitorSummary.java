@@ -0,0 +1,127 @@
+package org.ag.processmining.monitoring;
+
+import org.ag.processmining.Utils.DurationSketch;
+import org.ag.processmining.log.model.ActivityClass;
+import org.joda.time.DateTime;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Snapshot of the live metrics of a {@link MonitoringEngine}.
+ */
+public class MonitorSummary {
+
+    private final long timestamp;
+    private final long events;
+    private final long rejectedEvents;
+    private final long lateEvents;
+    private final long duplicateEvents;
+    private final long reorderedEvents;
+    private final double eventsPerSecond;
+    private final int activeCases;
+    private final long finishedCases;
+    private final long evictedCases;
+    private final DateTime watermark;
+    private final Map<ActivityClass, Long> activityFrequency;
+    private final DurationSketch caseDurations;
+
+    MonitorSummary(long timestamp, long events, long rejectedEvents, long lateEvents, long duplicateEvents,
+                   long reorderedEvents, double eventsPerSecond,
+                   int activeCases, long finishedCases, long evictedCases, DateTime watermark,
+                   Map<ActivityClass, Long> activityFrequency, DurationSketch caseDurations) {
+        this.timestamp = timestamp;
+        this.events = events;
+        this.rejectedEvents = rejectedEvents;
+        this.lateEvents = lateEvents;
+        this.duplicateEvents = duplicateEvents;
+        this.reorderedEvents = reorderedEvents;
+        this.eventsPerSecond = eventsPerSecond;
+        this.activeCases = activeCases;
+        this.finishedCases = finishedCases;
+        this.evictedCases = evictedCases;
+        this.watermark = watermark;
+        this.activityFrequency = activityFrequency;
+        this.caseDurations = caseDurations;
+    }
+
+    /**
+     * @return the wall-clock time (ms) of the snapshot
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    /**
+     * @return the number of lines that could not be parsed into an event
+     */
+    public long getRejectedEvents() {
+        return rejectedEvents;
+    }
+
+    /**
+     * @return the number of events dropped because they were older than the watermark
+     */
+    public long getLateEvents() {
+        return lateEvents;
+    }
+
+    /**
+     * @return the number of duplicate events dropped by the reorder buffer
+     */
+    public long getDuplicateEvents() {
+        return duplicateEvents;
+    }
+
+    /**
+     * @return the number of events put back in order by the reorder buffer
+     */
+    public long getReorderedEvents() {
+        return reorderedEvents;
+    }
+
+    public double getEventsPerSecond() {
+        return eventsPerSecond;
+    }
+
+    public int getActiveCases() {
+        return activeCases;
+    }
+
+    public long getFinishedCases() {
+        return finishedCases;
+    }
+
+    /**
+     * @return the number of cases evicted by timeout, finished or not
+     */
+    public long getEvictedCases() {
+        return evictedCases;
+    }
+
+    public DateTime getWatermark() {
+        return watermark;
+    }
+
+    public Map<ActivityClass, Long> getActivityFrequency() {
+        return Collections.unmodifiableMap(activityFrequency);
+    }
+
+    /**
+     * @return the sketch of the durations (ms) of the finished cases
+     */
+    public DurationSketch getCaseDurations() {
+        return caseDurations;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("events=%d (%.0f/s) rejected=%d late=%d duplicates=%d reordered=%d active=%d finished=%d evicted=%d watermark=%s median case=%.0fms",
+                events, eventsPerSecond, rejectedEvents, lateEvents, duplicateEvents, reorderedEvents, activeCases, finishedCases, evictedCases, watermark,
+                caseDurations.count() == 0 ? 0 : caseDurations.median());
+    }
+}
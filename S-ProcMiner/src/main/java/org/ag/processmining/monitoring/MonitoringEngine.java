@@ -0,0 +1,354 @@
+package org.ag.processmining.monitoring;
+
+import org.ag.processmining.Utils.DurationSketch;
+import org.ag.processmining.ingest.EventDeduplicator;
+import org.ag.processmining.ingest.IngestReport;
+import org.ag.processmining.ingest.ReorderBuffer;
+import org.ag.processmining.log.model.ActivityClass;
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Event;
+import org.ag.processmining.log.model.Event.EventBuilder;
+import org.ag.processmining.log.model.EventSchema;
+import org.joda.time.DateTime;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded real-time monitoring engine.
+ * <p>
+ * Event lines from the sources are parsed with the {@link EventSchema} of the batch jobs, on the
+ * source threads, and queued to a single engine thread that owns all the state: the running
+ * {@link CaseState} of every active case and the live metrics. The engine publishes a
+ * {@link MonitorSummary} to its listeners every publish interval.
+ * <p>
+ * State is kept bounded by evicting cases: as soon as they reach an end activity, when their last
+ * event is older than the watermark (the latest event time seen minus the allowed lateness) by
+ * more than the case timeout, or when nothing was received for them for the idle timeout. Events
+ * older than the watermark for a case that is not active anymore are dropped as late.
+ * <p>
+ * With a reorder capacity, the events first go through a {@link ReorderBuffer} that drops their
+ * duplicates and hands them to the engine in time order, held until the watermark passes them.
+ */
+public class MonitoringEngine implements Closeable {
+
+    private static final char FIELD_DELIMITER = ';';
+    private static final int BATCH_SIZE = 4096;
+
+    private final EventSchema schema;
+    private final String[] header;
+    private final List<EventSource> sources = new ArrayList<>();
+    private final List<MonitorListener> listeners = new ArrayList<>();
+    private Set<ActivityClass> endActivities = Collections.emptySet();
+    private long allowedLateness = 60_000;
+    private long caseTimeout = 24 * 3600_000L;
+    private long idleTimeout = 0;
+    private long publishInterval = 250;
+    private boolean keepTraces = true;
+    private int queueCapacity = 1 << 16;
+    private int reorderCapacity = 0;
+    private EventDeduplicator deduplicator = new EventDeduplicator();
+
+    private BlockingQueue<Event> queue;
+    private volatile boolean running = false;
+    private Thread thread;
+    private final AtomicLong rejectedEvents = new AtomicLong();
+
+    /*
+    State of the engine thread
+     */
+    private final Map<CaseId, CaseState> cases = new HashMap<>();
+    private final Map<ActivityClass, long[]> activityFrequency = new HashMap<>();
+    private final DurationSketch caseDurations = new DurationSketch();
+    private long events = 0;
+    private long lateEvents = 0;
+    private long finishedCases = 0;
+    private long evictedCases = 0;
+    private long maxEventTime = Long.MIN_VALUE;
+    private long lastPublish = 0;
+    private long eventsAtLastPublish = 0;
+    private ReorderBuffer reorderBuffer;
+    private long batchTime = 0;
+
+    public MonitoringEngine(EventSchema schema, String[] header) {
+        this.schema = schema;
+        this.header = header;
+    }
+
+    public MonitoringEngine addSource(EventSource source) {
+        sources.add(source);
+        return this;
+    }
+
+    public MonitoringEngine addListener(MonitorListener listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * @param endActivities activities whose occurrence finishes a case
+     */
+    public MonitoringEngine endActivities(Set<ActivityClass> endActivities) {
+        this.endActivities = new HashSet<>(endActivities);
+        return this;
+    }
+
+    public MonitoringEngine allowedLateness(long millis) {
+        this.allowedLateness = millis;
+        return this;
+    }
+
+    public MonitoringEngine caseTimeout(long millis) {
+        this.caseTimeout = millis;
+        return this;
+    }
+
+    /**
+     * @param millis wall-clock time without event after which a case is evicted, 0 to disable
+     */
+    public MonitoringEngine idleTimeout(long millis) {
+        this.idleTimeout = millis;
+        return this;
+    }
+
+    public MonitoringEngine publishInterval(long millis) {
+        this.publishInterval = millis;
+        return this;
+    }
+
+    /**
+     * @param keepTraces whether the events of the active cases are kept, or only their summary
+     */
+    public MonitoringEngine keepTraces(boolean keepTraces) {
+        this.keepTraces = keepTraces;
+        return this;
+    }
+
+    public MonitoringEngine queueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * @param reorderCapacity number of events held to be put back in order, 0 to process the
+     *                        events in arrival order
+     */
+    public MonitoringEngine reorderCapacity(int reorderCapacity) {
+        this.reorderCapacity = reorderCapacity;
+        return this;
+    }
+
+    /**
+     * @param deduplicator dedup key of the events, when they are reordered
+     */
+    public MonitoringEngine deduplicator(EventDeduplicator deduplicator) {
+        this.deduplicator = deduplicator;
+        return this;
+    }
+
+    public void start() throws IOException {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        reorderBuffer = reorderCapacity > 0
+                ? new ReorderBuffer(allowedLateness, reorderCapacity, deduplicator, e -> apply(e, batchTime))
+                : null;
+        running = true;
+        lastPublish = System.currentTimeMillis();
+        thread = new Thread(this::loop, "monitoring-engine");
+        thread.start();
+        for (EventSource s : sources) {
+            s.start(this::offer);
+        }
+    }
+
+    /**
+     * Parses a line and queues the event, blocking while the queue is full.
+     */
+    public void offer(String line) {
+        Event e = parse(line);
+        if (e == null) {
+            rejectedEvents.incrementAndGet();
+            return;
+        }
+        try {
+            queue.put(e);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Event parse(String line) {
+        try {
+            Event e = new EventBuilder(line, FIELD_DELIMITER, header)
+                    .caseId(schema.getCaseIdFields())
+                    .activityClass(schema.getEventClassField())
+                    .originator(schema.getOriginatorName(), schema.getOriginatorRole())
+                    .start(schema.getEventStartTimeField())
+                    .end(schema.getEventEndTimeField())
+                    .build();
+            return e.getStart() == null || e.getActivityClass().getName() == null ? null : e;
+        } catch (IOException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private void loop() {
+        List<Event> batch = new ArrayList<>(BATCH_SIZE);
+        long nextPublish = lastPublish + publishInterval;
+        while (running || !queue.isEmpty()) {
+            try {
+                Event first = queue.poll(Math.max(1, nextPublish - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batchTime = System.currentTimeMillis();
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+                    for (Event e : batch) {
+                        if (reorderBuffer != null) {
+                            reorderBuffer.offer(e);
+                        } else {
+                            apply(e, batchTime);
+                        }
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+            long now = System.currentTimeMillis();
+            if (now >= nextPublish) {
+                evict(now);
+                publish(now);
+                nextPublish = now + publishInterval;
+            }
+        }
+        long now = System.currentTimeMillis();
+        if (reorderBuffer != null) {
+            batchTime = now;
+            reorderBuffer.flush();
+        }
+        evict(now);
+        publish(now);
+    }
+
+    private long watermark() {
+        return maxEventTime == Long.MIN_VALUE ? Long.MIN_VALUE : maxEventTime - allowedLateness;
+    }
+
+    private void apply(Event e, long now) {
+        long time = e.getStart().getMillis();
+        CaseState state = cases.get(e.getCaseId());
+        if (state == null && time < watermark()) {
+            lateEvents++;
+            return;
+        }
+        events++;
+        maxEventTime = Math.max(maxEventTime, time);
+        activityFrequency.computeIfAbsent(e.getActivityClass(), a -> new long[1])[0]++;
+        if (state == null) {
+            state = new CaseState(e.getCaseId(), keepTraces);
+            cases.put(e.getCaseId(), state);
+        }
+        state.add(e, now);
+        for (MonitorListener l : listeners) {
+            l.onEvent(e, state);
+        }
+        if (endActivities.contains(e.getActivityClass())) {
+            cases.remove(e.getCaseId());
+            finishedCases++;
+            caseDurations.add(state.elapsed());
+            for (MonitorListener l : listeners) {
+                l.onCaseEvicted(state, MonitorListener.Eviction.FINISHED);
+            }
+        }
+    }
+
+    private void evict(long now) {
+        long watermark = watermark();
+        Iterator<CaseState> it = cases.values().iterator();
+        while (it.hasNext()) {
+            CaseState s = it.next();
+            MonitorListener.Eviction reason = null;
+            if (watermark != Long.MIN_VALUE && s.getLastEventTime().getMillis() < watermark - caseTimeout) {
+                reason = MonitorListener.Eviction.TIMED_OUT;
+            } else if (idleTimeout > 0 && now - s.getLastSeen() > idleTimeout) {
+                reason = MonitorListener.Eviction.IDLE;
+            }
+            if (reason != null) {
+                it.remove();
+                evictedCases++;
+                for (MonitorListener l : listeners) {
+                    l.onCaseEvicted(s, reason);
+                }
+            }
+        }
+    }
+
+    private void publish(long now) {
+        double rate = now == lastPublish ? 0 : (events - eventsAtLastPublish) * 1000.0 / (now - lastPublish);
+        lastPublish = now;
+        eventsAtLastPublish = events;
+        Map<ActivityClass, Long> frequency = new HashMap<>();
+        activityFrequency.forEach((a, n) -> frequency.put(a, n[0]));
+        long watermark = watermark();
+        IngestReport reordering = reorderBuffer != null ? reorderBuffer.getReport() : new IngestReport();
+        MonitorSummary summary = new MonitorSummary(now, events, rejectedEvents.get(), lateEvents + reordering.getLate(),
+                reordering.getDuplicates(), reordering.getReordered(), rate,
+                cases.size(), finishedCases, evictedCases, watermark == Long.MIN_VALUE ? null : new DateTime(watermark),
+                frequency, caseDurations.copy());
+        for (MonitorListener l : listeners) {
+            l.onSummary(summary);
+        }
+    }
+
+    /**
+     * Stops the sources, then processes the queued events and publishes a last summary.
+     */
+    @Override
+    public void close() throws IOException {
+        for (EventSource s : sources) {
+            s.close();
+        }
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 3) {
+            System.out.println("Usage: MonitoringEngine <event schema> <header fields, comma separated> <directory | port> [end activities, comma separated]");
+            return;
+        }
+        EventSchema schema = new EventSchema(args[0]);
+        String[] header = args[1].split(",");
+        EventSource source = args[2].matches("\\d+") ? new SocketEventSource(Integer.parseInt(args[2])) : new DirectoryEventSource(args[2], 200);
+        Set<ActivityClass> ends = new HashSet<>();
+        if (args.length > 3) {
+            for (String a : args[3].split(",")) {
+                ends.add(new ActivityClass(a));
+            }
+        }
+        MonitoringEngine engine = new MonitoringEngine(schema, header)
+                .addSource(source)
+                .endActivities(ends)
+                .publishInterval(1000)
+                .addListener(System.out::println);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                engine.close();
+            } catch (IOException e) {
+                System.err.println(e);
+            }
+        }));
+        engine.start();
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,432 @@
+package org.ag.processmining.monitoring;
+
+import org.ag.processmining.Utils.DurationSketch;
+import org.ag.processmining.log.model.ActivityClass;
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Event;
+import org.ag.processmining.log.model.Originator;
+import org.ag.processmining.log.model.Trace;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.joda.time.DateTime;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Directly-follows graph, activity and resource frequencies and per-activity duration sketches of
+ * the events of the last {@code windowPanes} time panes.
+ * <p>
+ * Events are added to the pane of their start time. Panes are kept in a ring together with the
+ * aggregate of the window, so that sliding the window by one pane only merges the new pane into
+ * the aggregate and subtracts the expired one, whatever the length of the window. The ring also
+ * holds the window preceding the current one (the reference window), so that the two can be
+ * compared each time a pane closes; see {@link DriftDetector}.
+ * <p>
+ * Events are fed by the {@link MonitoringEngine} (as a listener) or by {@link #replay} for
+ * historical logs. Instances are not thread-safe.
+ */
+public class SlidingWindowDFG implements MonitorListener, Serializable {
+
+    static final long serialVersionUID = 1L;
+    private static final int INITIAL_CAPACITY = 16;
+    /*
+    Previous activity of an event starting its case, and of an event whose predecessor is unknown
+     */
+    private static final int START = -1;
+    private static final int NONE = -2;
+
+    private final long paneMillis;
+    private final int windowPanes;
+    private final Pane[] ring;
+    private final Pane current;
+    private final Pane reference;
+    private final List<ActivityClass> activities = new ArrayList<>();
+    private final Map<ActivityClass, Integer> ids = new HashMap<>();
+    private final List<Consumer<SlidingWindowDFG>> paneListeners = new ArrayList<>();
+    private int capacity = INITIAL_CAPACITY;
+    private long head = Long.MIN_VALUE;
+    private long panesClosed = 0;
+    private long lateEvents = 0;
+
+    /**
+     * @param paneMillis  duration of a pane
+     * @param windowPanes number of panes of the window
+     */
+    public SlidingWindowDFG(long paneMillis, int windowPanes) {
+        this.paneMillis = paneMillis;
+        this.windowPanes = windowPanes;
+        this.ring = new Pane[2 * windowPanes];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new Pane(capacity);
+        }
+        this.current = new Pane(capacity);
+        this.reference = new Pane(capacity);
+    }
+
+    /**
+     * Replays a historical log through the window, in start time order. Events are sorted on the
+     * cluster and streamed to the driver partition by partition.
+     */
+    public static void replay(JavaPairRDD<CaseId, Trace> traces, SlidingWindowDFG window) {
+        Iterator<TimedEvent> events = traces
+                .flatMap(t -> {
+                    List<TimedEvent> l = new ArrayList<>(t._2().size());
+                    ActivityClass previous = null;
+                    for (Event e : t._2().getOrderedEvents().values()) {
+                        if (e.getStart() != null) {
+                            l.add(new TimedEvent(e, previous));
+                            previous = e.getActivityClass();
+                        }
+                    }
+                    return l;
+                })
+                .sortBy(e -> e.time, true, traces.partitions().size())
+                .toLocalIterator();
+        while (events.hasNext()) {
+            TimedEvent e = events.next();
+            window.add(e.time, e.previous, e.activity, e.originator, e.duration);
+        }
+    }
+
+    /**
+     * @param listener called each time a pane closes, after the window slid
+     */
+    public SlidingWindowDFG addPaneListener(Consumer<SlidingWindowDFG> listener) {
+        paneListeners.add(listener);
+        return this;
+    }
+
+    @Override
+    public void onSummary(MonitorSummary summary) {
+        if (summary.getWatermark() != null) {
+            advanceTo(summary.getWatermark().getMillis());
+        }
+    }
+
+    @Override
+    public void onEvent(Event event, CaseState state) {
+        long duration = event.getEnd() == null ? -1 : event.getEnd().getMillis() - event.getStart().getMillis();
+        if (state.isLastEventInOrder()) {
+            add(event.getStart().getMillis(), state.getPreviousActivity(), event.getActivityClass(), event.getOriginator(), duration);
+        } else {
+            add(event.getStart().getMillis(), NONE, id(event.getActivityClass()), event.getOriginator(), duration);
+        }
+    }
+
+    /**
+     * Adds an event.
+     *
+     * @param previous the activity directly preceding the event in its case, null if the event
+     *                 starts the case
+     * @param duration duration of the event in ms, negative if unknown
+     */
+    public void add(long time, ActivityClass previous, ActivityClass activity, Originator originator, long duration) {
+        add(time, previous == null ? START : id(previous), id(activity), originator, duration);
+    }
+
+    private void add(long time, int previous, int activity, Originator originator, long duration) {
+        long pane = Math.floorDiv(time, paneMillis);
+        advanceTo(time);
+        if (pane <= head - ring.length) {
+            lateEvents++;
+            return;
+        }
+        ring[slot(pane)].add(previous, activity, originator, duration);
+        (pane > head - windowPanes ? current : reference).add(previous, activity, originator, duration);
+    }
+
+    /**
+     * Slides the window so that it ends with the pane of the given time. Each closed pane is
+     * reported to the pane listeners.
+     */
+    public void advanceTo(long time) {
+        long pane = Math.floorDiv(time, paneMillis);
+        if (head == Long.MIN_VALUE) {
+            head = pane;
+            return;
+        }
+        if (pane - head > ring.length) {
+            // nothing of the ring survives: skip the empty panes in between
+            for (Pane p : ring) {
+                p.clear();
+            }
+            current.clear();
+            reference.clear();
+            head = pane - ring.length;
+        }
+        while (head < pane) {
+            long entering = head + 1;
+            Pane toReference = ring[slot(entering - windowPanes)];
+            current.subtract(toReference);
+            reference.merge(toReference);
+            Pane expired = ring[slot(entering)];
+            reference.subtract(expired);
+            expired.clear();
+            head = entering;
+            panesClosed++;
+            for (Consumer<SlidingWindowDFG> l : paneListeners) {
+                l.accept(this);
+            }
+        }
+    }
+
+    private int slot(long pane) {
+        return (int) Math.floorMod(pane, (long) ring.length);
+    }
+
+    private int id(ActivityClass a) {
+        Integer id = ids.get(a);
+        if (id == null) {
+            id = activities.size();
+            if (id == capacity) {
+                capacity *= 2;
+                for (Pane p : ring) {
+                    p.grow(capacity);
+                }
+                current.grow(capacity);
+                reference.grow(capacity);
+            }
+            activities.add(a);
+            ids.put(a, id);
+        }
+        return id;
+    }
+
+    public long getPaneMillis() {
+        return paneMillis;
+    }
+
+    public int getWindowPanes() {
+        return windowPanes;
+    }
+
+    /**
+     * @return the number of panes closed so far
+     */
+    public long getPanesClosed() {
+        return panesClosed;
+    }
+
+    public long getLateEvents() {
+        return lateEvents;
+    }
+
+    /**
+     * @return the start of the current window
+     */
+    public DateTime windowStart() {
+        return new DateTime((head - windowPanes + 1) * paneMillis);
+    }
+
+    /**
+     * @return the end (exclusive) of the current window
+     */
+    public DateTime windowEnd() {
+        return new DateTime((head + 1) * paneMillis);
+    }
+
+    public List<ActivityClass> activities() {
+        return Collections.unmodifiableList(activities);
+    }
+
+    public int activityId(ActivityClass a) {
+        Integer id = ids.get(a);
+        return id == null ? -1 : id;
+    }
+
+    public Pane getWindow() {
+        return current;
+    }
+
+    /**
+     * @return the aggregate of the window preceding the current one
+     */
+    public Pane getReferenceWindow() {
+        return reference;
+    }
+
+    public long frequency(ActivityClass from, ActivityClass to) {
+        int f = activityId(from);
+        int t = activityId(to);
+        return f < 0 || t < 0 ? 0 : current.frequency(f, t);
+    }
+
+    public Map<ActivityClass, Long> activityFrequency() {
+        Map<ActivityClass, Long> m = new HashMap<>();
+        for (int a = 0; a < activities.size(); a++) {
+            if (current.activityFrequency(a) > 0) {
+                m.put(activities.get(a), current.activityFrequency(a));
+            }
+        }
+        return m;
+    }
+
+    public Map<Originator, Long> resourceFrequency() {
+        return current.resourceFrequency();
+    }
+
+    /**
+     * @return a copy of the sketch of the durations (ms) of the activity in the window
+     */
+    public DurationSketch duration(ActivityClass a) {
+        int id = activityId(a);
+        DurationSketch s = id < 0 ? null : current.durations[id];
+        return s == null ? new DurationSketch() : s.copy();
+    }
+
+    /**
+     * Counts of the events of a set of panes. Activity ids are the ones of the window.
+     */
+    public static class Pane implements Serializable {
+        static final long serialVersionUID = 1L;
+        private long[][] relations;
+        private long[] starts;
+        private long[] activityFrequency;
+        private DurationSketch[] durations;
+        private final Map<Originator, long[]> resources = new HashMap<>();
+        private long events = 0;
+
+        Pane(int capacity) {
+            relations = new long[capacity][capacity];
+            starts = new long[capacity];
+            activityFrequency = new long[capacity];
+            durations = new DurationSketch[capacity];
+        }
+
+        void add(int previous, int activity, Originator originator, long duration) {
+            events++;
+            activityFrequency[activity]++;
+            if (previous >= 0) {
+                relations[previous][activity]++;
+            } else if (previous == START) {
+                starts[activity]++;
+            }
+            if (originator != null) {
+                resources.computeIfAbsent(originator, o -> new long[1])[0]++;
+            }
+            if (duration >= 0) {
+                if (durations[activity] == null) {
+                    durations[activity] = new DurationSketch();
+                }
+                durations[activity].add(duration);
+            }
+        }
+
+        void merge(Pane p) {
+            combine(p, 1);
+        }
+
+        void subtract(Pane p) {
+            combine(p, -1);
+        }
+
+        private void combine(Pane p, int sign) {
+            if (p.events == 0) {
+                return;
+            }
+            events += sign * p.events;
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] += sign * p.starts[i];
+                activityFrequency[i] += sign * p.activityFrequency[i];
+                for (int j = 0; j < starts.length; j++) {
+                    relations[i][j] += sign * p.relations[i][j];
+                }
+                if (p.durations[i] != null) {
+                    if (durations[i] == null) {
+                        durations[i] = new DurationSketch();
+                    }
+                    if (sign > 0) {
+                        durations[i].merge(p.durations[i]);
+                    } else {
+                        durations[i].subtract(p.durations[i]);
+                    }
+                }
+            }
+            p.resources.forEach((o, n) -> {
+                long[] c = resources.computeIfAbsent(o, k -> new long[1]);
+                c[0] += sign * n[0];
+                if (c[0] == 0) {
+                    resources.remove(o);
+                }
+            });
+        }
+
+        void clear() {
+            if (events == 0) {
+                return;
+            }
+            for (int i = 0; i < starts.length; i++) {
+                Arrays.fill(relations[i], 0);
+                if (durations[i] != null) {
+                    durations[i].clear();
+                }
+            }
+            Arrays.fill(starts, 0);
+            Arrays.fill(activityFrequency, 0);
+            resources.clear();
+            events = 0;
+        }
+
+        void grow(int capacity) {
+            int old = starts.length;
+            long[][] r = new long[capacity][capacity];
+            for (int i = 0; i < old; i++) {
+                System.arraycopy(relations[i], 0, r[i], 0, old);
+            }
+            relations = r;
+            starts = Arrays.copyOf(starts, capacity);
+            activityFrequency = Arrays.copyOf(activityFrequency, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+        }
+
+        public long events() {
+            return events;
+        }
+
+        public int capacity() {
+            return starts.length;
+        }
+
+        public long frequency(int from, int to) {
+            return relations[from][to];
+        }
+
+        /**
+         * @return the number of cases started by the activity
+         */
+        public long startFrequency(int a) {
+            return starts[a];
+        }
+
+        public long activityFrequency(int a) {
+            return activityFrequency[a];
+        }
+
+        public Map<Originator, Long> resourceFrequency() {
+            Map<Originator, Long> m = new HashMap<>();
+            resources.forEach((o, n) -> m.put(o, n[0]));
+            return m;
+        }
+    }
+
+    /**
+     * Event of a historical log with its directly preceding activity.
+     */
+    private static class TimedEvent implements Serializable {
+        static final long serialVersionUID = 1L;
+        final long time;
+        final ActivityClass previous;
+        final ActivityClass activity;
+        final Originator originator;
+        final long duration;
+
+        TimedEvent(Event e, ActivityClass previous) {
+            this.time = e.getStart().getMillis();
+            this.previous = previous;
+            this.activity = e.getActivityClass();
+            this.originator = e.getOriginator();
+            this.duration = e.getEnd() == null ? -1 : e.getEnd().getMillis() - e.getStart().getMillis();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.ag.processmining.monitoring;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Listens on a local port; every connected client sends event lines, one per line. Only the
+ * loopback interface is bound.
+ */
+public class SocketEventSource implements EventSource {
+
+    private final int port;
+    private volatile boolean running = false;
+    private ServerSocket server;
+
+    public SocketEventSource(int port) {
+        this.port = port;
+    }
+
+    @Override
+    public void start(Consumer<String> sink) throws IOException {
+        server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        running = true;
+        Thread acceptor = new Thread(() -> {
+            while (running) {
+                try {
+                    Socket client = server.accept();
+                    Thread reader = new Thread(() -> read(client, sink), "socket-source-" + client.getPort());
+                    reader.setDaemon(true);
+                    reader.start();
+                } catch (IOException e) {
+                    if (running) {
+                        System.err.println("Error accepting a connection on port " + port + ": " + e);
+                    }
+                }
+            }
+        }, "socket-source-" + port);
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void read(Socket client, Consumer<String> sink) {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            while (running && (line = in.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    sink.accept(line);
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Error reading from " + client.getRemoteSocketAddress() + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * @return the port listened to, useful when the source was created with port 0
+     */
+    public int getPort() {
+        return server == null ? port : server.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (server != null) {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.ag.processmining.petrinet;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Immutable marking of a {@link PetriNet}: the number of tokens of every place, by place id.
+ * Hash code is cached so that markings can be used as keys of the search state maps.
+ */
+public final class Marking implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private final int[] tokens;
+    private final int hash;
+
+    public Marking(int[] tokens) {
+        this.tokens = tokens;
+        this.hash = Arrays.hashCode(tokens);
+    }
+
+    public int tokens(int place) {
+        return tokens[place];
+    }
+
+    public int size() {
+        return tokens.length;
+    }
+
+    /**
+     * @return a copy of the token counts
+     */
+    public int[] toArray() {
+        return tokens.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Marking && hash == ((Marking) o).hash && Arrays.equals(tokens, ((Marking) o).tokens);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(tokens);
+    }
+}
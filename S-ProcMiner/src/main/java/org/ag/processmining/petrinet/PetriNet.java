@@ -0,0 +1,258 @@
+package org.ag.processmining.petrinet;
+
+import org.ag.processmining.log.model.ActivityClass;
+import org.ag.processmining.log.model.Dictionary;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Labelled Petri net with arc weights, an initial and a final marking.
+ * <p>
+ * Places and transitions are identified by dense ids. Transitions are labelled by an
+ * {@link ActivityClass}, or silent (label null). Once built, the arcs are kept as int arrays per
+ * transition so that markings (int arrays indexed by place id) can be checked and fired without
+ * allocation.
+ */
+public class PetriNet implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    private final List<String> places = new ArrayList<>();
+    private final List<String> transitions = new ArrayList<>();
+    private final List<ActivityClass> labels = new ArrayList<>();
+    private final List<Map<Integer, Integer>> inputArcs = new ArrayList<>();
+    private final List<Map<Integer, Integer>> outputArcs = new ArrayList<>();
+    private final Map<Integer, Integer> initialMarking = new TreeMap<>();
+    private final Map<Integer, Integer> finalMarking = new TreeMap<>();
+
+    /*
+    Compiled view, built on first use
+     */
+    private transient int[][] inPlaces;
+    private transient int[][] inWeights;
+    private transient int[][] outPlaces;
+    private transient int[][] outWeights;
+    private transient Dictionary<ActivityClass> labelDictionary;
+    private transient int[] labelIds;
+    private transient int[][] transitionsByLabel;
+
+    public int addPlace(String name) {
+        places.add(name);
+        invalidate();
+        return places.size() - 1;
+    }
+
+    /**
+     * @param label the activity of the transition, null for a silent transition
+     */
+    public int addTransition(String name, ActivityClass label) {
+        transitions.add(name);
+        labels.add(label);
+        inputArcs.add(new TreeMap<>());
+        outputArcs.add(new TreeMap<>());
+        invalidate();
+        return transitions.size() - 1;
+    }
+
+    public PetriNet addInputArc(int place, int transition, int weight) {
+        inputArcs.get(transition).merge(place, weight, Integer::sum);
+        invalidate();
+        return this;
+    }
+
+    public PetriNet addOutputArc(int transition, int place, int weight) {
+        outputArcs.get(transition).merge(place, weight, Integer::sum);
+        invalidate();
+        return this;
+    }
+
+    public PetriNet setInitialTokens(int place, int tokens) {
+        initialMarking.put(place, tokens);
+        return this;
+    }
+
+    public PetriNet setFinalTokens(int place, int tokens) {
+        finalMarking.put(place, tokens);
+        return this;
+    }
+
+    public int placeCount() {
+        return places.size();
+    }
+
+    public int transitionCount() {
+        return transitions.size();
+    }
+
+    public String placeName(int p) {
+        return places.get(p);
+    }
+
+    public String transitionName(int t) {
+        return transitions.get(t);
+    }
+
+    /**
+     * @return the label of the transition, null if it is silent
+     */
+    public ActivityClass label(int t) {
+        return labels.get(t);
+    }
+
+    public boolean isSilent(int t) {
+        return labels.get(t) == null;
+    }
+
+    public int[] initialMarking() {
+        int[] m = new int[places.size()];
+        initialMarking.forEach((p, n) -> m[p] = n);
+        return m;
+    }
+
+    /**
+     * @return the final marking; when none was set, one token in every place without output arc
+     */
+    public int[] finalMarking() {
+        int[] m = new int[places.size()];
+        if (!finalMarking.isEmpty()) {
+            finalMarking.forEach((p, n) -> m[p] = n);
+            return m;
+        }
+        boolean[] consumed = new boolean[places.size()];
+        inputArcs.forEach(arcs -> arcs.keySet().forEach(p -> consumed[p] = true));
+        for (int p = 0; p < m.length; p++) {
+            m[p] = consumed[p] ? 0 : 1;
+        }
+        return m;
+    }
+
+    public int[] inputPlaces(int t) {
+        compile();
+        return inPlaces[t];
+    }
+
+    public int[] inputWeights(int t) {
+        compile();
+        return inWeights[t];
+    }
+
+    public int[] outputPlaces(int t) {
+        compile();
+        return outPlaces[t];
+    }
+
+    public int[] outputWeights(int t) {
+        compile();
+        return outWeights[t];
+    }
+
+    /**
+     * @return the dictionary of the visible labels; label ids used by {@link #transitionsOf(int)}
+     */
+    public Dictionary<ActivityClass> labels() {
+        compile();
+        return labelDictionary;
+    }
+
+    /**
+     * @return the id of the label of the transition in {@link #labels()}, -1 if it is silent
+     */
+    public int labelId(int t) {
+        compile();
+        return labelIds[t];
+    }
+
+    /**
+     * @return the transitions labelled with the given label id, an empty array for -1
+     */
+    public int[] transitionsOf(int labelId) {
+        compile();
+        return labelId < 0 ? new int[0] : transitionsByLabel[labelId];
+    }
+
+    public boolean isEnabled(int[] marking, int t) {
+        compile();
+        int[] ps = inPlaces[t];
+        int[] ws = inWeights[t];
+        for (int i = 0; i < ps.length; i++) {
+            if (marking[ps[i]] < ws[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fires the transition in place. The caller must make sure it is enabled.
+     */
+    public void fire(int[] marking, int t) {
+        compile();
+        int[] ps = inPlaces[t];
+        int[] ws = inWeights[t];
+        for (int i = 0; i < ps.length; i++) {
+            marking[ps[i]] -= ws[i];
+        }
+        ps = outPlaces[t];
+        ws = outWeights[t];
+        for (int i = 0; i < ps.length; i++) {
+            marking[ps[i]] += ws[i];
+        }
+    }
+
+    private void invalidate() {
+        inPlaces = null;
+    }
+
+    private void compile() {
+        if (inPlaces != null) {
+            return;
+        }
+        int n = transitions.size();
+        int[][] ip = new int[n][];
+        int[][] iw = new int[n][];
+        int[][] op = new int[n][];
+        int[][] ow = new int[n][];
+        for (int t = 0; t < n; t++) {
+            ip[t] = inputArcs.get(t).keySet().stream().mapToInt(Integer::intValue).toArray();
+            iw[t] = inputArcs.get(t).values().stream().mapToInt(Integer::intValue).toArray();
+            op[t] = outputArcs.get(t).keySet().stream().mapToInt(Integer::intValue).toArray();
+            ow[t] = outputArcs.get(t).values().stream().mapToInt(Integer::intValue).toArray();
+        }
+        Set<ActivityClass> visible = new HashSet<>(labels);
+        visible.remove(null);
+        Dictionary<ActivityClass> dictionary = Dictionary.of(visible);
+        int[] ids = new int[n];
+        List<List<Integer>> byLabel = new ArrayList<>();
+        for (int l = 0; l < dictionary.size(); l++) {
+            byLabel.add(new ArrayList<>());
+        }
+        for (int t = 0; t < n; t++) {
+            ids[t] = labels.get(t) == null ? -1 : dictionary.id(labels.get(t));
+            if (ids[t] >= 0) {
+                byLabel.get(ids[t]).add(t);
+            }
+        }
+        transitionsByLabel = byLabel.stream().map(l -> l.stream().mapToInt(Integer::intValue).toArray()).toArray(int[][]::new);
+        labelIds = ids;
+        labelDictionary = dictionary;
+        inWeights = iw;
+        outPlaces = op;
+        outWeights = ow;
+        inPlaces = ip;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int t = 0; t < transitions.size(); t++) {
+            sb.append(inputArcs.get(t).keySet().stream().map(places::get).collect(Collectors.toList()))
+                    .append(" -> ").append(isSilent(t) ? "tau(" + transitions.get(t) + ")" : labels.get(t))
+                    .append(" -> ")
+                    .append(outputArcs.get(t).keySet().stream().map(places::get).collect(Collectors.toList()))
+                    .append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,128 @@
+package org.ag.processmining.petrinet;
+
+import org.ag.processmining.log.model.ActivityClass;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads a place/transition net from a PNML file (the first net of the file; pages are flattened).
+ * <p>
+ * Transitions without a name, or marked invisible by ProM ({@code <toolspecific activity="$invisible$"/>}),
+ * are silent. The final marking is read from the ProM {@code <finalmarkings>} element when present.
+ */
+public class PnmlReader {
+
+    private static final String INVISIBLE = "$invisible$";
+
+    public static PetriNet read(String path) throws IOException {
+        try (InputStream in = new FileInputStream(path)) {
+            return read(in);
+        }
+    }
+
+    public static PetriNet read(InputStream in) throws IOException {
+        Document doc;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            doc = factory.newDocumentBuilder().parse(in);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Invalid PNML file", e);
+        }
+        NodeList nets = doc.getElementsByTagName("net");
+        if (nets.getLength() == 0) {
+            throw new IOException("No net in the PNML file");
+        }
+        Element netElement = (Element) nets.item(0);
+        PetriNet net = new PetriNet();
+        Map<String, Integer> places = new HashMap<>();
+        Map<String, Integer> transitions = new HashMap<>();
+
+        NodeList ps = netElement.getElementsByTagName("place");
+        for (int i = 0; i < ps.getLength(); i++) {
+            Element p = (Element) ps.item(i);
+            // <place idref=".."> inside <finalmarkings> are references, not places
+            if (!p.hasAttribute("id")) {
+                continue;
+            }
+            int id = net.addPlace(text(p, "name", p.getAttribute("id")));
+            places.put(p.getAttribute("id"), id);
+            int tokens = Integer.parseInt(text(p, "initialMarking", "0"));
+            if (tokens > 0) {
+                net.setInitialTokens(id, tokens);
+            }
+        }
+        NodeList ts = netElement.getElementsByTagName("transition");
+        for (int i = 0; i < ts.getLength(); i++) {
+            Element t = (Element) ts.item(i);
+            String name = text(t, "name", null);
+            boolean silent = name == null || name.isEmpty();
+            NodeList tools = t.getElementsByTagName("toolspecific");
+            for (int k = 0; k < tools.getLength(); k++) {
+                silent |= INVISIBLE.equals(((Element) tools.item(k)).getAttribute("activity"));
+            }
+            int id = net.addTransition(name == null ? t.getAttribute("id") : name, silent ? null : new ActivityClass(name));
+            transitions.put(t.getAttribute("id"), id);
+        }
+        NodeList arcs = netElement.getElementsByTagName("arc");
+        for (int i = 0; i < arcs.getLength(); i++) {
+            Element a = (Element) arcs.item(i);
+            String source = a.getAttribute("source");
+            String target = a.getAttribute("target");
+            int weight = Integer.parseInt(text(a, "inscription", "1"));
+            if (places.containsKey(source) && transitions.containsKey(target)) {
+                net.addInputArc(places.get(source), transitions.get(target), weight);
+            } else if (transitions.containsKey(source) && places.containsKey(target)) {
+                net.addOutputArc(transitions.get(source), places.get(target), weight);
+            } else {
+                throw new IOException("Arc " + a.getAttribute("id") + " does not link a place and a transition");
+            }
+        }
+        NodeList finals = doc.getElementsByTagName("finalmarkings");
+        if (finals.getLength() > 0) {
+            NodeList refs = ((Element) finals.item(0)).getElementsByTagName("place");
+            for (int i = 0; i < refs.getLength(); i++) {
+                Element r = (Element) refs.item(i);
+                Integer p = places.get(r.getAttribute("idref"));
+                int tokens = Integer.parseInt(text(r, null, "0"));
+                if (p != null && tokens > 0) {
+                    net.setFinalTokens(p, tokens);
+                }
+            }
+        }
+        return net;
+    }
+
+    /**
+     * @return the trimmed content of the first {@code <text>} under the child element, or under
+     * {@code e} itself when child is null
+     */
+    private static String text(Element e, String child, String defaultValue) {
+        Element parent = e;
+        if (child != null) {
+            parent = null;
+            for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+                if (n instanceof Element && child.equals(n.getNodeName())) {
+                    parent = (Element) n;
+                    break;
+                }
+            }
+            if (parent == null) {
+                return defaultValue;
+            }
+        }
+        NodeList texts = parent.getElementsByTagName("text");
+        return texts.getLength() == 0 ? defaultValue : texts.item(0).getTextContent().trim();
+    }
+}
@@ -0,0 +1,118 @@
+package org.ag.processmining.prediction;
+
+import org.ag.processmining.log.model.ActivityClass;
+import org.joda.time.DateTime;
+
+import java.io.Serializable;
+
+/**
+ * Remaining time and next activity predicted for the prefix of a running case.
+ */
+public class Prediction implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    public static final double[] QUANTILES = {0.1, 0.25, 0.5, 0.75, 0.9};
+
+    /*
+    Number of activities dropped from the state of the prefix to find it in the table, -1 if the
+    prediction is the prior of the whole log
+     */
+    private final int backoff;
+    private final long support;
+    private final double meanRemaining;
+    private final double[] remainingQuantiles;
+    private final double endProbability;
+    private final ActivityClass[] nextActivities;
+    private final double[] nextProbabilities;
+
+    Prediction(int backoff, long support, double meanRemaining, double[] remainingQuantiles, double endProbability,
+               ActivityClass[] nextActivities, double[] nextProbabilities) {
+        this.backoff = backoff;
+        this.support = support;
+        this.meanRemaining = meanRemaining;
+        this.remainingQuantiles = remainingQuantiles;
+        this.endProbability = endProbability;
+        this.nextActivities = nextActivities;
+        this.nextProbabilities = nextProbabilities;
+    }
+
+    /**
+     * @return true if the exact state of the prefix was found in the table
+     */
+    public boolean isExact() {
+        return backoff == 0;
+    }
+
+    public int getBackoff() {
+        return backoff;
+    }
+
+    /**
+     * @return the number of training prefixes of the state
+     */
+    public long getSupport() {
+        return support;
+    }
+
+    /**
+     * @return the median remaining time, in ms
+     */
+    public double getRemaining() {
+        return remainingQuantiles[2];
+    }
+
+    public double getMeanRemaining() {
+        return meanRemaining;
+    }
+
+    /**
+     * @param i index in {@link #QUANTILES}
+     * @return the remaining time quantile, in ms
+     */
+    public double getRemainingQuantile(int i) {
+        return remainingQuantiles[i];
+    }
+
+    /**
+     * @return the predicted completion time of a case whose last event happened at the given time
+     */
+    public DateTime completionTime(DateTime lastEventTime) {
+        return lastEventTime.plus((long) getRemaining());
+    }
+
+    /**
+     * @return the probability that the case is complete
+     */
+    public double getEndProbability() {
+        return endProbability;
+    }
+
+    /**
+     * @return the most likely next activity, null if the case most likely ends
+     */
+    public ActivityClass getNextActivity() {
+        return nextActivities.length == 0 || nextProbabilities[0] < endProbability ? null : nextActivities[0];
+    }
+
+    /**
+     * @return the most frequent next activities, most frequent first
+     */
+    public ActivityClass[] getNextActivities() {
+        return nextActivities.clone();
+    }
+
+    public double[] getNextProbabilities() {
+        return nextProbabilities.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Prediction{remaining=").append((long) getRemaining())
+                .append("ms [").append((long) remainingQuantiles[0]).append(", ").append((long) remainingQuantiles[4])
+                .append("], next=");
+        for (int i = 0; i < nextActivities.length; i++) {
+            sb.append(nextActivities[i]).append(String.format(":%.2f ", nextProbabilities[i]));
+        }
+        return sb.append(String.format("end:%.2f, support=%d, backoff=%d}", endProbability, support, backoff)).toString();
+    }
+}
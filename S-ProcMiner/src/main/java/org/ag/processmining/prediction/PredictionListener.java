@@ -0,0 +1,48 @@
+package org.ag.processmining.prediction;
+
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Event;
+import org.ag.processmining.monitoring.CaseState;
+import org.ag.processmining.monitoring.MonitorListener;
+import org.ag.processmining.monitoring.MonitorSummary;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Predicts the remaining time and next activity of the open cases of a
+ * {@link org.ag.processmining.monitoring.MonitoringEngine} on each of their events. The prefix
+ * state of each open case is kept until the engine evicts it. Events are abstracted in arrival
+ * order.
+ */
+public class PredictionListener implements MonitorListener {
+
+    private final PredictionTable table;
+    private final BiConsumer<CaseState, Prediction> consumer;
+    private final Map<CaseId, PrefixState> states = new HashMap<>();
+
+    /**
+     * @param consumer called on the engine thread with every prediction
+     */
+    public PredictionListener(PredictionTable table, BiConsumer<CaseState, Prediction> consumer) {
+        this.table = table;
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void onSummary(MonitorSummary summary) {
+    }
+
+    @Override
+    public void onEvent(Event event, CaseState state) {
+        PrefixState prefix = states.computeIfAbsent(state.getCaseId(), id -> table.newState());
+        prefix.add(table.activityId(event.getActivityClass()));
+        consumer.accept(state, table.predict(prefix));
+    }
+
+    @Override
+    public void onCaseEvicted(CaseState state, Eviction reason) {
+        states.remove(state.getCaseId());
+    }
+}
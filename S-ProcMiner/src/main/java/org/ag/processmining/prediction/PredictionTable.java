@@ -0,0 +1,286 @@
+package org.ag.processmining.prediction;
+
+import org.ag.processmining.Utils.DurationSketch;
+import org.ag.processmining.log.model.ActivityClass;
+import org.ag.processmining.log.model.Dictionary;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Open-addressing hash table of the prediction statistics of prefix states, stored in a single
+ * buffer with the layout of its file, so that a table written by the trainer is used in place by
+ * memory-mapping it ({@link #open(Path)}), without any parsing or allocation.
+ * <p>
+ * File layout (big endian): a header (magic, version, abstraction, k, capacity, number of
+ * states, offset of the slots), the slot of the prior of the whole log, the activity names, then
+ * {@code capacity} slots of {@value #SLOT} bytes:
+ * <pre>
+ * key (long, 0 if empty) | count (int) | mean (float) | 5 quantiles (float) | end probability (float)
+ * | 3 next activity ids (int, -1 if none) | 3 next activity probabilities (float)
+ * </pre>
+ * The capacity is a power of two and the load factor at most one half, so that a lookup is
+ * usually one probe, i.e. one cache line. Tables are limited to 2 GB (about 30 million states).
+ * Tables are not serializable: {@link #toBytes()} ships them to the executors.
+ */
+public class PredictionTable {
+
+    private static final int MAGIC = 0x50524454; // "PRDT"
+    private static final int VERSION = 1;
+    static final int SLOT = 64;
+    static final int TOP_NEXT = 3;
+    private static final int HEADER = 7 * 4;
+
+    private final ByteBuffer buffer;
+    private final StateAbstraction abstraction;
+    private final int k;
+    private final int mask;
+    private final int states;
+    private final int slotsOffset;
+    private final ActivityClass[] activities;
+    private final Map<ActivityClass, Integer> ids;
+    private final Prediction prior;
+
+    private PredictionTable(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Not a prediction table");
+        }
+        abstraction = StateAbstraction.values()[buffer.getInt(8)];
+        k = buffer.getInt(12);
+        mask = buffer.getInt(16) - 1;
+        states = buffer.getInt(20);
+        slotsOffset = buffer.getInt(24);
+        int pos = HEADER + SLOT;
+        activities = new ActivityClass[buffer.getInt(pos)];
+        ids = new HashMap<>(activities.length * 2);
+        pos += 4;
+        for (int i = 0; i < activities.length; i++) {
+            byte[] name = new byte[buffer.getShort(pos) & 0xffff];
+            pos += 2;
+            for (int j = 0; j < name.length; j++) {
+                name[j] = buffer.get(pos++);
+            }
+            activities[i] = new ActivityClass(new String(name, StandardCharsets.UTF_8));
+            ids.put(activities[i], i);
+        }
+        prior = read(HEADER, -1);
+    }
+
+    /**
+     * Memory-maps a table written by {@link #write(Path)}.
+     */
+    public static PredictionTable open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new PredictionTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @param bytes content of a table file, e.g. {@link #toBytes()}
+     */
+    public static PredictionTable wrap(byte[] bytes) {
+        return new PredictionTable(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Lays out a table.
+     *
+     * @param entries statistics of the states, by key
+     * @param prior   statistics of all the prefixes of the log
+     */
+    static PredictionTable build(StateAbstraction abstraction, int k, Dictionary<ActivityClass> dictionary,
+                                 Map<Long, Entry> entries, Entry prior) {
+        int capacity = Integer.highestOneBit(Math.max(2 * entries.size(), 8) - 1) << 1;
+        byte[][] names = new byte[dictionary.size()][];
+        int namesLength = 4;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = dictionary.get(i).getName().getBytes(StandardCharsets.UTF_8);
+            namesLength += 2 + names[i].length;
+        }
+        long slotsOffset = ((HEADER + SLOT + namesLength + SLOT - 1) / SLOT) * (long) SLOT;
+        long size = slotsOffset + (long) capacity * SLOT;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many states: " + entries.size());
+        }
+        ByteBuffer b = ByteBuffer.allocate((int) size);
+        b.putInt(MAGIC).putInt(VERSION).putInt(abstraction.ordinal()).putInt(k).putInt(capacity)
+                .putInt(entries.size()).putInt((int) slotsOffset);
+        prior.write(b, HEADER);
+        b.position(HEADER + SLOT);
+        b.putInt(names.length);
+        for (byte[] name : names) {
+            b.putShort((short) name.length).put(name);
+        }
+        int mask = capacity - 1;
+        for (Entry e : entries.values()) {
+            int i = slot(e.key, mask);
+            while (b.getLong((int) slotsOffset + i * SLOT) != 0) {
+                i = (i + 1) & mask;
+            }
+            e.write(b, (int) slotsOffset + i * SLOT);
+        }
+        b.clear();
+        return new PredictionTable(b);
+    }
+
+    private static int slot(long key, int mask) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    public void write(Path path) throws IOException {
+        ByteBuffer b = buffer.duplicate();
+        b.clear();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (b.hasRemaining()) {
+                channel.write(b);
+            }
+        }
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer b = buffer.duplicate();
+        b.clear();
+        byte[] bytes = new byte[b.remaining()];
+        b.get(bytes);
+        return bytes;
+    }
+
+    public StateAbstraction getAbstraction() {
+        return abstraction;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * @return the number of states in the table
+     */
+    public int size() {
+        return states;
+    }
+
+    /**
+     * @return the id of the activity, -1 if it was not in the training log
+     */
+    public int activityId(ActivityClass activity) {
+        Integer id = ids.get(activity);
+        return id == null ? -1 : id;
+    }
+
+    public PrefixState newState() {
+        return new PrefixState(abstraction, k);
+    }
+
+    /**
+     * @return the prediction of the longest state of the prefix in the table, the prior of the log
+     * if none is
+     */
+    public Prediction predict(PrefixState state) {
+        int depth = state.depth();
+        for (int backoff = 0; backoff < depth; backoff++) {
+            int offset = find(state.key(backoff));
+            if (offset >= 0) {
+                return read(offset, backoff);
+            }
+        }
+        return prior;
+    }
+
+    /**
+     * @return the offset of the slot of the key, -1 if the key is not in the table
+     */
+    private int find(long key) {
+        int i = slot(key, mask);
+        while (true) {
+            int offset = slotsOffset + i * SLOT;
+            long k = buffer.getLong(offset);
+            if (k == key) {
+                return offset;
+            }
+            if (k == 0) {
+                return -1;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    private Prediction read(int offset, int backoff) {
+        long count = buffer.getInt(offset + 8) & 0xffffffffL;
+        double mean = buffer.getFloat(offset + 12);
+        double[] quantiles = new double[Prediction.QUANTILES.length];
+        for (int q = 0; q < quantiles.length; q++) {
+            quantiles[q] = buffer.getFloat(offset + 16 + 4 * q);
+        }
+        double end = buffer.getFloat(offset + 36);
+        int n = 0;
+        while (n < TOP_NEXT && buffer.getInt(offset + 40 + 4 * n) >= 0) {
+            n++;
+        }
+        ActivityClass[] next = new ActivityClass[n];
+        double[] probabilities = new double[n];
+        for (int i = 0; i < n; i++) {
+            next[i] = activities[buffer.getInt(offset + 40 + 4 * i)];
+            probabilities[i] = buffer.getFloat(offset + 52 + 4 * i);
+        }
+        return new Prediction(backoff, count, mean, quantiles, end, next, probabilities);
+    }
+
+    /**
+     * Compacted statistics of a state, in the layout of a slot.
+     */
+    static class Entry implements Serializable {
+        static final long serialVersionUID = 1L;
+        final long key;
+        final int count;
+        final float mean;
+        final float[] quantiles = new float[Prediction.QUANTILES.length];
+        final float endProbability;
+        final int[] next = new int[TOP_NEXT];
+        final float[] nextProbabilities = new float[TOP_NEXT];
+
+        /**
+         * @param nextCounts occurrences of each next activity, by id
+         */
+        Entry(long key, DurationSketch remaining, long endCount, Map<Integer, Long> nextCounts) {
+            this.key = key;
+            this.count = (int) Math.min(remaining.count(), Integer.MAX_VALUE);
+            this.mean = (float) remaining.mean();
+            for (int q = 0; q < quantiles.length; q++) {
+                quantiles[q] = (float) remaining.quantile(Prediction.QUANTILES[q]);
+            }
+            this.endProbability = (float) endCount / remaining.count();
+            List<Map.Entry<Integer, Long>> sorted = new ArrayList<>(nextCounts.entrySet());
+            sorted.sort((a, b) -> a.getValue().equals(b.getValue())
+                    ? Integer.compare(a.getKey(), b.getKey()) : Long.compare(b.getValue(), a.getValue()));
+            Arrays.fill(next, -1);
+            for (int i = 0; i < TOP_NEXT && i < sorted.size(); i++) {
+                next[i] = sorted.get(i).getKey();
+                nextProbabilities[i] = (float) sorted.get(i).getValue() / remaining.count();
+            }
+        }
+
+        void write(ByteBuffer b, int offset) {
+            b.putLong(offset, key);
+            b.putInt(offset + 8, count);
+            b.putFloat(offset + 12, mean);
+            for (int q = 0; q < quantiles.length; q++) {
+                b.putFloat(offset + 16 + 4 * q, quantiles[q]);
+            }
+            b.putFloat(offset + 36, endProbability);
+            for (int i = 0; i < TOP_NEXT; i++) {
+                b.putInt(offset + 40 + 4 * i, next[i]);
+                b.putFloat(offset + 52 + 4 * i, nextProbabilities[i]);
+            }
+        }
+    }
+}
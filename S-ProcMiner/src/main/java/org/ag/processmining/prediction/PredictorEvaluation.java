@@ -0,0 +1,161 @@
+package org.ag.processmining.prediction;
+
+import org.ag.processmining.Utils.DurationSketch;
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Event;
+import org.ag.processmining.log.model.Trace;
+import org.apache.spark.api.java.JavaPairRDD;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Accuracy and latency of a {@link PredictionTable} on held-out traces, measured on every prefix
+ * of every trace as the online predictor sees it: one {@link PrefixState#add(int)} and one
+ * {@link PredictionTable#predict(PrefixState)} per event.
+ */
+public class PredictorEvaluation implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    private long prefixes = 0;
+    private long exact = 0;
+    private double absoluteError = 0;
+    private double priorAbsoluteError = 0;
+    private long nextCorrect = 0;
+    private long withinInterval = 0;
+    /*
+    Latency of the state update and the lookup, in ns
+     */
+    private final DurationSketch latency = new DurationSketch();
+
+    /**
+     * Trains a table on the traces of the trainer, but a fraction of the cases, and evaluates it
+     * on these. Cases are split on the hash of their id, so that the split does not depend on the
+     * partitioning of the log.
+     */
+    public static PredictorEvaluation holdOut(PredictorTrainer trainer, double testFraction, long seed) {
+        JavaPairRDD<CaseId, Trace> traces = trainer.getTraces();
+        JavaPairRDD<CaseId, Trace> training = traces.filter(t -> !isTest(t._1(), testFraction, seed));
+        JavaPairRDD<CaseId, Trace> test = traces.filter(t -> isTest(t._1(), testFraction, seed));
+        return evaluate(trainer.on(training).train(), test);
+    }
+
+    private static boolean isTest(CaseId id, double testFraction, long seed) {
+        return (PrefixState.mix(id.hashCode() ^ seed) >>> 11) * 0x1.0p-53 < testFraction;
+    }
+
+    /**
+     * Evaluates a table on the executors, each partition using its own copy of the table. An
+     * empty test set gives an evaluation of no prefixes.
+     */
+    public static PredictorEvaluation evaluate(PredictionTable table, JavaPairRDD<CaseId, Trace> traces) {
+        byte[] bytes = table.toBytes();
+        return traces.values()
+                .mapPartitions(it -> {
+                    PredictionTable t = PredictionTable.wrap(bytes);
+                    PredictorEvaluation e = new PredictorEvaluation();
+                    while (it.hasNext()) {
+                        e.add(t, it.next());
+                    }
+                    return Collections.singletonList(e);
+                })
+                .fold(new PredictorEvaluation(), PredictorEvaluation::merge);
+    }
+
+    void add(PredictionTable table, Trace trace) {
+        List<Event> events = new ArrayList<>(trace.getOrderedEvents().values());
+        long end = PredictorTrainer.endTime(events);
+        Prediction prior = table.predict(table.newState());
+        PrefixState state = table.newState();
+        for (int i = 0; i < events.size(); i++) {
+            long start = System.nanoTime();
+            state.add(table.activityId(events.get(i).getActivityClass()));
+            Prediction p = table.predict(state);
+            latency.add(System.nanoTime() - start);
+
+            double remaining = end - PredictorTrainer.time(events.get(i));
+            prefixes++;
+            if (p.isExact()) {
+                exact++;
+            }
+            absoluteError += Math.abs(p.getRemaining() - remaining);
+            priorAbsoluteError += Math.abs(prior.getRemaining() - remaining);
+            if (remaining >= p.getRemainingQuantile(0) && remaining <= p.getRemainingQuantile(Prediction.QUANTILES.length - 1)) {
+                withinInterval++;
+            }
+            boolean last = i + 1 == events.size();
+            if (last ? p.getNextActivity() == null
+                    : events.get(i + 1).getActivityClass().equals(p.getNextActivity())) {
+                nextCorrect++;
+            }
+        }
+    }
+
+    PredictorEvaluation merge(PredictorEvaluation other) {
+        prefixes += other.prefixes;
+        exact += other.exact;
+        absoluteError += other.absoluteError;
+        priorAbsoluteError += other.priorAbsoluteError;
+        nextCorrect += other.nextCorrect;
+        withinInterval += other.withinInterval;
+        latency.merge(other.latency);
+        return this;
+    }
+
+    public long getPrefixes() {
+        return prefixes;
+    }
+
+    /**
+     * @return the share of the prefixes whose exact state was in the table
+     */
+    public double getCoverage() {
+        return (double) exact / prefixes;
+    }
+
+    /**
+     * @return the mean absolute error of the predicted (median) remaining time, in ms
+     */
+    public double getMeanAbsoluteError() {
+        return absoluteError / prefixes;
+    }
+
+    /**
+     * @return the mean absolute error of the median remaining time of the whole log, in ms
+     */
+    public double getPriorMeanAbsoluteError() {
+        return priorAbsoluteError / prefixes;
+    }
+
+    /**
+     * @return the share of the remaining times in the predicted [p10, p90] interval
+     */
+    public double getIntervalCoverage() {
+        return (double) withinInterval / prefixes;
+    }
+
+    /**
+     * @return the share of the next activities (or case ends) predicted correctly
+     */
+    public double getNextActivityAccuracy() {
+        return (double) nextCorrect / prefixes;
+    }
+
+    /**
+     * @return the sketch of the prediction latencies, in ns
+     */
+    public DurationSketch getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PredictorEvaluation{prefixes=%d, coverage=%.3f, MAE=%.0fms (prior %.0fms), "
+                        + "p10-p90 coverage=%.3f, next activity accuracy=%.3f, latency p50=%.0fns p99=%.0fns}",
+                prefixes, getCoverage(), getMeanAbsoluteError(), getPriorMeanAbsoluteError(), getIntervalCoverage(),
+                getNextActivityAccuracy(), latency.median(), latency.quantile(0.99));
+    }
+}
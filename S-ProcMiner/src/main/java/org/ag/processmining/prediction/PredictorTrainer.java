@@ -0,0 +1,212 @@
+package org.ag.processmining.prediction;
+
+import org.ag.processmining.Utils.DurationSketch;
+import org.ag.processmining.log.model.*;
+import org.ag.processmining.log.model.Dictionary;
+import org.ag.processmining.log.summarizer.overview.LogSummary;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+import org.joda.time.DateTime;
+import scala.Tuple2;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Trains a {@link PredictionTable} from historical traces.
+ * <p>
+ * Every prefix of every trace is abstracted into its state(s) on the executors, with the time
+ * remaining until the end of the case and the activity that follows it. The observations are
+ * aggregated by state key into duration sketches and next activity counts, which are compacted
+ * into fixed size entries before being collected, so that the driver only receives the table.
+ */
+public class PredictorTrainer implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    JavaPairRDD<CaseId, Trace> traces;
+    private StateAbstraction abstraction = StateAbstraction.LAST_K;
+    private int k = 3;
+    private long minSupport = 1;
+
+    public PredictorTrainer(JavaPairRDD<CaseId, Trace> traces) {
+        this.traces = traces;
+    }
+
+    public PredictorTrainer abstraction(StateAbstraction abstraction) {
+        this.abstraction = abstraction;
+        return this;
+    }
+
+    /**
+     * @param k number of activities of the {@link StateAbstraction#LAST_K} states
+     */
+    public PredictorTrainer k(int k) {
+        this.k = k;
+        return this;
+    }
+
+    /**
+     * @param minSupport minimal number of training prefixes of a state kept in the table
+     */
+    public PredictorTrainer minSupport(long minSupport) {
+        this.minSupport = minSupport;
+        return this;
+    }
+
+    /**
+     * @return a trainer of the same configuration on other traces
+     */
+    public PredictorTrainer on(JavaPairRDD<CaseId, Trace> traces) {
+        return new PredictorTrainer(traces).abstraction(abstraction).k(k).minSupport(minSupport);
+    }
+
+    public JavaPairRDD<CaseId, Trace> getTraces() {
+        return traces;
+    }
+
+    public PredictionTable train() {
+        Dictionary<ActivityClass> dictionary = Dictionary.of(traces.values()
+                .flatMap(t -> {
+                    List<ActivityClass> l = new ArrayList<>(t.size());
+                    for (Event e : t.getOrderedEvents().values()) {
+                        l.add(e.getActivityClass());
+                    }
+                    return l;
+                })
+                .distinct()
+                .collect());
+        Broadcast<Dictionary<ActivityClass>> bDictionary = JavaSparkContext.fromSparkContext(traces.context())
+                .broadcast(dictionary);
+        StateAbstraction a = abstraction;
+        int depth = k;
+        long support = minSupport;
+
+        JavaPairRDD<Long, StateStatistics> states = traces.values()
+                .flatMapToPair(t -> {
+                    List<Tuple2<Long, Observation>> l = new ArrayList<>();
+                    PrefixState state = new PrefixState(a, depth);
+                    List<Event> events = new ArrayList<>(t.getOrderedEvents().values());
+                    long end = endTime(events);
+                    for (int i = 0; i < events.size(); i++) {
+                        state.add(bDictionary.value().id(events.get(i).getActivityClass()));
+                        Observation o = new Observation(end - time(events.get(i)),
+                                i + 1 < events.size() ? bDictionary.value().id(events.get(i + 1).getActivityClass()) : -1);
+                        // the prior of the log is kept under key 0, which no state has
+                        l.add(new Tuple2<>(0L, o));
+                        for (int b = 0; b < state.depth(); b++) {
+                            l.add(new Tuple2<>(state.key(b), o));
+                        }
+                    }
+                    return l;
+                })
+                .aggregateByKey(new StateStatistics(), StateStatistics::add, StateStatistics::merge)
+                .filter(s -> s._1() == 0 || s._2().remaining.count() >= support);
+
+        Map<Long, PredictionTable.Entry> entries = new HashMap<>(states
+                .mapToPair(s -> new Tuple2<>(s._1(), s._2().compact(s._1())))
+                .collectAsMap());
+        PredictionTable.Entry prior = entries.remove(0L);
+        return PredictionTable.build(abstraction, k, dictionary, entries, prior);
+    }
+
+    /**
+     * @return the time of an event: its end, or its start if it has none
+     */
+    static long time(Event e) {
+        DateTime t = e.getEnd() != null ? e.getEnd() : e.getStart();
+        return t.getMillis();
+    }
+
+    static long endTime(List<Event> events) {
+        long end = Long.MIN_VALUE;
+        for (Event e : events) {
+            end = Math.max(end, time(e));
+        }
+        return end;
+    }
+
+    private static class Observation implements Serializable {
+        static final long serialVersionUID = 1L;
+        final long remaining;
+        final int next;
+
+        Observation(long remaining, int next) {
+            this.remaining = remaining;
+            this.next = next;
+        }
+    }
+
+    /**
+     * Remaining times and next activities observed after the prefixes of a state.
+     */
+    private static class StateStatistics implements Serializable {
+        static final long serialVersionUID = 1L;
+        final DurationSketch remaining = new DurationSketch();
+        final Map<Integer, Long> next = new HashMap<>();
+        long ends = 0;
+
+        StateStatistics add(Observation o) {
+            remaining.add(o.remaining);
+            if (o.next < 0) {
+                ends++;
+            } else {
+                next.merge(o.next, 1L, Long::sum);
+            }
+            return this;
+        }
+
+        StateStatistics merge(StateStatistics other) {
+            remaining.merge(other.remaining);
+            other.next.forEach((a, n) -> next.merge(a, n, Long::sum));
+            ends += other.ends;
+            return this;
+        }
+
+        PredictionTable.Entry compact(long key) {
+            return new PredictionTable.Entry(key, remaining, ends, next);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: PredictorTrainer <log file> <event schema> <table file> [LAST_K|SET|MULTISET] [k] [test fraction]");
+            return;
+        }
+
+        String sourceFile = args[0];
+        String attributeMappingFilePath = args[1];
+        String[] event_attributes = {"a_ref_activitee", "h_create_date", "h_dateentree", "h_date_execution",
+                "h_codecorbeille", "h_codestatut", "h_creator", "h_domaine", "h_idaction",
+                "frigo", "qs", "app_premium", "lien_referentiel_aq", "a_canalfrom", "a_canalto",
+                "a_code_apporteur", "a_codecorbeille", "a_domaine", "a_servicepremium", "a_typologie",
+                "h_commentaire"};
+
+        EventSchema att_map = new EventSchema(attributeMappingFilePath);
+        String applicationName = "Process Mining using Apache Spark";
+        SparkConf conf = new SparkConf().setAppName(applicationName).setMaster("local[*]");
+        JavaSparkContext sc = new JavaSparkContext(conf);
+        JavaRDD<String> RDDSrc = sc.textFile(sourceFile);
+
+        JavaPairRDD<CaseId, Trace> traces = LogSummary.buildTraces(LogSummary.buildEvents(RDDSrc, event_attributes, att_map)).cache();
+        PredictorTrainer trainer = new PredictorTrainer(traces);
+        if (args.length > 3) {
+            trainer.abstraction(StateAbstraction.valueOf(args[3]));
+        }
+        if (args.length > 4) {
+            trainer.k(Integer.parseInt(args[4]));
+        }
+        double testFraction = args.length > 5 ? Double.parseDouble(args[5]) : 0.2;
+        System.out.println(PredictorEvaluation.holdOut(trainer, testFraction, 42));
+
+        PredictionTable table = trainer.train();
+        table.write(Paths.get(args[2]));
+        System.out.println(table.size() + " states written to " + args[2]);
+        sc.stop();
+    }
+}
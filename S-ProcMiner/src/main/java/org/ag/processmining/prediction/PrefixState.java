@@ -0,0 +1,111 @@
+package org.ag.processmining.prediction;
+
+import java.io.Serializable;
+import java.util.BitSet;
+
+/**
+ * Abstract state of the prefix of a case, updated in O(k) per event.
+ * <p>
+ * The state is identified by a 64 bits key: the FNV-1a hash of the last k activity ids (and of k)
+ * for {@link StateAbstraction#LAST_K}, and a Zobrist hash (xor, resp. sum, of a random value per
+ * activity) for {@link StateAbstraction#SET} and {@link StateAbstraction#MULTISET}, which makes
+ * the key independent of the order of the activities. Key 0 is never produced; it stands for no
+ * state, which is the case as soon as the prefix contains an activity unknown to the table.
+ */
+public class PrefixState implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    private final StateAbstraction abstraction;
+    private final int k;
+    private final int[] last;
+    private final BitSet seen = new BitSet();
+    private long hash = 0;
+    private int length = 0;
+    private boolean unknown = false;
+
+    public PrefixState(StateAbstraction abstraction, int k) {
+        this.abstraction = abstraction;
+        this.k = k;
+        this.last = abstraction == StateAbstraction.LAST_K ? new int[k] : null;
+    }
+
+    /**
+     * @param activity id of the activity in the dictionary of the table, negative if unknown
+     */
+    public PrefixState add(int activity) {
+        length++;
+        if (activity < 0) {
+            unknown = true;
+            return this;
+        }
+        switch (abstraction) {
+            case LAST_K:
+                last[(length - 1) % k] = activity;
+                break;
+            case SET:
+                if (!seen.get(activity)) {
+                    seen.set(activity);
+                    hash ^= mix(activity + 1);
+                }
+                break;
+            case MULTISET:
+                hash += mix(activity + 1);
+                break;
+        }
+        return this;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return the number of keys of the prefix, from the longest state to the shortest: several
+     * for {@link StateAbstraction#LAST_K} (the last k, k - 1, ..., 1 activities), one otherwise
+     */
+    public int depth() {
+        if (unknown || length == 0) {
+            return 0;
+        }
+        return abstraction == StateAbstraction.LAST_K ? Math.min(k, length) : 1;
+    }
+
+    /**
+     * @return the key of the longest state of the prefix, 0 if the prefix has no state
+     */
+    public long key() {
+        return key(0);
+    }
+
+    /**
+     * @param backoff number of the oldest activities dropped from the state, in [0, depth())
+     */
+    public long key(int backoff) {
+        if (backoff >= depth()) {
+            return 0;
+        }
+        long h;
+        if (abstraction == StateAbstraction.LAST_K) {
+            int n = Math.min(k, length) - backoff;
+            h = 0xcbf29ce484222325L;
+            h = (h ^ n) * 0x100000001b3L;
+            for (int i = length - n; i < length; i++) {
+                h = (h ^ last[i % k]) * 0x100000001b3L;
+            }
+            h = mix(h);
+        } else {
+            h = hash ^ ((long) abstraction.ordinal() << 56);
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * SplitMix64 finalizer.
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
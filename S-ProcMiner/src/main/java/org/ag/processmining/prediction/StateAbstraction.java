@@ -0,0 +1,19 @@
+package org.ag.processmining.prediction;
+
+/**
+ * Abstraction of the prefix of a running case into a state.
+ */
+public enum StateAbstraction {
+    /**
+     * Sequence of the last k activities
+     */
+    LAST_K,
+    /**
+     * Set of the activities executed so far
+     */
+    SET,
+    /**
+     * Multiset of the activities executed so far
+     */
+    MULTISET
+}
@@ -0,0 +1,262 @@
+package org.ag.processmining.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.ag.processmining.local.LocalEngine;
+import org.ag.processmining.log.model.EventSchema;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaSparkContext;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-running local analysis server: keeps one Spark context (or the {@link LocalEngine}) warm
+ * and named logs in memory as trace datasets, and answers queries on them over HTTP with JSON.
+ * <p>
+ * A log is parsed and built into traces once, when loaded; the traces stay cached until the log
+ * is unloaded, and the results of the last queries on a log are kept with it. Each log is
+ * loaded with the engine {@link LocalEngine#useLocal} chooses for its path. Queries run
+ * concurrently, one per server thread; on Spark, the context runs in FAIR scheduling mode and
+ * every query submits its jobs to the pool named by its {@code pool} parameter (the name of the
+ * log by default), so that a long query on a log does not hold back the others.
+ * <p>
+ * API, on {@code http://localhost:<port>}:
+ * <ul>
+ * <li>{@code GET /logs}: the loaded logs</li>
+ * <li>{@code POST /logs/<name>?path=<file or directory>}: loads a log</li>
+ * <li>{@code DELETE /logs/<name>}: unloads a log</li>
+ * <li>{@code GET /logs/<name>/summary}: number of cases and events, frequency and mean
+ * duration of the activities</li>
+ * <li>{@code GET /logs/<name>/dfg}: directly-follows graph</li>
+ * <li>{@code GET /logs/<name>/network?type=handover|casecoworker|activitycoworker}: social network</li>
+ * </ul>
+ * Queries take the filters of {@link CachedLog}: {@code from}, {@code to} and {@code activity}.
+ */
+public class AnalysisServer implements Closeable {
+
+    private static final String POOL_PROPERTY = "spark.scheduler.pool";
+
+    private final EventSchema schema;
+    private final String[] header;
+    private final Map<String, CachedLog> logs = new ConcurrentHashMap<>();
+    private int port = 8090;
+    private int threads = 8;
+    private volatile JavaSparkContext sc;
+    private HttpServer http;
+    private ExecutorService executor;
+
+    public AnalysisServer(EventSchema schema, String[] header) {
+        this.schema = schema;
+        this.header = header;
+    }
+
+    public AnalysisServer port(int port) {
+        this.port = port;
+        return this;
+    }
+
+    /**
+     * @param threads number of queries answered concurrently
+     */
+    public AnalysisServer threads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public AnalysisServer start() throws IOException {
+        executor = Executors.newFixedThreadPool(threads);
+        http = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        http.createContext("/logs", this::handle);
+        http.setExecutor(executor);
+        http.start();
+        return this;
+    }
+
+    /**
+     * Loads the log under the name, replacing the log of that name if any.
+     */
+    public Map<String, Object> load(String name, String path) throws IOException {
+        CachedLog log = CachedLog.load(name, path, LocalEngine.useLocal(path) ? null : sparkContext(), header, schema);
+        CachedLog previous = logs.put(name, log);
+        if (previous != null) {
+            previous.unload();
+        }
+        return log.describe();
+    }
+
+    public boolean unload(String name) {
+        CachedLog log = logs.remove(name);
+        if (log != null) {
+            log.unload();
+        }
+        return log != null;
+    }
+
+    private synchronized JavaSparkContext sparkContext() {
+        if (sc == null) {
+            SparkConf conf = new SparkConf()
+                    .setAppName("Process Mining analysis server")
+                    .setMaster(System.getProperty("spark.master", "local[*]"))
+                    .set("spark.scheduler.mode", "FAIR");
+            sc = new JavaSparkContext(conf);
+        }
+        return sc;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int status = 200;
+        Object body;
+        try {
+            body = route(exchange.getRequestMethod(), exchange.getRequestURI().getPath(), params(exchange.getRequestURI().getRawQuery()));
+        } catch (NoSuchElementException e) {
+            status = 404;
+            body = error(e);
+        } catch (UnsupportedOperationException e) {
+            status = 405;
+            body = error(e);
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = error(e);
+        } catch (Exception e) {
+            status = 500;
+            body = error(e);
+        }
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * @throws NoSuchElementException (404) if the path is not under {@code /logs}, as the context
+     * also hands over paths that only start with it, or the log is not loaded
+     * @throws UnsupportedOperationException (405) if the resource does not take the method
+     */
+    private Object route(String method, String path, Map<String, String> params) throws IOException {
+        String[] parts = path.replaceAll("^/+|/+$", "").split("/");
+        if (!parts[0].equals("logs")) {
+            throw new NoSuchElementException("Unknown resource: " + path);
+        }
+        if (parts.length == 1) {
+            requireGet(method, path);
+            List<Object> described = new ArrayList<>();
+            new TreeMap<>(logs).values().forEach(l -> described.add(l.describe()));
+            return described;
+        }
+        String name = parts[1];
+        if (parts.length == 2) {
+            switch (method) {
+                case "POST":
+                case "PUT":
+                    String source = params.get("path");
+                    if (source == null) {
+                        throw new IllegalArgumentException("Missing path of the log");
+                    }
+                    return load(name, source);
+                case "DELETE":
+                    if (!unload(name)) {
+                        throw new NoSuchElementException("Unknown log: " + name);
+                    }
+                    return Collections.singletonMap("unloaded", name);
+                default:
+                    requireGet(method, path);
+                    return log(name).describe();
+            }
+        }
+        if (parts.length != 3) {
+            throw new NoSuchElementException("Unknown resource: " + path);
+        }
+        requireGet(method, path);
+        CachedLog log = log(name);
+        String pool = params.remove("pool");
+        if (sc != null) {
+            sc.setLocalProperty(POOL_PROPERTY, pool != null ? pool : name);
+        }
+        try {
+            return log.query(parts[2], params);
+        } finally {
+            if (sc != null) {
+                sc.setLocalProperty(POOL_PROPERTY, null);
+            }
+        }
+    }
+
+    private static void requireGet(String method, String path) {
+        if (!method.equals("GET")) {
+            throw new UnsupportedOperationException("Method not allowed: " + method + " " + path);
+        }
+    }
+
+    private CachedLog log(String name) {
+        CachedLog log = logs.get(name);
+        if (log == null) {
+            throw new NoSuchElementException("Unknown log: " + name);
+        }
+        return log;
+    }
+
+    private static Map<String, String> params(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (query != null) {
+            for (String p : query.split("&")) {
+                if (p.isEmpty()) {
+                    continue;
+                }
+                int eq = p.indexOf('=');
+                params.put(URLDecoder.decode(eq < 0 ? p : p.substring(0, eq), "UTF-8"),
+                        eq < 0 ? "" : URLDecoder.decode(p.substring(eq + 1), "UTF-8"));
+            }
+        }
+        return params;
+    }
+
+    private static Map<String, Object> error(Exception e) {
+        return Collections.singletonMap("error", e.getMessage() != null ? e.getMessage() : e.toString());
+    }
+
+    @Override
+    public void close() {
+        if (http != null) {
+            http.stop(0);
+            executor.shutdown();
+        }
+        new ArrayList<>(logs.keySet()).forEach(this::unload);
+        if (sc != null) {
+            sc.stop();
+        }
+    }
+
+    /**
+     * Usage: AnalysisServer attributeMapping.yaml [port [name=path ...]]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: AnalysisServer attributeMapping.yaml [port [name=path ...]]");
+            return;
+        }
+        String[] header = {"Case ID", "Activity", "Resource", "Start Timestamp", "Complete Timestamp", "Variant", "Role"};
+        AnalysisServer server = new AnalysisServer(new EventSchema(args[0]), header);
+        if (args.length > 1) {
+            server.port(Integer.parseInt(args[1]));
+        }
+        for (int i = 2; i < args.length; i++) {
+            String[] log = args[i].split("=", 2);
+            System.out.println(Json.write(server.load(log[0], log[1])));
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.start();
+        System.out.println("Listening on http://localhost:" + server.port + "/logs");
+    }
+}
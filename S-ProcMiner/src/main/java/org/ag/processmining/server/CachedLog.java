@@ -0,0 +1,307 @@
+package org.ag.processmining.server;
+
+import org.ag.processmining.Utils.DurationSketch;
+import org.ag.processmining.index.CaseIntervalIndex;
+import org.ag.processmining.local.LocalEngine;
+import org.ag.processmining.local.LocalLog;
+import org.ag.processmining.log.model.ActivityClass;
+import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Event;
+import org.ag.processmining.log.model.EventSchema;
+import org.ag.processmining.log.model.Trace;
+import org.ag.processmining.log.summarizer.overview.ActivityClassOverview;
+import org.ag.processmining.log.summarizer.overview.ActivityClassOverview.ActivityClassOverviewBuilder;
+import org.ag.processmining.log.summarizer.overview.LogSummary;
+import org.ag.processmining.log.summarizer.utils.CasePartitioner;
+import org.ag.processmining.miner.dfg.DFGBuilder;
+import org.ag.processmining.miner.dfg.DirectlyFollowsGraph;
+import org.ag.processmining.sna.snbuilder.ActivityCoworkerSNBuilder;
+import org.ag.processmining.sna.snbuilder.CaseCoworkerSNBuilder;
+import org.ag.processmining.sna.snbuilder.HandOverSNBuilder;
+import org.ag.processmining.sna.snbuilder.SNBuilder;
+import org.ag.processmining.sna.socialnetwork.SocialNetwork;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.joda.time.DateTime;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * A log loaded by the {@link AnalysisServer}: its traces, built once and kept in memory (a cached
+ * RDD partitioned by case, or a {@link LocalLog}), and the results of the last queries answered on
+ * it. Queries only read the traces: a new query runs the analysis on the traces in memory, and
+ * a repeated one returns the result already computed.
+ * <p>
+ * Every query takes the same optional filters: {@code from} and {@code to} (ISO dates) keep the
+ * cases active in that range, selected on a {@link CaseIntervalIndex} of the traces for a Spark
+ * log, and {@code activity} keeps the cases with an event of that activity.
+ */
+class CachedLog {
+
+    private static final int MAX_RESULTS = 256;
+
+    private final String name;
+    private final String path;
+    private final JavaPairRDD<CaseId, Trace> traces;
+    private final LocalLog localTraces;
+    private final long cases;
+    private CaseIntervalIndex intervals;
+    /*
+    Results of the queries by query string, least recently used first
+     */
+    private final Map<String, Object> results = Collections.synchronizedMap(
+            new LinkedHashMap<String, Object>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                    return size() > MAX_RESULTS;
+                }
+            });
+
+    private CachedLog(String name, String path, JavaPairRDD<CaseId, Trace> traces, LocalLog localTraces, long cases) {
+        this.name = name;
+        this.path = path;
+        this.traces = traces;
+        this.localTraces = localTraces;
+        this.cases = cases;
+    }
+
+    /**
+     * Builds the traces of the log and caches them, with the given Spark context or, if null,
+     * with the {@link LocalEngine}.
+     */
+    static CachedLog load(String name, String path, JavaSparkContext sc, String[] header, EventSchema schema) throws IOException {
+        if (sc == null) {
+            LocalLog log = new LocalEngine().read(path, header, schema);
+            return new CachedLog(name, path, null, log, log.count());
+        }
+        JavaRDD<String> rawLogRDD = sc.textFile(path);
+        JavaPairRDD<CaseId, Trace> traces = LogSummary.buildTraces(LogSummary.buildEvents(rawLogRDD, header, schema),
+                new CasePartitioner(rawLogRDD.partitions().size()));
+        return new CachedLog(name, path, traces, null, traces.count());
+    }
+
+    void unload() {
+        if (intervals != null) {
+            intervals.unpersist();
+        }
+        if (traces != null) {
+            traces.unpersist();
+        }
+        results.clear();
+    }
+
+    Map<String, Object> describe() {
+        Map<String, Object> d = new LinkedHashMap<>();
+        d.put("name", name);
+        d.put("path", path);
+        d.put("engine", traces != null ? "spark" : "local");
+        d.put("cases", cases);
+        d.put("cachedResults", results.size());
+        return d;
+    }
+
+    /**
+     * @return the result of the query, computed if it is not cached
+     */
+    Object query(String kind, Map<String, String> params) {
+        String key = kind + new TreeMap<>(params);
+        Object result = results.get(key);
+        if (result == null) {
+            result = compute(kind, params);
+            results.put(key, result);
+        }
+        return result;
+    }
+
+    private Object compute(String kind, Map<String, String> params) {
+        switch (kind) {
+            case "summary":
+                return summary(params);
+            case "dfg":
+                return dfg(params);
+            case "network":
+                return network(params);
+            default:
+                throw new NoSuchElementException("Unknown query: " + kind);
+        }
+    }
+
+    private Map<String, Object> summary(Map<String, String> params) {
+        ActivityClassOverview overview;
+        long[] counts;
+        if (localTraces != null) {
+            LocalLog log = filter(localTraces, params);
+            overview = new ActivityClassOverviewBuilder(log).build();
+            counts = log.aggregate(new long[2], CachedLog::count, CachedLog::sum);
+        } else {
+            JavaPairRDD<CaseId, Trace> t = filter(params);
+            overview = new ActivityClassOverviewBuilder(t).build();
+            counts = t.treeAggregate(new long[2], (c, x) -> count(c, x._2()), CachedLog::sum);
+        }
+        Map<String, Object> activities = new TreeMap<>();
+        Map<ActivityClass, Long> frequency = overview.frequency();
+        Map<ActivityClass, Double> meanDuration = overview.meanDuration();
+        frequency.forEach((a, f) -> {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("frequency", f);
+            stats.put("meanDurationMinutes", meanDuration.get(a));
+            activities.put(a.toString(), stats);
+        });
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("log", name);
+        summary.put("cases", counts[0]);
+        summary.put("events", counts[1]);
+        summary.put("activities", activities);
+        return summary;
+    }
+
+    private Map<String, Object> dfg(Map<String, String> params) {
+        DirectlyFollowsGraph dfg = localTraces != null
+                ? new DFGBuilder(filter(localTraces, params)).build()
+                : new DFGBuilder(filter(params)).build();
+        List<Object> nodes = new ArrayList<>();
+        List<Object> edges = new ArrayList<>();
+        for (int i = 0; i < dfg.size(); i++) {
+            Map<String, Object> node = new LinkedHashMap<>();
+            node.put("activity", dfg.activity(i).toString());
+            node.put("frequency", dfg.nodeFrequency(i));
+            node.put("start", dfg.startFrequency(i));
+            node.put("end", dfg.endFrequency(i));
+            nodes.add(node);
+            for (int j = 0; j < dfg.size(); j++) {
+                if (dfg.frequency(i, j) > 0) {
+                    Map<String, Object> edge = new LinkedHashMap<>();
+                    edge.put("from", dfg.activity(i).toString());
+                    edge.put("to", dfg.activity(j).toString());
+                    edge.put("frequency", dfg.frequency(i, j));
+                    DurationSketch d = dfg.duration(i, j);
+                    edge.put("medianMillis", d == null || d.count() == 0 ? null : d.median());
+                    edges.add(edge);
+                }
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("log", name);
+        result.put("traces", dfg.traceCount());
+        result.put("nodes", nodes);
+        result.put("edges", edges);
+        return result;
+    }
+
+    private Map<String, Object> network(Map<String, String> params) {
+        String type = params.getOrDefault("type", "handover");
+        SocialNetwork<?> sn = builder(type, params).build();
+        List<Object> edges = new ArrayList<>();
+        for (DefaultWeightedEdge e : sn.sGraph.edgeSet()) {
+            Map<String, Object> edge = new LinkedHashMap<>();
+            edge.put("from", String.valueOf(sn.sGraph.getEdgeSource(e)));
+            edge.put("to", String.valueOf(sn.sGraph.getEdgeTarget(e)));
+            edge.put("weight", sn.sGraph.getEdgeWeight(e));
+            edges.add(edge);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("log", name);
+        result.put("type", type);
+        result.put("edges", edges);
+        return result;
+    }
+
+    private SNBuilder builder(String type, Map<String, String> params) {
+        switch (type) {
+            case "handover":
+                return localTraces != null ? new HandOverSNBuilder(filter(localTraces, params)) : new HandOverSNBuilder(filter(params));
+            case "casecoworker":
+                return localTraces != null ? new CaseCoworkerSNBuilder(filter(localTraces, params)) : new CaseCoworkerSNBuilder(filter(params));
+            case "activitycoworker":
+                return localTraces != null ? new ActivityCoworkerSNBuilder(filter(localTraces, params)) : new ActivityCoworkerSNBuilder(filter(params));
+            default:
+                throw new IllegalArgumentException("Unknown network type: " + type + " (handover, casecoworker, activitycoworker)");
+        }
+    }
+
+    /**
+     * @return the traces of a Spark log selected by the filters of the query
+     */
+    private JavaPairRDD<CaseId, Trace> filter(Map<String, String> params) {
+        JavaPairRDD<CaseId, Trace> t = traces;
+        if (params.containsKey("from") || params.containsKey("to")) {
+            t = intervals().active(time(params, "from", new DateTime(Long.MIN_VALUE / 2)), time(params, "to", new DateTime(Long.MAX_VALUE / 2)));
+        }
+        String activity = params.get("activity");
+        if (activity != null) {
+            ActivityClass a = new ActivityClass(activity);
+            t = t.filter(x -> hasActivity(x._2(), a));
+        }
+        return t;
+    }
+
+    private static LocalLog filter(LocalLog log, Map<String, String> params) {
+        LocalLog l = log;
+        if (params.containsKey("from") || params.containsKey("to")) {
+            long from = time(params, "from", new DateTime(Long.MIN_VALUE / 2)).getMillis();
+            long to = time(params, "to", new DateTime(Long.MAX_VALUE / 2)).getMillis();
+            l = l.filter(t -> active(t, from, to));
+        }
+        String activity = params.get("activity");
+        if (activity != null) {
+            ActivityClass a = new ActivityClass(activity);
+            l = l.filter(t -> hasActivity(t, a));
+        }
+        return l;
+    }
+
+    private synchronized CaseIntervalIndex intervals() {
+        if (intervals == null) {
+            intervals = new CaseIntervalIndex(traces);
+        }
+        return intervals;
+    }
+
+    private static DateTime time(Map<String, String> params, String name, DateTime otherwise) {
+        String value = params.get(name);
+        if (value == null) {
+            return otherwise;
+        }
+        try {
+            return DateTime.parse(value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid " + name + " date: " + value);
+        }
+    }
+
+    /**
+     * Whether the case is active in [from, to), as {@link CaseIntervalIndex#active}.
+     */
+    private static boolean active(Trace t, long from, long to) {
+        if (t.size() == 0 || t.getStartTS() == null) {
+            return false;
+        }
+        long start = t.getStartTS().getMillis();
+        DateTime end = t.getEndTS() != null ? t.getEndTS() : t.getEndEvent().getStart();
+        return start < to && Math.max(start, end == null ? start : end.getMillis()) >= from;
+    }
+
+    private static boolean hasActivity(Trace t, ActivityClass a) {
+        for (Event e : t.getOrderedEvents().values()) {
+            if (a.equals(e.getActivityClass())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long[] count(long[] c, Trace t) {
+        c[0]++;
+        c[1] += t.size();
+        return c;
+    }
+
+    private static long[] sum(long[] c1, long[] c2) {
+        c1[0] += c2[0];
+        c1[1] += c2[1];
+        return c1;
+    }
+}
@@ -0,0 +1,219 @@
+package org.ag.processmining.sna.export;
+
+import org.ag.processmining.log.model.Dictionary;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only view of a social network exported in the CSR format by {@link SocialNetworkExporter}.
+ * The part files are memory-mapped, so opening a network only costs reading the manifest and the
+ * vertex names; edges are paged in by the OS on access.
+ * <p>
+ * Each column of a part file is mapped as a single buffer, hence a part may hold at most 2^28 edges
+ * (2GB of weights); export with more partitions for larger networks.
+ */
+public class CsrNetworkReader implements Closeable {
+
+    private static final int OFFSETS_HEADER = 12;
+
+    private final String[] vertexNames;
+    private final Map<String, Integer> vertexIds;
+    private final int[] partFirstSource;
+    private final Part[] parts;
+    private final long edgeCount;
+
+    private CsrNetworkReader(String[] vertexNames, List<Part> parts) {
+        this.vertexNames = vertexNames;
+        this.vertexIds = new HashMap<>(vertexNames.length * 2);
+        for (int i = 0; i < vertexNames.length; i++) {
+            vertexIds.put(vertexNames[i], i);
+        }
+        this.parts = parts.toArray(new Part[parts.size()]);
+        this.partFirstSource = new int[this.parts.length];
+        long edges = 0;
+        for (int i = 0; i < this.parts.length; i++) {
+            partFirstSource[i] = this.parts[i].firstSrc;
+            edges += this.parts[i].edgeCount;
+        }
+        this.edgeCount = edges;
+    }
+
+    public static CsrNetworkReader open(String dir) throws IOException {
+        String format = null;
+        List<String> partNames = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(dir, SocialNetworkExporter.MANIFEST_FILE), StandardCharsets.UTF_8)) {
+            if (line.startsWith("format=")) {
+                format = line.substring("format=".length());
+            } else if (line.startsWith("part=")) {
+                partNames.add(line.substring("part=".length()).split(" ")[0]);
+            }
+        }
+        if (!SocialNetworkExporter.Format.CSR.name().equals(format)) {
+            throw new IOException(dir + " does not hold a CSR export (format " + format + ")");
+        }
+        String[] names;
+        try (InputStream in = new FileInputStream(new File(dir, SocialNetworkExporter.DICTIONARY_FILE))) {
+            names = Dictionary.readNames(in);
+        }
+        List<Part> parts = new ArrayList<>();
+        for (String partName : partNames) {
+            Part p = Part.map(dir, partName);
+            if (p.srcCount > 0) {
+                parts.add(p);
+            }
+        }
+        parts.sort((x, y) -> Integer.compare(x.firstSrc, y.firstSrc));
+        return new CsrNetworkReader(names, parts);
+    }
+
+    private static MappedByteBuffer mapFile(String dir, String file) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(dir, file), StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is larger than 2GB, export with more partitions");
+            }
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+    }
+
+    public int numVertices() {
+        return vertexNames.length;
+    }
+
+    public long numEdges() {
+        return edgeCount;
+    }
+
+    public String vertexName(int id) {
+        return vertexNames[id];
+    }
+
+    /**
+     * @return the id of the named vertex, or -1 if the network does not contain it
+     */
+    public int vertexId(String name) {
+        Integer id = vertexIds.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public int outDegree(int src) {
+        Part p = part(src);
+        return p == null ? 0 : (int) (p.offset(src + 1) - p.offset(src));
+    }
+
+    /**
+     * @return the target of the k-th outgoing edge of {@code src}, edges being sorted by target
+     */
+    public int target(int src, int k) {
+        Part p = part(src);
+        return p.targets.getInt((int) (p.offset(src) + k) << 2);
+    }
+
+    public double targetWeight(int src, int k) {
+        Part p = part(src);
+        return p.weights.getDouble((int) (p.offset(src) + k) << 3);
+    }
+
+    /**
+     * @return the weight of the edge src -> dst, or 0 if there is none
+     */
+    public double weight(int src, int dst) {
+        Part p = part(src);
+        if (p == null) {
+            return 0;
+        }
+        int lo = (int) p.offset(src);
+        int hi = (int) p.offset(src + 1) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int t = p.targets.getInt(mid << 2);
+            if (t < dst) {
+                lo = mid + 1;
+            } else if (t > dst) {
+                hi = mid - 1;
+            } else {
+                return p.weights.getDouble(mid << 3);
+            }
+        }
+        return 0;
+    }
+
+    public void forEachEdge(EdgeVisitor visitor) {
+        for (Part p : parts) {
+            for (int s = p.firstSrc; s < p.firstSrc + p.srcCount; s++) {
+                int end = (int) p.offset(s + 1);
+                for (int e = (int) p.offset(s); e < end; e++) {
+                    visitor.visit(s, p.targets.getInt(e << 2), p.weights.getDouble(e << 3));
+                }
+            }
+        }
+    }
+
+    private Part part(int src) {
+        int lo = 0;
+        int hi = partFirstSource.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (partFirstSource[mid] <= src) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (hi < 0) {
+            return null;
+        }
+        Part p = parts[hi];
+        return src < p.firstSrc + p.srcCount ? p : null;
+    }
+
+    @Override
+    public void close() {
+        // Mapped buffers are released when garbage collected, nothing else is held open.
+    }
+
+    public interface EdgeVisitor {
+        void visit(int src, int dst, double weight);
+    }
+
+    private static class Part {
+        final int firstSrc;
+        final int srcCount;
+        final long edgeCount;
+        final ByteBuffer offsets;
+        final ByteBuffer targets;
+        final ByteBuffer weights;
+
+        Part(int firstSrc, int srcCount, ByteBuffer offsets, ByteBuffer targets, ByteBuffer weights) {
+            this.firstSrc = firstSrc;
+            this.srcCount = srcCount;
+            this.offsets = offsets;
+            this.targets = targets;
+            this.weights = weights;
+            this.edgeCount = offset(firstSrc + srcCount);
+        }
+
+        static Part map(String dir, String name) throws IOException {
+            MappedByteBuffer offsets = mapFile(dir, name + ".offsets");
+            if (offsets.getInt(0) != SocialNetworkExporter.CSR_MAGIC) {
+                throw new IOException(name + ".offsets is not a CSR offsets file");
+            }
+            return new Part(offsets.getInt(4), offsets.getInt(8), offsets,
+                    mapFile(dir, name + ".targets"), mapFile(dir, name + ".weights"));
+        }
+
+        long offset(int src) {
+            return offsets.getLong(OFFSETS_HEADER + ((src - firstSrc) << 3));
+        }
+    }
+}
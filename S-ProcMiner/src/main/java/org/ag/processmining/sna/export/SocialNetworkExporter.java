@@ -0,0 +1,289 @@
+package org.ag.processmining.sna.export;
+
+import org.ag.processmining.log.model.Dictionary;
+import org.ag.processmining.log.model.Originator;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.Partitioner;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+import scala.Tuple2;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Writes the relations of a social network (see {@link org.ag.processmining.sna.snbuilder.SNBuilder#relations()})
+ * to a directory, one file per partition, straight from the executors. Only the vertex dictionary and
+ * the per-partition file summaries go through the driver.
+ * <p>
+ * Layout of the output directory:
+ * <ul>
+ * <li>{@code vertices.dict}: originator names by vertex id (see {@link Dictionary#write(OutputStream)})</li>
+ * <li>CSR: {@code part-NNNNN.offsets|.targets|.weights}, each partition holding a contiguous range of sources</li>
+ * <li>CSV: {@code part-NNNNN.csv} with a {@code source,target,weight} header</li>
+ * <li>GraphML: {@code part-NNNNN.graphml} edge fragments framed by {@code 00-header.graphml} and
+ * {@code zz-footer.graphml}; concatenating the {@code .graphml} files in name order yields the
+ * whole document</li>
+ * <li>{@code _manifest}: format, number of vertices and edges, and one line per part file</li>
+ * </ul>
+ * CSR files are big-endian, as written by {@link DataOutputStream}, and are read by {@link CsrNetworkReader}.
+ */
+public class SocialNetworkExporter implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    static final int CSR_MAGIC = 0x43535231; // "CSR1"
+    static final String DICTIONARY_FILE = "vertices.dict";
+    static final String MANIFEST_FILE = "_manifest";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Format format;
+    private final int numPartitions;
+
+    public SocialNetworkExporter(Format format, int numPartitions) {
+        this.format = format;
+        this.numPartitions = numPartitions;
+    }
+
+    static String partName(int partition) {
+        return String.format("part-%05d", partition);
+    }
+
+    private static FileSystem fileSystem(String dir) throws IOException {
+        return FileSystem.get(URI.create(dir), new Configuration());
+    }
+
+    private static String escapeXml(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '"':
+                    sb.append("&quot;");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String escapeCsv(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) {
+            return s;
+        }
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Exports the relations to {@code outputDir} (any Hadoop supported file system) and returns the
+     * number of exported edges.
+     */
+    public long export(JavaPairRDD<Tuple2<Originator, Originator>, Double> relations, String outputDir) throws IOException {
+        JavaSparkContext sc = JavaSparkContext.fromSparkContext(relations.context());
+        Dictionary<Originator> vertices = Dictionary.of(relations.keys()
+                .flatMap(x -> Arrays.asList(x._1(), x._2()))
+                .distinct()
+                .collect());
+        Broadcast<Dictionary<Originator>> bVertices = sc.broadcast(vertices);
+
+        FileSystem fs = fileSystem(outputDir);
+        fs.mkdirs(new Path(outputDir));
+        try (OutputStream out = fs.create(new Path(outputDir, DICTIONARY_FILE), true)) {
+            vertices.write(out);
+        }
+
+        JavaPairRDD<Long, Double> edges = relations.mapToPair(x -> new Tuple2<>(
+                edgeKey(bVertices.value().id(x._1()._1()), bVertices.value().id(x._1()._2())), x._2()));
+
+        List<String> parts;
+        switch (format) {
+            case CSR:
+                parts = edges
+                        .repartitionAndSortWithinPartitions(new SourceRangePartitioner(vertices.size(), numPartitions))
+                        .mapPartitionsWithIndex((idx, it) -> Collections.singletonList(writeCsr(outputDir, idx,
+                                SourceRangePartitioner.firstSource(idx, bVertices.value().size(), numPartitions),
+                                SourceRangePartitioner.firstSource(idx + 1, bVertices.value().size(), numPartitions),
+                                it)).iterator(), true)
+                        .collect();
+                break;
+            case CSV:
+                parts = edges.coalesce(numPartitions)
+                        .mapPartitionsWithIndex((idx, it) -> Collections.singletonList(
+                                writeCsv(outputDir, idx, bVertices.value(), it)).iterator(), true)
+                        .collect();
+                break;
+            case GRAPHML:
+                writeGraphMLFrame(fs, outputDir, vertices);
+                parts = edges.coalesce(numPartitions)
+                        .mapPartitionsWithIndex((idx, it) -> Collections.singletonList(
+                                writeGraphML(outputDir, idx, it)).iterator(), true)
+                        .collect();
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported format " + format);
+        }
+
+        long edgeCount = 0;
+        StringBuilder manifest = new StringBuilder()
+                .append("format=").append(format).append('\n')
+                .append("vertices=").append(vertices.size()).append('\n');
+        for (String part : parts) {
+            edgeCount += Long.parseLong(part.substring(part.lastIndexOf(' ') + 1));
+            manifest.append("part=").append(part).append('\n');
+        }
+        manifest.append("edges=").append(edgeCount).append('\n');
+        try (OutputStream out = fs.create(new Path(outputDir, MANIFEST_FILE), true)) {
+            out.write(manifest.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        bVertices.unpersist();
+        return edgeCount;
+    }
+
+    static long edgeKey(int src, int dst) {
+        return ((long) src << 32) | (dst & 0xFFFFFFFFL);
+    }
+
+    /*
+    Writes the sorted edges of a partition as CSR columns. Sources without edges still get an offset
+    so that the offsets of source s are found at index s - firstSrc.
+     */
+    private static String writeCsr(String dir, int idx, int firstSrc, int endSrc, Iterator<Tuple2<Long, Double>> it) throws IOException {
+        FileSystem fs = fileSystem(dir);
+        String name = partName(idx);
+        long edgeCount = 0;
+        try (DataOutputStream offsets = new DataOutputStream(new BufferedOutputStream(fs.create(new Path(dir, name + ".offsets"), true), BUFFER_SIZE));
+             DataOutputStream targets = new DataOutputStream(new BufferedOutputStream(fs.create(new Path(dir, name + ".targets"), true), BUFFER_SIZE));
+             DataOutputStream weights = new DataOutputStream(new BufferedOutputStream(fs.create(new Path(dir, name + ".weights"), true), BUFFER_SIZE))) {
+            offsets.writeInt(CSR_MAGIC);
+            offsets.writeInt(firstSrc);
+            offsets.writeInt(endSrc - firstSrc);
+            int nextSrc = firstSrc;
+            while (it.hasNext()) {
+                Tuple2<Long, Double> e = it.next();
+                int src = (int) (e._1() >>> 32);
+                while (nextSrc <= src) {
+                    offsets.writeLong(edgeCount);
+                    nextSrc++;
+                }
+                targets.writeInt((int) e._1().longValue());
+                weights.writeDouble(e._2());
+                edgeCount++;
+            }
+            while (nextSrc <= endSrc) {
+                offsets.writeLong(edgeCount);
+                nextSrc++;
+            }
+        }
+        return name + " " + firstSrc + " " + endSrc + " " + edgeCount;
+    }
+
+    private static String writeCsv(String dir, int idx, Dictionary<Originator> vertices, Iterator<Tuple2<Long, Double>> it) throws IOException {
+        String name = partName(idx) + ".csv";
+        long edgeCount = 0;
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(
+                fileSystem(dir).create(new Path(dir, name), true), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            w.write("source,target,weight\n");
+            while (it.hasNext()) {
+                Tuple2<Long, Double> e = it.next();
+                w.write(escapeCsv(vertices.get((int) (e._1() >>> 32)).toString()));
+                w.write(',');
+                w.write(escapeCsv(vertices.get((int) e._1().longValue()).toString()));
+                w.write(',');
+                w.write(Double.toString(e._2()));
+                w.write('\n');
+                edgeCount++;
+            }
+        }
+        return name + " " + edgeCount;
+    }
+
+    private static String writeGraphML(String dir, int idx, Iterator<Tuple2<Long, Double>> it) throws IOException {
+        String name = partName(idx) + ".graphml";
+        long edgeCount = 0;
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(
+                fileSystem(dir).create(new Path(dir, name), true), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            while (it.hasNext()) {
+                Tuple2<Long, Double> e = it.next();
+                w.write("<edge source=\"n");
+                w.write(Long.toString(e._1() >>> 32));
+                w.write("\" target=\"n");
+                w.write(Long.toString(e._1() & 0xFFFFFFFFL));
+                w.write("\"><data key=\"weight\">");
+                w.write(Double.toString(e._2()));
+                w.write("</data></edge>\n");
+                edgeCount++;
+            }
+        }
+        return name + " " + edgeCount;
+    }
+
+    private static void writeGraphMLFrame(FileSystem fs, String dir, Dictionary<Originator> vertices) throws IOException {
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(
+                fs.create(new Path(dir, "00-header.graphml"), true), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            w.write("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n");
+            w.write("<key id=\"name\" for=\"node\" attr.name=\"name\" attr.type=\"string\"/>\n");
+            w.write("<key id=\"weight\" for=\"edge\" attr.name=\"weight\" attr.type=\"double\"/>\n");
+            w.write("<graph id=\"G\" edgedefault=\"directed\">\n");
+            for (int i = 0; i < vertices.size(); i++) {
+                w.write("<node id=\"n" + i + "\"><data key=\"name\">" + escapeXml(vertices.get(i).toString()) + "</data></node>\n");
+            }
+        }
+        try (Writer w = new OutputStreamWriter(fs.create(new Path(dir, "zz-footer.graphml"), true), StandardCharsets.UTF_8)) {
+            w.write("</graph>\n</graphml>\n");
+        }
+    }
+
+    public enum Format {
+        CSR,
+        CSV,
+        GRAPHML
+    }
+
+    /**
+     * Assigns contiguous, equally sized ranges of source vertices to partitions so that every CSR
+     * part file covers one range of the offsets array.
+     */
+    static class SourceRangePartitioner extends Partitioner {
+
+        static final long serialVersionUID = 1L;
+        private final int numVertices;
+        private final int numPartitions;
+
+        SourceRangePartitioner(int numVertices, int numPartitions) {
+            this.numVertices = Math.max(numVertices, 1);
+            this.numPartitions = numPartitions;
+        }
+
+        /*
+        Smallest source s such that s * numPartitions / numVertices >= partition
+         */
+        static int firstSource(int partition, int numVertices, int numPartitions) {
+            return (int) (((long) partition * numVertices + numPartitions - 1) / numPartitions);
+        }
+
+        @Override
+        public int numPartitions() {
+            return numPartitions;
+        }
+
+        @Override
+        public int getPartition(Object key) {
+            long src = ((Long) key) >>> 32;
+            return (int) (src * numPartitions / numVertices);
+        }
+    }
+}
@@ -1,16 +1,19 @@
 package org.ag.processmining.sna.snbuilder;
 
+import org.ag.processmining.index.CaseIntervalIndex;
+import org.ag.processmining.local.LocalLog;
 import org.ag.processmining.log.model.ActivityClass;
 import org.ag.processmining.log.model.CaseId;
 import org.ag.processmining.log.model.Originator;
 import org.ag.processmining.log.model.Trace;
 import org.ag.processmining.sna.socialnetwork.ActivityCoworkerSocialNetwork;
-import org.apache.commons.collections.map.HashedMap;
 import org.apache.spark.api.java.JavaPairRDD;
+import org.joda.time.DateTime;
 import scala.Tuple2;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -26,34 +29,70 @@ public class ActivityCoworkerSNBuilder extends SNBuilder implements Serializable
         super(traces) ;
     }
 
+    public ActivityCoworkerSNBuilder(LocalLog traces){
+        super(traces) ;
+    }
+
+    public ActivityCoworkerSNBuilder(CaseIntervalIndex index, DateTime from, DateTime to){
+        super(index, from, to) ;
+    }
+
     @Override
-    public ActivityCoworkerSocialNetwork build() {
-        try{
-            Map<Tuple2<ActivityClass, org.ag.processmining.log.model.Originator>, Long> k = traces.flatMapToPair(x -> x._2().activityClassOriginator())
-                    .countByValue();
-            Map<ActivityClass,List<Tuple2<Originator,Long>>> res = new HashedMap() ;
-            k.keySet().stream().forEach(x->{
-                if (!res.containsKey(x._1())){
-                    res.put(x._1(),new ArrayList<Tuple2<Originator, Long>>()) ;
-                }
-                res.get(x._1()).add(new Tuple2<Originator, Long>(x._2(),k.get(x)));
-            });
-
-            // Building the social network
-            ActivityCoworkerSocialNetwork rawSn = new ActivityCoworkerSocialNetwork<>() ;
-            res.values().stream().forEach(x->{
-                for (int i=0; i<x.size()-1; i++){
-                    for(int j=i+1;j<x.size();j++){
-                        rawSn.addRelation(x.get(i)._1(),x.get(j)._1(),Math.min(x.get(i)._2(),x.get(j)._2()));
-                    }
-                }
-            });
-            return rawSn ;
-        }
-        catch(Exception e){
-           return null ;
-        }
+    public JavaPairRDD<Tuple2<Originator, Originator>, Double> relations() {
+        return traces.flatMapToPair(x -> x._2().activityClassOriginator())
+                .mapToPair(x -> new Tuple2<>(x, 1L))
+                .reduceByKey((x, y) -> x + y)
+                .mapToPair(x -> new Tuple2<>(x._1()._1(), new Tuple2<>(x._1()._2(), x._2())))
+                .groupByKey()
+                .flatMapToPair(x -> {
+                    List<Tuple2<Originator, Long>> workers = new ArrayList<>();
+                    x._2().forEach(workers::add);
+                    return coworkerRelations(workers);
+                })
+                .reduceByKey((x, y) -> x + y);
     }
 
+    /**
+     * @return the relations of the originators of one activity, weighted by the smaller of their
+     * numbers of events of the activity; the undirected pair is keyed in originator order,
+     * whatever the activity lists them in
+     */
+    private static List<Tuple2<Tuple2<Originator, Originator>, Double>> coworkerRelations(List<Tuple2<Originator, Long>> workers) {
+        List<Tuple2<Tuple2<Originator, Originator>, Double>> rels = new ArrayList<>();
+        for (int i=0; i<workers.size()-1; i++){
+            for(int j=i+1;j<workers.size();j++){
+                Originator a = workers.get(i)._1();
+                Originator b = workers.get(j)._1();
+                rels.add(new Tuple2<>(a.compareTo(b) <= 0 ? new Tuple2<>(a, b) : new Tuple2<>(b, a),
+                        (double) Math.min(workers.get(i)._2(), workers.get(j)._2())));
+            }
+        }
+        return rels;
+    }
 
+    /**
+     * Builds the network from the summed relations, on either engine, so that a log gives the same
+     * weights whatever the engine.
+     */
+    @Override
+    public ActivityCoworkerSocialNetwork build() {
+        if (localTraces == null) {
+            return network(new ActivityCoworkerSocialNetwork<>(), relations().collectAsMap());
+        }
+        Map<Tuple2<ActivityClass, Originator>, Long> k = localTraces.aggregate(new HashMap<Tuple2<ActivityClass, Originator>, Long>(),
+                (m, t) -> {
+                    t.activityClassOriginator().forEach(x -> m.merge(x, 1L, Long::sum));
+                    return m;
+                },
+                (m1, m2) -> {
+                    m2.forEach((x, n) -> m1.merge(x, n, Long::sum));
+                    return m1;
+                });
+        Map<ActivityClass, List<Tuple2<Originator, Long>>> byActivity = new HashMap<>();
+        k.forEach((x, n) -> byActivity.computeIfAbsent(x._1(), a -> new ArrayList<>()).add(new Tuple2<>(x._2(), n)));
+        Map<Tuple2<Originator, Originator>, Double> relations = new HashMap<>();
+        byActivity.values().forEach(workers -> coworkerRelations(workers)
+                .forEach(r -> relations.merge(r._1(), r._2(), Double::sum)));
+        return network(new ActivityCoworkerSocialNetwork<>(), relations);
+    }
 }
@@ -1,12 +1,18 @@
 package org.ag.processmining.sna.snbuilder;
 
+import org.ag.processmining.index.CaseIntervalIndex;
+import org.ag.processmining.local.LocalLog;
 import org.ag.processmining.log.model.CaseId;
 import org.ag.processmining.log.model.Trace;
 import org.ag.processmining.sna.socialnetwork.CaseCoworkerSocialNetwork;
 import org.apache.spark.api.java.JavaPairRDD;
+import org.joda.time.DateTime;
+import scala.Tuple2;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 /**
@@ -21,28 +27,44 @@ public class CaseCoworkerSNBuilder<Originator> extends SNBuilder implements Seri
     public CaseCoworkerSNBuilder(JavaPairRDD<CaseId, Trace> traces){
         super(traces) ;
     }
+
+    public CaseCoworkerSNBuilder(LocalLog traces){
+        super(traces) ;
+    }
+
+    public CaseCoworkerSNBuilder(CaseIntervalIndex index, DateTime from, DateTime to){
+        super(index, from, to) ;
+    }
+
     @Override
     public CaseCoworkerSocialNetwork build() {
-        try{
-            return traces.map(x -> buildTraceSocialNetwork(x._2())).reduce((x, y) -> x.merge(y));
-        }
-        catch(Exception e){
-            return null ;
+        if (localTraces != null) {
+            return network(new CaseCoworkerSocialNetwork<>(), localRelations(this::traceRelations));
         }
+        return network(new CaseCoworkerSocialNetwork<>(), relations().collectAsMap());
     }
 
-    private CaseCoworkerSocialNetwork buildTraceSocialNetwork(Trace trace){
-        CaseCoworkerSocialNetwork localSn = new CaseCoworkerSocialNetwork();
-        ArrayList<Originator> originators =  new ArrayList(
+    @Override
+    public JavaPairRDD<Tuple2<org.ag.processmining.log.model.Originator, org.ag.processmining.log.model.Originator>, Double> relations() {
+        return traces.flatMapToPair(x -> traceRelations(x._2()))
+                .reduceByKey((x, y) -> x + y);
+    }
+
+    /**
+     * @return the pairs of distinct originators of the trace, each undirected pair keyed in
+     * originator order so that all the traces count it under one key
+     */
+    private List<Tuple2<Tuple2<org.ag.processmining.log.model.Originator, org.ag.processmining.log.model.Originator>, Double>> traceRelations(Trace trace){
+        List<org.ag.processmining.log.model.Originator> originators = new ArrayList<>(
                 trace.getOrderedEvents().values().stream()
                         .map(x -> x.getOriginator())
-                        .collect(Collectors.toSet()));
-
+                        .collect(Collectors.toCollection(TreeSet::new)));
+        List<Tuple2<Tuple2<org.ag.processmining.log.model.Originator, org.ag.processmining.log.model.Originator>, Double>> rels = new ArrayList<>();
         for (int i=0; i<originators.size()-1; i++){
             for(int j=i+1;j<originators.size();j++){
-                localSn.addRelation(originators.get(i),originators.get(j));
+                rels.add(new Tuple2<>(new Tuple2<>(originators.get(i), originators.get(j)), 1.0));
             }
         }
-        return localSn ;
+        return rels;
     }
 }
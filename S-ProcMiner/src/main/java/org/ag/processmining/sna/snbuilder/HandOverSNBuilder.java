@@ -1,14 +1,20 @@
 package org.ag.processmining.sna.snbuilder;
 
+import org.ag.processmining.index.CaseIntervalIndex;
+import org.ag.processmining.local.LocalLog;
 import org.ag.processmining.log.model.CaseId;
 import org.ag.processmining.log.model.Originator;
+import org.ag.processmining.log.model.Event;
 import org.ag.processmining.log.model.Trace;
+import org.ag.processmining.log.summarizer.overview.SegmentedTraces;
 import org.ag.processmining.sna.socialnetwork.HandoverSocialNetwork;
 import org.apache.spark.api.java.JavaPairRDD;
+import org.joda.time.DateTime;
+import scala.Tuple2;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Created by ahmed.gater on 29/10/2016.
@@ -21,27 +27,53 @@ public class HandOverSNBuilder<Orginator> extends SNBuilder implements Serializa
         super(traces) ;
     }
 
+    public HandOverSNBuilder(LocalLog traces){
+        super(traces) ;
+    }
+
+    public HandOverSNBuilder(CaseIntervalIndex index, DateTime from, DateTime to){
+        super(index, from, to) ;
+    }
+
+    public HandOverSNBuilder(SegmentedTraces traces){
+        super(traces) ;
+    }
+
     @Override
     public HandoverSocialNetwork build() {
-        try{
-            return traces.map(x -> buildTraceSocialNetwork(x._2()))
-                    .reduce((x, y) -> x.merge(y));
+        if (localTraces != null) {
+            return network(new HandoverSocialNetwork<>(), localRelations(this::traceRelations));
         }
-        catch(Exception e){
-            return null ;
+        return network(new HandoverSocialNetwork<>(), relations().collectAsMap());
+    }
+
+    @Override
+    public JavaPairRDD<Tuple2<Originator, Originator>, Double> relations() {
+        if (segmentedTraces != null) {
+            // handovers within the segments, and from the last event of a segment to the first of the next one
+            return segmentedTraces.getSegments().flatMapToPair(x -> traceRelations(x._2()))
+                    .union(segmentedTraces.seams().flatMapToPair(x -> seamRelations(x._2())))
+                    .reduceByKey((x, y) -> x + y);
+        }
+        return traces.flatMapToPair(x -> traceRelations(x._2()))
+                .reduceByKey((x, y) -> x + y);
+    }
+
+    private List<Tuple2<Tuple2<Originator, Originator>, Double>> traceRelations(Trace trace){
+        List<Originator> originators = trace.getOriginators();
+        List<Tuple2<Tuple2<Originator, Originator>, Double>> rels = new ArrayList<>(originators.size());
+        for(int i=0;i<originators.size()-1; i++){
+            rels.add(new Tuple2<>(new Tuple2<>(originators.get(i), originators.get(i + 1)), 1.0));
         }
+        return rels;
     }
 
-    private HandoverSocialNetwork buildTraceSocialNetwork(Trace trace){
-        HandoverSocialNetwork sn = new HandoverSocialNetwork();
-        List<Originator> collect = trace.getOrderedEvents().values().stream()
-                .map(x -> x.getOriginator())
-                .collect(Collectors.toList());
-        for(int i=0;i<collect.size()-1; i++){
-            List<Originator> rel = collect.subList(i, i + 2);
-            sn.addRelation(rel.get(0),rel.get(1));
+    private List<Tuple2<Tuple2<Originator, Originator>, Double>> seamRelations(List<Tuple2<Event, Event>> seams){
+        List<Tuple2<Tuple2<Originator, Originator>, Double>> rels = new ArrayList<>(seams.size());
+        for(int i=0;i<seams.size()-1; i++){
+            rels.add(new Tuple2<>(new Tuple2<>(seams.get(i)._2().getOriginator(), seams.get(i + 1)._1().getOriginator()), 1.0));
         }
-        return sn;
+        return rels;
     }
 
 
@@ -1,9 +1,20 @@
 package org.ag.processmining.sna.snbuilder;
 
+import org.ag.processmining.index.CaseIntervalIndex;
+import org.ag.processmining.local.LocalLog;
 import org.ag.processmining.log.model.CaseId;
+import org.ag.processmining.log.model.Originator;
 import org.ag.processmining.log.model.Trace;
+import org.ag.processmining.log.summarizer.overview.SegmentedTraces;
 import org.ag.processmining.sna.socialnetwork.SocialNetwork;
 import org.apache.spark.api.java.JavaPairRDD;
+import org.joda.time.DateTime;
+import scala.Tuple2;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 /**
  * Created by ahmed.gater on 29/10/2016.
@@ -11,14 +22,60 @@ import org.apache.spark.api.java.JavaPairRDD;
 public abstract class SNBuilder {
 
     JavaPairRDD<CaseId, Trace> traces ;
+    transient LocalLog localTraces ;
+    SegmentedTraces segmentedTraces ;
 
     public SNBuilder(JavaPairRDD<CaseId, Trace> traces){
         this.traces = traces ;
     }
 
+    public SNBuilder(LocalLog traces){
+        this.localTraces = traces ;
+    }
+
+    public SNBuilder(SegmentedTraces traces){
+        this.segmentedTraces = traces ;
+    }
+
+    /**
+     * Network of the cases active in [from, to), read from the partitions of the index that hold them.
+     */
+    public SNBuilder(CaseIntervalIndex index, DateTime from, DateTime to){
+        this.traces = index.active(from, to) ;
+    }
+
 
     abstract public SocialNetwork build() ;
 
+    /**
+     * The weighted relations of the network as a distributed edge list, without
+     * materializing the graph on the driver. Only available for logs given as an RDD.
+     */
+    abstract public JavaPairRDD<Tuple2<Originator, Originator>, Double> relations() ;
 
+    /**
+     * Sums the relations of every trace of a local log, partition by partition.
+     */
+    HashMap<Tuple2<Originator, Originator>, Double> localRelations(Function<Trace, List<Tuple2<Tuple2<Originator, Originator>, Double>>> traceRelations) {
+        return localTraces.aggregate(new HashMap<Tuple2<Originator, Originator>, Double>(),
+                (m, t) -> {
+                    for (Tuple2<Tuple2<Originator, Originator>, Double> r : traceRelations.apply(t)) {
+                        m.merge(r._1(), r._2(), Double::sum);
+                    }
+                    return m;
+                },
+                (m1, m2) -> {
+                    m2.forEach((k, v) -> m1.merge(k, v, Double::sum));
+                    return m1;
+                });
+    }
+
+    /**
+     * Adds the relations to the network, each relation once with its total weight.
+     */
+    static <S extends SocialNetwork<Originator>> S network(S sn, Map<Tuple2<Originator, Originator>, Double> relations) {
+        relations.forEach((r, w) -> sn.addRelation(r._1(), r._2(), w));
+        return sn;
+    }
 
 }
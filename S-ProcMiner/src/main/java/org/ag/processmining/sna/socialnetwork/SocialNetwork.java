@@ -20,14 +20,16 @@ public class SocialNetwork<T> implements Serializable {
     }
 
 
+    /**
+     * Adds the weight to the relation, created if needed: the weight of a relation is the sum of
+     * the weights added to it.
+     */
     public void addRelation(T src, T dest, double weight) {
         double nWeight = weight;
         if (!this.sGraph.containsEdge(src, dest)) {
             Graphs.addEdgeWithVertices(this.sGraph, src, dest);
-            nWeight = weight;
         } else {
-            weight = this.sGraph.getEdgeWeight(this.sGraph.getEdge(src, dest)) + weight;
-            nWeight = weight + this.sGraph.getEdgeWeight(this.sGraph.getEdge(src, dest));
+            nWeight = this.sGraph.getEdgeWeight(this.sGraph.getEdge(src, dest)) + weight;
         }
         this.sGraph.setEdgeWeight(this.sGraph.getEdge(src, dest), nWeight);
     }
@@ -37,8 +39,8 @@ public class SocialNetwork<T> implements Serializable {
     }
 
 
-    public SocialNetwork merge(SocialNetwork<T> sn1) {
-        SocialNetwork sn = new SocialNetwork<T>();
+    public SocialNetwork<T> merge(SocialNetwork<T> sn1) {
+        SocialNetwork<T> sn = new SocialNetwork<>();
         new ImmutableList.Builder<DefaultWeightedEdge>()
                 .addAll(this.sGraph.edgeSet())
                 .build().stream().forEach(e -> sn.addRelation(sGraph.getEdgeSource(e),
@@ -47,8 +49,8 @@ public class SocialNetwork<T> implements Serializable {
         new ImmutableList.Builder<DefaultWeightedEdge>()
                 .addAll(sn1.sGraph.edgeSet())
                 .build().stream().forEach(e -> sn.addRelation(sn1.sGraph.getEdgeSource(e),
-                sGraph.getEdgeTarget(e),
-                sGraph.getEdgeWeight(e)));
+                sn1.sGraph.getEdgeTarget(e),
+                sn1.sGraph.getEdgeWeight(e)));
         return sn;
     }
 }
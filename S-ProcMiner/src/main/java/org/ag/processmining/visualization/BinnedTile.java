@@ -0,0 +1,262 @@
+package org.ag.processmining.visualization;
+
+import org.joda.time.DateTime;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.LongToIntFunction;
+
+/**
+ * Grid of time buckets (columns) by rows, the binned form of a chart: for each non-empty cell, the
+ * number of points that fall in it, its dominant category and the sum of the values of its points.
+ * Cells are stored sparsely, sorted by cell index (row * columns + column).
+ */
+public class BinnedTile implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private static final int MAGIC = 0x54494c45; // "TILE"
+    /*
+    Bucket lengths a resolution is rounded up to, so that the tiles of close zoom levels align
+     */
+    private static final long[] BUCKETS = {1000L, 5000L, 15000L, 60000L, 300000L, 900000L, 3600000L, 3 * 3600000L,
+            6 * 3600000L, 12 * 3600000L, 86400000L, 7 * 86400000L, 30 * 86400000L, 365 * 86400000L};
+
+    private final long start;
+    private final long bucketMillis;
+    private final int columns;
+    private final int rows;
+    private final String[] rowLabels;
+    private final String[] categoryLabels;
+    private final long[] cells;
+    private final long[] counts;
+    private final int[] categories;
+    private final double[] values;
+
+    BinnedTile(long start, long bucketMillis, int columns, int rows, String[] rowLabels, String[] categoryLabels,
+               long[] cells, long[] counts, int[] categories, double[] values) {
+        this.start = start;
+        this.bucketMillis = bucketMillis;
+        this.columns = columns;
+        this.rows = rows;
+        this.rowLabels = rowLabels;
+        this.categoryLabels = categoryLabels;
+        this.cells = cells;
+        this.counts = counts;
+        this.categories = categories;
+        this.values = values;
+    }
+
+    /**
+     * @return the smallest round bucket length that fits the span in at most {@code columns} buckets
+     */
+    static long bucketMillis(long span, int columns) {
+        long min = (span + columns - 1) / columns;
+        for (long b : BUCKETS) {
+            if (b >= min) {
+                return b;
+            }
+        }
+        long last = BUCKETS[BUCKETS.length - 1];
+        return ((min + last - 1) / last) * last;
+    }
+
+    /**
+     * @return the start of the bucket of the given time, buckets being aligned on the epoch
+     */
+    static long align(long time, long bucketMillis) {
+        return Math.floorDiv(time, bucketMillis) * bucketMillis;
+    }
+
+    /**
+     * Collapses the accumulated (cell, category) pairs into cells.
+     *
+     * @param rowMap new row of each accumulated row, negative to drop the row; null to keep the rows
+     */
+    static BinnedTile of(GridAccumulator acc, long start, long bucketMillis, int columns, int rows, LongToIntFunction rowMap,
+                         String[] rowLabels, String[] categoryLabels) {
+        // per cell: count, count of the dominant category, dominant category, value sum
+        Map<Long, double[]> byCell = new HashMap<>();
+        acc.forEach((cell, category, count, value) -> {
+            long target = cell;
+            if (rowMap != null) {
+                int row = rowMap.applyAsInt(cell / columns);
+                if (row < 0) {
+                    return;
+                }
+                target = (long) row * columns + cell % columns;
+            }
+            double[] c = byCell.computeIfAbsent(target, k -> new double[]{0, -1, -1, 0});
+            c[0] += count;
+            if (count > c[1]) {
+                c[1] = count;
+                c[2] = category;
+            }
+            c[3] += value;
+        });
+        int n = byCell.size();
+        long[] cells = new long[n];
+        int i = 0;
+        for (long cell : byCell.keySet()) {
+            cells[i++] = cell;
+        }
+        Arrays.sort(cells);
+        long[] cellCounts = new long[n];
+        int[] categories = new int[n];
+        double[] values = new double[n];
+        for (i = 0; i < n; i++) {
+            double[] c = byCell.get(cells[i]);
+            cellCounts[i] = (long) c[0];
+            categories[i] = (int) c[2];
+            values[i] = c[3];
+        }
+        return new BinnedTile(start, bucketMillis, columns, rows, rowLabels, categoryLabels, cells, cellCounts, categories, values);
+    }
+
+    public static BinnedTile read(InputStream in) throws IOException {
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(in));
+        if (dis.readInt() != MAGIC) {
+            throw new IOException("Not a tile");
+        }
+        long start = dis.readLong();
+        long bucketMillis = dis.readLong();
+        int columns = dis.readInt();
+        int rows = dis.readInt();
+        String[] rowLabels = readLabels(dis);
+        String[] categoryLabels = readLabels(dis);
+        int n = dis.readInt();
+        long[] cells = new long[n];
+        long[] counts = new long[n];
+        int[] categories = new int[n];
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            cells[i] = dis.readLong();
+            counts[i] = dis.readLong();
+            categories[i] = dis.readInt();
+            values[i] = dis.readDouble();
+        }
+        return new BinnedTile(start, bucketMillis, columns, rows, rowLabels, categoryLabels, cells, counts, categories, values);
+    }
+
+    private static String[] readLabels(DataInputStream dis) throws IOException {
+        int n = dis.readInt();
+        if (n < 0) {
+            return null;
+        }
+        String[] labels = new String[n];
+        for (int i = 0; i < n; i++) {
+            labels[i] = dis.readUTF();
+        }
+        return labels;
+    }
+
+    private static void writeLabels(DataOutputStream dos, String[] labels) throws IOException {
+        dos.writeInt(labels == null ? -1 : labels.length);
+        if (labels != null) {
+            for (String l : labels) {
+                dos.writeUTF(l);
+            }
+        }
+    }
+
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(out));
+        dos.writeInt(MAGIC);
+        dos.writeLong(start);
+        dos.writeLong(bucketMillis);
+        dos.writeInt(columns);
+        dos.writeInt(rows);
+        writeLabels(dos, rowLabels);
+        writeLabels(dos, categoryLabels);
+        dos.writeInt(cells.length);
+        for (int i = 0; i < cells.length; i++) {
+            dos.writeLong(cells[i]);
+            dos.writeLong(counts[i]);
+            dos.writeInt(categories[i]);
+            dos.writeDouble(values[i]);
+        }
+        dos.flush();
+    }
+
+    public DateTime getStart() {
+        return new DateTime(start);
+    }
+
+    public DateTime getEnd() {
+        return new DateTime(start + columns * bucketMillis);
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the labels of the rows, null if rows are not labelled (ranks)
+     */
+    public String[] getRowLabels() {
+        return rowLabels == null ? null : rowLabels.clone();
+    }
+
+    public String[] getCategoryLabels() {
+        return categoryLabels.clone();
+    }
+
+    /**
+     * @return the number of non-empty cells
+     */
+    public int size() {
+        return cells.length;
+    }
+
+    public int row(int i) {
+        return (int) (cells[i] / columns);
+    }
+
+    public int column(int i) {
+        return (int) (cells[i] % columns);
+    }
+
+    public long count(int i) {
+        return counts[i];
+    }
+
+    /**
+     * @return the most frequent category of the cell
+     */
+    public int category(int i) {
+        return categories[i];
+    }
+
+    public double valueSum(int i) {
+        return values[i];
+    }
+
+    /**
+     * @return the number of points in the cell, 0 if it is empty
+     */
+    public long count(int row, int column) {
+        int i = Arrays.binarySearch(cells, (long) row * columns + column);
+        return i < 0 ? 0 : counts[i];
+    }
+
+    public long total() {
+        long t = 0;
+        for (long c : counts) {
+            t += c;
+        }
+        return t;
+    }
+
+    @Override
+    public String toString() {
+        return "BinnedTile{" + getStart() + " - " + getEnd() + ", " + columns + " x " + rows + ", bucket="
+                + bucketMillis + "ms, cells=" + cells.length + ", points=" + total() + "}";
+    }
+}
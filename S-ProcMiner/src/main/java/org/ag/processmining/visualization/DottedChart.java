@@ -0,0 +1,106 @@
+package org.ag.processmining.visualization;
+
+import org.ag.processmining.log.model.*;
+import org.ag.processmining.log.model.Dictionary;
+import org.ag.processmining.log.summarizer.utils.SparkUtils;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.joda.time.DateTime;
+
+import java.io.Serializable;
+
+/**
+ * Dotted chart of a log binned into a {@link BinnedTile}: columns are time buckets, rows are
+ * ranges of case ranks (cases in start time order) and the category of a cell is its most
+ * frequent activity.
+ * <p>
+ * The resolution follows the pixel budget: at most one column per horizontal pixel (rounded to a
+ * round bucket length) and one row per vertical pixel. Binning runs on the executors, only over
+ * the partitions overlapping the time range, and only the non-empty cells reach the driver.
+ */
+public class DottedChart implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    JavaPairRDD<CaseId, Trace> traces;
+    private final TimeIndex index;
+    private int width = 1920;
+    private int height = 1080;
+    private long from;
+    private long to;
+    private double fromRank = 0;
+    private double toRank = 1;
+    private int depth = 2;
+
+    /**
+     * @param traces cached traces
+     * @param index  index of the traces
+     */
+    public DottedChart(JavaPairRDD<CaseId, Trace> traces, TimeIndex index) {
+        this.traces = traces;
+        this.index = index;
+        this.from = index.getMinTime();
+        this.to = index.getMaxTime() + 1;
+    }
+
+    public DottedChart pixels(int width, int height) {
+        this.width = width;
+        this.height = height;
+        return this;
+    }
+
+    public DottedChart timeRange(DateTime from, DateTime to) {
+        this.from = from.getMillis();
+        this.to = to.getMillis();
+        return this;
+    }
+
+    /**
+     * @param fromRank first case shown, as a fraction of the cases in start time order
+     * @param toRank   end (exclusive) of the cases shown, as a fraction of the cases
+     */
+    public DottedChart rankRange(double fromRank, double toRank) {
+        this.fromRank = fromRank;
+        this.toRank = toRank;
+        return this;
+    }
+
+    public DottedChart depth(int depth) {
+        this.depth = depth;
+        return this;
+    }
+
+    public BinnedTile tile() {
+        long bucket = BinnedTile.bucketMillis(to - from, width);
+        long start = BinnedTile.align(from, bucket);
+        int columns = (int) ((to - start + bucket - 1) / bucket);
+        int rows = (int) Math.max(1, Math.min(height, Math.ceil(index.getCases() * (toRank - fromRank))));
+        long rangeFrom = from;
+        long rangeTo = to;
+        double rankFrom = fromRank;
+        double rankTo = toRank;
+        TimeIndex idx = index;
+
+        GridAccumulator acc = SparkUtils.prunePartitions(traces, index.partitionsOverlapping(from, to))
+                .treeAggregate(new GridAccumulator(), (a, t) -> {
+                    double rank = idx.rank(TimeIndex.startTime(t._2()));
+                    if (rank < rankFrom || rank >= rankTo) {
+                        return a;
+                    }
+                    long row = (long) ((rank - rankFrom) / (rankTo - rankFrom) * rows);
+                    Dictionary<ActivityClass> activities = idx.getActivities();
+                    for (Event e : t._2().getOrderedEvents().values()) {
+                        long time = TimeIndex.time(e);
+                        if (time >= rangeFrom && time < rangeTo) {
+                            a.add(row * columns + (time - start) / bucket, activities.id(e.getActivityClass()), 0);
+                        }
+                    }
+                    return a;
+                }, GridAccumulator::merge, depth);
+
+        String[] categories = new String[index.getActivities().size()];
+        for (int i = 0; i < categories.length; i++) {
+            categories[i] = index.getActivities().get(i).getName();
+        }
+        return BinnedTile.of(acc, start, bucket, columns, rows, null, null, categories);
+    }
+}
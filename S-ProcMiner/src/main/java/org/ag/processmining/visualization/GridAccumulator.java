@@ -0,0 +1,94 @@
+package org.ag.processmining.visualization;
+
+import java.io.Serializable;
+
+/**
+ * Sparse counts and value sums of the (cell, category) pairs of a grid, in an open-addressing
+ * table on the packed pair, filled per partition and merged on the driver. Its size depends on
+ * the number of non-empty pairs only, which the resolution of the grid bounds.
+ */
+public class GridAccumulator implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    static final int MAX_CATEGORIES = 1 << 16;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /*
+    Keys are (cell << 16 | category) + 1, 0 marking an empty slot
+     */
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private long[] counts = new long[INITIAL_CAPACITY];
+    private double[] values = new double[INITIAL_CAPACITY];
+    private int size = 0;
+
+    public GridAccumulator add(long cell, int category, double value) {
+        return put(((cell << 16) | category) + 1, 1, value);
+    }
+
+    private GridAccumulator put(long key, long count, double value) {
+        if (2 * (size + 1) > keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (keys[i] != 0 && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == 0) {
+            keys[i] = key;
+            size++;
+        }
+        counts[i] += count;
+        values[i] += value;
+        return this;
+    }
+
+    public GridAccumulator merge(GridAccumulator other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != 0) {
+                put(other.keys[i], other.counts[i], other.values[i]);
+            }
+        }
+        return this;
+    }
+
+    private void grow() {
+        long[] k = keys;
+        long[] c = counts;
+        double[] v = values;
+        keys = new long[k.length * 2];
+        counts = new long[k.length * 2];
+        values = new double[k.length * 2];
+        size = 0;
+        for (int i = 0; i < k.length; i++) {
+            if (k[i] != 0) {
+                put(k[i], c[i], v[i]);
+            }
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        key *= 0x9e3779b97f4a7c15L;
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    /**
+     * @return the number of non-empty (cell, category) pairs
+     */
+    public int size() {
+        return size;
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                long key = keys[i] - 1;
+                visitor.visit(key >>> 16, (int) (key & (MAX_CATEGORIES - 1)), counts[i], values[i]);
+            }
+        }
+    }
+
+    public interface Visitor {
+        void visit(long cell, int category, long count, double value);
+    }
+}
@@ -0,0 +1,128 @@
+package org.ag.processmining.visualization;
+
+import org.ag.processmining.log.model.*;
+import org.ag.processmining.log.model.Dictionary;
+import org.ag.processmining.log.summarizer.utils.SparkUtils;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.joda.time.DateTime;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Performance spectrum of a log binned into a {@link BinnedTile}: rows are segments (pairs of
+ * directly following activities a -> b), columns are time buckets of the end of a, the value of a
+ * cell is the total duration of its segment occurrences (end of a to start of b) and its category
+ * the most frequent duration class.
+ * <p>
+ * As for the {@link DottedChart}, the resolution follows the pixel budget and binning runs on the
+ * executors, over the partitions overlapping the time range only. When the log has more segments
+ * than rows fit in the budget, the most frequent segments are kept.
+ */
+public class PerformanceSpectrum implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private static final int MIN_ROW_PIXELS = 8;
+
+    JavaPairRDD<CaseId, Trace> traces;
+    private final TimeIndex index;
+    private int width = 1920;
+    private int height = 1080;
+    private long from;
+    private long to;
+    /*
+    Upper bounds (ms) of the duration classes, the last class being unbounded
+     */
+    private long[] durationClasses = {60000L, 600000L, 3600000L, 86400000L, 7 * 86400000L};
+    private int depth = 2;
+
+    public PerformanceSpectrum(JavaPairRDD<CaseId, Trace> traces, TimeIndex index) {
+        this.traces = traces;
+        this.index = index;
+        this.from = index.getMinTime();
+        this.to = index.getMaxTime() + 1;
+    }
+
+    public PerformanceSpectrum pixels(int width, int height) {
+        this.width = width;
+        this.height = height;
+        return this;
+    }
+
+    public PerformanceSpectrum timeRange(DateTime from, DateTime to) {
+        this.from = from.getMillis();
+        this.to = to.getMillis();
+        return this;
+    }
+
+    /**
+     * @param bounds increasing upper bounds (ms) of the duration classes
+     */
+    public PerformanceSpectrum durationClasses(long... bounds) {
+        this.durationClasses = bounds.clone();
+        return this;
+    }
+
+    public PerformanceSpectrum depth(int depth) {
+        this.depth = depth;
+        return this;
+    }
+
+    public BinnedTile tile() {
+        long bucket = BinnedTile.bucketMillis(to - from, width);
+        long start = BinnedTile.align(from, bucket);
+        int columns = (int) ((to - start + bucket - 1) / bucket);
+        int n = index.getActivities().size();
+        long rangeFrom = from;
+        long rangeTo = to;
+        long[] classes = durationClasses;
+        Dictionary<ActivityClass> activities = index.getActivities();
+
+        GridAccumulator acc = SparkUtils.prunePartitions(traces, index.partitionsOverlapping(from, to))
+                .treeAggregate(new GridAccumulator(), (a, t) -> {
+                    Event previous = null;
+                    for (Event e : t._2().getOrderedEvents().values()) {
+                        if (previous != null) {
+                            long segmentStart = previous.getEnd() != null ? previous.getEnd().getMillis() : TimeIndex.time(previous);
+                            long segmentEnd = TimeIndex.time(e);
+                            if (segmentStart >= rangeFrom && segmentStart < rangeTo && segmentEnd != Long.MIN_VALUE) {
+                                long segment = (long) activities.id(previous.getActivityClass()) * n + activities.id(e.getActivityClass());
+                                long duration = Math.max(0, segmentEnd - segmentStart);
+                                a.add(segment * columns + (segmentStart - start) / bucket, durationClass(classes, duration), duration);
+                            }
+                        }
+                        previous = e;
+                    }
+                    return a;
+                }, GridAccumulator::merge, depth);
+
+        // keep the most frequent segments that fit in the budget, in activity order
+        Map<Long, long[]> frequency = new HashMap<>();
+        acc.forEach((cell, category, count, value) -> frequency.computeIfAbsent(cell / columns, k -> new long[1])[0] += count);
+        List<Long> kept = new ArrayList<>(frequency.keySet());
+        kept.sort((x, y) -> Long.compare(frequency.get(y)[0], frequency.get(x)[0]));
+        kept = new ArrayList<>(kept.subList(0, Math.min(kept.size(), Math.max(1, height / MIN_ROW_PIXELS))));
+        Collections.sort(kept);
+        Map<Long, Integer> rows = new HashMap<>();
+        String[] rowLabels = new String[kept.size()];
+        for (int r = 0; r < kept.size(); r++) {
+            long s = kept.get(r);
+            rows.put(s, r);
+            rowLabels[r] = activities.get((int) (s / n)) + " -> " + activities.get((int) (s % n));
+        }
+        String[] categories = new String[classes.length + 1];
+        for (int c = 0; c < classes.length; c++) {
+            categories[c] = "<" + classes[c] + "ms";
+        }
+        categories[classes.length] = ">=" + classes[classes.length - 1] + "ms";
+        return BinnedTile.of(acc, start, bucket, columns, kept.size(), s -> rows.getOrDefault(s, -1), rowLabels, categories);
+    }
+
+    private static int durationClass(long[] classes, long duration) {
+        int c = 0;
+        while (c < classes.length && duration >= classes[c]) {
+            c++;
+        }
+        return c;
+    }
+}
@@ -0,0 +1,229 @@
+package org.ag.processmining.visualization;
+
+import org.ag.processmining.log.model.*;
+import org.ag.processmining.log.model.Dictionary;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.joda.time.DateTime;
+import scala.Tuple2;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Summary of a cached log used to lay out charts and to zoom into them: the time span of the
+ * events of every partition, the activities, and a weighted sample of the case start times from
+ * which the rank of a case (in start time order) is estimated without sorting the log.
+ * <p>
+ * The index is built in one scan. Zooming into a time range only rescans the partitions whose
+ * span overlaps the range, which pays off when the traces are partitioned by time (see
+ * {@link #byStartTime(JavaPairRDD, int)}).
+ */
+public class TimeIndex implements Serializable {
+
+    static final long serialVersionUID = 1L;
+    private static final int DEFAULT_SAMPLE_SIZE = 10_000;
+
+    private final long[] partitionMin;
+    private final long[] partitionMax;
+    private final long minTime;
+    private final long maxTime;
+    private final long cases;
+    private final Dictionary<ActivityClass> activities;
+    /*
+    Sorted sample of case start times, and the estimated number of cases starting before or at
+    each of them
+     */
+    private final long[] sampleStarts;
+    private final double[] sampleRanks;
+
+    private TimeIndex(List<PartitionSummary> summaries) {
+        int n = summaries.size();
+        partitionMin = new long[n];
+        partitionMax = new long[n];
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        long c = 0;
+        Set<ActivityClass> a = new HashSet<>();
+        List<long[]> samples = new ArrayList<>();
+        for (PartitionSummary s : summaries) {
+            partitionMin[s.index] = s.min;
+            partitionMax[s.index] = s.max;
+            min = Math.min(min, s.min);
+            max = Math.max(max, s.max);
+            c += s.cases;
+            a.addAll(s.activities);
+            // each sampled start stands for cases / sample size starts of its partition
+            for (int i = 0; i < s.sampled; i++) {
+                samples.add(new long[]{s.sample[i], Double.doubleToLongBits((double) s.cases / s.sampled)});
+            }
+        }
+        minTime = min;
+        maxTime = max;
+        cases = c;
+        activities = Dictionary.of(a);
+        samples.sort(Comparator.comparingLong(x -> x[0]));
+        sampleStarts = new long[samples.size()];
+        sampleRanks = new double[samples.size()];
+        double rank = 0;
+        for (int i = 0; i < samples.size(); i++) {
+            sampleStarts[i] = samples.get(i)[0];
+            rank += Double.longBitsToDouble(samples.get(i)[1]);
+            sampleRanks[i] = rank;
+        }
+    }
+
+    public static TimeIndex build(JavaPairRDD<CaseId, Trace> traces) {
+        return build(traces, DEFAULT_SAMPLE_SIZE);
+    }
+
+    /**
+     * @param sampleSize number of case start times sampled per partition
+     */
+    public static TimeIndex build(JavaPairRDD<CaseId, Trace> traces, int sampleSize) {
+        return new TimeIndex(traces.mapPartitionsWithIndex((index, it) -> {
+            PartitionSummary s = new PartitionSummary(index, sampleSize);
+            Random random = new Random(index);
+            while (it.hasNext()) {
+                s.add(it.next()._2(), random);
+            }
+            return Collections.singletonList(s).iterator();
+        }, true).collect());
+    }
+
+    /**
+     * Range-partitions traces by the start time of their case, so that the cases of a time range
+     * are in few partitions.
+     */
+    public static JavaPairRDD<CaseId, Trace> byStartTime(JavaPairRDD<CaseId, Trace> traces, int partitions) {
+        return JavaPairRDD.fromJavaRDD(traces.rdd().toJavaRDD()
+                .sortBy(t -> startTime(t._2()), true, partitions));
+    }
+
+    /**
+     * @return the time of an event in charts: its start, or its end if it has no start
+     */
+    static long time(Event e) {
+        DateTime t = e.getStart() != null ? e.getStart() : e.getEnd();
+        return t == null ? Long.MIN_VALUE : t.getMillis();
+    }
+
+    static long startTime(Trace t) {
+        long start = Long.MAX_VALUE;
+        for (Event e : t.getOrderedEvents().values()) {
+            long time = time(e);
+            if (time != Long.MIN_VALUE) {
+                start = Math.min(start, time);
+            }
+        }
+        return start;
+    }
+
+    /**
+     * @return the indices of the partitions with events in [from, to)
+     */
+    public Set<Integer> partitionsOverlapping(long from, long to) {
+        Set<Integer> p = new HashSet<>();
+        for (int i = 0; i < partitionMin.length; i++) {
+            if (partitionMin[i] < to && partitionMax[i] >= from) {
+                p.add(i);
+            }
+        }
+        return p;
+    }
+
+    /**
+     * @return the estimated fraction, in [0, 1], of the cases starting before the given time
+     */
+    public double rank(long start) {
+        if (sampleStarts.length == 0 || cases == 0) {
+            return 0;
+        }
+        int i = Arrays.binarySearch(sampleStarts, start);
+        if (i < 0) {
+            i = -i - 2;
+        } else {
+            while (i > 0 && sampleStarts[i - 1] == start) {
+                i--;
+            }
+            i--;
+        }
+        return i < 0 ? 0 : Math.min(1, sampleRanks[i] / cases);
+    }
+
+    public long getMinTime() {
+        return minTime;
+    }
+
+    /**
+     * @return the time of the last event
+     */
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    public long getCases() {
+        return cases;
+    }
+
+    public Dictionary<ActivityClass> getActivities() {
+        return activities;
+    }
+
+    public int getPartitions() {
+        return partitionMin.length;
+    }
+
+    @Override
+    public String toString() {
+        return "TimeIndex{" + new DateTime(minTime) + " - " + new DateTime(maxTime) + ", cases=" + cases
+                + ", activities=" + activities.size() + ", partitions=" + partitionMin.length + "}";
+    }
+
+    /**
+     * Time span, activities, case count and reservoir sample of the case start times of a
+     * partition.
+     */
+    private static class PartitionSummary implements Serializable {
+        static final long serialVersionUID = 1L;
+        final int index;
+        final long[] sample;
+        final Set<ActivityClass> activities = new HashSet<>();
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        long cases = 0;
+        int sampled = 0;
+
+        PartitionSummary(int index, int sampleSize) {
+            this.index = index;
+            this.sample = new long[sampleSize];
+        }
+
+        void add(Trace t, Random random) {
+            long start = Long.MAX_VALUE;
+            for (Event e : t.getOrderedEvents().values()) {
+                activities.add(e.getActivityClass());
+                long time = time(e);
+                if (time != Long.MIN_VALUE) {
+                    start = Math.min(start, time);
+                    min = Math.min(min, time);
+                    max = Math.max(max, time);
+                }
+                if (e.getEnd() != null) {
+                    max = Math.max(max, e.getEnd().getMillis());
+                }
+            }
+            if (start == Long.MAX_VALUE) {
+                return;
+            }
+            cases++;
+            if (sampled < sample.length) {
+                sample[sampled++] = start;
+            } else {
+                long r = (long) (random.nextDouble() * cases);
+                if (r < sample.length) {
+                    sample[(int) r] = start;
+                }
+            }
+        }
+    }
+}